@@ -0,0 +1,75 @@
+import ex4.bench.SheetEngine;
+
+import java.io.IOException;
+
+/**
+ * Ex2SheetEngine - the benchmarked spreadsheet (Ex2Sheet, CellEntry and SCell) behind the SheetEngine interface of the benchmarks.
+ * It is in the default package, like the spreadsheet itself (see SheetEngine).
+ */
+public class Ex2SheetEngine implements SheetEngine {
+    private Ex2Sheet sheet;
+
+    @Override
+    public void build(String[][] data) {
+        sheet = new Ex2Sheet(data.length, data[0].length);
+        sheet.batch(b -> {
+            for (int x = 0; x < data.length; x++) {
+                for (int y = 0; y < data[x].length; y++) {
+                    if (data[x][y] != null) b.set(x, y, data[x][y]);
+                }
+            }
+        });
+    }
+
+    @Override
+    public String set(int x, int y, String s) {
+        sheet.set(x, y, s);
+        return sheet.value(x, y);
+    }
+
+    @Override
+    public void eval() {
+        sheet.eval();
+    }
+
+    @Override
+    public int[][] depth() {
+        return sheet.depth();
+    }
+
+    @Override
+    public void save(String fileName) throws IOException {
+        sheet.save(fileName);
+    }
+
+    @Override
+    public void load(String fileName) throws IOException {
+        sheet.load(fileName);
+    }
+
+    @Override
+    public void saveBinary(String fileName) throws IOException {
+        sheet.saveBinary(fileName);
+    }
+
+    @Override
+    public void loadBinary(String fileName) throws IOException {
+        sheet.loadBinary(fileName);
+    }
+
+    @Override
+    public int cellEntry(String entry) {
+        CellEntry ce = new CellEntry(entry);
+        return ce.isValid() ? ce.getX() + ce.getY() : -1;
+    }
+
+    @Override
+    public int classify(String data) {
+        return new SCell(data).getType();
+    }
+
+    @Override
+    public boolean isNumber(String data) {
+        return SCell.isNumber(data);
+    }
+}
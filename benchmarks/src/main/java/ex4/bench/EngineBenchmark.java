@@ -0,0 +1,94 @@
+package ex4.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EngineBenchmark - the whole-spreadsheet operations of Ex2Sheet (through SheetEngine), on every shape of SheetShapes:
+ * - set: a change of the root cell A0, and the recalculation of all the cells that depend on it.
+ * - eval: a full recalculation (the dependency graph is built again, and every cell is evaluated).
+ * - depth: the depth of all the cells.
+ * - save and load: in the text format, and in the binary format (see BinarySheetFile).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+    @Param({"chain", "fanIn", "ranges", "text"})
+    public String shape;
+
+    @Param({"1000", "100000"})
+    public int cells;
+
+    private SheetEngine sheet;
+    private String textFile, binaryFile; // files saved in setup, for the load benchmarks
+    private String saveFile; // the file of the save benchmarks
+    private int value; // the next value of A0
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        sheet = SheetEngine.create();
+        sheet.build(SheetShapes.data(shape, cells));
+        textFile = temp(".txt");
+        binaryFile = temp(".ex4b");
+        saveFile = temp(".out");
+        sheet.save(textFile);
+        sheet.saveBinary(binaryFile);
+    }
+
+    /**
+     * @param suffix the suffix of the file name.
+     * @return the path of a new temporary file (deleted when the benchmark ends).
+     */
+    private static String temp(String suffix) throws IOException {
+        File file = File.createTempFile("EngineBenchmark", suffix);
+        file.deleteOnExit();
+        return file.getPath();
+    }
+
+    @Benchmark
+    public String set() {
+        return sheet.set(0, 0, "" + (++value % 100));
+    }
+
+    @Benchmark
+    public SheetEngine eval() {
+        sheet.eval();
+        return sheet;
+    }
+
+    @Benchmark
+    public int[][] depth() {
+        return sheet.depth();
+    }
+
+    @Benchmark
+    public String saveText() throws IOException {
+        sheet.save(saveFile);
+        return saveFile;
+    }
+
+    @Benchmark
+    public SheetEngine loadText() throws IOException {
+        sheet.load(textFile);
+        return sheet;
+    }
+
+    @Benchmark
+    public String saveBinary() throws IOException {
+        sheet.saveBinary(saveFile);
+        return saveFile;
+    }
+
+    @Benchmark
+    public SheetEngine loadBinary() throws IOException {
+        sheet.loadBinary(binaryFile);
+        return sheet;
+    }
+}
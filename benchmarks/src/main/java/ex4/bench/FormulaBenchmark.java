@@ -0,0 +1,55 @@
+package ex4.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FormulaBenchmark - the evaluation of a single cell, without dependents (so only the cell itself is recalculated):
+ * - form: an arithmetic formula with references (computeForm).
+ * - fun: a function over a range of rangeSize cells of column A (computeFun) - a small range is read cell by cell,
+ *   and a big range is answered by the range index (see RangeIndex).
+ * - condition: an IF condition with references.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormulaBenchmark {
+    @Param({"16", "1000", "100000"})
+    public int rangeSize;
+
+    private SheetEngine sheet;
+    private String sum, max; // two functions over the range
+    private boolean flip; // the cell is changed between two data strings, so every set is a real change
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[][] data = new String[3][rangeSize];
+        for (int y = 0; y < rangeSize; y++) data[0][y] = "" + (y % 97);
+        sheet = SheetEngine.create();
+        sheet.build(data);
+        sum = "=sum(A0:A" + (rangeSize - 1) + ")";
+        max = "=max(A0:A" + (rangeSize - 1) + ")";
+    }
+
+    @Benchmark
+    public String form() {
+        flip = !flip;
+        return sheet.set(2, 0, flip ? "=A0*2+A1/3-(A2+4)" : "=(A0+A1)*2-A2/3");
+    }
+
+    @Benchmark
+    public String fun() {
+        flip = !flip;
+        return sheet.set(2, 0, flip ? sum : max);
+    }
+
+    @Benchmark
+    public String condition() {
+        flip = !flip;
+        return sheet.set(2, 0, flip ? "=if(A1*2>A2,yes,=A0+1)" : "=if(A1<=A2+1,=A1*3,no)");
+    }
+}
@@ -0,0 +1,49 @@
+package ex4.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ParseBenchmark - the parsing that every cell goes through before it is evaluated:
+ * - cellEntry: parsing a cell name (e.g., "AB123") into coordinates.
+ * - classify: creating a cell - classifying its data and parsing its formula once (see SCell and Expr).
+ * - isNumber: the number lexer alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Entry {
+        @Param({"A0", "ZZ9999", "ZZZ9999999", "a0b"})
+        public String entry;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Data {
+        @Param({"123.45e-2", "some text", "=A0*2+B7/(C3-1)", "=sum(A0:C99)", "=if(A0>B0,=A1*2,no)"})
+        public String data;
+    }
+
+    private final SheetEngine engine = SheetEngine.create();
+
+    @Benchmark
+    public int cellEntry(Entry state) {
+        return engine.cellEntry(state.entry);
+    }
+
+    @Benchmark
+    public int classify(Data state) {
+        return engine.classify(state.data);
+    }
+
+    @Benchmark
+    public boolean isNumber(Data state) {
+        return engine.isNumber(state.data);
+    }
+}
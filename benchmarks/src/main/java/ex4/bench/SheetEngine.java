@@ -0,0 +1,94 @@
+package ex4.bench;
+
+import java.io.IOException;
+
+/**
+ * SheetEngine - the operations of the spreadsheet that the benchmarks measure.
+ * The spreadsheet classes are in the default package, and a class in a named package (as JMH requires for a benchmark) can not refer to them -
+ * so the benchmarks call them through this interface, and the implementation (Ex2SheetEngine, in the default package) is loaded by its name.
+ * A benchmark keeps a single implementation, so the JIT compiler inlines the calls through the interface.
+ */
+public interface SheetEngine {
+
+    /**
+     * @return a new engine, without a spreadsheet (see build).
+     */
+    static SheetEngine create() {
+        try {
+            return (SheetEngine) Class.forName("Ex2SheetEngine").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The spreadsheet engine is not on the class path", e);
+        }
+    }
+
+    /**
+     * Creates a new spreadsheet with the given cells, with a single recalculation.
+     * @param data the data of the cells: data[x][y] (null - an empty cell); the dimensions of the spreadsheet are the dimensions of the array.
+     */
+    void build(String[][] data);
+
+    /**
+     * Changes a cell (and recalculates the cells that depend on it).
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param s the new data of the cell.
+     * @return the value presented in the cell after the change.
+     */
+    String set(int x, int y, String s);
+
+    /**
+     * Recalculates all the cells.
+     */
+    void eval();
+
+    /**
+     * @return the depth array of the spreadsheet.
+     */
+    int[][] depth();
+
+    /**
+     * Saves the spreadsheet into a text file (see Ex2Sheet.save).
+     * @param fileName the path of the saved file.
+     * @throws IOException if the file can not be saved.
+     */
+    void save(String fileName) throws IOException;
+
+    /**
+     * Replaces the cells of the spreadsheet with the cells of a text file, and recalculates all of them (see Ex2Sheet.load).
+     * @param fileName the path of the loaded file.
+     * @throws IOException if the file can not be loaded.
+     */
+    void load(String fileName) throws IOException;
+
+    /**
+     * Saves the spreadsheet into a binary file (see Ex2Sheet.saveBinary).
+     * @param fileName the path of the saved file.
+     * @throws IOException if the file can not be saved.
+     */
+    void saveBinary(String fileName) throws IOException;
+
+    /**
+     * Replaces the cells of the spreadsheet with the cells of a binary file, and recalculates all of them (see Ex2Sheet.loadBinary).
+     * @param fileName the path of the loaded file.
+     * @throws IOException if the file can not be loaded, or if it is not a valid binary spreadsheet file.
+     */
+    void loadBinary(String fileName) throws IOException;
+
+    /**
+     * @param entry a cell name (e.g., "B3").
+     * @return x + y of the cell, or -1 if the name is not valid.
+     */
+    int cellEntry(String entry);
+
+    /**
+     * @param data the data of a cell.
+     * @return the type of a new cell with this data (the data is classified, and its formula is parsed).
+     */
+    int classify(String data);
+
+    /**
+     * @param data the data of a cell.
+     * @return true if the data is a number.
+     */
+    boolean isNumber(String data);
+}
@@ -0,0 +1,64 @@
+package ex4.bench;
+
+/**
+ * SheetShapes - builds the spreadsheets that the benchmarks run on. Every shape stresses a different part of the engine:
+ * - chain: A0 = 1, and every cell below it depends on the one above it (A1 = A0+1, A2 = A1+1, ...) - the deepest dependency graph.
+ * - fanIn: column A holds numbers, and every cell in column B adds FAN_IN cells of column A - formulas with many precedents.
+ * - ranges: column A holds numbers, and every cell in column B sums the whole column A up to its row - many overlapping ranges.
+ *   Its ranges together cover O(rows^2) cells, so it only runs because the engine never expands a range into its cells:
+ *   the order and the depths come from the depth index, and the sums from the range index (O(log^2) for every range).
+ *   A change of A0 still recalculates every row of column B - the set benchmark of this shape measures rows sums, not one.
+ * - text: columns A and B hold text, and every tenth row has a small formula - mostly classification, almost no evaluation.
+ * All the shapes have about the requested number of cells, and their root cell is A0 (changing it affects the formulas of the shape).
+ * The shapes are only data (see SheetEngine.build), so they do not depend on the spreadsheet classes.
+ */
+public class SheetShapes {
+    public static final int FAN_IN = 32; // the number of references in every formula of the fanIn shape
+
+    /**
+     * @param shape the name of the shape (chain, fanIn, ranges or text).
+     * @param cells the number of cells.
+     * @return the data of the cells of the shape: data[x][y] (null - an empty cell).
+     */
+    public static String[][] data(String shape, int cells) {
+        switch (shape) {
+            case "chain": {
+                String[][] ans = new String[1][cells];
+                ans[0][0] = "1";
+                for (int y = 1; y < cells; y++) ans[0][y] = "=A" + (y - 1) + "+1";
+                return ans;
+            }
+            case "fanIn": {
+                int rows = cells / 2;
+                String[][] ans = new String[2][rows];
+                for (int y = 0; y < rows; y++) {
+                    ans[0][y] = "" + y;
+                    StringBuilder form = new StringBuilder("=A0");
+                    for (int i = 1; i < FAN_IN; i++) form.append("+A").append((y + i) % rows);
+                    ans[1][y] = form.toString();
+                }
+                return ans;
+            }
+            case "ranges": {
+                int rows = cells / 2;
+                String[][] ans = new String[2][rows];
+                for (int y = 0; y < rows; y++) {
+                    ans[0][y] = "" + y;
+                    ans[1][y] = "=sum(A0:A" + y + ")";
+                }
+                return ans;
+            }
+            case "text": {
+                int rows = cells / 2;
+                String[][] ans = new String[2][rows];
+                for (int y = 0; y < rows; y++) {
+                    ans[0][y] = (y == 0) ? "1" : "item " + y;
+                    ans[1][y] = (y % 10 == 0) ? "=A0*" + y : "a longer description of row " + y;
+                }
+                return ans;
+            }
+            default:
+                throw new IllegalArgumentException("unknown shape: " + shape);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * AsyncSheet - a spreadsheet that recalculates in the background.
+ * - A change (set) is only queued, so it returns right away - even if the recalculation takes seconds on a big spreadsheet.
+ * - A single worker thread owns the real spreadsheet (an Ex2Sheet): it takes all the queued changes, applies them as one batch
+ *   (a single recalculation, see Ex2Sheet.batch), and then publishes a new snapshot of the presented values.
+ * - The readers (value, get, eval(x,y)) read the last published snapshot - it is always fully calculated and consistent,
+ *   but it may be older than the last changes. Every change gets a version number, so isStale() tells if there are changes that are not published yet,
+ *   and awaitIdle() waits until they are.
+ * - A snapshot (see Ex2Sheet.snapshot) is never changed after it is published. The next snapshot shares with it all the tiles
+ *   that were not recalculated, so publishing costs the number of tiles plus the recalculated cells - not the whole spreadsheet.
+ * - save, load and depth are executed by the worker too (in the order of the changes), and wait for it.
+ * - If a batch of changes fails (with any exception or error), the worker still publishes the spreadsheet as it is, and keeps working -
+ *   the failure is thrown once, by the first awaitIdle() that returns after it (and is kept in getFailure()).
+ *   The same goes for a full recalculation (eval) - it returns before it runs, so only awaitIdle can report it.
+ *   A failed save, load or depth is thrown by the method itself (and kept in getFailure() if it changed the spreadsheet).
+ * The worker is a daemon thread, and close() stops it - the tasks that were not executed yet fail, and new changes are not accepted.
+ */
+public class AsyncSheet implements Sheet, AutoCloseable {
+    private final int width, height; // the dimensions of the spreadsheet
+    private final Ex2Sheet sheet; // the real spreadsheet - used only by the worker thread
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>(); // the changes (Change) and tasks (Task) that wait for the worker
+    private final AtomicLong version = new AtomicLong(); // the version of the last queued change
+    private final Object published = new Object(); // notified whenever a new snapshot is published
+    private volatile Snapshot snapshot; // the last published snapshot
+    private final Thread worker;
+    private volatile boolean closed = false;
+    private volatile Failure failure = null; // the last change (a batch, or a task that changes the spreadsheet) that failed (null - none)
+    private final AtomicReference<Failure> unreported = new AtomicReference<>(); // a failure that awaitIdle has not thrown yet (null - none)
+
+    /**
+     * A published (immutable) copy of all the populated cells, and the version of the last change it includes.
+     */
+    private static final class Snapshot {
+        final long version;
+        final SheetSnapshot cells;
+
+        Snapshot(long version, SheetSnapshot cells) {
+            this.version = version;
+            this.cells = cells;
+        }
+    }
+
+    /**
+     * A change that failed - the exception (or error), and the version of the last change of the batch (or of the task).
+     */
+    private static final class Failure {
+        final long version;
+        final Throwable error;
+
+        Failure(long version, Throwable error) {
+            this.version = version;
+            this.error = error;
+        }
+    }
+
+    /**
+     * A queued change of a single cell.
+     */
+    private static final class Change {
+        final int x, y;
+        final String data;
+        final long version;
+
+        Change(int x, int y, String data, long version) {
+            this.x = x;
+            this.y = y;
+            this.data = data;
+            this.version = version;
+        }
+    }
+
+    /**
+     * A queued task - executed by the worker in its turn.
+     */
+    private static final class Task {
+        final Callable<Object> action;
+        final long version; // the version of the change that this task makes (0 - the task does not change the spreadsheet)
+        final boolean awaited; // true if the caller waits for the result (and gets its exception), false if only awaitIdle can report it
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        Task(Callable<Object> action, long version, boolean awaited) {
+            this.action = action;
+            this.version = version;
+            this.awaited = awaited;
+        }
+    }
+
+    /**
+     * constructor for an AsyncSheet object - a 2D spreadsheet that recalculates in the background.
+     * @param x - The X dimension of the spreadsheet
+     * @param y - The Y dimension of the spreadsheet
+     */
+    public AsyncSheet(int x, int y) {
+        this(new Ex2Sheet(x, y)); // throws an IllegalArgumentException for invalid dimensions
+    }
+
+    /**
+     * constructor for an AsyncSheet object over a given spreadsheet - from now on, only the worker thread may use it.
+     * @param sheet the real spreadsheet.
+     */
+    AsyncSheet(Ex2Sheet sheet) {
+        this.sheet = sheet;
+        width = sheet.width();
+        height = sheet.height();
+        snapshot = new Snapshot(0, sheet.snapshot());
+        worker = new Thread(this::work, "AsyncSheet-worker");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Default constructor -
+     * Creates a spreadsheet with predefined dimensions (according to the definitions in Ex2Utils) using our constructor:
+     */
+    public AsyncSheet() {
+        this(Ex2Utils.WIDTH, Ex2Utils.HEIGHT);
+    }
+
+    @Override
+    public boolean isIn(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Queues a change of the x,y cell to a cell with the data s - it is recalculated and published by the worker.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param s - the string representation of the cell.
+     * @throws IllegalStateException if the spreadsheet is closed.
+     */
+    @Override
+    public void set(int x, int y, String s) {
+        // If the requested coordinates are not in the spreadsheet - we will end the method.
+        if (!isIn(x, y)) return;
+        // The version and the place in the queue must match, even if several threads change the spreadsheet:
+        synchronized (queue) {
+            if (closed) throw new IllegalStateException("The spreadsheet is closed");
+            queue.add(new Change(x, y, s, version.incrementAndGet()));
+        }
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return a read-only view of the x,y cell in the last published snapshot, or null if the cell is not in the spreadsheet.
+     */
+    @Override
+    public Cell get(int x, int y) {
+        return snapshot.cells.get(x, y);
+    }
+
+    @Override
+    public Cell get(String entry) {
+        CellEntry ce = new CellEntry(entry);
+        if (!ce.isValid()) return null;
+        return get(ce.getX(), ce.getY());
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the value presented in the x,y cell in the last published snapshot.
+     */
+    @Override
+    public String value(int x, int y) {
+        return snapshot.cells.value(x, y);
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the computed value of the x,y cell in the last published snapshot (null if the cell is empty or not in the spreadsheet).
+     */
+    @Override
+    public String eval(int x, int y) {
+        return snapshot.cells.eval(x, y);
+    }
+
+    /**
+     * Queues a full recalculation of all the cells (see Ex2Sheet.eval) - if it fails, the failure is thrown by awaitIdle.
+     */
+    @Override
+    public void eval() {
+        submit(() -> {
+            sheet.eval();
+            return null;
+        }, true, false);
+    }
+
+    /**
+     * Computes the depths of all the cells, after all the changes that were queued before this call.
+     * @return the depth array (see Ex2Sheet.depth).
+     */
+    @Override
+    public int[][] depth() {
+        try {
+            return (int[][]) await(submit(sheet::depth, false, true));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Saves the spreadsheet after all the changes that were queued before this call (see Ex2Sheet.save).
+     * @param fileName a String representing the full (an absolute or relative path tp the saved file).
+     * @throws IOException an exception might be throed if the file can not be saved.
+     */
+    @Override
+    public void save(String fileName) throws IOException {
+        await(submit(() -> {
+            sheet.save(fileName);
+            return null;
+        }, false, true));
+    }
+
+    /**
+     * Loads the spreadsheet from a file (see Ex2Sheet.load) - when this method returns, the loaded cells are already published.
+     * @param fileName a String representing the full (an absolute or relative path to the loaded file).
+     * @throws IOException an exception might be throed if the file can not be loaded.
+     */
+    @Override
+    public void load(String fileName) throws IOException {
+        await(submit(() -> {
+            sheet.load(fileName);
+            return null;
+        }, true, true));
+    }
+
+    /**
+     * @return the version of the last queued change (every change increases it by 1).
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return the version of the last change that the published snapshot includes.
+     */
+    public long getSnapshotVersion() {
+        return snapshot.version;
+    }
+
+    /**
+     * @return true if there are queued changes that are not published yet (the values that are read may be old).
+     */
+    public boolean isStale() {
+        return snapshot.version < version.get();
+    }
+
+    /**
+     * @return the exception (or error) of the last change that failed - a batch of changes, eval or load - or null if all the changes were applied.
+     */
+    public Throwable getFailure() {
+        Failure last = failure;
+        return (last == null) ? null : last.error;
+    }
+
+    /**
+     * Waits until all the changes that were queued before this call are recalculated and published.
+     * @throws InterruptedException if the waiting thread was interrupted.
+     * @throws IllegalStateException if a batch of these changes (or an eval) failed, and no awaitIdle has thrown it yet (its cause is the exception of the batch) -
+     *         the spreadsheet is still published, as it was after the failure.
+     */
+    public void awaitIdle() throws InterruptedException {
+        long target = version.get();
+        synchronized (published) {
+            while (snapshot.version < target) {
+                if (closed) return;
+                published.wait();
+            }
+        }
+        // A failure of a later change is left for the awaitIdle that waits for it:
+        Failure last = unreported.get();
+        if (last != null && last.version <= target && unreported.compareAndSet(last, null)) {
+            throw new IllegalStateException("Some changes could not be applied", last.error);
+        }
+    }
+
+    /**
+     * Stops the worker thread - changes that were not applied yet are dropped, and the tasks that were not executed yet
+     * (e.g., a save or a load that waits for them) fail with an IllegalStateException.
+     */
+    @Override
+    public void close() {
+        List<Object> dropped = new ArrayList<>();
+        synchronized (queue) {
+            closed = true;
+            queue.drainTo(dropped);
+        }
+        for (Object item : dropped) {
+            if (item instanceof Task) ((Task) item).result.completeExceptionally(new IllegalStateException("The spreadsheet is closed"));
+        }
+        worker.interrupt();
+        synchronized (published) {
+            published.notifyAll();
+        }
+    }
+
+    /**
+     * Queues a task for the worker.
+     * @param action the task.
+     * @param changes true if the task changes the spreadsheet (it gets a version number).
+     * @param awaited true if the caller waits for the result - otherwise a failure of the task is thrown by awaitIdle.
+     * @return the future result of the task.
+     * @throws IllegalStateException if the spreadsheet is closed.
+     */
+    private CompletableFuture<Object> submit(Callable<Object> action, boolean changes, boolean awaited) {
+        Task task;
+        synchronized (queue) {
+            if (closed) throw new IllegalStateException("The spreadsheet is closed");
+            task = new Task(action, changes ? version.incrementAndGet() : 0, awaited);
+            queue.add(task);
+        }
+        return task.result;
+    }
+
+    /**
+     * Waits for the result of a task.
+     * @param result the future result of the task.
+     * @return the result of the task.
+     * @throws IOException the IOException that the task has thrown.
+     */
+    private static Object await(CompletableFuture<Object> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the spreadsheet", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * The loop of the worker thread: takes everything that is queued, applies all the consecutive changes as one batch,
+     * runs the tasks in their turn, and publishes a new snapshot after each step.
+     */
+    private void work() {
+        List<Object> work = new ArrayList<>();
+        while (!closed) {
+            try {
+                work.add(queue.take());
+            } catch (InterruptedException e) {
+                return; // closed
+            }
+            queue.drainTo(work);
+
+            int i = 0;
+            while (i < work.size()) {
+                if (work.get(i) instanceof Change) {
+                    // All the consecutive changes - a single batch, with a single recalculation:
+                    int from = i;
+                    while (i < work.size() && work.get(i) instanceof Change) i++;
+                    List<Object> changes = work.subList(from, i);
+                    long last = ((Change) work.get(i - 1)).version;
+                    try {
+                        sheet.batch(b -> {
+                            for (Object change : changes) {
+                                Change c = (Change) change;
+                                b.set(c.x, c.y, c.data);
+                            }
+                        });
+                    } catch (Throwable e) {
+                        // The worker must keep working, even after an error - awaitIdle throws the failure:
+                        fail(last, e, true);
+                    }
+                    publish(last);
+                }
+                else {
+                    Task task = (Task) work.get(i++);
+                    Object result = null;
+                    Throwable error = null;
+                    try {
+                        result = task.action.call();
+                    } catch (Throwable e) {
+                        error = e;
+                    }
+                    // A task that changes the spreadsheet (load, eval) - we will publish a new snapshot:
+                    if (task.version > 0) {
+                        if (error != null) fail(task.version, error, !task.awaited);
+                        publish(task.version);
+                    }
+                    if (error != null) task.result.completeExceptionally(error);
+                    else task.result.complete(result);
+                }
+            }
+            work.clear();
+        }
+    }
+
+    /**
+     * Keeps a failed change (see getFailure).
+     * @param failedVersion the version of the last change that failed.
+     * @param error the exception (or error) of the change.
+     * @param report true if awaitIdle should throw it - false if the caller of the task already gets it.
+     */
+    private void fail(long failedVersion, Throwable error, boolean report) {
+        failure = new Failure(failedVersion, error);
+        if (report) unreported.set(failure);
+    }
+
+    /**
+     * Publishes a new snapshot of the spreadsheet - it shares with the last snapshot all the tiles without recalculated cells.
+     * If the snapshot itself fails, the last snapshot is published again with the new version (and the failure is thrown by awaitIdle),
+     * so the readers that wait for this version are never stuck.
+     * @param newVersion the version of the last change that the new snapshot includes.
+     */
+    private void publish(long newVersion) {
+        SheetSnapshot cells;
+        try {
+            cells = sheet.snapshot();
+        } catch (Throwable e) {
+            fail(newVersion, e, true);
+            cells = snapshot.cells;
+        }
+        Snapshot next = new Snapshot(newVersion, cells);
+        synchronized (published) {
+            snapshot = next;
+            published.notifyAll();
+        }
+    }
+}
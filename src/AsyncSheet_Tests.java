@@ -0,0 +1,182 @@
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AsyncSheet_Tests - JUnit tests for the AsyncSheet class.
+ * - Verifies that the changes are recalculated in the background and published as a consistent snapshot.
+ * - Tests the version numbers and the stale flag.
+ * - Checks that a published cell view never changes, and the save, load and depth methods.
+ * - Tests a batch (or an eval) that fails - also with an error - and closing the spreadsheet while tasks wait.
+ */
+public class AsyncSheet_Tests {
+
+    // Tests changes, and reading them after they are published
+    @Test
+    void set_Test() throws InterruptedException {
+        try (AsyncSheet sheet = new AsyncSheet(26, 100)) {
+            assertEquals(0, sheet.getVersion());
+            assertFalse(sheet.isStale());
+
+            sheet.set(0, 0, "5"); // A0
+            sheet.set(0, 1, "=A0*2"); // A1
+            sheet.set(1, 0, "=sum(A0:A1)"); // B0
+            sheet.set(100, 100, "7"); // not in the spreadsheet - ignored
+            assertEquals(3, sheet.getVersion());
+
+            sheet.awaitIdle();
+            assertFalse(sheet.isStale());
+            assertEquals(3, sheet.getSnapshotVersion());
+            assertEquals("10.0", sheet.value(0, 1));
+            assertEquals("15.0", sheet.value(1, 0));
+            assertEquals("=A0*2", sheet.get("A1").getData());
+            assertEquals(Ex2Utils.FORM, sheet.get(0, 1).getType());
+            assertEquals(1, sheet.get(0, 1).getOrder());
+            assertEquals("", sheet.value(5, 5));
+            assertNull(sheet.eval(5, 5));
+            assertNull(sheet.get(100, 100));
+
+            // A view is read-only, and it keeps its values after the next changes:
+            Cell old = sheet.get(1, 0);
+            assertThrows(UnsupportedOperationException.class, () -> old.setData("1"));
+            sheet.set(0, 0, "1");
+            sheet.set(0, 1, "");
+            sheet.awaitIdle();
+            assertEquals("15.0", ((CellView) old).getValue());
+            assertEquals("1.0", sheet.value(1, 0));
+            assertEquals("", sheet.value(0, 1));
+        }
+    }
+
+    // Tests a long recalculation - the changes return right away, and the readers see the last consistent snapshot
+    @Test
+    void background_Test() throws InterruptedException {
+        int rows = 50000;
+        try (AsyncSheet sheet = new AsyncSheet(1, rows)) {
+            for (int i = 1; i < rows; i++) {
+                sheet.set(0, i, "=A" + (i - 1) + "+1");
+            }
+            sheet.set(0, 0, "0");
+            // While the worker is busy, a reader sees either nothing or a fully calculated chain:
+            String last = sheet.value(0, rows - 1);
+            assertTrue(last.isEmpty() || last.equals((rows - 1) + ".0") || last.equals(Ex2Utils.ERR_FORM), last);
+
+            sheet.awaitIdle();
+            assertEquals((rows - 1) + ".0", sheet.value(0, rows - 1));
+            assertEquals(rows, sheet.getSnapshotVersion());
+        }
+    }
+
+    // Tests save, load, eval and depth - they are executed after the changes that were queued before them
+    @Test
+    void saveLoad_Test() throws IOException, InterruptedException {
+        File file = File.createTempFile("async", ".csv");
+        file.deleteOnExit();
+        try (AsyncSheet sheet = new AsyncSheet(26, 100)) {
+            sheet.set(0, 0, "2");
+            sheet.set(0, 1, "=A0+A0");
+            sheet.save(file.getPath());
+            assertEquals(1, sheet.depth()[0][1]);
+
+            sheet.set(0, 0, "text");
+            sheet.load(file.getPath()); // published when load returns
+            assertEquals("4.0", sheet.value(0, 1));
+
+            sheet.eval();
+            sheet.awaitIdle();
+            assertEquals("4.0", sheet.value(0, 1));
+            assertFalse(sheet.isStale());
+        }
+    }
+
+    // Tests a batch of changes that fails - the worker keeps working, and awaitIdle returns and throws the failure
+    @Test
+    void failure_Test() throws InterruptedException {
+        Ex2Sheet real = new Ex2Sheet(26, 100);
+        real.addRecalculationListener((keys, all) -> {
+            if (real.value(0, 0).equals("13.0")) throw new IllegalArgumentException("bad listener");
+        });
+        try (AsyncSheet sheet = new AsyncSheet(real)) {
+            sheet.set(0, 0, "13");
+            IllegalStateException e = assertThrows(IllegalStateException.class, sheet::awaitIdle);
+            assertEquals("bad listener", e.getCause().getMessage());
+            assertSame(e.getCause(), sheet.getFailure());
+            assertEquals("13.0", sheet.value(0, 0)); // published anyway
+            assertFalse(sheet.isStale());
+
+            // The worker is still alive, and the next changes do not throw the old failure:
+            sheet.set(0, 0, "1");
+            sheet.awaitIdle();
+            assertEquals("1.0", sheet.value(0, 0));
+        }
+    }
+
+    // Tests changes that fail with an error (and not an exception), and a failed eval - the worker keeps running, and awaitIdle reports them
+    @Test
+    void errorFailure_Test() throws InterruptedException {
+        Ex2Sheet real = new Ex2Sheet(26, 100);
+        real.addRecalculationListener((keys, all) -> {
+            if (real.value(0, 0).equals("13.0")) throw new StackOverflowError("bad listener");
+        });
+        try (AsyncSheet sheet = new AsyncSheet(real)) {
+            sheet.set(0, 0, "13");
+            IllegalStateException e = assertThrows(IllegalStateException.class, sheet::awaitIdle);
+            assertInstanceOf(StackOverflowError.class, e.getCause());
+            assertSame(e.getCause(), sheet.getFailure());
+            assertEquals("13.0", sheet.value(0, 0));
+
+            // The worker is still alive - a full recalculation fails the same way, and is reported by awaitIdle too:
+            sheet.eval();
+            e = assertThrows(IllegalStateException.class, sheet::awaitIdle);
+            assertEquals("bad listener", e.getCause().getMessage());
+            assertFalse(sheet.isStale());
+
+            sheet.set(0, 0, "1");
+            sheet.set(0, 1, "=A0+1");
+            sheet.awaitIdle();
+            assertEquals("2.0", sheet.value(0, 1));
+        }
+    }
+
+    // Tests close - a task that waits for the worker fails, and the changes after close are rejected
+    @Test
+    void close_Test() throws InterruptedException {
+        CountDownLatch busy = new CountDownLatch(1), release = new CountDownLatch(1);
+        Ex2Sheet real = new Ex2Sheet(26, 100);
+        real.addRecalculationListener((keys, all) -> {
+            busy.countDown();
+            try {
+                release.await(); // keeps the worker busy until the test releases it
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AsyncSheet sheet = new AsyncSheet(real);
+        sheet.set(0, 0, "1");
+        busy.await();
+
+        // A depth that waits behind the busy worker:
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread waiting = new Thread(() -> {
+            try {
+                sheet.depth();
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        waiting.start();
+        while (waiting.getState() != Thread.State.WAITING) Thread.onSpinWait();
+
+        sheet.close();
+        waiting.join(5000);
+        assertFalse(waiting.isAlive());
+        assertInstanceOf(IllegalStateException.class, error.get());
+        assertThrows(IllegalStateException.class, () -> sheet.set(0, 1, "2"));
+        assertThrows(IllegalStateException.class, sheet::eval);
+        release.countDown();
+        sheet.awaitIdle(); // returns after close
+    }
+}
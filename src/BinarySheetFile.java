@@ -0,0 +1,165 @@
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * BinarySheetFile - a compact binary file format for a spreadsheet (see Ex2Sheet.saveBinary and Ex2Sheet.loadBinary).
+ * The file is made of three parts (all the numbers are big-endian):
+ * 1. Header (HEADER_SIZE bytes): MAGIC, VERSION, the width and the height of the spreadsheet, the number of cells and the number of strings.
+ * 2. Cell directory - a fixed-width entry (ENTRY_SIZE bytes) for every populated cell, sorted by X and then by Y:
+ *    x (int), y (int), type (byte - the type of the cell when it was saved, according to Ex2Utils), payload kind (byte), 2 reserved bytes, payload (long).
+ *    - A number is kept in the payload itself: as a long (INTEGER) or as the bits of a double (DOUBLE) -
+ *      only if writing the payload back as a String gives exactly the data of the cell. Its type must be NUMBER, and it is loaded as a number cell
+ *      right away (see SCell.number) - its data is never classified or parsed again.
+ *    - The type of any other cell is calculated again when the spreadsheet is recalculated (a formula may have become an error, or stopped being one).
+ *    - Any other data (text, formulas, and numbers that are written differently) is kept in the string table, and the payload is its index (STRING).
+ * 3. String table - every distinct string once: its length in bytes (int), and its UTF-8 bytes.
+ * Loading reads the whole file into a single buffer and reads the entries directly - there are no lines to split and no coordinates to parse.
+ * The buffer is a plain heap buffer and not a mapping of the file (FileChannel.map), since a mapping is released only when it is garbage collected -
+ * until then the file can not be replaced on some systems (e.g., by a new checkpoint of SheetJournal on Windows).
+ * A string that is shared by many cells (e.g., the same formula or text) is classified and parsed only once - its cells share the parsed formula.
+ */
+public class BinarySheetFile {
+    public static final int MAGIC = 0x45583442; // "EX4B"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24; // 6 ints
+    public static final int ENTRY_SIZE = 20; // x, y, type, payload kind, 2 reserved bytes, payload
+    public static final byte STRING = 0, INTEGER = 1, DOUBLE = 2; // the payload kinds
+
+    /**
+     * Receives the cells that are read from a file.
+     */
+    public interface CellConsumer {
+        /**
+         * @param x integer, x-coordinate of the cell.
+         * @param y integer, y-coordinate of the cell.
+         * @param cell the cell that was read.
+         */
+        void accept(int x, int y, Cell cell);
+    }
+
+    /**
+     * Writes the populated cells of a spreadsheet into a binary file (empty cells are not written).
+     * @param fileName a String representing the full (an absolute or relative path tp the saved file).
+     * @param width the dimension of the x-coordinate of the spreadsheet.
+     * @param height the dimension of the y-coordinate of the spreadsheet.
+     * @param cells the populated cells of the spreadsheet.
+     * @throws IOException an exception might be throed if the file can not be saved.
+     */
+    public static void write(String fileName, int width, int height, CellStore cells) throws IOException {
+        // Build the directory and the string table first (each distinct string gets a single index):
+        List<Long> keys = cells.keys();
+        ByteBuffer directory = ByteBuffer.allocate(keys.size() * ENTRY_SIZE);
+        Map<String, Integer> interned = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int count = 0;
+        for (Long key : keys) {
+            int x = DependencyGraph.keyX(key);
+            int y = DependencyGraph.keyY(key);
+            Cell cell = cells.get(x, y);
+            String data = cell.getData();
+            if (data == null || data.isEmpty()) continue;
+
+            byte kind = STRING;
+            long payload;
+            double number = SCell.parseNumber(data);
+            if (number == (long) number && data.equals(Long.toString((long) number))) {
+                kind = INTEGER;
+                payload = (long) number;
+            }
+            else if (data.equals(Double.toString(number))) {
+                kind = DOUBLE;
+                payload = Double.doubleToRawLongBits(number);
+            }
+            else {
+                Integer index = interned.get(data);
+                if (index == null) {
+                    index = strings.size();
+                    interned.put(data, index);
+                    strings.add(data);
+                }
+                payload = index;
+            }
+            directory.putInt(x).putInt(y).put((byte) cell.getType()).put(kind).putShort((short) 0).putLong(payload);
+            count++;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(count);
+            out.writeInt(strings.size());
+            out.write(directory.array(), 0, directory.position());
+            for (String s : strings) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Reads the cells of a binary spreadsheet file (see write) - the cells are given to the consumer in the order of the directory.
+     * @param fileName a String representing the full (an absolute or relative path to the loaded file).
+     * @param consumer receives every cell that is read.
+     * @throws IOException an exception might be throed if the file can not be loaded, or if it is not a valid binary spreadsheet file.
+     */
+    public static void read(String fileName, CellConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Not a binary spreadsheet file: " + fileName);
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break; // the file became shorter meanwhile - the checks below fail
+            }
+            buffer.flip();
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) throw new IOException("Not a binary spreadsheet file: " + fileName);
+            int version = buffer.getInt();
+            if (version != VERSION) throw new IOException("Unsupported binary spreadsheet version: " + version);
+            buffer.getInt(); // width
+            buffer.getInt(); // height
+            int count = buffer.getInt();
+            int stringCount = buffer.getInt();
+            if (count < 0 || stringCount < 0 || (long) count * ENTRY_SIZE > buffer.remaining()) throw new IOException("Corrupted binary spreadsheet file: " + fileName);
+
+            // The string table comes after the directory - every string becomes a prototype cell, classified and parsed once:
+            ByteBuffer table = buffer.duplicate();
+            table.position(HEADER_SIZE + count * ENTRY_SIZE);
+            SCell[] prototypes = new SCell[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                int length = table.getInt();
+                if (length < 0 || length > table.remaining()) throw new IOException("Corrupted binary spreadsheet file: " + fileName);
+                byte[] bytes = new byte[length];
+                table.get(bytes);
+                prototypes[i] = new SCell(new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            // The directory - a fixed-width entry for every cell:
+            for (int i = 0; i < count; i++) {
+                int x = buffer.getInt();
+                int y = buffer.getInt();
+                byte type = buffer.get(); // for a string - calculated again when the spreadsheet is recalculated
+                byte kind = buffer.get();
+                buffer.getShort(); // reserved
+                long payload = buffer.getLong();
+
+                // A number is built as a number cell directly - its payload is the number itself:
+                if ((kind == INTEGER || kind == DOUBLE) && type != Ex2Utils.NUMBER) throw new IOException("Corrupted binary spreadsheet file: " + fileName);
+                Cell cell;
+                if (kind == INTEGER) cell = SCell.number(Long.toString(payload));
+                else if (kind == DOUBLE) cell = SCell.number(Double.toString(Double.longBitsToDouble(payload)));
+                else if (kind == STRING && payload >= 0 && payload < stringCount) cell = new SCell(prototypes[(int) payload]);
+                else throw new IOException("Corrupted binary spreadsheet file: " + fileName);
+                consumer.accept(x, y, cell);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupted binary spreadsheet file: " + fileName, e);
+        }
+    }
+}
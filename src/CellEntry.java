@@ -2,20 +2,20 @@
  * Represents a 2D cell index for spreadsheet coordinates.
  * Supports two representation formats:
  * 1. Integer coordinates (X, Y):
- *    - X: 0 to 25 (corresponding to A-Z)
- *    - Y: 0 to 99
- * 2. String index format: 'Letter + 2 digits' (e.g., 'A0', 'Z67').
+ *    - X: 0 to Ex2Utils.MAX_COLUMNS - 1 (corresponding to A-Z, then AA, AB, ... up to ZZZ)
+ *    - Y: 0 to Ex2Utils.MAX_ROWS - 1
+ * 2. String index format: 'Letters + digits' (e.g., 'A0', 'Z67', 'AB1234').
  * Implements Index2D interface.
  */
 public class CellEntry  implements Index2D {
     private int x, y; // 1. X and Y coordinates representing the cell index.
-    private String cords; // 2. String representation of the cell index (e.g., "A0", "Z67").
+    private String cords; // 2. String representation of the cell index (e.g., "A0", "Z67", "AB1234").
 
     /**
      * constructor for an CellEntry object -
      * converts form String coordinates (index) to x,y integer value
      * If invalid or null, the index is marked as an error.
-     * @param cords an index in the spreadsheet: 'char + 2 digit': for exemple: 'A0' or 'Z67'.
+     * @param cords an index in the spreadsheet: 'letters + digits': for exemple: 'A0', 'Z67' or 'AB1234'.
      */
     public CellEntry(String cords) {
         // empty or too small String, is invalid:
@@ -38,20 +38,19 @@ public class CellEntry  implements Index2D {
     /**
      * constructor for an CellEntry object -
      * converts form x and Y coordinates (Integers) to String coordinates
-     * If the coordinates are valid, the string index is constructed using Ex2Utils.ABC array.
+     * If the coordinates are valid, the string index is constructed from the name of the column (see columnName).
      * If invalid, the index is marked as an error.
-     * @param xx The x-coordinate (0 to 25, corresponding to letters A to Z).
-     * @param yy The y-coordinate (0 to 99).
+     * @param xx The x-coordinate (0 to Ex2Utils.MAX_COLUMNS - 1, corresponding to columns A to ZZZ).
+     * @param yy The y-coordinate (0 to Ex2Utils.MAX_ROWS - 1).
      */
     public CellEntry(int xx, int yy) {
         // Check if the coordinates are within the valid range:
-        if (yy >= 0 && yy <= 99 && xx >= 0 && xx <= 25)
+        if (yy >= 0 && yy < Ex2Utils.MAX_ROWS && xx >= 0 && xx < Ex2Utils.MAX_COLUMNS)
         {
-            // valid coordination: let's use the Ex2Utils ABC array, and construct CellEntry object:
-            String cordsXY = Ex2Utils.ABC[xx] + Integer.toString(yy);
-            this.cords = cordsXY.toUpperCase().trim();
-            // Parse the newly constructed string to initialize x and y:
-            parseEntry();
+            // valid coordination: let's construct the name of the column, and the CellEntry object:
+            this.cords = columnName(xx) + yy;
+            x = xx;
+            y = yy;
         } // Invalid coordinates - mark as error:
         else {
             this.cords = Ex2Utils.EMPTY_CELL;
@@ -59,17 +58,37 @@ public class CellEntry  implements Index2D {
         }
     }
 
+    /**
+     * Builds the name of a column, like in a spreadsheet: A, B, ..., Z, AA, AB, ..., AZ, BA, ..., ZZ, AAA, ...
+     * (a base-26 number without a zero digit, where A=1 ... Z=26).
+     * @param x the x-coordinate of the column (0 or more).
+     * @return the name of the column (in upper case letters).
+     */
+    public static String columnName(int x) {
+        StringBuilder name = new StringBuilder();
+        // Every round adds the last letter of the name, and continues with the rest of the columns:
+        for (int n = x + 1; n > 0; n = (n - 1) / 26) {
+            name.append((char) ('A' + (n - 1) % 26));
+        }
+        return name.reverse().toString();
+    }
+
     /**
      * Parses the string index (this.cords) to compute the integer coordinates (x and y).
-     * - The first character is interpreted as the X index (A=0, B=1, ..., Z=25).
-     * - The remaining part is parsed as the Y index (0 to 99).
+     * - The leading letters (1 to Ex2Utils.MAX_COLUMN_LETTERS of them) are interpreted as the X index (A=0, B=1, ..., Z=25, AA=26, ...).
+     * - The remaining part is parsed as the Y index (0 to Ex2Utils.MAX_ROWS - 1).
      * If the string is not in a valid format or if parsing fails, the coordinates are marked as errors.
      */
     private void parseEntry() {
-        // Extract the first character and convert it to uppercase (for consistency):
-        char c = Character.toUpperCase(cords.charAt(0));
-        // A letter less than A and greater than Z is invalid:
-        if (c < 'A' || c > 'Z')
+        // Count the letters at the beginning of the string, and convert them to the X index (like the columnName method, backwards):
+        int letters = 0;
+        int column = 0;
+        while (letters < cords.length() && cords.charAt(letters) >= 'A' && cords.charAt(letters) <= 'Z') {
+            column = column * 26 + (cords.charAt(letters) - 'A' + 1);
+            letters++;
+        }
+        // No letters, or too many letters, is invalid:
+        if (letters == 0 || letters > Ex2Utils.MAX_COLUMN_LETTERS)
         {
             // Invalid character - mark x and y as errors:
             x = y = Ex2Utils.ERR;
@@ -79,10 +98,10 @@ public class CellEntry  implements Index2D {
         // Now we will perform the conversion of the values,
         // if there is an error on the conversion, then the value that will be for both coordinates is ERR
         try {
-            x = c - 'A'; // We will convert the character to Int (reduced by 65 in, ASCII code)
-            y = Integer.parseInt(cords.substring(1)); // Conversion of the remaining digits in the string
-            //Digits must be greater than 0 and less than 100
-            if (y < 0 || y > 99) {
+            x = column - 1; // A is the first column (0)
+            y = Integer.parseInt(cords.substring(letters)); // Conversion of the remaining digits in the string
+            //Digits must be greater than 0 and less than the number of rows
+            if (y < 0 || y >= Ex2Utils.MAX_ROWS || x >= Ex2Utils.MAX_COLUMNS) {
                 // Invalid Y value
                 //Set the Integers as ERR
                 x = y = Ex2Utils.ERR;
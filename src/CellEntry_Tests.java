@@ -17,14 +17,20 @@ class CellEntry_Tests {
     CellEntry z99 = new CellEntry("z99");
     CellEntry D4 = new CellEntry(3,4);
     CellEntry Y87 = new CellEntry(24,87);
-
-    // Invalid CellEntry objects
+    // Multi-letter columns and large rows:
     CellEntry A101 = new CellEntry(0,101);
     CellEntry B101 = new CellEntry("B101");
     CellEntry h999 = new CellEntry("h999");
+    CellEntry AA30 = new CellEntry("AA30");
+    CellEntry ZZZ_last = new CellEntry(Ex2Utils.MAX_COLUMNS - 1, Ex2Utils.MAX_ROWS - 1);
+    CellEntry bc1234567 = new CellEntry("bc1234567");
+
+    // Invalid CellEntry objects
     CellEntry c40 = new CellEntry("c-40");
     CellEntry a = new CellEntry("a");
-    CellEntry AA30 = new CellEntry("AA30");
+    CellEntry AAAA30 = new CellEntry("AAAA30");
+    CellEntry A10M = new CellEntry("A" + Ex2Utils.MAX_ROWS);
+    CellEntry tooManyColumns = new CellEntry(Ex2Utils.MAX_COLUMNS, 0);
     CellEntry empty_c = new CellEntry("");
     CellEntry null_c = new CellEntry(null);
     CellEntry A1_withSpaces = new CellEntry(" A1 ");
@@ -43,14 +49,19 @@ class CellEntry_Tests {
         assertTrue(z99.isValid());
         assertTrue(D4.isValid());
         assertTrue(Y87.isValid());
+        assertTrue(A101.isValid());
+        assertTrue(B101.isValid());
+        assertTrue(h999.isValid());
+        assertTrue(AA30.isValid());
+        assertTrue(ZZZ_last.isValid());
+        assertTrue(bc1234567.isValid());
 
         //invalid index:
-        assertFalse(A101.isValid());
-        assertFalse(B101.isValid());
-        assertFalse(h999.isValid());
         assertFalse(c40.isValid());
         assertFalse(a.isValid());
-        assertFalse(AA30.isValid());
+        assertFalse(AAAA30.isValid());
+        assertFalse(A10M.isValid());
+        assertFalse(tooManyColumns.isValid());
         assertFalse(empty_c.isValid());
         assertFalse(null_c.isValid());
         assertFalse(value_44.isValid());
@@ -71,14 +82,19 @@ class CellEntry_Tests {
         assertEquals(z99.getX(),25);
         assertEquals(D4.getX(),3);
         assertEquals(Y87.getX(),24);
+        assertEquals(A101.getX(),0);
+        assertEquals(B101.getX(),1);
+        assertEquals(h999.getX(),7);
+        assertEquals(AA30.getX(),26);
+        assertEquals(ZZZ_last.getX(),Ex2Utils.MAX_COLUMNS - 1);
+        assertEquals(bc1234567.getX(),54);
 
         //invalid index:
-        assertEquals(A101.getX(),Ex2Utils.ERR);
-        assertEquals(B101.getX(),Ex2Utils.ERR);
-        assertEquals(h999.getX(),Ex2Utils.ERR);
         assertEquals(c40.getX(),Ex2Utils.ERR);
         assertEquals(a.getX(),Ex2Utils.ERR);
-        assertEquals(AA30.getX(),Ex2Utils.ERR);
+        assertEquals(AAAA30.getX(),Ex2Utils.ERR);
+        assertEquals(A10M.getX(),Ex2Utils.ERR);
+        assertEquals(tooManyColumns.getX(),Ex2Utils.ERR);
         assertEquals(empty_c.getX(),Ex2Utils.ERR);
         assertEquals(null_c.getX(),Ex2Utils.ERR);
         assertEquals(value_44.getX(),Ex2Utils.ERR);
@@ -99,14 +115,19 @@ class CellEntry_Tests {
         assertEquals(z99.getY(),99);
         assertEquals(D4.getY(),4);
         assertEquals(Y87.getY(),87);
+        assertEquals(A101.getY(),101);
+        assertEquals(B101.getY(),101);
+        assertEquals(h999.getY(),999);
+        assertEquals(AA30.getY(),30);
+        assertEquals(ZZZ_last.getY(),Ex2Utils.MAX_ROWS - 1);
+        assertEquals(bc1234567.getY(),1234567);
 
         //invalid index:
-        assertEquals(A101.getY(),Ex2Utils.ERR);
-        assertEquals(B101.getY(),Ex2Utils.ERR);
-        assertEquals(h999.getY(),Ex2Utils.ERR);
         assertEquals(c40.getY(),Ex2Utils.ERR);
         assertEquals(a.getY(),Ex2Utils.ERR);
-        assertEquals(AA30.getY(),Ex2Utils.ERR);
+        assertEquals(AAAA30.getY(),Ex2Utils.ERR);
+        assertEquals(A10M.getY(),Ex2Utils.ERR);
+        assertEquals(tooManyColumns.getY(),Ex2Utils.ERR);
         assertEquals(empty_c.getY(),Ex2Utils.ERR);
         assertEquals(null_c.getY(),Ex2Utils.ERR);
         assertEquals(value_44.getY(),Ex2Utils.ERR);
@@ -126,14 +147,19 @@ class CellEntry_Tests {
         assertEquals(z99.toString(),"Z99");
         assertEquals(D4.toString(),"D4");
         assertEquals(Y87.toString(),"Y87");
+        assertEquals(A101.toString(),"A101");
+        assertEquals(B101.toString(),"B101");
+        assertEquals(h999.toString(),"H999");
+        assertEquals(AA30.toString(),"AA30");
+        assertEquals(ZZZ_last.toString(),"ZZZ" + (Ex2Utils.MAX_ROWS - 1));
+        assertEquals(bc1234567.toString(),"BC1234567");
 
         //invalid index:
-        assertEquals(A101.toString(),Ex2Utils.EMPTY_CELL);
-        assertEquals(B101.toString(),Ex2Utils.EMPTY_CELL);
-        assertEquals(h999.toString(),Ex2Utils.EMPTY_CELL);
         assertEquals(c40.toString(),Ex2Utils.EMPTY_CELL);
         assertEquals(a.toString(),Ex2Utils.EMPTY_CELL);
-        assertEquals(AA30.toString(),Ex2Utils.EMPTY_CELL);
+        assertEquals(AAAA30.toString(),Ex2Utils.EMPTY_CELL);
+        assertEquals(A10M.toString(),Ex2Utils.EMPTY_CELL);
+        assertEquals(tooManyColumns.toString(),Ex2Utils.EMPTY_CELL);
         assertEquals(empty_c.toString(),Ex2Utils.EMPTY_CELL);
         assertEquals(null_c.toString(),Ex2Utils.EMPTY_CELL);
         assertEquals(value_44.toString(),Ex2Utils.EMPTY_CELL);
@@ -144,4 +170,21 @@ class CellEntry_Tests {
         assertEquals(A1_withSpaces.toString(),Ex2Utils.EMPTY_CELL);
         assertEquals(B2_withSpaces2.toString(),Ex2Utils.EMPTY_CELL);
     }
+
+    // Tests the names of the columns - the name is built back and forth with the x-coordinate
+    @Test
+    void columnName_Test() {
+        assertEquals("A", CellEntry.columnName(0));
+        assertEquals("Z", CellEntry.columnName(25));
+        assertEquals("AA", CellEntry.columnName(26));
+        assertEquals("AZ", CellEntry.columnName(51));
+        assertEquals("BA", CellEntry.columnName(52));
+        assertEquals("ZZ", CellEntry.columnName(701));
+        assertEquals("AAA", CellEntry.columnName(702));
+        assertEquals("ZZZ", CellEntry.columnName(Ex2Utils.MAX_COLUMNS - 1));
+
+        for (int x = 0; x < Ex2Utils.MAX_COLUMNS; x++) {
+            assertEquals(x, new CellEntry(CellEntry.columnName(x) + "0").getX());
+        }
+    }
 }
\ No newline at end of file
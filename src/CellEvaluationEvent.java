@@ -0,0 +1,35 @@
+import jdk.jfr.*;
+
+/**
+ * CellEvaluationEvent - a Java Flight Recorder event for the evaluation of a single cell, sampled:
+ * only one of every SAMPLE_RATE evaluated cells (chosen at random) is recorded, so a recording of a big recalculation stays small.
+ * The event is disabled by default - it has to be enabled in the recording settings (e.g., jcmd <pid> JFR.start settings=<a .jfc file that enables ex4.CellEvaluation>),
+ * and then a threshold can also keep only the slow cells.
+ * When the event is not enabled, the spreadsheet only checks isEnabled() - it does not read the clock at all.
+ */
+@Name("ex4.CellEvaluation")
+@Label("Cell Evaluation")
+@Category({"Ex4", "Spreadsheet"})
+@Description("The evaluation of a single cell (sampled)")
+@Enabled(false)
+@StackTrace(false)
+public class CellEvaluationEvent extends Event {
+    public static final int SAMPLE_RATE = 64; // one of every SAMPLE_RATE evaluated cells is recorded
+
+    @Label("Cell")
+    @Description("The name of the cell (e.g., B3)")
+    String cell;
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Type")
+    @Description("The type of the cell after the evaluation (according to Ex2Utils - a negative type is an error)")
+    int type;
+
+    @Label("Depth")
+    int depth;
+}
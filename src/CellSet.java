@@ -0,0 +1,80 @@
+import java.util.*;
+
+/**
+ * CellSet - a set of cells, grouped by their column, that finds a cell inside a rectangle without going over the whole set.
+ * - Every column keeps its rows sorted, so a rectangle is searched only in the columns of the set that it covers,
+ *   with a single O(log n) lookup in each one of them.
+ * - Used by Ex2Sheet to find the cells inside a range that were not ordered yet, while it orders the cells of a recalculation (see Ex2Sheet.orderByDepth).
+ * The cells are represented by their keys (see DependencyGraph.key).
+ */
+public class CellSet {
+    private final TreeMap<Integer, TreeSet<Integer>> columns = new TreeMap<>(); // x -> the rows (y) of the cells in that column
+    private int size = 0; // the number of cells in the set
+
+    /**
+     * Adds a cell to the set.
+     * @param key the key of the cell.
+     * @return true if the cell was not in the set.
+     */
+    public boolean add(long key) {
+        boolean added = columns.computeIfAbsent(DependencyGraph.keyX(key), x -> new TreeSet<>()).add(DependencyGraph.keyY(key));
+        if (added) size++;
+        return added;
+    }
+
+    /**
+     * Removes a cell from the set.
+     * @param key the key of the cell.
+     * @return true if the cell was in the set.
+     */
+    public boolean remove(long key) {
+        int x = DependencyGraph.keyX(key);
+        TreeSet<Integer> rows = columns.get(x);
+        if (rows == null || !rows.remove(DependencyGraph.keyY(key))) return false;
+        if (rows.isEmpty()) columns.remove(x); // We don't keep empty columns
+        size--;
+        return true;
+    }
+
+    /**
+     * @param key the key of a cell.
+     * @return true if the cell is in the set.
+     */
+    public boolean contains(long key) {
+        TreeSet<Integer> rows = columns.get(DependencyGraph.keyX(key));
+        return rows != null && rows.contains(DependencyGraph.keyY(key));
+    }
+
+    /**
+     * Finds a cell of the set inside a rectangle of cells.
+     * @param startX the first column of the rectangle.
+     * @param endX the last column of the rectangle.
+     * @param startY the first row of the rectangle.
+     * @param endY the last row of the rectangle.
+     * @param except the key of a cell to ignore (e.g., the cell that reads the rectangle).
+     * @return the key of a cell of the set inside the rectangle (the one with the lowest x, and then the lowest y), or null if there is none.
+     */
+    public Long find(int startX, int endX, int startY, int endY, long except) {
+        if (startX > endX || startY > endY || columns.isEmpty()) return null;
+        for (Map.Entry<Integer, TreeSet<Integer>> column : columns.subMap(startX, true, endX, true).entrySet()) {
+            Integer y = column.getValue().ceiling(startY);
+            if (y != null && y <= endY && DependencyGraph.key(column.getKey(), y) == except) y = column.getValue().higher(y);
+            if (y != null && y <= endY) return DependencyGraph.key(column.getKey(), y);
+        }
+        return null;
+    }
+
+    /**
+     * @return the number of cells in the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the set is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,76 @@
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CellSet_Tests - JUnit tests for the CellSet class.
+ * - Tests adding, removing and finding cells.
+ * - Verifies that find skips the excluded cell, and finds cells in ranges against a simple loop over the cells.
+ */
+public class CellSet_Tests {
+
+    // Tests adding and removing cells
+    @Test
+    void addRemove_Test() {
+        CellSet set = new CellSet();
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(DependencyGraph.key(1, 2)));
+        assertFalse(set.add(DependencyGraph.key(1, 2))); // already in the set
+        assertTrue(set.add(DependencyGraph.key(3, 0)));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(DependencyGraph.key(1, 2)));
+        assertFalse(set.contains(DependencyGraph.key(2, 1)));
+
+        assertTrue(set.remove(DependencyGraph.key(1, 2)));
+        assertFalse(set.remove(DependencyGraph.key(1, 2)));
+        assertEquals(1, set.size());
+        assertFalse(set.contains(DependencyGraph.key(1, 2)));
+    }
+
+    // Tests finding a cell in a range, without the excluded cell
+    @Test
+    void find_Test() {
+        CellSet set = new CellSet();
+        long a5 = DependencyGraph.key(0, 5), a7 = DependencyGraph.key(0, 7), c1 = DependencyGraph.key(2, 1);
+        set.add(a5);
+        set.add(a7);
+        set.add(c1);
+        assertEquals(a5, set.find(0, 0, 0, 99, -1));
+        assertEquals(a7, set.find(0, 0, 0, 99, a5)); // A5 is excluded
+        assertNull(set.find(0, 0, 6, 6, -1));
+        assertNull(set.find(0, 0, 7, 7, a7));
+        assertEquals(c1, set.find(1, 5, 0, 3, -1));
+        assertNull(set.find(1, 1, 0, 99, -1));
+    }
+
+    // Tests random cells and ranges against a loop over the cells
+    @Test
+    void random_Test() {
+        Random random = new Random(11);
+        CellSet set = new CellSet();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            long cell = DependencyGraph.key(random.nextInt(10), random.nextInt(30));
+            if (random.nextBoolean()) {
+                assertEquals(expected.add(cell), set.add(cell));
+            } else {
+                assertEquals(expected.remove(cell), set.remove(cell));
+            }
+            assertEquals(expected.size(), set.size());
+
+            int x1 = random.nextInt(10), x2 = x1 + random.nextInt(10 - x1);
+            int y1 = random.nextInt(30), y2 = y1 + random.nextInt(30 - y1);
+            Long found = set.find(x1, x2, y1, y2, cell);
+            boolean any = false;
+            for (Long key : expected) {
+                int x = DependencyGraph.keyX(key), y = DependencyGraph.keyY(key);
+                if (key != cell && x >= x1 && x <= x2 && y >= y1 && y <= y2) any = true;
+            }
+            assertEquals(any, found != null);
+            if (found != null) {
+                int x = DependencyGraph.keyX(found), y = DependencyGraph.keyY(found);
+                assertTrue(expected.contains(found) && found != cell && x >= x1 && x <= x2 && y >= y1 && y <= y2);
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+import java.util.*;
+
+/**
+ * CellStore - a sparse storage for the cells of a spreadsheet.
+ * - The spreadsheet is divided into square tiles of TILE_SIZE x TILE_SIZE cells.
+ * - A tile is allocated only when one of its cells is populated (has data that is not empty), and it is removed when it becomes empty again,
+ *   so the memory is proportional to the populated cells - not to the dimensions of the spreadsheet.
+ * - For every cell we also keep the results of its last calculation: its computed value, its result tag and its depth.
+ * Each tile is kept by a single long key, built from the coordinates of the tile (see DependencyGraph.key).
+ */
+public class CellStore {
+    public static final int TILE_SIZE = 16; // the number of columns (and rows) in a tile
+    private static final int TILE_CELLS = TILE_SIZE * TILE_SIZE;
+
+    private final Map<Long, Tile> tiles = new HashMap<>(); // tile key -> tile (only tiles with populated cells)
+    private int size = 0; // the number of populated cells
+
+    /**
+     * A tile - the populated cells of a TILE_SIZE x TILE_SIZE square, and the results of their last calculation.
+     * A cell inside the tile is found by its index: (x % TILE_SIZE) * TILE_SIZE + (y % TILE_SIZE).
+     */
+    private static final class Tile {
+        final Cell[] cells = new Cell[TILE_CELLS]; // null - an empty cell
+        final double[] values = new double[TILE_CELLS]; // the computed numeric value of each cell
+        final byte[] tags = new byte[TILE_CELLS]; // the result tag of each cell (see Ex2Sheet)
+        final int[] depths = new int[TILE_CELLS]; // the dependency depth of each cell
+        int count = 0; // the number of populated cells in this tile
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the tile that holds the x,y cell (or null if it was not allocated).
+     */
+    private Tile tile(int x, int y) {
+        return tiles.get(DependencyGraph.key(x / TILE_SIZE, y / TILE_SIZE));
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the index of the x,y cell inside its tile.
+     */
+    private static int index(int x, int y) {
+        return (x % TILE_SIZE) * TILE_SIZE + (y % TILE_SIZE);
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the populated cell in the x,y coordinate, or null if the cell is empty.
+     */
+    public Cell get(int x, int y) {
+        Tile tile = tile(x, y);
+        return (tile == null) ? null : tile.cells[index(x, y)];
+    }
+
+    /**
+     * Puts a cell in the x,y coordinate - a null cell or a cell with empty data removes the x,y cell (and its tile if it is left empty).
+     * The results of the last calculation of the cell are cleared.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param cell the new cell.
+     */
+    public void put(int x, int y, Cell cell) {
+        long key = DependencyGraph.key(x / TILE_SIZE, y / TILE_SIZE);
+        Tile tile = tiles.get(key);
+        int index = index(x, y);
+        boolean empty = (cell == null || cell.getData() == null || cell.getData().isEmpty());
+
+        if (empty) {
+            // Nothing to remove:
+            if (tile == null || tile.cells[index] == null) return;
+            tile.cells[index] = null;
+            size--;
+            if (--tile.count == 0) tiles.remove(key); // We don't keep empty tiles
+            else clearResults(tile, index);
+            return;
+        }
+
+        // Allocate the tile on its first populated cell:
+        if (tile == null) {
+            tile = new Tile();
+            tiles.put(key, tile);
+        }
+        if (tile.cells[index] == null) {
+            tile.count++;
+            size++;
+        }
+        tile.cells[index] = cell;
+        clearResults(tile, index);
+    }
+
+    /**
+     * Clears the results of the last calculation of a cell in a tile.
+     * @param tile the tile of the cell.
+     * @param index the index of the cell inside the tile.
+     */
+    private static void clearResults(Tile tile, int index) {
+        tile.values[index] = 0;
+        tile.tags[index] = 0;
+        tile.depths[index] = 0;
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the computed numeric value of the x,y cell (0 for an empty cell).
+     */
+    public double getValue(int x, int y) {
+        Tile tile = tile(x, y);
+        int index = index(x, y);
+        return (tile == null || tile.cells[index] == null) ? 0 : tile.values[index];
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the result tag of the x,y cell - an empty cell is a TEXT (according to Ex2Utils).
+     */
+    public byte getTag(int x, int y) {
+        Tile tile = tile(x, y);
+        int index = index(x, y);
+        return (tile == null || tile.cells[index] == null) ? Ex2Utils.TEXT : tile.tags[index];
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the dependency depth of the x,y cell (0 for an empty cell).
+     */
+    public int getDepth(int x, int y) {
+        Tile tile = tile(x, y);
+        int index = index(x, y);
+        return (tile == null || tile.cells[index] == null) ? 0 : tile.depths[index];
+    }
+
+    /**
+     * Sets the result of the last calculation of the x,y cell - ignored if the cell is empty.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param tag the result tag of the cell.
+     * @param value the computed numeric value of the cell.
+     */
+    public void setResult(int x, int y, byte tag, double value) {
+        Tile tile = tile(x, y);
+        int index = index(x, y);
+        if (tile == null || tile.cells[index] == null) return;
+        tile.tags[index] = tag;
+        tile.values[index] = value;
+    }
+
+    /**
+     * Sets the dependency depth of the x,y cell - ignored if the cell is empty.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param depth the depth of the cell.
+     */
+    public void setDepth(int x, int y, int depth) {
+        Tile tile = tile(x, y);
+        int index = index(x, y);
+        if (tile == null || tile.cells[index] == null) return;
+        tile.depths[index] = depth;
+    }
+
+    /**
+     * @return the number of populated cells.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the keys (see DependencyGraph.key) of all the populated cells, sorted by x and then by y.
+     */
+    public List<Long> keys() {
+        List<Long> ans = new ArrayList<>(size);
+        for (Map.Entry<Long, Tile> entry : tiles.entrySet()) {
+            int startX = DependencyGraph.keyX(entry.getKey()) * TILE_SIZE;
+            int startY = DependencyGraph.keyY(entry.getKey()) * TILE_SIZE;
+            Cell[] cells = entry.getValue().cells;
+            for (int i = 0; i < TILE_CELLS; i++) {
+                if (cells[i] != null) ans.add(DependencyGraph.key(startX + i / TILE_SIZE, startY + i % TILE_SIZE));
+            }
+        }
+        Collections.sort(ans);
+        return ans;
+    }
+
+    /**
+     * Finds the populated cells inside a rectangle of cells.
+     * Only allocated tiles are visited - the tiles that overlap the rectangle, or all the tiles if there are fewer of them -
+     * so even a huge rectangle costs no more than the number of populated cells.
+     * @param startX the first column of the rectangle.
+     * @param endX the last column of the rectangle.
+     * @param startY the first row of the rectangle.
+     * @param endY the last row of the rectangle.
+     * @return the keys (see DependencyGraph.key) of the populated cells inside the rectangle, in no particular order.
+     */
+    public List<Long> keysIn(int startX, int endX, int startY, int endY) {
+        List<Long> ans = new ArrayList<>();
+        if (startX > endX || startY > endY || tiles.isEmpty()) return ans;
+        int tileStartX = Math.max(startX, 0) / TILE_SIZE, tileEndX = Math.max(endX, 0) / TILE_SIZE;
+        int tileStartY = Math.max(startY, 0) / TILE_SIZE, tileEndY = Math.max(endY, 0) / TILE_SIZE;
+        long overlapping = (long) (tileEndX - tileStartX + 1) * (tileEndY - tileStartY + 1);
+
+        if (overlapping <= tiles.size()) {
+            // A small rectangle - we will look for each of its tiles:
+            for (int tx = tileStartX; tx <= tileEndX; tx++) {
+                for (int ty = tileStartY; ty <= tileEndY; ty++) {
+                    Tile tile = tiles.get(DependencyGraph.key(tx, ty));
+                    if (tile != null) addKeysIn(tile, tx, ty, startX, endX, startY, endY, ans);
+                }
+            }
+        }
+        else {
+            // A big rectangle - we will go over the allocated tiles:
+            for (Map.Entry<Long, Tile> entry : tiles.entrySet()) {
+                int tx = DependencyGraph.keyX(entry.getKey()), ty = DependencyGraph.keyY(entry.getKey());
+                if (tx >= tileStartX && tx <= tileEndX && ty >= tileStartY && ty <= tileEndY) {
+                    addKeysIn(entry.getValue(), tx, ty, startX, endX, startY, endY, ans);
+                }
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * Adds the keys of the populated cells of a tile that are inside a rectangle.
+     * @param tile the tile.
+     * @param tx the x-coordinate of the tile.
+     * @param ty the y-coordinate of the tile.
+     * @param startX the first column of the rectangle.
+     * @param endX the last column of the rectangle.
+     * @param startY the first row of the rectangle.
+     * @param endY the last row of the rectangle.
+     * @param ans the list to add the keys to.
+     */
+    private static void addKeysIn(Tile tile, int tx, int ty, int startX, int endX, int startY, int endY, List<Long> ans) {
+        for (int i = 0; i < TILE_CELLS; i++) {
+            if (tile.cells[i] == null) continue;
+            int x = tx * TILE_SIZE + i / TILE_SIZE, y = ty * TILE_SIZE + i % TILE_SIZE;
+            if (x >= startX && x <= endX && y >= startY && y <= endY) ans.add(DependencyGraph.key(x, y));
+        }
+    }
+
+    /**
+     * Removes all the cells (and all the tiles).
+     */
+    public void clear() {
+        tiles.clear();
+        size = 0;
+    }
+}
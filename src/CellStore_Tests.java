@@ -0,0 +1,80 @@
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CellStore_Tests - JUnit tests for the CellStore class.
+ * - Verifies that only populated cells are kept, and that empty cells are removed.
+ * - Tests the results of a calculation (value, tag and depth) that are kept for every cell.
+ * - Checks the keys of the populated cells and their order.
+ */
+public class CellStore_Tests {
+
+    CellStore store = new CellStore(); // a store for our tests
+
+    // Tests putting and removing cells
+    @Test
+    void put_Test() {
+        assertNull(store.get(0, 0));
+        assertEquals(0, store.size());
+
+        store.put(3, 4, new SCell("5"));
+        store.put(1000000, 2000000, new SCell("text"));
+        assertEquals("5", store.get(3, 4).getData());
+        assertEquals("text", store.get(1000000, 2000000).getData());
+        assertNull(store.get(4, 3));
+        assertEquals(2, store.size());
+
+        // Replacing a cell does not change the size:
+        store.put(3, 4, new SCell("=A0"));
+        assertEquals("=A0", store.get(3, 4).getData());
+        assertEquals(2, store.size());
+
+        // An empty cell (or null) removes the cell:
+        store.put(3, 4, new SCell(""));
+        store.put(1000000, 2000000, null);
+        store.put(7, 7, new SCell(""));
+        assertNull(store.get(3, 4));
+        assertNull(store.get(1000000, 2000000));
+        assertEquals(0, store.size());
+    }
+
+    // Tests the results of the last calculation of a cell
+    @Test
+    void results_Test() {
+        store.put(0, 0, new SCell("=1+2"));
+        store.setResult(0, 0, (byte) Ex2Utils.NUMBER, 3.0);
+        store.setDepth(0, 0, 1);
+        assertEquals(Ex2Utils.NUMBER, store.getTag(0, 0));
+        assertEquals(3.0, store.getValue(0, 0));
+        assertEquals(1, store.getDepth(0, 0));
+
+        // A new cell clears the results:
+        store.put(0, 0, new SCell("=1+5"));
+        assertEquals(0, store.getTag(0, 0));
+        assertEquals(0, store.getDepth(0, 0));
+
+        // An empty cell is a text with depth 0, and its results are ignored:
+        store.setResult(1, 1, (byte) Ex2Utils.NUMBER, 8.0);
+        store.setDepth(1, 1, 4);
+        assertEquals(Ex2Utils.TEXT, store.getTag(1, 1));
+        assertEquals(0, store.getDepth(1, 1));
+        assertEquals(Ex2Utils.TEXT, store.getTag(500, 500));
+    }
+
+    // Tests the keys of the populated cells - sorted by x and then by y
+    @Test
+    void keys_Test() {
+        store.put(20, 1, new SCell("a"));
+        store.put(0, 40, new SCell("b"));
+        store.put(0, 2, new SCell("c"));
+        store.put(20, 0, new SCell("d"));
+
+        List<Long> keys = store.keys();
+        assertEquals(List.of(DependencyGraph.key(0, 2), DependencyGraph.key(0, 40), DependencyGraph.key(20, 0), DependencyGraph.key(20, 1)), keys);
+
+        store.clear();
+        assertTrue(store.keys().isEmpty());
+        assertEquals(0, store.size());
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * CellView - a read-only copy of a cell, as it was at a certain moment:
+ * its raw data, its type, its order (depth), and the value that was presented for it.
+ * - A view never changes, so it can be shared between threads and between copies of a spreadsheet without any locking.
+ * - Changing a view is not supported (setData, setType and setOrder throw an UnsupportedOperationException) -
+ *   a spreadsheet is changed only through its own set method.
+ * Used for the spreadsheet copies that are read while the spreadsheet itself is being changed (e.g., AsyncSheet).
+ */
+public final class CellView implements Cell {
+    private final String data; // The raw data of the cell
+    private final int type; // The type of the cell - according to the settings in Ex2Utils
+    private final int order; // The order (depth) of the cell
+    private final String value; // The value that was presented for the cell (see Sheet.value)
+
+    /**
+     * constructor of a cell view.
+     * @param data the raw data of the cell.
+     * @param type the type of the cell (according to Ex2Utils).
+     * @param order the order (depth) of the cell.
+     * @param value the value that is presented for the cell.
+     */
+    public CellView(String data, int type, int order, String value) {
+        this.data = data;
+        this.type = type;
+        this.order = order;
+        this.value = value;
+    }
+
+    /**
+     * Copies a cell of a spreadsheet, with its presented value.
+     * @param cell the cell to copy.
+     * @param value the value that is presented for the cell.
+     * @return a read-only view of the cell.
+     */
+    public static CellView of(Cell cell, String value) {
+        return new CellView(cell.getData(), cell.getType(), cell.getOrder(), value);
+    }
+
+    /**
+     * @return the value that was presented for this cell (see Sheet.value).
+     */
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public String getData() {
+        return data;
+    }
+
+    @Override
+    public void setData(String s) {
+        throw new UnsupportedOperationException("A cell view is read-only");
+    }
+
+    @Override
+    public int getType() {
+        return type;
+    }
+
+    @Override
+    public void setType(int t) {
+        throw new UnsupportedOperationException("A cell view is read-only");
+    }
+
+    @Override
+    public int getOrder() {
+        return order;
+    }
+
+    @Override
+    public void setOrder(int t) {
+        throw new UnsupportedOperationException("A cell view is read-only");
+    }
+
+    /**
+     * Return the input data (aka the raw String) this cell is containing (without any computation).
+     * @return String data (raw cell data)
+     */
+    @Override
+    public String toString() {
+        return getData();
+    }
+}
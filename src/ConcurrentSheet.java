@@ -0,0 +1,284 @@
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * ConcurrentSheet - a thread-safe spreadsheet: many threads can read it while other threads change it.
+ * - The real spreadsheet (an Ex2Sheet) is changed and recalculated by one writer at a time (a single writer lock).
+ * - The readers (value, get, eval(x,y)) never touch the real spreadsheet: after every change, the writer publishes read-only views (see CellView)
+ *   of the recalculated cells into stripes - one stripe for every tile of TILE_SIZE x TILE_SIZE cells, each with its own StampedLock.
+ * - A read is optimistic: it reads the cell from its stripe without locking, and only if a writer published into that same stripe at the same time,
+ *   it reads again under the read lock of the stripe. So a read never waits for a recalculation, and never waits for a change in another stripe.
+ * - The cells of a stripe are always published together, so a reader never sees a stripe that is half updated.
+ *   A change that affects several stripes is published stripe by stripe - the readers see each stripe before or after the change.
+ * The views are immutable, so the readers can keep them as long as they want.
+ */
+public class ConcurrentSheet implements Sheet {
+    private static final int TILE_SIZE = CellStore.TILE_SIZE; // the number of columns (and rows) in a stripe
+    private static final int TILE_CELLS = TILE_SIZE * TILE_SIZE;
+
+    private final int width, height; // the dimensions of the spreadsheet
+    private final Ex2Sheet sheet; // the real spreadsheet - used only while holding the writer lock
+    private final ReentrantLock writer = new ReentrantLock(); // one writer at a time
+    private final Map<Long, Stripe> stripes = new ConcurrentHashMap<>(); // tile key (see DependencyGraph.key) -> the published views of its cells
+
+    /**
+     * The published views of the cells of a single tile, with the lock that protects them.
+     */
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        final CellView[] cells = new CellView[TILE_CELLS]; // null - an empty cell
+    }
+
+    /**
+     * constructor for a ConcurrentSheet object - a thread-safe 2D spreadsheet.
+     * @param x - The X dimension of the spreadsheet
+     * @param y - The Y dimension of the spreadsheet
+     */
+    public ConcurrentSheet(int x, int y) {
+        sheet = new Ex2Sheet(x, y); // throws an IllegalArgumentException for invalid dimensions
+        width = x;
+        height = y;
+        // The cells of every recalculation are published right away - still under the writer lock, that the recalculating thread holds.
+        // A recalculation of all the cells is published by publishAll (see eval and load), that also empties the stripes of the removed cells:
+        sheet.addRecalculationListener((keys, all) -> {
+            if (!all) publish(keys);
+        });
+    }
+
+    /**
+     * Default constructor -
+     * Creates a spreadsheet with predefined dimensions (according to the definitions in Ex2Utils) using our constructor:
+     */
+    public ConcurrentSheet() {
+        this(Ex2Utils.WIDTH, Ex2Utils.HEIGHT);
+    }
+
+    @Override
+    public boolean isIn(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Reads the published view of the x,y cell - an optimistic read of its stripe, and a read lock only if a writer published into the stripe meanwhile.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the view of the x,y cell, or null if the cell is empty.
+     */
+    private CellView view(int x, int y) {
+        Stripe stripe = stripes.get(DependencyGraph.key(x / TILE_SIZE, y / TILE_SIZE));
+        if (stripe == null) return null;
+        int index = (x % TILE_SIZE) * TILE_SIZE + (y % TILE_SIZE);
+
+        long stamp = stripe.lock.tryOptimisticRead();
+        CellView view = stripe.cells[index];
+        if (stripe.lock.validate(stamp)) return view;
+
+        // A writer published into this stripe while we were reading - we will read again under the read lock:
+        stamp = stripe.lock.readLock();
+        try {
+            return stripe.cells[index];
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return a read-only view of the x,y cell, or null if the cell is not in the spreadsheet.
+     */
+    @Override
+    public Cell get(int x, int y) {
+        if (!isIn(x, y)) return null;
+        CellView view = view(x, y);
+        return (view != null) ? view : new CellView(Ex2Utils.EMPTY_CELL, Ex2Utils.TEXT, 0, Ex2Utils.EMPTY_CELL);
+    }
+
+    @Override
+    public Cell get(String entry) {
+        CellEntry ce = new CellEntry(entry);
+        if (!ce.isValid()) return null;
+        return get(ce.getX(), ce.getY());
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the value presented in the x,y cell.
+     */
+    @Override
+    public String value(int x, int y) {
+        if (!isIn(x, y)) return Ex2Utils.EMPTY_CELL;
+        CellView view = view(x, y);
+        return (view != null) ? view.getValue() : Ex2Utils.EMPTY_CELL;
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the computed value of the x,y cell (null if the cell is empty or not in the spreadsheet).
+     */
+    @Override
+    public String eval(int x, int y) {
+        if (!isIn(x, y)) return null;
+        CellView view = view(x, y);
+        return (view != null) ? view.getValue() : null;
+    }
+
+    /**
+     * Changes the x,y cell to a cell with the data s, recalculates the affected cells and publishes them.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param s - the string representation of the cell.
+     */
+    @Override
+    public void set(int x, int y, String s) {
+        batch(b -> b.set(x, y, s));
+    }
+
+    /**
+     * Applies many changes with a single recalculation (see Ex2Sheet.batch), and publishes the affected cells (see the recalculation listener).
+     * If the updates throw an exception, the changes that were already made are recalculated and published before the exception continues.
+     * @param updates the changes to make, through the given Batch.
+     */
+    public void batch(Consumer<Ex2Sheet.Batch> updates) {
+        writer.lock();
+        try {
+            sheet.batch(updates);
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    /**
+     * Recalculates all the cells (see Ex2Sheet.eval), and publishes them.
+     */
+    @Override
+    public void eval() {
+        writer.lock();
+        try {
+            sheet.eval();
+            publishAll();
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    /**
+     * @return the depth array of the spreadsheet (see Ex2Sheet.depth).
+     */
+    @Override
+    public int[][] depth() {
+        writer.lock();
+        try {
+            int[][] ans = sheet.depth();
+            publishAll(); // depth() marks the cells in a cycle
+            return ans;
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    @Override
+    public void save(String fileName) throws IOException {
+        writer.lock();
+        try {
+            sheet.save(fileName);
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    @Override
+    public void load(String fileName) throws IOException {
+        writer.lock();
+        try {
+            sheet.load(fileName);
+            publishAll();
+        } finally {
+            writer.unlock();
+        }
+    }
+
+    /**
+     * Publishes the views of the given cells - grouped by their stripe, so every stripe is locked only once.
+     * @param keys the keys (see DependencyGraph.key) of the cells to publish.
+     */
+    private void publish(List<Long> keys) {
+        Map<Long, List<Long>> byStripe = new HashMap<>();
+        for (Long key : keys) {
+            long stripeKey = DependencyGraph.key(DependencyGraph.keyX(key) / TILE_SIZE, DependencyGraph.keyY(key) / TILE_SIZE);
+            byStripe.computeIfAbsent(stripeKey, k -> new ArrayList<>()).add(key);
+        }
+        for (Map.Entry<Long, List<Long>> entry : byStripe.entrySet()) {
+            publishStripe(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Publishes the views of all the cells - all the populated cells, and the cells of the old stripes (that may have become empty).
+     */
+    private void publishAll() {
+        Set<Long> keys = new HashSet<>(sheet.populatedCells());
+        for (Long stripeKey : stripes.keySet()) {
+            int startX = DependencyGraph.keyX(stripeKey) * TILE_SIZE, startY = DependencyGraph.keyY(stripeKey) * TILE_SIZE;
+            for (int i = 0; i < TILE_CELLS; i++) {
+                keys.add(DependencyGraph.key(startX + i / TILE_SIZE, startY + i % TILE_SIZE));
+            }
+        }
+        publish(new ArrayList<>(keys));
+    }
+
+    /**
+     * Publishes the views of some cells of a single stripe, under the write lock of the stripe.
+     * The views are prepared before the stripe is locked, so the readers of the stripe wait only for the copying.
+     * The values are the results of the last recalculation (see Ex2Sheet.storedValue) - publishing never calculates a formula again.
+     * @param stripeKey the key of the stripe.
+     * @param keys the keys of the cells (all inside the stripe).
+     */
+    private void publishStripe(long stripeKey, List<Long> keys) {
+        CellView[] views = new CellView[keys.size()];
+        boolean any = false;
+        for (int i = 0; i < views.length; i++) {
+            int x = DependencyGraph.keyX(keys.get(i)), y = DependencyGraph.keyY(keys.get(i));
+            Cell cell = sheet.get(x, y); // an empty cell for a cell that is not populated, and null outside the spreadsheet (in the last stripes)
+            if (cell != null && !cell.getData().isEmpty()) {
+                views[i] = CellView.of(cell, sheet.storedValue(x, y));
+                any = true;
+            }
+        }
+
+        Stripe stripe = stripes.get(stripeKey);
+        if (stripe == null) {
+            if (!any) return; // Nothing to publish - the cells are empty, and so is the stripe
+            stripe = new Stripe();
+            stripes.put(stripeKey, stripe);
+        }
+
+        long stamp = stripe.lock.writeLock();
+        try {
+            for (int i = 0; i < views.length; i++) {
+                int x = DependencyGraph.keyX(keys.get(i)), y = DependencyGraph.keyY(keys.get(i));
+                stripe.cells[(x % TILE_SIZE) * TILE_SIZE + (y % TILE_SIZE)] = views[i];
+            }
+            // A stripe that was left without cells is removed (a reader that still holds it sees only empty cells):
+            if (Arrays.stream(stripe.cells).allMatch(Objects::isNull)) stripes.remove(stripeKey);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+}
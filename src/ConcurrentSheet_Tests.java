@@ -0,0 +1,120 @@
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ConcurrentSheet_Tests - JUnit tests for the ConcurrentSheet class.
+ * - Verifies that the changes are recalculated and published before set returns.
+ * - Tests readers and writers that work on the same spreadsheet at the same time.
+ * - Checks the save, load and eval methods.
+ */
+public class ConcurrentSheet_Tests {
+
+    // Tests changes, and reading them right after they are made
+    @Test
+    void set_Test() {
+        ConcurrentSheet sheet = new ConcurrentSheet(26, 100);
+        sheet.set(0, 0, "5"); // A0
+        sheet.set(0, 1, "=A0*2"); // A1
+        sheet.set(20, 50, "=sum(A0:A1)"); // U50 - in another stripe
+        sheet.set(100, 100, "7"); // not in the spreadsheet - ignored
+
+        assertEquals("10.0", sheet.value(0, 1));
+        assertEquals("15.0", sheet.value(20, 50));
+        assertEquals("15.0", sheet.eval(20, 50));
+        assertEquals("=A0*2", sheet.get("A1").getData());
+        assertEquals(Ex2Utils.FORM, sheet.get(0, 1).getType());
+        assertEquals(1, sheet.get(0, 1).getOrder());
+        assertEquals("", sheet.value(5, 5));
+        assertNull(sheet.eval(5, 5));
+        assertNull(sheet.get(100, 100));
+        assertThrows(UnsupportedOperationException.class, () -> sheet.get(0, 0).setData("1"));
+
+        // Emptying cells - the stripe of U50 is left empty:
+        sheet.batch(b -> {
+            b.set(0, 0, "1");
+            b.set(20, 50, "");
+        });
+        assertEquals("2.0", sheet.value(0, 1));
+        assertEquals("", sheet.value(20, 50));
+        assertEquals(Ex2Utils.TEXT, sheet.get(20, 50).getType());
+
+        // A batch that throws - the changes that were made before the exception are published anyway:
+        assertThrows(IllegalStateException.class, () -> sheet.batch(b -> {
+            b.set(0, 0, "4");
+            throw new IllegalStateException("stop");
+        }));
+        assertEquals("8.0", sheet.value(0, 1));
+        assertEquals("4.0", sheet.eval(0, 0));
+    }
+
+    // Tests readers that read while two writers change the spreadsheet - the readers never fail, and never see an old value after a new one
+    @Test
+    void readersAndWriters_Test() throws InterruptedException {
+        ConcurrentSheet sheet = new ConcurrentSheet(26, 100);
+        sheet.set(0, 0, "0"); // A0
+        sheet.set(0, 1, "=A0*2"); // A1
+        sheet.set(20, 50, "0"); // U50
+        int changes = 2000;
+
+        AtomicBoolean done = new AtomicBoolean(false);
+        AtomicReference<String> error = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 4; r++) {
+            readers.add(new Thread(() -> {
+                double last = 0;
+                while (!done.get()) {
+                    double a1 = Double.parseDouble(sheet.value(0, 1));
+                    if (a1 < last || a1 % 2 != 0) error.compareAndSet(null, "A1 = " + a1 + " after " + last);
+                    last = a1;
+                    sheet.value(20, 50);
+                }
+            }));
+        }
+        Thread first = new Thread(() -> {
+            for (int i = 1; i <= changes; i++) sheet.set(0, 0, "" + i);
+        });
+        Thread second = new Thread(() -> {
+            for (int i = 1; i <= changes; i++) sheet.set(20, 50, "=" + i + "+1");
+        });
+
+        for (Thread t : readers) t.start();
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+        done.set(true);
+        for (Thread t : readers) t.join();
+
+        assertNull(error.get());
+        assertEquals("" + (2.0 * changes), sheet.value(0, 1));
+        assertEquals("" + (changes + 1.0), sheet.value(20, 50));
+    }
+
+    // Tests saving and loading - the loaded cells are published, and the cells that are not in the file are emptied
+    @Test
+    void saveLoad_Test() throws IOException {
+        File file = File.createTempFile("ConcurrentSheet_Tests", ".csv");
+        file.deleteOnExit();
+        ConcurrentSheet sheet = new ConcurrentSheet(26, 100);
+        sheet.set(0, 0, "3");
+        sheet.set(1, 0, "=A0+1");
+        sheet.save(file.getPath());
+
+        sheet.set(0, 0, "10");
+        sheet.set(25, 99, "hello");
+        sheet.load(file.getPath());
+        assertEquals("3.0", sheet.value(0, 0));
+        assertEquals("4.0", sheet.value(1, 0));
+        assertEquals("", sheet.value(25, 99));
+
+        sheet.eval();
+        assertEquals("4.0", sheet.value(1, 0));
+        assertEquals(1, sheet.depth()[1][0]);
+    }
+}
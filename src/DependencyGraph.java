@@ -0,0 +1,211 @@
+import java.util.*;
+
+/**
+ * DependencyGraph - keeps the references between the cells of a spreadsheet.
+ * - For every cell we save its precedents (the cells it reads) and its dependents (the cells that read it).
+ * - A range that a cell reads (e.g. the "A0:C999" of "=sum(A0:C999)") is kept as a single range edge, and not as an edge to every cell inside it.
+ *   The dependents of a cell through ranges are found in an interval index (see IntervalIndex), so a big range costs the same as a small one.
+ * - The graph is updated one cell at a time when the data of that cell changes, so we never need to rescan the whole spreadsheet.
+ * - Used by Ex2Sheet to find which cells have to be recalculated after a change (and in which order).
+ * Each cell is represented by a single long key, built from its x,y coordinates (see the key method).
+ */
+public class DependencyGraph {
+    private final Map<Long, Set<Long>> precedents = new HashMap<>(); // cell -> the cells it refers to
+    private final Map<Long, Set<Long>> dependents = new HashMap<>(); // cell -> the cells that refer to it
+    private final Map<Long, List<Range2D>> rangePrecedents = new HashMap<>(); // cell -> the ranges it reads
+    private final IntervalIndex rangeDependents; // the ranges of all the cells - finds the cells that read a range covering a cell
+
+    /**
+     * constructor for an empty DependencyGraph, over a spreadsheet of the given dimensions (the ranges are kept only inside them).
+     * @param width the dimension of the x-coordinate of the spreadsheet.
+     * @param height the dimension of the y-coordinate of the spreadsheet.
+     */
+    public DependencyGraph(int width, int height) {
+        rangeDependents = new IntervalIndex(width, height);
+    }
+
+    /**
+     * constructor for an empty DependencyGraph, over the biggest spreadsheet (see Ex2Utils.MAX_COLUMNS and Ex2Utils.MAX_ROWS).
+     */
+    public DependencyGraph() {
+        this(Ex2Utils.MAX_COLUMNS, Ex2Utils.MAX_ROWS);
+    }
+
+    /**
+     * Builds the key of the x,y cell - the x-coordinate in the high 32 bits and the y-coordinate in the low 32 bits.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return a long key representing the x,y cell.
+     */
+    public static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param key a cell key (created by the key method).
+     * @return the x-coordinate of the cell.
+     */
+    public static int keyX(long key) {
+        return (int) (key >> 32);
+    }
+
+    /**
+     * @param key a cell key (created by the key method).
+     * @return the y-coordinate of the cell.
+     */
+    public static int keyY(long key) {
+        return (int) key;
+    }
+
+    /**
+     * Replaces all the precedents of the x,y cell with a new set of cells.
+     * The old edges of this cell are removed from the dependents of its old precedents, and the new edges are added.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param refs the keys of the cells that the x,y cell refers to (may be empty).
+     */
+    public void setPrecedents(int x, int y, Collection<Long> refs) {
+        setPrecedents(x, y, refs, Collections.emptyList());
+    }
+
+    /**
+     * Replaces all the precedents of the x,y cell with a new set of cells and a new list of ranges.
+     * The old edges of this cell are removed from the dependents of its old precedents (and from the interval index), and the new edges are added.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param refs the keys of the single cells that the x,y cell refers to (may be empty).
+     * @param ranges the ranges that the x,y cell reads (may be empty) - the x,y cell itself is never its own dependent through a range.
+     */
+    public void setPrecedents(int x, int y, Collection<Long> refs, Collection<Range2D> ranges) {
+        long cell = key(x, y);
+
+        // The old ranges of the cell are removed from the interval index, and the new ones are added:
+        List<Range2D> oldRanges = rangePrecedents.remove(cell);
+        if (oldRanges != null) {
+            for (Range2D range : oldRanges) rangeDependents.remove(range, cell);
+        }
+        if (ranges != null && !ranges.isEmpty()) {
+            List<Range2D> newRanges = new ArrayList<>(ranges);
+            rangePrecedents.put(cell, newRanges);
+            for (Range2D range : newRanges) rangeDependents.add(range, cell);
+        }
+
+        // First, we will disconnect the cell from all its old precedents:
+        Set<Long> old = precedents.remove(cell);
+        if (old != null) {
+            for (Long ref : old) {
+                Set<Long> deps = dependents.get(ref);
+                if (deps != null) {
+                    deps.remove(cell);
+                    if (deps.isEmpty()) dependents.remove(ref); // We don't keep empty sets
+                }
+            }
+        }
+
+        // A cell without references has no edges at all:
+        if (refs == null || refs.isEmpty()) return;
+
+        // Now we will connect the cell to the new precedents (in both directions):
+        Set<Long> newRefs = new HashSet<>(refs);
+        precedents.put(cell, newRefs);
+        for (Long ref : newRefs) {
+            dependents.computeIfAbsent(ref, k -> new HashSet<>()).add(cell);
+        }
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the keys of the cells that the x,y cell refers to (an empty set if there are none).
+     */
+    public Set<Long> getPrecedents(int x, int y) {
+        return precedents.getOrDefault(key(x, y), Collections.emptySet());
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the ranges that the x,y cell reads (an empty list if there are none).
+     */
+    public List<Range2D> getRanges(int x, int y) {
+        return rangePrecedents.getOrDefault(key(x, y), Collections.emptyList());
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the keys of the cells that refer to the x,y cell - directly or through a range that covers it (an empty set if there are none).
+     */
+    public Set<Long> getDependents(int x, int y) {
+        long cell = key(x, y);
+        Set<Long> deps = dependents.getOrDefault(cell, Collections.emptySet());
+        if (rangeDependents.isEmpty()) return deps;
+
+        // Add the cells with a range that covers the x,y cell:
+        List<Long> covering = rangeDependents.covering(x, y);
+        if (covering.isEmpty()) return deps;
+        Set<Long> ans = new HashSet<>(deps);
+        ans.addAll(covering);
+        ans.remove(cell); // A range never makes a cell its own dependent
+        if (deps.contains(cell)) ans.add(cell); // ... but a direct reference to itself does
+        return ans;
+    }
+
+    /**
+     * @return true if at least one cell reads a range.
+     */
+    public boolean hasRanges() {
+        return !rangePrecedents.isEmpty();
+    }
+
+    /**
+     * Finds all the cells affected by a change in the x,y cell:
+     * the cell itself and all its transitive dependents (cells that refer to it, cells that refer to them, and so on).
+     * We use a BFS over the dependents edges, so every cell is visited only once (even if there are cycles).
+     * @param x integer, x-coordinate of the changed cell.
+     * @param y integer, y-coordinate of the changed cell.
+     * @return the keys of all the affected cells, the changed cell first.
+     */
+    public List<Long> affectedBy(int x, int y) {
+        return affectedBy(List.of(key(x, y)));
+    }
+
+    /**
+     * Finds all the cells affected by a change in several cells (e.g. a batch of changes):
+     * the changed cells themselves and all their transitive dependents - every cell appears only once.
+     * The ranges are never expanded: every node of the interval index is visited at most once during the whole search
+     * (all the owners in a node are added the first time it is reached), so many changed cells under the same big ranges cost the nodes, and not the edges.
+     * @param changed the keys of the changed cells.
+     * @return the keys of all the affected cells, the changed cells first.
+     */
+    public List<Long> affectedBy(Collection<Long> changed) {
+        List<Long> ans = new ArrayList<>();
+        Set<Long> visited = new HashSet<>();
+        Set<Long> visitedNodes = new HashSet<>(); // the nodes of the interval index that were already reached
+        for (Long start : changed) {
+            if (visited.add(start)) ans.add(start);
+        }
+
+        // The list itself is our BFS queue - we keep going until no new cells are added:
+        for (int i = 0; i < ans.size(); i++) {
+            long cell = ans.get(i);
+            for (Long dep : dependents.getOrDefault(cell, Collections.emptySet())) {
+                if (visited.add(dep)) ans.add(dep);
+            }
+            rangeDependents.forEachCovering(keyX(cell), keyY(cell), visitedNodes, dep -> {
+                if (visited.add(dep)) ans.add(dep);
+            });
+        }
+        return ans;
+    }
+
+    /**
+     * Removes all the edges from the graph.
+     */
+    public void clear() {
+        precedents.clear();
+        dependents.clear();
+        rangePrecedents.clear();
+        rangeDependents.clear();
+    }
+}
@@ -0,0 +1,93 @@
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DependencyGraph_Tests - JUnit tests for the DependencyGraph class.
+ * - Verifies that precedents and dependents are kept in both directions.
+ * - Tests replacing the references of a cell.
+ * - Checks the affected cells of a change (transitive dependents), including cycles.
+ */
+public class DependencyGraph_Tests {
+
+    DependencyGraph graph = new DependencyGraph(); // a graph for our tests
+
+    // Tests the conversion between x,y coordinates and a cell key
+    @Test
+    void key_Test() {
+        long k = DependencyGraph.key(25, 99);
+        assertEquals(25, DependencyGraph.keyX(k));
+        assertEquals(99, DependencyGraph.keyY(k));
+
+        k = DependencyGraph.key(0, 0);
+        assertEquals(0, DependencyGraph.keyX(k));
+        assertEquals(0, DependencyGraph.keyY(k));
+        assertNotEquals(DependencyGraph.key(1, 2), DependencyGraph.key(2, 1));
+    }
+
+    // Tests adding and replacing the references of a cell
+    @Test
+    void setPrecedents_Test() {
+        // B0 = A0 + A1
+        graph.setPrecedents(1, 0, List.of(DependencyGraph.key(0, 0), DependencyGraph.key(0, 1)));
+        assertEquals(2, graph.getPrecedents(1, 0).size());
+        assertTrue(graph.getDependents(0, 0).contains(DependencyGraph.key(1, 0)));
+        assertTrue(graph.getDependents(0, 1).contains(DependencyGraph.key(1, 0)));
+
+        // B0 = A1 only - A0 should not have B0 as a dependent anymore
+        graph.setPrecedents(1, 0, List.of(DependencyGraph.key(0, 1)));
+        assertEquals(1, graph.getPrecedents(1, 0).size());
+        assertTrue(graph.getDependents(0, 0).isEmpty());
+        assertTrue(graph.getDependents(0, 1).contains(DependencyGraph.key(1, 0)));
+
+        // B0 is now a number - no references at all
+        graph.setPrecedents(1, 0, Collections.emptyList());
+        assertTrue(graph.getPrecedents(1, 0).isEmpty());
+        assertTrue(graph.getDependents(0, 1).isEmpty());
+    }
+
+    // Tests the cells affected by a change
+    @Test
+    void affectedBy_Test() {
+        // A chain: A1 = A0, A2 = A1, A3 = A2, and an unrelated cell B0 = C0
+        graph.setPrecedents(0, 1, List.of(DependencyGraph.key(0, 0)));
+        graph.setPrecedents(0, 2, List.of(DependencyGraph.key(0, 1)));
+        graph.setPrecedents(0, 3, List.of(DependencyGraph.key(0, 2)));
+        graph.setPrecedents(1, 0, List.of(DependencyGraph.key(2, 0)));
+
+        List<Long> affected = graph.affectedBy(0, 0);
+        assertEquals(4, affected.size());
+        assertEquals(DependencyGraph.key(0, 0), affected.get(0)); // the changed cell comes first
+        assertFalse(affected.contains(DependencyGraph.key(1, 0)));
+
+        // A change at the end of the chain affects only itself
+        assertEquals(List.of(DependencyGraph.key(0, 3)), graph.affectedBy(0, 3));
+
+        // A cycle: A0 = A3 - every cell of the cycle is visited only once
+        graph.setPrecedents(0, 0, List.of(DependencyGraph.key(0, 3)));
+        assertEquals(4, graph.affectedBy(0, 2).size());
+    }
+
+    // Tests range edges - the dependents of a cell include the cells with a range that covers it
+    @Test
+    void ranges_Test() {
+        DependencyGraph small = new DependencyGraph(10, 10);
+        small.setPrecedents(0, 0, List.of(DependencyGraph.key(5, 5)), List.of(new Range2D("B0:C9")));
+        small.setPrecedents(0, 1, Collections.emptyList(), List.of(new Range2D("A0:J9"))); // covers itself
+
+        assertEquals(1, small.getRanges(0, 0).size());
+        assertEquals(1, small.getRanges(0, 0).get(0).getStartX());
+        assertEquals(Set.of(DependencyGraph.key(0, 0), DependencyGraph.key(0, 1)), small.getDependents(2, 7));
+        assertEquals(Set.of(DependencyGraph.key(0, 0), DependencyGraph.key(0, 1)), small.getDependents(5, 5));
+        assertEquals(Set.of(DependencyGraph.key(0, 1)), small.getDependents(0, 0));
+        assertTrue(small.getDependents(0, 1).isEmpty()); // a range never makes a cell its own dependent
+
+        // A change in a covered cell affects the range cells:
+        assertEquals(3, small.affectedBy(1, 1).size());
+
+        // Replacing the references removes the old range:
+        small.setPrecedents(0, 0, List.of(DependencyGraph.key(5, 5)));
+        assertTrue(small.getRanges(0, 0).isEmpty());
+        assertEquals(Set.of(DependencyGraph.key(0, 1)), small.getDependents(2, 7));
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.*;
+
+/**
+ * DepthIndex - keeps the maximum dependency depth over the cells of a spreadsheet, so the depth of a cell that reads a range
+ * (e.g. "=sum(A0:C999)") is calculated without reading the depth of every cell inside the range.
+ * - The index is a sparse 2D segment tree (see SegmentTree2D), like RangeIndex: node (o, i) keeps the maximum depth of the cells
+ *   in the columns of the outer node o and in the rows of the inner node i.
+ * - A query takes the maximum of O(log(width) * log(height)) disjoint nodes, and an update recalculates the same number of nodes.
+ * - A cell in a cycle (depth -1) is kept as the largest depth, so a range with such a cell is found right away.
+ * - Only cells with a depth other than 0 are kept (an empty, text or number cell has depth 0), so the memory is proportional to the formula cells.
+ */
+public class DepthIndex extends SegmentTree2D {
+    private static final int CYCLE = Integer.MAX_VALUE; // how a cell in a cycle (depth Ex2Utils.ERR) is kept
+    private int[] maxDepths = new int[0]; // the maximum depth of the cells of every kept node, by its slot
+
+    /**
+     * constructor for an empty DepthIndex (all the depths are 0), over a spreadsheet of the given dimensions.
+     * @param width the dimension of the x-coordinate of the spreadsheet.
+     * @param height the dimension of the y-coordinate of the spreadsheet.
+     */
+    public DepthIndex(int width, int height) {
+        super(width, height);
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the depth of the x,y cell that is kept in the index (0 if it was never set, -1 for a cell in a cycle).
+     */
+    public int get(int x, int y) {
+        int slot = findLeaf(x, y);
+        if (slot < 0) return 0;
+        return (maxDepths[slot] == CYCLE) ? Ex2Utils.ERR : maxDepths[slot];
+    }
+
+    /**
+     * Sets the depth of the x,y cell, and recalculates all the nodes that contain it (from the bottom to the top).
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param depth the depth of the cell (0 or more), or -1 for a cell in a cycle.
+     */
+    public void set(int x, int y, int depth) {
+        if (depth == 0) {
+            removeLeaf(x, y);
+        }
+        else {
+            int slot = keepLeaf(x, y);
+            if (slot < 0) return; // not in the spreadsheet
+            maxDepths[slot] = (depth == Ex2Utils.ERR) ? CYCLE : depth;
+        }
+        update(x, y);
+    }
+
+    @Override
+    protected void reserve(int slots) {
+        maxDepths = Arrays.copyOf(maxDepths, slots);
+    }
+
+    @Override
+    protected void combine(int slot, int left, int right) {
+        maxDepths[slot] = Math.max((left < 0) ? 0 : maxDepths[left], (right < 0) ? 0 : maxDepths[right]);
+    }
+
+    /**
+     * Finds the maximum depth of the cells inside a rectangle of cells.
+     * @param startX the first column of the rectangle.
+     * @param endX the last column of the rectangle.
+     * @param startY the first row of the rectangle.
+     * @param endY the last row of the rectangle.
+     * @return the maximum depth of the cells in the rectangle (0 if there are none), or -1 if one of them is in a cycle.
+     */
+    public int max(int startX, int endX, int startY, int endY) {
+        int[] ans = {0};
+        visit(startX, endX, startY, endY, slot -> ans[0] = Math.max(ans[0], maxDepths[slot]));
+        return (ans[0] == CYCLE) ? Ex2Utils.ERR : ans[0];
+    }
+}
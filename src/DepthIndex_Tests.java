@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DepthIndex_Tests - JUnit tests for the DepthIndex class.
+ * - Verifies the maximum depth of ranges against a simple loop over the cells.
+ * - Tests replacing a depth with a lower one, and cells in a cycle (depth -1).
+ * - Checks ranges that are partly outside the spreadsheet.
+ */
+public class DepthIndex_Tests {
+
+    // Tests a single cell, and replacing its depth
+    @Test
+    void set_Test() {
+        DepthIndex index = new DepthIndex(26, 100);
+        assertEquals(0, index.max(0, 25, 0, 99));
+        index.set(2, 3, 5);
+        assertEquals(5, index.get(2, 3));
+        assertEquals(5, index.max(0, 25, 0, 99));
+        assertEquals(5, index.max(2, 2, 3, 3));
+        assertEquals(0, index.max(0, 1, 0, 99)); // outside the range
+
+        // A lower depth replaces the maximum:
+        index.set(2, 3, 1);
+        assertEquals(1, index.max(0, 25, 0, 99));
+        index.set(2, 3, 0);
+        assertEquals(0, index.get(2, 3));
+        assertEquals(0, index.max(0, 25, 0, 99));
+
+        // A range that is partly outside the spreadsheet:
+        index.set(25, 99, 2);
+        assertEquals(2, index.max(24, 30, 90, 200));
+    }
+
+    // Tests cells in a cycle - they are found in every range that contains them
+    @Test
+    void cycle_Test() {
+        DepthIndex index = new DepthIndex(10, 10);
+        index.set(1, 1, 7);
+        index.set(4, 4, Ex2Utils.ERR);
+        assertEquals(Ex2Utils.ERR, index.get(4, 4));
+        assertEquals(Ex2Utils.ERR, index.max(0, 9, 0, 9));
+        assertEquals(7, index.max(0, 3, 0, 9));
+
+        // The cycle is broken:
+        index.set(4, 4, 2);
+        assertEquals(7, index.max(0, 9, 0, 9));
+        index.clear();
+        assertEquals(0, index.max(0, 9, 0, 9));
+    }
+
+    // Tests random depths and ranges against a loop over the cells
+    @Test
+    void random_Test() {
+        Random random = new Random(7);
+        int width = 13, height = 37;
+        int[][] depths = new int[width][height];
+        DepthIndex index = new DepthIndex(width, height);
+        for (int i = 0; i < 2000; i++) {
+            int x = random.nextInt(width), y = random.nextInt(height);
+            int depth = random.nextInt(20) == 0 ? Ex2Utils.ERR : random.nextInt(10);
+            depths[x][y] = depth;
+            index.set(x, y, depth);
+
+            int x1 = random.nextInt(width), x2 = x1 + random.nextInt(width - x1);
+            int y1 = random.nextInt(height), y2 = y1 + random.nextInt(height - y1);
+            int expected = 0;
+            for (int a = x1; a <= x2 && expected != Ex2Utils.ERR; a++) {
+                for (int b = y1; b <= y2; b++) {
+                    if (depths[a][b] == Ex2Utils.ERR) { expected = Ex2Utils.ERR; break; }
+                    expected = Math.max(expected, depths[a][b]);
+                }
+            }
+            assertEquals(expected, index.max(x1, x2, y1, y2));
+        }
+    }
+}
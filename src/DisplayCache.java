@@ -0,0 +1,155 @@
+import java.util.*;
+
+/**
+ * DisplayCache - the strings (and types) that are displayed for the cells of a spreadsheet, kept ready for drawing.
+ * - Computing the displayed value of a formula cell (see Sheet.value) evaluates it again, so a GUI that calls value() for every cell
+ *   on every frame evaluates the whole spreadsheet tens of times per second - even when nothing was changed.
+ * - Instead, the cache is updated only when a recalculation ends: an Ex2Sheet notifies the cache with the keys of the recalculated cells
+ *   (see Ex2Sheet.RecalculationListener), and only their displayed values are computed again.
+ *   Any other Sheet does not notify - refresh() reads all its cells again, and should be called after it was changed.
+ * - For an Ex2Sheet, only its populated cells are read (see Ex2Sheet.populatedCells), from the results of its last recalculation (see Ex2Sheet.storedValue) -
+ *   a formula is never calculated again just to display it.
+ * - Only the non-empty cells are kept (a missing cell is displayed as an empty text cell), so the cache is as big as the populated part of the spreadsheet.
+ * - Every update increases the version of the cache, so a GUI can tell if there is anything new to draw (see getVersion).
+ *   An event-driven GUI can also get the exact cells whose displayed value (or type) was changed, through a RepaintQueue (see setRepaintQueue).
+ * All the methods are synchronized - the cache can be updated by the thread that changes the spreadsheet while another thread draws it.
+ */
+public class DisplayCache implements Ex2Sheet.RecalculationListener {
+    private final Sheet sheet; // the displayed spreadsheet
+    private final Ex2Sheet notifying; // the same spreadsheet if it is an Ex2Sheet - it notifies its recalculations (null - any other Sheet)
+    private final Map<Long, CellView> cells = new HashMap<>(); // key (see DependencyGraph.key) -> the displayed value and type of a non-empty cell
+    private long version = 0; // increased by every update of the cache
+    private RepaintQueue repaints = null; // receives the cells whose displayed value was changed (null - no one is interested)
+
+    /**
+     * constructor for a DisplayCache of a spreadsheet - reads the displayed values of all its cells,
+     * and if the spreadsheet is an Ex2Sheet, it is updated from now on whenever the spreadsheet is recalculated.
+     * @param sheet the displayed spreadsheet.
+     */
+    public DisplayCache(Sheet sheet) {
+        this.sheet = sheet;
+        notifying = (sheet instanceof Ex2Sheet) ? (Ex2Sheet) sheet : null;
+        refresh();
+        if (notifying != null) notifying.addRecalculationListener(this);
+    }
+
+    /**
+     * Sets the queue that receives the cells whose displayed value (or type) was changed by an update - a cell that was recalculated
+     * to the same value is not posted. A refresh (that may change any cell) requests to draw everything.
+     * @param repaints the queue (null - no queue).
+     */
+    public synchronized void setRepaintQueue(RepaintQueue repaints) {
+        this.repaints = repaints;
+    }
+
+    /**
+     * Stops updating the cache (it keeps the values it has).
+     */
+    public void detach() {
+        if (notifying != null) notifying.removeRecalculationListener(this);
+    }
+
+    /**
+     * Reads the displayed values of all the cells again.
+     * For an Ex2Sheet only the populated cells are read, for any other spreadsheet - every cell.
+     */
+    public synchronized void refresh() {
+        cells.clear();
+        if (notifying != null) {
+            for (Long key : notifying.populatedCells()) read(key);
+        }
+        else {
+            for (int x = 0; x < sheet.width(); x++) {
+                for (int y = 0; y < sheet.height(); y++) read(DependencyGraph.key(x, y));
+            }
+        }
+        version++;
+        if (repaints != null) repaints.repaintAll();
+    }
+
+    /**
+     * Tells the cache that the spreadsheet was changed: an Ex2Sheet has already notified the cache (so nothing is done),
+     * and any other spreadsheet is read again (see refresh).
+     */
+    public void changed() {
+        if (notifying == null) refresh();
+    }
+
+    /**
+     * Updates the displayed values of the recalculated cells (see Ex2Sheet.RecalculationListener).
+     * @param keys the keys (see DependencyGraph.key) of the recalculated cells.
+     * @param all true if all the populated cells were recalculated - the cells that are not in the list are empty.
+     */
+    @Override
+    public synchronized void recalculated(List<Long> keys, boolean all) {
+        // After a full recalculation, the cells that were not recalculated are empty:
+        Set<Long> stale = all ? new HashSet<>(cells.keySet()) : null;
+
+        List<Long> changed = new ArrayList<>();
+        for (Long key : keys) {
+            if (read(key)) changed.add(key);
+            if (stale != null) stale.remove(key);
+        }
+        if (stale != null) {
+            for (Long key : stale) {
+                cells.remove(key);
+                changed.add(key);
+            }
+        }
+        version++;
+        if (repaints != null) repaints.repaint(changed);
+    }
+
+    /**
+     * Computes the displayed value of a single cell, and keeps it (or removes it, if the cell is empty).
+     * @param key the key (see DependencyGraph.key) of the cell.
+     * @return true if the displayed value or the type of the cell was changed.
+     */
+    private boolean read(long key) {
+        int x = DependencyGraph.keyX(key), y = DependencyGraph.keyY(key);
+        // The value first - presenting a cell that was not calculated yet may mark it with an error type:
+        String value = (notifying != null) ? notifying.storedValue(x, y) : sheet.value(x, y);
+        Cell cell = sheet.get(x, y);
+        CellView before;
+        if (cell == null || value == null || (value.isEmpty() && cell.getType() == Ex2Utils.TEXT)) {
+            before = cells.remove(key);
+            return before != null;
+        }
+        before = cells.put(key, new CellView(cell.getData(), cell.getType(), cell.getOrder(), value));
+        return before == null || before.getType() != cell.getType() || !before.getValue().equals(value);
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the string that is displayed in the x,y cell (an empty string for an empty cell).
+     */
+    public synchronized String getText(int x, int y) {
+        CellView view = cells.get(DependencyGraph.key(x, y));
+        return (view != null) ? view.getValue() : Ex2Utils.EMPTY_CELL;
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the type of the x,y cell (according to Ex2Utils) - TEXT for an empty cell.
+     */
+    public synchronized int getType(int x, int y) {
+        CellView view = cells.get(DependencyGraph.key(x, y));
+        return (view != null) ? view.getType() : Ex2Utils.TEXT;
+    }
+
+    /**
+     * @return the number of non-empty cells in the cache.
+     */
+    public synchronized int size() {
+        return cells.size();
+    }
+
+    /**
+     * @return the version of the cache - it is increased by every update, so an unchanged version means there is nothing new to display.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,133 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DisplayCache_Tests - JUnit tests for the DisplayCache class.
+ * - Verifies that the cache follows the recalculations of an Ex2Sheet: changes, batches, full evaluation and errors.
+ * - Checks that the version changes only when the spreadsheet is recalculated.
+ * - Tests a spreadsheet that does not notify its recalculations (refresh and changed), and detaching the cache.
+ * - Checks that the displayed values are read from the stored results, without calculating any formula again.
+ */
+public class DisplayCache_Tests {
+
+    // Tests that the cache is updated by every recalculation
+    @Test
+    void recalculation_Test() {
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        sheet.set(0, 0, "5"); // A0
+        DisplayCache display = new DisplayCache(sheet);
+        assertEquals("5.0", display.getText(0, 0));
+        assertEquals(Ex2Utils.NUMBER, display.getType(0, 0));
+        assertEquals(1, display.size());
+
+        // A change updates the changed cell and its dependents:
+        sheet.set(0, 1, "=A0*2"); // A1
+        sheet.set(0, 0, "6");
+        assertEquals("6.0", display.getText(0, 0));
+        assertEquals("12.0", display.getText(0, 1));
+        assertEquals(Ex2Utils.FORM, display.getType(0, 1));
+
+        // A batch:
+        sheet.batch(b -> {
+            b.set(1, 0, "hello");
+            b.set(1, 1, "=A1+B0");
+        });
+        assertEquals("hello", display.getText(1, 0));
+        assertEquals(Ex2Utils.TEXT, display.getType(1, 0));
+        assertEquals(Ex2Utils.ERR_FORM, display.getText(1, 1));
+        assertEquals(Ex2Utils.ERR_FORM_FORMAT, display.getType(1, 1));
+
+        // A cycle:
+        sheet.set(2, 0, "=C1");
+        sheet.set(2, 1, "=C0");
+        assertEquals(Ex2Utils.ERR_CYCLE, display.getText(2, 0));
+        assertEquals(Ex2Utils.ERR_CYCLE_FORM, display.getType(2, 0));
+
+        // An empty cell is removed:
+        sheet.set(1, 0, "");
+        assertEquals(Ex2Utils.EMPTY_CELL, display.getText(1, 0));
+        assertEquals(Ex2Utils.TEXT, display.getType(1, 0));
+
+        // The cache matches the spreadsheet:
+        for (int x = 0; x < sheet.width(); x++) {
+            for (int y = 0; y < sheet.height(); y++) {
+                assertEquals(sheet.value(x, y), display.getText(x, y));
+            }
+        }
+    }
+
+    // Tests that the version changes only when the spreadsheet is recalculated
+    @Test
+    void version_Test() {
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        DisplayCache display = new DisplayCache(sheet);
+        long version = display.getVersion();
+
+        // Reading the cache (like drawing a frame) changes nothing:
+        for (int i = 0; i < 100; i++) display.getText(0, 0);
+        assertEquals(version, display.getVersion());
+
+        sheet.set(0, 0, "1");
+        assertTrue(display.getVersion() > version);
+        version = display.getVersion();
+
+        // A full evaluation - the cache is read again from the recalculated cells:
+        sheet.cells.put(0, 1, new SCell("=A0+1")); // a change that bypasses set (like load)
+        sheet.eval();
+        assertTrue(display.getVersion() > version);
+        assertEquals("2.0", display.getText(0, 1));
+        assertEquals(2, display.size());
+
+        // A detached cache is not updated anymore:
+        display.detach();
+        version = display.getVersion();
+        sheet.set(0, 0, "7");
+        assertEquals(version, display.getVersion());
+        assertEquals("1.0", display.getText(0, 0));
+    }
+
+    // Tests a spreadsheet that does not notify its recalculations
+    @Test
+    void otherSheet_Test() {
+        ConcurrentSheet sheet = new ConcurrentSheet(26, 100);
+        sheet.set(0, 0, "3");
+        DisplayCache display = new DisplayCache(sheet);
+        assertEquals("3.0", display.getText(0, 0));
+
+        sheet.set(0, 1, "=A0*3");
+        assertEquals(Ex2Utils.EMPTY_CELL, display.getText(0, 1)); // not read yet
+        display.changed();
+        assertEquals("9.0", display.getText(0, 1));
+        assertEquals(Ex2Utils.FORM, display.getType(0, 1));
+        assertEquals(2, display.size());
+    }
+
+    // Tests that the cache reads the stored results - the same strings as value(), without calculating a formula again
+    @Test
+    void storedValue_Test() {
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        String[] data = {"5", "007", "text", "=A0*2", "=A1+", "=sum(A0:A1)", "=max(A0:B1)", "=if(A0>2,big,small)", "=if(A0<2,1,=A0+1)",
+                "=if(A0>2,5,6)", "=if(A0>2,=min(A0:A1),6)", "=C0", "=C0+1", "=sum(C0:C1)", "=if(A0>a,1,2)", "NaN", "=Z99"};
+        for (int i = 0; i < data.length; i++) sheet.set(2, i, data[i]); // C0 reads C11 and C11 reads C0 - a cycle
+        sheet.set(0, 0, "3");
+        sheet.set(0, 1, "4");
+
+        sheet.getMetrics().reset();
+        DisplayCache display = new DisplayCache(sheet);
+        assertEquals(0, sheet.getMetrics().getParseCacheHits() + sheet.getMetrics().getParseCacheMisses()); // no formula was calculated
+        for (int x = 0; x < sheet.width(); x++) {
+            for (int y = 0; y < sheet.height(); y++) {
+                assertEquals(sheet.value(x, y), sheet.storedValue(x, y));
+                assertEquals(sheet.value(x, y), display.getText(x, y));
+            }
+        }
+        assertEquals("big", sheet.storedValue(2, 7)); // a condition that results in a text
+        assertEquals(sheet.populatedCells().size(), sheet.cells.size());
+
+        // A cell that was changed, and not recalculated yet, is calculated:
+        sheet.batch(b -> {
+            b.set(2, 3, "=A0*3");
+            assertEquals("9.0", sheet.storedValue(2, 3));
+        });
+    }
+}
@@ -1,4 +1,5 @@
 import java.awt.*;
+import java.awt.event.KeyEvent;
 import java.io.IOException;
 
 /**
@@ -14,17 +15,23 @@ import java.io.IOException;
  */
 public class Ex2GUI {
 	private static Sheet table; // this is the main data (an implementation of the Sheet interface).
+	private static DisplayCache display; // the displayed values and types of the cells - updated only when the spreadsheet is recalculated (see DisplayCache)
+	private static RepaintQueue repaints; // the cells to draw again and the input events - the GUI loop waits for them (see RepaintQueue)
+	private static Viewport view; // the part of the spreadsheet that is shown in the window - only its cells are drawn (see Viewport)
 	private static Index2D cord = null; // a table entry used by the GUI of setting up a cell value / form (For representing a focused cell selected for editing)
 	public Ex2GUI() {;}  // an empty (redundant) constructor.
 
 	/** The main function for running Ex2 */
 	public static void main(String[] a) {
-		table = new Ex2Sheet(Ex2Utils.WIDTH, Ex2Utils.HEIGHT); // Building a table according to the sizes predefined in Ex2Utils
+		table = new Ex2Sheet(Ex2Utils.GUI_WIDTH, Ex2Utils.GUI_HEIGHT); // Building a table according to the sizes predefined in Ex2Utils (the window scrolls over it)
 		testSimpleGUI(table); // Run the GUI's infinite loop
 	}
 
 	/**
-	 * This function runs the main (endlees) loop of the GUI
+	 * This function runs the main (endlees) loop of the GUI.
+	 * The loop is event-driven: it waits (without using the CPU) until a mouse click, a typed key or a recalculation posts a request,
+	 * and then draws again only the cells whose displayed value was changed - the whole window is drawn only at the start, after a load and after scrolling.
+	 * Only the cells in the viewport are drawn: the arrows, page up / page down, home and the mouse wheel scroll it over the spreadsheet.
 	 * @param table the SpreadSheet - note: this class is written as a naive implementation of "singleton" (i.e., all static).
 	 */
 	public static void testSimpleGUI(Sheet table) {
@@ -34,18 +41,69 @@ public class Ex2GUI {
 		StdDrawEx2.setPenRadius(Ex2Utils.PEN_RADIUS);
 		StdDrawEx2.enableDoubleBuffering();
 
+		Ex2GUI.table = table;
+		view = Viewport.ofWindow(table.width(), table.height());
 		table.eval();
+		display = new DisplayCache(table); // from now on the cells are drawn from the cache, and not computed on every frame
+		repaints = new RepaintQueue();
+		display.setRepaintQueue(repaints); // a recalculation posts the cells whose displayed value was changed
+		StdDrawEx2.setInputListener(repaints::input); // a mouse click, a key or the mouse wheel wakes the loop up
+		repaints.repaintAll(); // the first frame
 
 		// endless loop (GUI)
 		while (true) {
-			StdDrawEx2.clear(); // clear the GUI (Ex2 window).
-			drawFrame(); // draws the lines.
-			drawCells(); // draws the cells
-			StdDrawEx2.show(); // presents the window.
-			int xx = StdDrawEx2.getXX(); // gets the x coordinate of the mouse click (-1 if none)
-			int yy = StdDrawEx2.getYY(); // gets the y coordinate of the mouse click (-1 if none)
-			inputCell(xx,yy); 			 // if isIn(xx,yy) an input window will be opened to allow the user to edit cell (xx,yy);
-			StdDrawEx2.pause(Ex2Utils.WAIT_TIME_MS); // waits a few milliseconds - say 30 fps is sufficient.
+			RepaintQueue.Request request;
+			try {
+				request = repaints.take(); // waits until there is something to do
+			}
+			catch (InterruptedException e) {
+				return;
+			}
+
+			if (request.isAll()) {
+				StdDrawEx2.clear(); // clear the GUI (Ex2 window).
+				drawFrame(); // draws the lines.
+				drawCells(); // draws the cells
+				StdDrawEx2.show(); // presents the window.
+			}
+			else {
+				// Only the rectangles of the changed cells are drawn again (and presented):
+				for (Long key : request.getCells()) {
+					redrawCell(DependencyGraph.keyX(key), DependencyGraph.keyY(key));
+				}
+			}
+
+			if (request.isInput()) handleInput();
+		}
+	}
+
+	/**
+	 * Handles the input events that were posted since the last time:
+	 * - The keys and the mouse wheel scroll the viewport (and the whole window is drawn again).
+	 * - A mouse click on a cell opens an input window to edit it.
+	 */
+	private static void handleInput() {
+		boolean scrolled = false;
+		while (StdDrawEx2.hasNextKeyPressed()) {
+			int key = StdDrawEx2.nextKeyPressed();
+			if (key == KeyEvent.VK_UP) scrolled |= view.scrollBy(0, -1);
+			if (key == KeyEvent.VK_DOWN) scrolled |= view.scrollBy(0, 1);
+			if (key == KeyEvent.VK_LEFT) scrolled |= view.scrollBy(-1, 0);
+			if (key == KeyEvent.VK_RIGHT) scrolled |= view.scrollBy(1, 0);
+			if (key == KeyEvent.VK_PAGE_UP) scrolled |= view.scrollBy(0, -view.getRows());
+			if (key == KeyEvent.VK_PAGE_DOWN) scrolled |= view.scrollBy(0, view.getRows());
+			if (key == KeyEvent.VK_HOME) scrolled |= view.scrollTo(0, 0);
+		}
+		int wheel = StdDrawEx2.nextWheelRotation();
+		if (wheel != 0) scrolled |= view.scrollBy(0, wheel * Ex2Utils.GUI_WHEEL_ROWS);
+		if (scrolled) repaints.repaintAll(); // all the shown cells were moved
+
+		if (StdDrawEx2.isClicked()) {
+			// The cell under the mouse (-1 if the click was not on a cell of the spreadsheet):
+			int xx = view.columnAt(StdDrawEx2.getClickX());
+			int yy = view.rowAt(StdDrawEx2.getClickY());
+			if (table.isIn(xx, yy)) inputCell(xx,yy); // an input window will be opened to allow the user to edit cell (xx,yy);
+			else StdDrawEx2.resetXY();
 		}
 	}
 
@@ -75,6 +133,8 @@ public class Ex2GUI {
 	public static void load(String fileName){
 		try {
 			table.load(fileName); // Calls the load method from Ex2Sheet
+			if (display != null) display.changed(); // a spreadsheet that does not notify its recalculations is read again
+			if (repaints != null) repaints.repaintAll(); // all the cells may have been changed
 		}
 		catch (IOException e) {
 			e.printStackTrace(); // Prints the error if loading fails
@@ -102,78 +162,100 @@ public class Ex2GUI {
 	}
 
 	/**
-	 * Draws the grid lines of the spreadsheet.
-	 * - Displays column labels (A-Z) and row numbers.
+	 * Draws the grid lines of the viewport.
+	 * - Displays the names of the shown columns (A, B, ..., Z, AA, ...) and the numbers of the shown rows.
 	 * - Uses black lines for the grid.
 	 */
 	private static void drawFrame() {
 		StdDrawEx2.setPenColor(StdDrawEx2.BLACK); // Set grid color to black
-		int max_y = table.height();  // Number of rows in the spreadsheet
-		double x_space = Ex2Utils.GUI_X_SPACE, x_start = Ex2Utils.GUI_X_START;
-		double y_height = Ex2Utils.GUI_Y_TEXT_START;
+		int rows = view.getRows(), columns = view.getColumns(); // the room in the window
+		double x_space = Ex2Utils.GUI_X_SPACE;
 
-		// Loop through each row to draw grid lines and labels
-		for (int y = 0; y < max_y; y = y + 1) {
-			double xs = y * x_space;
-			double xc = x_start + y * x_space;
-
-			// Draw horizontal and vertical grid lines
-			StdDrawEx2.line(0, y + 1, Ex2Utils.MAX_X, y + 1);
-			StdDrawEx2.line(xs, 0, xs, max_y);
-
-			// Calculate row number (rows are displayed in reverse order)
-			int yy = max_y - (y + 1);
-
-			// Display row numbers on the left
-			StdDrawEx2.text(1, y + y_height, "" + (yy));
+		// Draw the horizontal grid lines (the top of every row):
+		for (int r = 1; r <= rows; r = r + 1) {
+			StdDrawEx2.line(0, r, Ex2Utils.MAX_X, r);
+		}
+		// Draw the vertical grid lines (the left of every column, and the right of the last one):
+		for (int c = 0; c <= columns + 1; c = c + 1) {
+			StdDrawEx2.line(c * x_space, 0, c * x_space, rows);
+		}
 
-			// Display column letters (A-Z) on the top
-			StdDrawEx2.text(xc, max_y + y_height, "" + Ex2Utils.ABC[y]);
+		// Display row numbers on the left
+		for (int y = view.getFirstRow(); y <= view.getLastRow(); y = y + 1) {
+			StdDrawEx2.text(x_space / 2, view.textY(y), "" + y);
+		}
+		// Display column names on the top
+		for (int x = view.getFirstColumn(); x <= view.getLastColumn(); x = x + 1) {
+			StdDrawEx2.text(view.centerX(x), rows + Ex2Utils.GUI_Y_TEXT_START, CellEntry.columnName(x));
 		}
 	}
 
 	/**
-	 * Draws the content of each cell in the spreadsheet.
+	 * Draws the content of each cell in the viewport - the cells outside of it are not read at all.
 	 * - Only non-empty cells are displayed.
 	 * - Each type of cell is displayed in a different color.
+	 * - The values and types are read from the display cache - nothing is computed here.
 	 */
 	private static void drawCells() {
 		StdDrawEx2.setPenColor(StdDrawEx2.BLACK); // Default text color
-		int max_y = table.height();
-		int maxx = table.width();
-		double x_space = Ex2Utils.GUI_X_SPACE, x_start = Ex2Utils.GUI_X_START;
-		double y_height = Ex2Utils.GUI_Y_TEXT_START;
-
-		// Loop through each cell in the spreadsheet
-		for (int x = 0; x < maxx; x = x + 1) {
-			double xc = x_start + x * x_space;
-			for (int y = 0; y < max_y; y = y + 1) {
-				// Get the displayed value of the cell
-				String w = table.value(x, y);//""+abc[x]+y;
-
-				Cell cc = table.get(x, y);
-				// Get the type of the cell
-				int t = cc.getType();
-				// Set the text color based on the type of the cell
-				StdDrawEx2.setPenColor(getColorFromType(t));
-
-				// Limit the length of the displayed text to the maximum allowed
-				int max = Math.min(Ex2Utils.MAX_CHARS, w.length());
-				w = w.substring(0, max);
-
-				// Calculate the y-coordinate for the text (rows are displayed in reverse order)
-				double yc = max_y - (y + 1 - y_height);
-
-				// Display the text in the cell
-				StdDrawEx2.text(xc, yc, w);
+
+		// Loop through each shown cell
+		for (int x = view.getFirstColumn(); x <= view.getLastColumn(); x = x + 1) {
+			for (int y = view.getFirstRow(); y <= view.getLastRow(); y = y + 1) {
+				drawCell(x, y);
 			}
 		}
 	}
 
+	/**
+	 * Draws the content of a single shown cell (on the offscreen canvas).
+	 * @param x integer, x-coordinate of the cell.
+	 * @param y integer, y-coordinate of the cell.
+	 */
+	private static void drawCell(int x, int y) {
+		double xc = view.centerX(x);
+
+		// Get the displayed value of the cell (from the cache)
+		String w = display.getText(x, y);
+
+		// Get the type of the cell
+		int t = display.getType(x, y);
+		// Set the text color based on the type of the cell
+		StdDrawEx2.setPenColor(getColorFromType(t));
+
+		// Limit the length of the displayed text to the maximum allowed
+		int max = Math.min(Ex2Utils.MAX_CHARS, w.length());
+		w = w.substring(0, max);
+
+		// Calculate the y-coordinate for the text (rows are displayed in reverse order)
+		double yc = view.textY(y);
+
+		// Display the text in the cell
+		StdDrawEx2.text(xc, yc, w);
+	}
+
+	/**
+	 * Draws a single cell again, and presents only its rectangle:
+	 * the inside of the cell (without the grid lines around it) is cleared, and the content of the cell is drawn there.
+	 * A cell outside of the viewport is not drawn.
+	 * @param x integer, x-coordinate of the cell.
+	 * @param y integer, y-coordinate of the cell.
+	 */
+	private static void redrawCell(int x, int y) {
+		if (!view.isVisible(x, y)) return;
+		double xc = view.centerX(x); // the center of the cell
+		double yc = view.centerY(y);
+		double halfWidth = Ex2Utils.GUI_X_SPACE / 2, halfHeight = 0.5;
+
+		StdDrawEx2.clearRectangle(xc, yc, halfWidth - Ex2Utils.GUI_CELL_MARGIN, halfHeight - Ex2Utils.GUI_CELL_MARGIN);
+		drawCell(x, y);
+		StdDrawEx2.show(xc, yc, halfWidth, halfHeight);
+	}
+
 	/**
 	 * Opens an input window to edit the content of a cell.
 	 * - Only opens if the coordinates are within the spreadsheet.
-	 * - Recalculates the spreadsheet after updating the cell.
+	 * - The spreadsheet recalculates the affected cells when the cell is updated, and the changed ones are drawn again by the GUI loop.
 	 *
 	 * @param xx The x-coordinate of the clicked cell.
 	 * @param yy The y-coordinate of the clicked cell.
@@ -202,14 +284,17 @@ public class Ex2GUI {
 			}
 			else {
 				table.set(xx, yy, c);
-				int[][] calc_d = table.depth();
-				if (calc_d[xx][yy] == Ex2Utils.ERR) {
-					table.get(xx,yy).setType(Ex2Utils.ERR_CYCLE_FORM);
-				}
 			}
 
-			// Recalculate all cells after the change
-			table.eval();
+			// set() has already recalculated the affected cells (a cell in a cycle is marked with its cycle error, so there is nothing to check here),
+			// and posted the changed ones to the repaint queue - a spreadsheet that does not notify its recalculations is read again:
+			if (!(table instanceof Ex2Sheet)) {
+				display.changed();
+				repaints.repaintAll();
+			}
+			// Clear the line of the input text:
+			StdDrawEx2.clearRectangle(Ex2Utils.MAX_X / 2.0, Ex2Utils.MAX_X - 1, Ex2Utils.MAX_X / 2.0, 0.5);
+			StdDrawEx2.show(Ex2Utils.MAX_X / 2.0, Ex2Utils.MAX_X - 1, Ex2Utils.MAX_X / 2.0, 0.5);
 			// Reset the mouse click coordinates
 			StdDrawEx2.resetXY();
 		}
@@ -1,18 +1,84 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 /**
  * Ex2Sheet - 2D Spreadsheet Implementation
  * - Manages cells containing text, numbers, formulas, conditions, and functions.
+ * - Only the populated cells are kept (see CellStore), so a spreadsheet can have thousands of columns and millions of rows.
  * - Supports advanced calculations with error handling for circular references, invalid formulas, and more.
  * - Automatically recalculates cell values when dependencies change.
- * - Saves and loads spreadsheet data from files.
+ * - Keeps the computed value of every cell, so a reference to another cell is read in O(1) instead of calculating it again.
+ * - Keeps a range index over the computed values while some cell reads a range, so a function over a big range does not read every cell in it (see RangeIndex).
+ * - Optionally evaluates the cells of each depth level in parallel (see setParallelism).
+ * - Records the cost of its recalculations, and can publish it over JMX (see getMetrics and SheetMetrics).
+ * - Emits Java Flight Recorder events for its recalculations and (sampled) cell evaluations (see RecalculationEvent and CellEvaluationEvent).
+ * - Applies many changes with a single recalculation (see batch and setAll).
+ * - Takes cheap immutable snapshots, that share the unchanged tiles of cells with the previous snapshot (see snapshot).
+ * - Saves and loads spreadsheet data from files - as text, or in a compact binary format (see BinarySheetFile).
+ * - Optionally records every change in an append-only journal, instead of saving the whole spreadsheet again (see SheetJournal).
+ * - Notifies its listeners at the end of every recalculation, e.g., the display cache of the GUI (see RecalculationListener and DisplayCache).
  * Limitations:
  * - todo: Arithmetic operations on a value that repeats in the same functions cell (i.c B0 = "=max(A0:A10) + 101")
  */
 
 public class Ex2Sheet implements Sheet {
-    Cell[][] table; // 2D array of Cells
+    private final int width, height; // the dimensions of the spreadsheet
+    CellStore cells = new CellStore(); // the populated cells, with their computed value, result tag and depth from the last calculation
+    DependencyGraph graph; // the references between the cells (precedents, dependents and ranges)
+    RangeIndex ranges = null; // the sums, minimums, maximums and counts of the computed values, for functions over big ranges (null - no cell reads a range, see updateRangeIndexes)
+    // The presented value of every condition cell (a condition may result in a text, that the cell store does not keep) - written by parallel evaluations too:
+    private final Map<Long, String> conditionValues = new ConcurrentHashMap<>();
+    private DepthIndex depths = null; // the maximum depth over ranges of cells, for the depth of a function (null - not built yet, see depthIndex)
+    private static final byte NOT_COMPUTED = 0; // the result tag of a cell that was not computed since its last change
+    // The other result tags are: NUMBER (the computed value is valid), TEXT (any value that is not a number), or an error type.
+    private ForkJoinPool pool = null; // the threads for parallel evaluation (null - sequential evaluation)
+    private List<Long> pending = null; // the keys of the cells changed by the current batch (null - there is no batch now)
+    private List<Long> recalculated = Collections.emptyList(); // the keys of the cells of the last recalculation (see notifyListeners)
+    private PersistentLongMap<CellView[]> snapshotTiles = null; // the tiles of the last snapshot (null - no snapshot was taken since the last load)
+    private final Set<Long> changedTiles = new HashSet<>(); // the keys of the tiles (see SheetSnapshot.tileKey) changed since the last snapshot
+    private SheetJournal journal = null; // records every change (null - the spreadsheet is not journaled, see SheetJournal)
+    private final SheetMetrics metrics = new SheetMetrics(); // the cost of the recalculations (see getMetrics)
+    private final List<RecalculationListener> listeners = new ArrayList<>(); // notified at the end of every recalculation
+
+    /**
+     * Receives the changes of a batch (see Ex2Sheet.batch) - the cells are changed right away, and recalculated together when the batch ends.
+     */
+    public interface Batch {
+        /**
+         * Changes the x,y cell to a cell with the data s (ignored if the cell is not in the spreadsheet).
+         * @param x integer, x-coordinate of the cell.
+         * @param y integer, y-coordinate of the cell.
+         * @param s the string representation of the cell.
+         */
+        void set(int x, int y, String s);
+
+        /**
+         * Changes a cell to a cell with the data s (ignored if the cell is not in the spreadsheet).
+         * @param entry the index of the cell (e.g., "B3").
+         * @param s the string representation of the cell.
+         */
+        default void set(Index2D entry, String s) {
+            set(entry.getX(), entry.getY(), s);
+        }
+    }
+
+    /**
+     * Is notified at the end of every recalculation of the spreadsheet (see addRecalculationListener) - e.g., a DisplayCache.
+     */
+    public interface RecalculationListener {
+        /**
+         * Called after the cells were recalculated - their values, types and orders are up to date.
+         * @param keys the keys (see DependencyGraph.key) of the recalculated cells (the changed cells and their dependents).
+         * @param all true if all the populated cells were recalculated (see eval) - the cells that are not in the list are empty.
+         */
+        void recalculated(List<Long> keys, boolean all);
+    }
 
     /**
      * constructor for an Ex2Sheet object - 2D spreadsheet
@@ -21,16 +87,12 @@ public class Ex2Sheet implements Sheet {
      * @param y - The X dimension of the spreadsheet
      */
     public Ex2Sheet(int x, int y) {
-        if (x < 0 || x > 26 || y < 0|| y > 100) throw new IllegalArgumentException("invalid value");
-
-        table = new SCell[x][y]; // Initializes the arrays containing the various cells
+        if (x < 0 || x > Ex2Utils.MAX_COLUMNS || y < 0|| y > Ex2Utils.MAX_ROWS) throw new IllegalArgumentException("invalid value");
 
-        // We will initialize the various cells to have empty text
-        for(int i=0;i<x;i=i+1) {
-            for(int j=0;j<y;j=j+1) {
-                table[i][j] = new SCell("");
-            }
-        }
+        // All the cells are empty - so there is nothing to allocate, only the dimensions:
+        width = x;
+        height = y;
+        graph = new DependencyGraph(x, y);
 
         //We will use our calculation function to initialize all the cells
         eval();
@@ -46,6 +108,7 @@ public class Ex2Sheet implements Sheet {
 
     /**
      * Return the Cell in the x,y, position (or null if not in).
+     * An empty cell is not kept in the spreadsheet - so for an empty cell we return a new empty cell.
      * @param x integer, x-coordinate of the cell.
      * @param y integer, y-coordinate of the cell.
      * @return the cell in the x,y coordinate (or null if not in).
@@ -53,7 +116,8 @@ public class Ex2Sheet implements Sheet {
     @Override
     public Cell get(int x, int y) {
         if (!isIn(x, y)) return null;
-        return table[x][y];
+        Cell cell = cells.get(x, y);
+        return (cell != null) ? cell : new SCell(Ex2Utils.EMPTY_CELL);
     }
 
     /**
@@ -76,16 +140,74 @@ public class Ex2Sheet implements Sheet {
      */
     @Override
     public void set(int x, int y, String s) {
+        // A single change is a batch of one cell - only the cells affected by it are recalculated:
+        batch(b -> b.set(x, y, s));
+    }
+
+    /**
+     * Applies many changes to this spreadsheet with a single recalculation:
+     * all the changes are made first, and then the cells affected by any of them are recalculated once, together.
+     * For example: sheet.batch(b -> { b.set(0, 0, "5"); b.set(0, 1, "=A0*2"); });
+     * - The values of the changed cells (and of the cells that depend on them) are updated only when the batch ends.
+     * - A batch inside a batch (including a call to set) joins the outer batch.
+     * - If the updates throw an exception, the changes that were already made are still recalculated before the exception continues.
+     * @param updates the changes to make, through the given Batch.
+     */
+    public void batch(Consumer<Batch> updates) {
+        // A batch inside a batch - its changes are recalculated with the outer batch:
+        if (pending != null) {
+            updates.accept(this::change);
+            return;
+        }
+
+        pending = new ArrayList<>();
+        try {
+            updates.accept(this::change);
+        }
+        finally {
+            List<Long> changed = pending;
+            pending = null;
+
+            // recalculate only the cells affected by the changes we made (the changed cells and their transitive dependents):
+            if (!changed.isEmpty()) recalculate(graph.affectedBy(changed));
+            // The records of the whole batch are written to the journal together:
+            if (journal != null && !changed.isEmpty()) journal.flush();
+            if (!changed.isEmpty()) notifyListeners(false);
+        }
+    }
+
+    /**
+     * Applies many changes to this spreadsheet with a single recalculation (see batch).
+     * @param updates the index of each changed cell (e.g., "B3") and its new data - cells that are not in the spreadsheet are ignored.
+     */
+    public void setAll(Map<? extends Index2D, String> updates) {
+        batch(b -> {
+            for (Map.Entry<? extends Index2D, String> entry : updates.entrySet()) {
+                b.set(entry.getKey(), entry.getValue());
+            }
+        });
+    }
+
+    /**
+     * Changes the x,y cell to a cell with the data s, as part of the current batch - it is recalculated when the batch ends.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param s - the string representation of the cell.
+     */
+    private void change(int x, int y, String s) {
         // If the requested coordinates are not in the spreadsheet - we will end the method.
         if (!isIn(x, y)) return;
 
         // We will create a new cell with the desired data.
         Cell c = new SCell(s);
-        // We will insert the cell we created into our cell arrays that represents the spreadsheet
-        table[x][y] = c;
-
-        // recalculate all cells in the spreadsheet following the change we made:
-        eval();
+        // We will insert the cell we created into our cell store that represents the spreadsheet (an empty cell is removed from it)
+        cells.put(x, y, c);
+        conditionValues.remove(DependencyGraph.key(x, y));
+
+        // Update the references of this cell in our dependency graph:
+        setReferences(c, x, y);
+        pending.add(DependencyGraph.key(x, y));
+        if (journal != null) journal.append(x, y, s);
     }
 
     /**
@@ -93,7 +215,7 @@ public class Ex2Sheet implements Sheet {
      */
     @Override
     public int width() {
-        return table.length;
+        return width;
     }
 
     /**
@@ -101,7 +223,7 @@ public class Ex2Sheet implements Sheet {
      */
     @Override
     public int height() {
-        return table[0].length;
+        return height;
     }
 
     /**
@@ -174,246 +296,661 @@ public class Ex2Sheet implements Sheet {
         return ans;
     }
 
+    /**
+     * Returns the value presented in the x,y cell from the results of the last recalculation (see storeValue) - unlike value,
+     * a formula, function or condition is not calculated again. Text, numbers and errors are presented by value, which never calculates them.
+     * A cell that was changed and not recalculated yet (inside a batch) is calculated by value.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the string that will be presented in the x,y entry.
+     */
+    public String storedValue(int x, int y) {
+        Cell c = isIn(x, y) ? cells.get(x, y) : null;
+        if (c == null) return Ex2Utils.EMPTY_CELL;
+
+        // Only a cell that was calculated has a result tag and an order (a cell in a cycle has a negative order):
+        byte tag = cells.getTag(x, y);
+        if (c.getOrder() >= 0 && (tag == Ex2Utils.NUMBER || tag == Ex2Utils.TEXT)) {
+            if ((c.getType() == Ex2Utils.FORM || c.getType() == Ex2Utils.FUCN_TYPE) && tag == Ex2Utils.NUMBER) {
+                return Double.toString(cells.getValue(x, y));
+            }
+            if (c.getType() == Ex2Utils.IF_TYPE) {
+                String stored = conditionValues.get(DependencyGraph.key(x, y));
+                if (stored != null) return stored;
+            }
+        }
+        return value(x, y);
+    }
+
+    /**
+     * @return the keys (see DependencyGraph.key) of the populated (not empty) cells - only the cells that are kept in the cell store.
+     */
+    public List<Long> populatedCells() {
+        return cells.keys();
+    }
+
     /**
      * computes all the values of all the cells in this spreadsheet.
+     * The dependency graph is rebuilt from scratch, and then every populated cell is recalculated -
+     * the same process that set() performs on the affected cells only (see recalculate).
      */
     @Override
     public void eval() {
-        // just for convenience, we will prepare our table size in advance:
-        int width = width();
-        int height = height();
-
-        // Calculate the depths (dependency) of all the cells in our spreadsheet:
-        int[][] depths = depth();
-
-        // Find maximum depth for non-cyclic cells
-        int maxDepth = 0; // We will start counting from 0 (a cell with no independence at all) and see if a larger value is found
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                if (depths[i][j] > maxDepth) {
-                    maxDepth = depths[i][j];
-                }
-            }
-        }
+        // Rebuild the dependency graph from scratch - so it also covers cells that were changed directly (for example by load):
+        List<Long> all = rebuildGraph();
+        ranges = null; // the cells may have been replaced too - it is built again if some cell reads a range
+        conditionValues.clear();
+        depths = null; // the cells may have been replaced (for example by load) - it is built again when it is needed
+
+        // Calculate the depths (dependency) of all the cells, and evaluate them level by level:
+        recalculate(all);
+        notifyListeners(true);
+    }
 
-        // Reset all formula cells to their original type - This way we can update in case there are now calculation errors:
-        // We will only need to update the type in cells that may have an error: formulas, conditions, and functions - there is nothing to change about text and numbers.
-        for (int i = 0; i < width; i++) {
-            for (int j = 0; j < height; j++) {
-                Cell cell = get(i, j);
-                if (cell != null && cell.getData() != null && !cell.getData().isEmpty()) {
-                    // If it starts with '=if(', it's a condition (until proven otherwise - In case we get an error in the calculation)
-                    if (cell.getData().matches("(?i)^=if\\(.*"))
-                    {
-                        cell.setType(Ex2Utils.IF_TYPE);
-                    }
+    /**
+     * Adds a listener that is notified at the end of every recalculation (see RecalculationListener).
+     * @param listener the listener to add.
+     */
+    public void addRecalculationListener(RecalculationListener listener) {
+        listeners.add(listener);
+    }
 
-                    // If it starts with '=<function>(', it's a function (until proven otherwise - In case we get an error in the calculation)
-                    if (Arrays.stream(Ex2Utils.FUNCTIONS).anyMatch(func -> cell.getData().matches("(?i)^=" + func + "\\(.*"))) {
-                        cell.setType(Ex2Utils.FUCN_TYPE);
-                    }
+    /**
+     * Removes a listener that was added with addRecalculationListener.
+     * @param listener the listener to remove.
+     */
+    public void removeRecalculationListener(RecalculationListener listener) {
+        listeners.remove(listener);
+    }
 
-                    // If it starts with **just** '=', it's a formula (until proven otherwise - In case we get an error in the calculation)
-                    if (cell.getData().startsWith("=") &&
-                            (!cell.getData().matches("(?i)^=if\\(.*")) &&
-                            (Arrays.stream(Ex2Utils.FUNCTIONS).noneMatch(func -> cell.getData().matches("(?i)^=" + func + "\\(.*"))) )
-                    {
-                        cell.setType(Ex2Utils.FORM);
-                    }
-                }
-            }
+    /**
+     * Notifies all the listeners about the last recalculation.
+     * @param all true if all the populated cells were recalculated.
+     */
+    private void notifyListeners(boolean all) {
+        // A copy - a listener may remove itself while it is notified:
+        for (RecalculationListener listener : new ArrayList<>(listeners)) {
+            listener.recalculated(recalculated, all);
         }
+    }
 
-        // Evaluate cells level by level based on their depth,
-        // We will use three loops for this:
-        for (int currentDepth = 0; currentDepth <= maxDepth; currentDepth++) // depth loop
-        {
-            for (int i = 0; i < width; i++) // X-cord (width) loop
-            {
-                for (int j = 0; j < height; j++) // Y-cord (height) loop
-                {
-                    if (depths[i][j] == currentDepth)
-                    {
-                        // extract the cell's raw data:
-                        Cell cell = get(i, j);
-                        if (cell != null)
-                        {
-                            // Let's check the cells marked with a circular error, and mark them with the error appropriate to their cell type.
-                            if (depths[i][j] == Ex2Utils.ERR_CYCLE_FORM)
-                            {
-                                // We have defined that any circular error in the case where the cell is a condition or a function - will be defined as an error for that particular cell type, and not just a circular error.
-                                //Therefore, in the case where the cell type in the source is a condition or a function, we will mark a circular error that it has as a specific error for it
-
-                                if (table[i][j].getType() == Ex2Utils.IF_TYPE || table[i][j].getType() == Ex2Utils.ERR_IF) {
-                                    //  we have a condition cell with a circularity error, we will mark it accordingly - ERR_IF:
-                                    table[i][j].setType(Ex2Utils.ERR_IF);
-                                    table[i][j].setOrder(Ex2Utils.ERR_IF);
-                                }
-                                else if (table[i][j].getType() == Ex2Utils.FUCN_TYPE) {
-                                    //  we have a function cell with a circularity error, we will mark it accordingly - ERR_FUNC:
-                                    table[i][j].setType(Ex2Utils.ERR_FUNC);
-                                    table[i][j].setOrder(Ex2Utils.ERR_FUNC);
-                                }
-                                else {
-                                    //  we have a formula cell with a circularity error, we will mark it accordingly- ERR_CYCLE_FORM:
-                                    cell.setOrder(Ex2Utils.ERR_CYCLE_FORM);
-                                    cell.setType(Ex2Utils.ERR_CYCLE_FORM);
-                                }
-                            }
-                            // If there is no circularity error, we will check that we can calculate the cell correctly, and mark its depth within the cell fields.
-                            else {
-                                // Let's try to calculate the value in the cell:
-                                String calculated = eval(i, j);
-                                cell.setOrder(currentDepth); // Set the Cell order
-                                // The string calculated is temporary just so we can see that we can calculate the cell according to its depth correctly.
-                                // We do not use the data that comes out of the EVAL method, to get the final calculated value we have the VALUE method.
-                            }
-                        }
-                    }
-                }
-            }
+    /**
+     * Rebuilds the dependency graph from the current data of all the populated cells in this spreadsheet (an empty cell has no references).
+     * @return the keys (see DependencyGraph.key) of all the populated cells in this spreadsheet.
+     */
+    private List<Long> rebuildGraph() {
+        graph.clear();
+        List<Long> all = cells.keys();
+        for (Long cell : all) {
+            int x = DependencyGraph.keyX(cell);
+            int y = DependencyGraph.keyY(cell);
+            setReferences(get(x, y), x, y);
         }
+        return all;
     }
 
-
     /**
      *  Computes a 2D array of the same dimension as this SpreadSheet, each entry holds its dependency depth.
      *  if a cell is not dependent on any other cell its depth is 0.
      *  else assuming the cell depends on cell_1, cell_2... cell_n, the depth of a cell is
      *  1+max(depth(cell_1), depth(cell_2), ... depth(cell_n)).
      *  In case a cell os a circular dependency (e.g., c1 depends on c2 & c2 depends on c1) its depth should be -1.
+     *  The reference edges are built once, and then a single topological sort (Kahn's algorithm) calculates all the depths
+     *  and finds the cycles - every cell and every edge is visited once, O(V+E).
      */
     @Override
     public int[][] depth() {
+        // Build the reference edges of all the cells (once):
+        List<Long> all = rebuildGraph();
+
+        // Order all the cells and calculate their depths, in one pass (an empty cell has depth 0):
+        orderByDepth(all);
         int[][] ans = new int[width()][height()];
+        for (Long cell : all) {
+            ans[DependencyGraph.keyX(cell)][DependencyGraph.keyY(cell)] = cells.getDepth(DependencyGraph.keyX(cell), DependencyGraph.keyY(cell));
+        }
 
-        // Default value: Initialize all cells to -1 to indicate they are unprocessed yet
-        for (int i = 0; i < width(); i++) {
-            for (int j = 0; j < height(); j++) {
-                ans[i][j] = -1;
+        // We will make sure that all the cycled cells are marked as follows:
+        // that their value in our depth array remains -1, meaning that we were unable to calculate it.
+        // Changing their Cell type to:
+        // - ERR_IF in case of IF cycle
+        // - ERR_FUNC in case of function cycle
+        // - ERR_CYCLE_FORM in case of formula cycle
+        for (Long cell : all) {
+            int x = DependencyGraph.keyX(cell);
+            int y = DependencyGraph.keyY(cell);
+            if (ans[x][y] == Ex2Utils.ERR) {
+                markCycle(get(x, y));
+                if (snapshotTiles != null) changedTiles.add(SheetSnapshot.tileKey(x, y));
             }
         }
 
-        int depth = 0; // Tracks the current depth level
-        int count = 0; // Counts processed cells
-        int max = width() * height(); // Total number of cells in our SpreadSheet
-        boolean flagC = true; // Indicates if any cell was processed in the last iteration
-
-        // Continue while there are cells left to process and changes are still occurring
-        while (count < max && flagC) {
-            flagC = false; // We will initialize the variable - until one cell is calculated
+        // return depth array we just finished calculating:
+        return ans;
+    }
 
-            // Iterate through all cells in the spreadsheet
-            for (int x = 0; x < width(); x++) { // width - X loop
-                for (int y = 0; y < height(); y++) { // height - Y loop
-                    Cell cell = get(x, y); // getting the cell in location [x][y]
+    /**
+     * Recalculates the given cells - after a change, these are the cells affected by it (see DependencyGraph.affectedBy),
+     * and in eval() these are all the cells of the spreadsheet:
+     * 1. Reset the type of each affected cell (until proven otherwise - In case we get an error in the calculation),
+     *    and forget its computed value.
+     * 2. Order the affected cells topologically, and calculate their depth (see orderByDepth).
+     *    The depth of the precedents that were not affected is already known from the last calculation.
+     * 3. Cells that could not be ordered are part of a cycle (or depend on one) - they get depth -1 and a cycle error.
+     * 4. Evaluate the rest of the cells level by level, according to their depth.
+     * @param affected the keys of the affected cells (the changed cell and its transitive dependents).
+     */
+    private void recalculate(List<Long> affected) {
+        boolean measure = metrics.isEnabled();
+        RecalculationEvent event = new RecalculationEvent();
+        boolean record = event.isEnabled(); // a Flight Recorder recording that includes this event
+        long start = (measure || record) ? System.nanoTime() : 0;
+        if (record) event.begin();
+        long phase = start; // the start time of the current phase (only when recording)
+        long cycles = 0, errors = 0, evaluated = 0;
+        recalculated = affected;
+        if (snapshotTiles != null) {
+            for (Long cell : affected) {
+                changedTiles.add(SheetSnapshot.tileKey(DependencyGraph.keyX(cell), DependencyGraph.keyY(cell)));
+            }
+        }
 
-                    // Skip if cell is null or Text (empty cell data string is set to text) or Number - set depth as 0:
-                    if (cell == null || cell.getType() == Ex2Utils.NUMBER || cell.getType() == Ex2Utils.TEXT) {
-                        if (ans[x][y] == -1)
-                        {
-                            ans[x][y] = 0; // A cell of these types must have a depth of 0
+        // Reset the types of the affected cells:
+        for (Long cell : affected) {
+            resetType(get(DependencyGraph.keyX(cell), DependencyGraph.keyY(cell)));
+            cells.setResult(DependencyGraph.keyX(cell), DependencyGraph.keyY(cell), NOT_COMPUTED, 0);
+        }
+        if (record) {
+            long now = System.nanoTime();
+            event.resetDuration = now - phase;
+            phase = now;
+        }
 
-                            // We calculated a cell
-                            count++;
-                            flagC = true;
-                        }
-                        continue; // moving to the next loop iteration - the next cell, since we confirm it depth
-                    }
+        // Order the cells and calculate their depth:
+        List<List<Long>> levels = orderByDepth(affected);
+        if (record) {
+            long now = System.nanoTime();
+            event.orderDuration = now - phase;
+            phase = now;
+        }
+        updateRangeIndexes();
+
+        // A cycle (or a dependency on a cycle) - mark it with the error appropriate to its cell type.
+        // The type is reset afterwards (so value() can still find the exact error), and only the order keeps the cycle error:
+        for (Long cell : affected) {
+            int x = DependencyGraph.keyX(cell);
+            int y = DependencyGraph.keyY(cell);
+            if (cells.getDepth(x, y) == Ex2Utils.ERR) {
+                markCycle(get(x, y));
+                resetType(get(x, y));
+                updateRangeIndex(cell); // a cell that is not computed is not a valid number in the range index
+                cycles++;
+            }
+        }
+        if (record) {
+            long now = System.nanoTime();
+            event.cyclesDuration = now - phase;
+            phase = now;
+        }
 
-                    // If this cell is still unprocessed (-1) and not text or number:
-                    if (ans[x][y] == -1)
-                    {
-                        // Extract the formula
-                        String cell_data = cell.getData().substring(1);
-                        boolean canProcess = true; // temp bool just for this cell depth calculation
-                        int maxDepth = 0; // Track the maximum depth of dependencies
-
-                        // Iterate the cell string to find all referenced cells
-                        for (int i = 0; i < cell_data.length(); i++) {
-                            if (Character.isLetter(cell_data.charAt(i))) {
-                                int endIndex = i + 1;
-                                // Go over the formula (string) - finding the reference:
-                                while (endIndex < cell_data.length() && Character.isDigit(cell_data.charAt(endIndex))) {
-                                    endIndex++;
-                                }
-
-                                // We will extract the reference within the formula:
-                                String ref = cell_data.substring(i, endIndex);
-                                // convert the coordinates:
-                                CellEntry ce = new CellEntry(ref);
-                                int ce_x = ce.getX();
-                                int ce_y = ce.getY();
-
-                                // Make sure the coordinates are valid and refer to a cell that exists in our table:
-                                if (ce.isValid() && isIn(ce_x,ce_y))
-                                {
-                                    // If any referenced cell is still unprocessed, we can't process this cell yet
-                                    if (ans[ce_x][ce_y] == -1) {
-                                        canProcess = false; // Dependency is unprocessed (in this iteration at least)
-                                        break;
-                                    }
-                                    // Keep track of the maximum depth of referenced cells
-                                    maxDepth = Math.max(maxDepth, ans[ce.getX()][ce.getY()]);
-                                }
-                                // Skipping the string loop to the end of the cell reference:
-                                i = endIndex - 1;
-                            }
-                        }
-
-                        // If the cell dependencies are processed, calculate this cell's depth
-                        if (canProcess) {
-                            ans[x][y] = maxDepth + 1;
-                            count++;
-                            flagC = true;
-                        }
-                    }
+        // Evaluate cells level by level based on their depth.
+        // Cells at the same depth do not depend on each other - in parallel mode a big level is evaluated as one parallel batch,
+        // and invoke() waits for the whole level to finish before we move on to the next one:
+        for (List<Long> level : levels) {
+            if (pool != null && level.size() >= Ex2Utils.PARALLEL_MIN_CELLS) {
+                pool.invoke(new EvalLevel(level, 0, level.size()));
+            }
+            else {
+                for (Long cell : level) {
+                    evalCell(cell);
                 }
             }
-            // Add one to our depth counter - for the next iteration:
-            depth++;
 
-            // If we've gone through all possible depths without resolving all cells, we have a cycle:
-            if (depth > max) {
-                break; // closing the Cells while loop
+            // Update the range index with the new values of the level - only after the whole level is done,
+            // so the index is never updated by two threads at the same time:
+            for (Long cell : level) {
+                updateRangeIndex(cell);
+                if (measure && cells.getTag(DependencyGraph.keyX(cell), DependencyGraph.keyY(cell)) < 0) errors++;
             }
+            evaluated += level.size();
         }
-        // We will make sure that all the cycled cells are marked as follows:
-        // that their value in our depth array remains -1, meaning that we were unable to calculate it.
-        // Changing their Cell type to:
-        // - ERR_IF in case of IF cycle
-        // - ERR_FUNC in case of function cycle
-        // - ERR_CYCLE_FORM in case of formula cycle
-        for (int x = 0; x < width(); x++) { // width - X
-            for (int y = 0; y < height(); y++) { // height - Y
-                if (ans[x][y] == -1)
-                {
-                    String getData_tmp = table[x][x].getData(); // getting cell string data
 
-                    // case of IF cycle
-                    if (getData_tmp.matches("(?i)^=if\\(.*"))
-                    {
-                        table[x][y].setType(Ex2Utils.ERR_IF);
-                        table[x][y].setOrder(Ex2Utils.ERR_IF);
-                    }
+        if (measure || record) {
+            long end = System.nanoTime();
+            int depth = levels.isEmpty() ? 0 : cells.getDepth(DependencyGraph.keyX(levels.get(levels.size() - 1).get(0)), DependencyGraph.keyY(levels.get(levels.size() - 1).get(0)));
+            if (measure) metrics.recordRecalculation(end - start, evaluated, depth, cycles, errors + cycles);
+            if (record) {
+                event.evaluationDuration = end - phase;
+                event.cells = affected.size();
+                event.levels = levels.size();
+                event.maxDepth = depth;
+                event.cycles = (int) cycles;
+                event.parallel = (pool != null);
+                event.commit();
+            }
+        }
+    }
 
-                    // case of function cycle
-                    else if (Arrays.stream(Ex2Utils.FUNCTIONS).anyMatch(func -> getData_tmp.matches("(?i)^=" + func + "\\(.*"))) {
-                        table[x][y].setType(Ex2Utils.ERR_FUNC);
-                        table[x][y].setOrder(Ex2Utils.ERR_FUNC);
-                    }
+    /**
+     * @return the metrics of the recalculations of this spreadsheet - they can be turned off, or published over JMX (see SheetMetrics.register).
+     */
+    public SheetMetrics getMetrics() {
+        return metrics;
+    }
 
-                    // case of formula cycle
-                    else {
-                        table[x][y].setType(Ex2Utils.ERR_CYCLE_FORM);
-                        table[x][y].setOrder(Ex2Utils.ERR_CYCLE_FORM);
-                    }
+    /**
+     * Keeps the range index only while some cell reads a range - a spreadsheet without ranges never pays for updating it.
+     * The first time a range appears, the index is built from the values in the cell store (like the depth index, see depthIndex).
+     * The cells that wait to be evaluated by the current recalculation are not added - they are added when their level is evaluated.
+     * Called before the evaluation starts, so the index is never built by the parallel evaluation of a level.
+     */
+    private void updateRangeIndexes() {
+        if (!graph.hasRanges()) {
+            ranges = null;
+            return;
+        }
+        if (ranges != null) return;
+        ranges = new RangeIndex(width, height);
+        for (Long cell : cells.keys()) {
+            int x = DependencyGraph.keyX(cell), y = DependencyGraph.keyY(cell);
+            // A cell that was not computed and is not in a cycle is evaluated by this recalculation:
+            if (cells.getTag(x, y) == NOT_COMPUTED && cells.getDepth(x, y) != Ex2Utils.ERR) continue;
+            ranges.put(x, y, cells.getTag(x, y) == Ex2Utils.NUMBER, cells.getValue(x, y));
+        }
+    }
+
+    /**
+     * Updates the range index (if it is kept) with the last computed value of a cell (an empty cell is removed from the index).
+     * @param cell the key of the cell (see DependencyGraph.key).
+     */
+    private void updateRangeIndex(long cell) {
+        if (ranges == null) return;
+        int x = DependencyGraph.keyX(cell);
+        int y = DependencyGraph.keyY(cell);
+        if (cells.get(x, y) == null) {
+            ranges.remove(x, y);
+        }
+        else {
+            ranges.put(x, y, cells.getTag(x, y) == Ex2Utils.NUMBER, cells.getValue(x, y));
+        }
+    }
+
+    /**
+     * Evaluates a single cell during a recalculation, sets its order (the depth that orderByDepth calculated), and keeps its computed value.
+     * @param cell the key of the cell (see DependencyGraph.key).
+     */
+    private void evalCell(long cell) {
+        int x = DependencyGraph.keyX(cell);
+        int y = DependencyGraph.keyY(cell);
+
+        // A sampled Flight Recorder event (only when a recording enabled it - see CellEvaluationEvent):
+        CellEvaluationEvent event = new CellEvaluationEvent();
+        boolean record = event.isEnabled() && ThreadLocalRandom.current().nextInt(CellEvaluationEvent.SAMPLE_RATE) == 0;
+        if (record) event.begin();
+
+        storeValue(x, y, eval(x, y));
+        get(x, y).setOrder(cells.getDepth(x, y));
+
+        if (record) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.cell = CellEntry.columnName(x) + y;
+                event.x = x;
+                event.y = y;
+                event.type = get(x, y).getType();
+                event.depth = cells.getDepth(x, y);
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Keeps the computed value of the x,y cell, so the cells that refer to it can read it without calculating it again:
+     * - A numeric result is kept as a double, with the NUMBER tag.
+     * - An error keeps the error type of the cell as its tag.
+     * - Any other result (text, an empty cell) gets the TEXT tag.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param result the value that was calculated by eval(x,y).
+     */
+    private void storeValue(int x, int y, String result) {
+        int type = get(x, y).getType();
+
+        // Formulas, functions and numbers always calculate a number, a condition may also return a text:
+        boolean numeric = (type == Ex2Utils.NUMBER || type == Ex2Utils.FORM || type == Ex2Utils.FUCN_TYPE || (type == Ex2Utils.IF_TYPE && SCell.isNumber(result)));
+        if (result != null && numeric) {
+            cells.setResult(x, y, (byte) Ex2Utils.NUMBER, SCell.parseNumber(result));
+        }
+        else {
+            cells.setResult(x, y, (byte) ((type < 0) ? type : Ex2Utils.TEXT), 0); // all the error types are negative
+        }
+        // The presented value of a condition is kept as it is - it may be a text, that the cell store does not keep:
+        if (type == Ex2Utils.IF_TYPE && result != null) conditionValues.put(DependencyGraph.key(x, y), result);
+    }
+
+    /**
+     * A parallel task that evaluates a part of a depth level - it splits itself in two until the part is small enough.
+     */
+    private class EvalLevel extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<Long> level; // the cells of the level
+        private final int from, to; // the part of the level [from, to)
+
+        EvalLevel(List<Long> level, int from, int to) {
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            // A small part - evaluate it in this thread:
+            if (to - from <= Ex2Utils.PARALLEL_MIN_CELLS) {
+                for (int i = from; i < to; i++) {
+                    evalCell(level.get(i));
                 }
+                return;
             }
+            // Otherwise, split it in two and evaluate both halves in parallel:
+            int middle = (from + to) >>> 1;
+            invokeAll(new EvalLevel(level, from, middle), new EvalLevel(level, middle, to));
         }
+    }
 
-        // return depth array we just finished calculating:
-        return ans;
+    /**
+     * Turns the parallel evaluation on or off.
+     * In parallel mode the cells of each depth level are evaluated by a pool of threads (a level is evaluated only after the previous one is done).
+     * @param threads the number of threads in the pool - 1 (or less) turns the parallel mode off, and evaluation is sequential.
+     */
+    public void setParallelism(int threads) {
+        // Close the old pool (if there is one):
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (threads > 1) {
+            pool = new ForkJoinPool(threads);
+        }
+    }
+
+    /**
+     * @return the number of threads used for evaluation (1 - sequential evaluation).
+     */
+    public int getParallelism() {
+        return (pool == null) ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Orders the given cells topologically, and calculates their depth - every cell is ordered once, and a range is never expanded:
+     * - A depth-first search (with our own stack, so a long chain does not overflow the call stack) orders the precedents of a cell before the cell itself.
+     *   The precedents that are one of the given cells are the direct references that were not ordered yet, and the cells inside a range that were not ordered yet -
+     *   those are found in a CellSet, so only the cells that really wait are visited (and not every cell inside the range).
+     * - The depth of a cell that reads a range is 1 + the maximum depth over the range, found in the depth index (see DepthIndex) in O(log^2) -
+     *   once all the given cells inside the range are ordered, the index holds their new depths.
+     * - A precedent that is still on the stack closes a cycle: the cell gets depth -1, and so do all the cells of the cycle
+     *   (and the cells that depend on them), the same as a cell that reads a cell with depth -1.
+     * The depth of precedents that are not one of the given cells must already be known (from the last calculation).
+     * The depths of the given cells are written into the cell store (and the depth index).
+     * @param keys the keys of the cells to order.
+     * @return the ordered cells grouped by their depth, from the lowest depth to the highest (without the -1 cells and without empty levels) -
+     *         a single change deep inside a long chain creates one level, and not one (empty) level for every depth before it.
+     */
+    private List<List<Long>> orderByDepth(List<Long> keys) {
+        Set<Long> waiting = new HashSet<>(keys); // the given cells that were not reached yet
+        Set<Long> active = new HashSet<>(); // the cells on the stack - reached, but waiting for their precedents
+        // The same cells by their position - only needed if some cell reads a range:
+        CellSet waitingCells = null, activeCells = null;
+        if (graph.hasRanges()) {
+            waitingCells = new CellSet();
+            activeCells = new CellSet();
+            for (Long cell : keys) waitingCells.add(cell);
+        }
+
+        TreeMap<Integer, List<Long>> levels = new TreeMap<>(); // depth -> the cells of that depth
+        Deque<Visit> stack = new ArrayDeque<>();
+        for (Long start : keys) {
+            if (!waiting.contains(start)) continue; // Already ordered as a precedent of another cell
+            stack.push(startVisit(start, waiting, active, waitingCells, activeCells));
+
+            while (!stack.isEmpty()) {
+                Visit visit = stack.peek();
+                Long next = nextPrecedent(visit, waiting, active, waitingCells, activeCells);
+                if (next != null) {
+                    stack.push(startVisit(next, waiting, active, waitingCells, activeCells));
+                    continue;
+                }
+
+                // All the precedents of the cell are ordered - now we can calculate its depth:
+                stack.pop();
+                active.remove(visit.cell);
+                if (activeCells != null) activeCells.remove(visit.cell);
+                int x = DependencyGraph.keyX(visit.cell);
+                int y = DependencyGraph.keyY(visit.cell);
+                int depth = visit.cycle ? Ex2Utils.ERR : cellDepth(x, y);
+                setDepth(x, y, depth);
+
+                // Group the cell by its depth (a cell in a cycle, or that depends on one, has no level):
+                if (depth != Ex2Utils.ERR) {
+                    levels.computeIfAbsent(depth, d -> new ArrayList<>()).add(visit.cell);
+                }
+            }
+        }
+        return new ArrayList<>(levels.values());
+    }
+
+    /**
+     * A cell on the stack of orderByDepth, with the precedents that were already checked.
+     */
+    private static final class Visit {
+        final long cell;
+        final Long[] refs; // the direct references of the cell
+        final List<Range2D> ranges; // the ranges that the cell reads
+        int nextRef = 0, nextRange = 0; // the first reference (and range) that was not checked yet
+        boolean cycle = false; // true if one of the precedents is on the stack
+
+        Visit(long cell, Long[] refs, List<Range2D> ranges) {
+            this.cell = cell;
+            this.refs = refs;
+            this.ranges = ranges;
+        }
+    }
+
+    /**
+     * Moves a cell from the waiting cells to the stack of orderByDepth.
+     * @param cell the key of the cell.
+     * @param waiting the cells that were not reached yet.
+     * @param active the cells on the stack.
+     * @param waitingCells the cells that were not reached yet, by their position (null if no cell reads a range).
+     * @param activeCells the cells on the stack, by their position (null if no cell reads a range).
+     * @return the visit of the cell.
+     */
+    private Visit startVisit(long cell, Set<Long> waiting, Set<Long> active, CellSet waitingCells, CellSet activeCells) {
+        waiting.remove(cell);
+        active.add(cell);
+        if (waitingCells != null) {
+            waitingCells.remove(cell);
+            activeCells.add(cell);
+        }
+        int x = DependencyGraph.keyX(cell), y = DependencyGraph.keyY(cell);
+        return new Visit(cell, graph.getPrecedents(x, y).toArray(new Long[0]), graph.getRanges(x, y));
+    }
+
+    /**
+     * Finds the next precedent of a visited cell that was not reached yet - a direct reference, or a cell inside one of its ranges.
+     * A precedent that is on the stack (a cycle) marks the visit.
+     * @param visit the visit of the cell.
+     * @param waiting the cells that were not reached yet.
+     * @param active the cells on the stack.
+     * @param waitingCells the cells that were not reached yet, by their position (null if no cell reads a range).
+     * @param activeCells the cells on the stack, by their position (null if no cell reads a range).
+     * @return the key of the precedent to order first, or null if all the precedents are ordered.
+     */
+    private Long nextPrecedent(Visit visit, Set<Long> waiting, Set<Long> active, CellSet waitingCells, CellSet activeCells) {
+        while (visit.nextRef < visit.refs.length) {
+            Long ref = visit.refs[visit.nextRef++];
+            if (waiting.contains(ref)) return ref;
+            if (active.contains(ref)) visit.cycle = true;
+        }
+        // A range is checked again until it has no waiting cells (each check finds a different cell, because the found cell is ordered before we come back):
+        while (visit.nextRange < visit.ranges.size()) {
+            Range2D range = visit.ranges.get(visit.nextRange);
+            Long inside = waitingCells.find(range.getStartX(), range.getEndX(), range.getStartY(), range.getEndY(), visit.cell);
+            if (inside != null) return inside;
+            if (activeCells.find(range.getStartX(), range.getEndX(), range.getStartY(), range.getEndY(), visit.cell) != null) visit.cycle = true;
+            visit.nextRange++;
+        }
+        return null;
+    }
+
+    /**
+     * Calculates the depth of a single cell, assuming the depths of all its precedents are already known.
+     * The cells inside a range are never read one by one - the depth index gives their maximum depth.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return 0 for a text or number cell, 1 + the max depth of its precedents otherwise, or -1 if one of its precedents is in a cycle.
+     */
+    private int cellDepth(int x, int y) {
+        Cell cell = get(x, y);
+        if (cell == null || cell.getType() == Ex2Utils.NUMBER || cell.getType() == Ex2Utils.TEXT) return 0;
+
+        int maxDepth = 0;
+        for (Long ref : graph.getPrecedents(x, y)) {
+            int refDepth = cells.getDepth(DependencyGraph.keyX(ref), DependencyGraph.keyY(ref));
+            if (refDepth == Ex2Utils.ERR) return Ex2Utils.ERR; // depends on a cycle
+            maxDepth = Math.max(maxDepth, refDepth);
+        }
+
+        // The cells inside the ranges that this cell reads (an empty cell has depth 0), and never the cell itself:
+        List<Range2D> cellRanges = graph.getRanges(x, y);
+        if (!cellRanges.isEmpty()) {
+            DepthIndex index = depthIndex();
+            if (index.get(x, y) != 0) index.set(x, y, 0); // the old depth of the cell itself must not count
+            for (Range2D range : cellRanges) {
+                int refDepth = index.max(range.getStartX(), range.getEndX(), range.getStartY(), range.getEndY());
+                if (refDepth == Ex2Utils.ERR) return Ex2Utils.ERR; // depends on a cycle
+                maxDepth = Math.max(maxDepth, refDepth);
+            }
+        }
+        return maxDepth + 1;
+    }
+
+    /**
+     * Sets the depth of a cell - in the cell store, and in the depth index (if it was built).
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param depth the depth of the cell.
+     */
+    private void setDepth(int x, int y, int depth) {
+        cells.setDepth(x, y, depth);
+        if (depths != null) {
+            // An empty cell is not kept by the cell store - its depth is 0:
+            int kept = (cells.get(x, y) == null) ? 0 : depth;
+            if (depths.get(x, y) != kept) depths.set(x, y, kept);
+        }
+    }
+
+    /**
+     * @return the depth index of the cells - built from the depths in the cell store the first time a cell that reads a range needs it,
+     *         and kept up to date from then on (a spreadsheet without ranges never builds it).
+     */
+    private DepthIndex depthIndex() {
+        if (depths == null) {
+            depths = new DepthIndex(width, height);
+            for (Long cell : cells.keys()) {
+                int x = DependencyGraph.keyX(cell), y = DependencyGraph.keyY(cell);
+                int depth = cells.getDepth(x, y);
+                if (depth != 0) depths.set(x, y, depth);
+            }
+        }
+        return depths;
+    }
+
+    /**
+     * Updates the references of a cell in our dependency graph - the references in the expression tree of the cell (see Expr),
+     * which are exactly the cells that are read when the cell is calculated.
+     * A range of a function (e.g. "A0:C3") is kept as a single range edge (see DependencyGraph), and is never expanded to the cells inside it.
+     * A range that contains the cell itself is a function error (found by computeFunction), so the cell is never its own dependent through a range.
+     * References to cells that are not in this spreadsheet are ignored.
+     * @param cell a cell of this spreadsheet.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     */
+    private void setReferences(Cell cell, int x, int y) {
+        List<Long> refs = new ArrayList<>();
+        List<Range2D> rangeRefs = new ArrayList<>();
+        // Only a cell that starts with '=' (formula, condition, or function) can refer to other cells:
+        if (cell != null && cell.getData() != null && cell.getData().startsWith("=")) {
+            addReferences(formulaOf(cell), refs, rangeRefs);
+        }
+        graph.setPrecedents(x, y, refs, rangeRefs);
+    }
+
+    /**
+     * Adds the references of an expression tree (and of all its sub-trees) to the lists - recursion on the nodes of the tree.
+     * @param form a node of the expression tree (may be null).
+     * @param refs the list to add the keys (see DependencyGraph.key) of the referenced cells to.
+     * @param rangeRefs the list to add the referenced ranges to.
+     */
+    private void addReferences(Expr form, List<Long> refs, List<Range2D> rangeRefs) {
+        if (form instanceof Expr.Ref) {
+            Expr.Ref ref = (Expr.Ref) form;
+            if (isIn(ref.x, ref.y)) refs.add(DependencyGraph.key(ref.x, ref.y));
+        }
+        else if (form instanceof Expr.BinOp) {
+            addReferences(((Expr.BinOp) form).left, refs, rangeRefs);
+            addReferences(((Expr.BinOp) form).right, refs, rangeRefs);
+        }
+        else if (form instanceof Expr.If) {
+            Expr.If condition = (Expr.If) form;
+            addReferences(condition.left, refs, rangeRefs);
+            addReferences(condition.right, refs, rangeRefs);
+            addReferences(condition.onTrue, refs, rangeRefs);
+            addReferences(condition.onFalse, refs, rangeRefs);
+        }
+        else if (form instanceof Expr.Fun) {
+            // The whole range is a single reference (the parts outside our table are ignored by the graph):
+            rangeRefs.add(((Expr.Fun) form).range);
+        }
+        // Numbers, texts and parsing errors do not refer to any cell.
+    }
+
+    /**
+     * Classifies a cell data that starts with '=' - condition, function or formula.
+     * An SCell already classified its data when it was set, so we will not scan the data again on every calculation.
+     * @param cell a cell.
+     * @return IF_TYPE, FUCN_TYPE or FORM (according to Ex2Utils), or TEXT if the data does not start with '='.
+     */
+    private int formulaType(Cell cell) {
+        if (cell instanceof SCell) return ((SCell) cell).getFormulaType();
+        return SCell.formulaType(cell.getData());
+    }
+
+    /**
+     * Reset a formula cell to its original type - This way we can update in case there are now calculation errors.
+     * We will only need to update the type in cells that may have an error: formulas, conditions, and functions - there is nothing to change about text and numbers.
+     * @param cell the cell to reset.
+     */
+    private void resetType(Cell cell) {
+        if (cell != null && cell.getData() != null && cell.getData().startsWith("=")) {
+            cell.setType(formulaType(cell));
+        }
+    }
+
+    /**
+     * Marks a cell that is part of a cycle (or depends on one) with the error appropriate to its cell type:
+     * - ERR_IF in case of IF cycle
+     * - ERR_FUNC in case of function cycle
+     * - ERR_CYCLE_FORM in case of formula cycle
+     * @param cell the cell to mark.
+     */
+    private void markCycle(Cell cell) {
+        int type = formulaType(cell);
+        int err;
+        if (type == Ex2Utils.IF_TYPE) err = Ex2Utils.ERR_IF;
+        else if (type == Ex2Utils.FUCN_TYPE) err = Ex2Utils.ERR_FUNC;
+        else err = Ex2Utils.ERR_CYCLE_FORM;
+        cell.setType(err);
+        cell.setOrder(err);
     }
 
     /**
@@ -449,17 +986,17 @@ public class Ex2Sheet implements Sheet {
         // If the type of data inside the Cell is number, then we don't need to make any Calculations on the number,
         // just convert it to a double and then return it to a string because that's the format of our method:
         if (get(x,y).getType() == Ex2Utils.NUMBER) {
-            return Double.toString(Double.parseDouble(get(x,y).getData()));
+            return Double.toString(SCell.parseNumber(get(x,y).getData()));
         }
 
         // If the cell type is an IF condition, we will try to calculate it using our condition calculation method.
         // Any error that occurs during the calculation will cause the cell to change type to a condition error.
         else if (get(x,y).getType() == Ex2Utils.IF_TYPE) {
             try {
-                return computeIF(ans,x,y);
-            } catch (StackOverflowError | Exception e) {
-                table[x][y].setType(Ex2Utils.ERR_IF);
-                table[x][y].setOrder(Ex2Utils.ERR_IF);
+                return computeCondition(formulaOf(get(x, y)), x, y);
+            } catch (Exception e) {
+                get(x, y).setType(Ex2Utils.ERR_IF);
+                get(x, y).setOrder(Ex2Utils.ERR_IF);
                 return Ex2Utils.ERR_IF_str;
             }
 
@@ -467,10 +1004,10 @@ public class Ex2Sheet implements Sheet {
         // Any error that occurs during the calculation will cause the cell to change type to a function error.
         } else if (get(x, y).getType() == Ex2Utils.FUCN_TYPE) {
             try {
-                return computeFun(ans,x,y).toString();
-            } catch (StackOverflowError | Exception e) {
-                table[x][y].setType(Ex2Utils.ERR_FUNC);
-                table[x][y].setOrder(Ex2Utils.ERR_FUNC);
+                return computeFunction(formulaOf(get(x, y)), x, y).toString();
+            } catch (Exception e) {
+                get(x, y).setType(Ex2Utils.ERR_FUNC);
+                get(x, y).setOrder(Ex2Utils.ERR_FUNC);
                 return Ex2Utils.ERR_FUCN_str;
             }
         }
@@ -479,11 +1016,11 @@ public class Ex2Sheet implements Sheet {
         // We will try to calculate it, and catch in case of errors:
         else if (get(x,y).getType() == Ex2Utils.FORM) {
             try {
-                return computeForm(ans, x, y).toString(); // We were able to calculate the form!
-            } catch (StackOverflowError e) {
-                // We have infinite recursion - so we have a cell with a circularity error, we will mark it accordingly:
-                table[x][y].setType(Ex2Utils.ERR_CYCLE_FORM);
-                table[x][y].setOrder(Ex2Utils.ERR_CYCLE_FORM);
+                return Double.toString(compute(formulaOf(get(x, y)), x, y)); // We were able to calculate the form!
+            } catch (CycleException e) {
+                // We have a circularity (a reference to itself, or to a cell in a cycle) - so we have a cell with a circularity error, we will mark it accordingly:
+                get(x, y).setType(Ex2Utils.ERR_CYCLE_FORM);
+                get(x, y).setOrder(Ex2Utils.ERR_CYCLE_FORM);
                 return Ex2Utils.ERR_CYCLE;
             } catch (Exception e) {
                 // There is an error, so you need to change the type of the cell, and print that there is an error in the cell,
@@ -498,6 +1035,32 @@ public class Ex2Sheet implements Sheet {
         return null;
     }
 
+    /**
+     * Thrown by compute when a formula reads itself, or a cell in a cycle - a circularity error (ERR_CYCLE) and not a formula error.
+     * A real StackOverflowError is never caught as a cycle: the parsed formulas are never too deep to evaluate (see Ex2Utils.MAX_FORMULA_DEPTH),
+     * and a chain of references is evaluated in order, without recursion.
+     * In a condition or a function, it is an error of the condition (or the function) like any other exception.
+     */
+    private static final class CycleException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CycleException() {
+            super("ERR_CYCLE_FORM", null, false, false); // thrown for every cell of a cycle - no stack trace is needed
+        }
+    }
+
+    /**
+     * Returns the parsed expression tree of a cell - the tree that SCell keeps, so the data is never parsed again.
+     * @param cell a cell of this spreadsheet.
+     * @return the expression tree of the cell data (null for text and numbers).
+     */
+    private Expr formulaOf(Cell cell) {
+        boolean parsed = cell instanceof SCell;
+        if (metrics.isEnabled()) metrics.recordParse(parsed);
+        if (parsed) return ((SCell) cell).getFormula();
+        return Expr.compile(cell.getData()); // Another implementation of Cell - we have to parse its data
+    }
+
     /**
      * computeForm is a method that Tries to calculate the value of a valid formula, if something fails it throws an error
      * meaning assume we got a valid formula in the string, and throw an error if necessary.
@@ -507,98 +1070,63 @@ public class Ex2Sheet implements Sheet {
      * @return The result of the formula - number (Double)!
      */
     Double computeForm(String form, int x, int y) {
-        // empty String isn't valid:
-        if ((form == null) || form.isEmpty()) throw new IllegalArgumentException("invalid value");
-
-        // we got to have '=' char at the beginning of the String:
-        if (form.charAt(0) != '=') {
-            throw new IllegalArgumentException("invalid value");
-        } else {
-            form = form.substring(1); // Remove the '=' char, if necessary we will put it back (recursion)
-            form = form.replaceAll("\\s",""); // We will delete all the space chars in the String.
-        }
-
-        // If we reach a valid number, we will return its value
-        if (SCell.isNumber(form)) return Double.parseDouble(form);
-
-        // Calculate the length of the string
-        int formLength = form.length();
-
-        // In case we have an operator at the beginning of the formula, we will add a zero to prevent errors.
-        if (form.charAt(0) == '+' || form.charAt(0) == '-')
-        {
-            form = "0" + form;
-        }
+        return compute(Expr.parseForm(form), x, y);
+    }
 
-        // Let's see if we have parentheses that enclose the entire formula - In that case, we'll take them off and count what's inside.
-        // We use the method we prepared below: BracketEndInd
-        if (form.charAt(0) == '(') {
-            if (BracketEndInd(form.substring(1)) == formLength - 2)
-            {
-                return computeForm("=" + form.substring(1, formLength - 1), x,y);
-            }
-        }
+    /**
+     * Walks the expression tree of a formula and calculates its value (recursion on the operations).
+     * @param form a node of the expression tree.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return The result of the formula.
+     */
+    private double compute(Expr form, int x, int y) {
+        // A number - we will return its value:
+        if (form instanceof Expr.Num) return ((Expr.Num) form).value;
 
-        // Check if it's a cell reference:
-        if (form.matches("^[a-zA-Z]{1}\\d{0,3}$"))
-        {
-            // create an object for the coordinates we are referring to:
-            CellEntry ref_cell = new CellEntry(form);
-            if (!ref_cell.isValid()) throw new IllegalArgumentException("Invalid cell reference");
-            int Cord_ref_x = ref_cell.getX();
-            int Cord_ref_y = ref_cell.getY();
+        // A cell reference:
+        if (form instanceof Expr.Ref) {
+            int Cord_ref_x = ((Expr.Ref) form).x;
+            int Cord_ref_y = ((Expr.Ref) form).y;
 
             // check if the coordinates we received are in our table at all
             if (!isIn(Cord_ref_x, Cord_ref_y)) throw new IllegalArgumentException("Invalid cell reference");
 
-            // extract the cell to which we are referring:
-            Cell referencedCell = get(form);
-
             // See if the reference is to the cell we are calculating in - there is a circularity error:
-            if (x == Cord_ref_x && y == Cord_ref_y) throw new StackOverflowError("ERR_CYCLE_FORM");
+            if (x == Cord_ref_x && y == Cord_ref_y) throw new CycleException();
 
             // If the cell is empty - then there is a calculation error in the cell's formula.
-            if (referencedCell == null) throw new IllegalArgumentException("Invalid cell reference");
-
-            try {
-                // We will try to get the numerical value of the cell we are referring to:
-                String value = eval(new CellEntry(form).getX(), new CellEntry(form).getY());
-
-                // If the value we received from the other cell is empty, then there was a calculation error or the cell is empty,
-                // therefore we also have a calculation error in our cell formula:
-                if (value == null || value.equals(Ex2Utils.ERR_FORM)) throw new IllegalArgumentException("Invalid cell reference");
-
-                // If we were able to get a numeric value, then we will return it.
-                return Double.parseDouble(value);
-            }
-            catch (StackOverflowError e) {
-                // We have infinite recursion - so we have a cell with a circularity error, we will mark it accordingly:
-                throw new StackOverflowError("ERR_CYCLE_FORM");
-            }
+            if (get(Cord_ref_x, Cord_ref_y) == null) throw new IllegalArgumentException("Invalid cell reference");
+
+            // If the cell was already computed, we will read its value instead of calculating it again:
+            byte tag = cells.getTag(Cord_ref_x, Cord_ref_y);
+            if (tag == Ex2Utils.NUMBER) return cells.getValue(Cord_ref_x, Cord_ref_y);
+            if (tag != NOT_COMPUTED) throw new IllegalArgumentException("Invalid cell reference"); // a text or an error is not a number
+
+            // Otherwise the cell was not computed - we will not calculate it here (recursion on a long chain of references would overflow the stack).
+            // The recalculation computes every cell after all its precedents (see orderByDepth), so the only cells that are not computed
+            // are the cells that the topological order found in a cycle (or depending on one) - a real circularity error:
+            if (cells.getDepth(Cord_ref_x, Cord_ref_y) == Ex2Utils.ERR) throw new CycleException();
+            throw new IllegalArgumentException("Invalid cell reference");
         }
 
-        // Find the index of the "main operation" using the indexOfMainOp method
-        int mainOpIn = indexOfMainOp(form);
-        // If no operators are found - we will throw an error
-        if (mainOpIn == -1) throw new IllegalArgumentException("invalid value");
-
-        // We will split our string into two separate strings, according to the operator we found
-        String firstPart = form.substring(0, mainOpIn);
-        String secondPart = form.substring(mainOpIn + 1);
-        char operator = form.charAt(mainOpIn);
-
-        // We will perform the connection between the parts - according to the operator, each part will be calculated in this method again (recursion):
-        return switch (operator) {
-            case '+' -> (computeForm("=" + firstPart, x, y)) + (computeForm("=" + secondPart, x, y));
-            case '-' -> (computeForm("=" + firstPart, x, y)) - (computeForm("=" + secondPart, x, y));
-            case '*' -> (computeForm("=" + firstPart, x, y)) * (computeForm("=" + secondPart, x, y));
-            case '/' -> (computeForm("=" + firstPart, x, y)) / (computeForm("=" + secondPart, x, y));
-            default ->
+        // An operation - each part will be calculated in this method again (recursion):
+        if (form instanceof Expr.BinOp) {
+            Expr.BinOp op = (Expr.BinOp) form;
+            return switch (op.op) {
+                case '+' -> compute(op.left, x, y) + compute(op.right, x, y);
+                case '-' -> compute(op.left, x, y) - compute(op.right, x, y);
+                case '*' -> compute(op.left, x, y) * compute(op.right, x, y);
+                case '/' -> compute(op.left, x, y) / compute(op.right, x, y);
+                default -> throw new IllegalArgumentException("invalid value");
+            };
+        }
 
-                // If there is any problem - we will throw an error:
-                    throw new IllegalArgumentException("invalid value");
-        };
+        // A parsing error:
+        if (form instanceof Expr.Invalid) throw new IllegalArgumentException(((Expr.Invalid) form).message);
 
+        // If there is any other problem (not a formula at all) - we will throw an error:
+        throw new IllegalArgumentException("invalid value");
     }
 
     /**
@@ -607,35 +1135,7 @@ public class Ex2Sheet implements Sheet {
      * @return The index of the main arithmetic operation in the formula
      */
     int indexOfMainOp(String form) {
-        // A counter that will help us track parentheses - we will track when parentheses open and close, and thus we will ignore what is inside, so that what is inside the parentheses will be calculated in the following iterations (according to the recursion):
-        int bracketCounter = 0;
-
-        // The index of the main operator, -1 as an initial value (will be returned -1 in case we found no operator or an error)
-        int mainOpIndex = -1;
-
-        // We will represent each operator with its weight, we will start with a high starting value above all of them. so we can find the operator with the lowest priority ("Main")
-        int minPriority = 4;
-
-        // We will loop over the string:
-        for (int i = 0; i < form.length(); i++) {
-            char c = form.charAt(i);
-
-            // We will ignore what is found inside parentheses as we explained
-            if (c == '(') {
-                bracketCounter++;
-            } else if (c == ')') {
-                bracketCounter--;
-            } else if (bracketCounter == 0) {
-                // We will check the operator's priority order:
-                int priority = getOperatorPriority(c);
-                if (priority != -1 && priority <= minPriority) {
-                    // The main operation is found (until proven else) - we will return the index
-                    mainOpIndex = i;
-                    minPriority = priority;
-                }
-            }
-        }
-        return mainOpIndex;
+        return Expr.indexOfMainOp(form);
     }
 
     /**
@@ -644,18 +1144,7 @@ public class Ex2Sheet implements Sheet {
      * @return Its precedence as an arithmetic operator
      */
     int getOperatorPriority(char operator) {
-        return switch (operator) {
-            //first priority is '+' and '-'
-            case '+' -> 1;
-            case '-' -> 1;
-
-            //second priority is '*' and '/'
-            case '*' -> 2;
-            case '/' -> 2;
-
-            // in case of a number (not an operator)
-            default -> -1;
-        };
+        return Expr.getOperatorPriority(operator);
     }
 
     /**
@@ -664,17 +1153,7 @@ public class Ex2Sheet implements Sheet {
      * @return int an index in String form that Where do the parentheses that were opened at the beginning close.
      */
     int BracketEndInd(String form) {
-        // We will use a counter to count how many opening and closing parentheses there are in this string:
-        int counter = 0;
-        for (int i = 0; i < form.length(); i++) {
-            if (form.charAt(i) == '(') counter++;
-            if (form.charAt(i) == ')') {
-                if (counter == 0) return i;
-                counter--;
-            }
-        }
-        // In case of a fault string:
-        throw new IllegalArgumentException("invalid value");
+        return Expr.bracketEndInd(form);
     }
 
 
@@ -686,68 +1165,73 @@ public class Ex2Sheet implements Sheet {
      * @return the value to print according to the condition
      */
     String computeIF (String form, int x, int y) {
-        // empty String isn't valid:
-        if ((form == null) || form.isEmpty()) throw new IllegalArgumentException("invalid value");
-
-        // For a valid condition string, the string needs to start with "=if(" and end with ")".
-        // We will throw an error if the string does not meet these conditions
-        // let's use matches in order to cover lowercase and uppercase letters together
-        if ((!form.matches("(?i)^=if\\(.*")) || (!form.endsWith(")"))) {
-            throw new IllegalArgumentException("Invalid IF format");
-        }
-
-        form = form.substring(4,form.length()-1); // Remove the '=if' chars
-        form = form.replaceAll("\\s",""); // delete all the space chars in the String
-
-        // Split the string by commas - as the conditional format.
-        // we will use regex to ignore commas if they are inside parentheses, so we can support nested conditions
-        String[] parts = form.split(",(?![^()]*\\))");
-        // If there are not exactly three commas then the condition does not meet the format
-        if (parts.length != 3) throw new IllegalArgumentException("Invalid IF format");
-
-        // We will create variables for each part of the condition
-        String condition = parts[0].trim();
-        String ifTrue = parts[1].trim();
-        String ifFalse = parts[2].trim();
+        return computeCondition(Expr.parseIF(form), x, y);
+    }
 
-        // We will create a CellEntry object to check whether our cell appears within our condition string
-        // in that case we have a circular error - we will throw an error.
-        CellEntry xyCell = new CellEntry(x, y);
-        String toCellName = xyCell.toString();
-        if (condition.contains(toCellName) || ifTrue.contains(toCellName) || ifFalse.contains(toCellName)) {
+    /**
+     * Calculates a parsed condition (expression tree), and returns the calculated result - ready to print.
+     * @param form the expression tree of a condition.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the value to print according to the condition
+     */
+    String computeCondition (Expr form, int x, int y) {
+        // A parsing error, or not a condition at all:
+        if (form instanceof Expr.Invalid) throw new IllegalArgumentException(((Expr.Invalid) form).message);
+        if (!(form instanceof Expr.If)) throw new IllegalArgumentException("Invalid IF format");
+        Expr.If condition = (Expr.If) form;
+
+        // If our cell is referenced by our condition (or by one of its results) - we have a circular error, we will throw an error.
+        if (containsCell(condition, x, y)) {
             throw new IllegalArgumentException("Self-referencing IF error");
         }
 
-        // evaluate condition and set the appropriate string result value:
-        String SelectedAction;
-        if (evaluateCondition(condition, x, y)) {
-            SelectedAction = ifTrue;
-        } else {
-            SelectedAction = ifFalse;
-        }
-
-        // We will classify what type of data we received in the result, using the methods of the SCell class.
-        SCell result_of_if = new SCell(SelectedAction);
+        // evaluate condition and calculate the appropriate result:
+        Expr selectedAction = evaluateCondition(condition, x, y) ? condition.onTrue : condition.onFalse;
 
-        return switch (result_of_if.getType()) {
-            // In the case of a formula, we calculate it using the appropriate method:
-            case Ex2Utils.FORM -> Double.toString(computeForm(SelectedAction, x, y));
+        // A text or a number - ready to print:
+        if (selectedAction instanceof Expr.Text) return ((Expr.Text) selectedAction).text;
 
-            // In the case of a number, let's parse the number to Double, then parse it to String:
-            case Ex2Utils.NUMBER -> Double.toString(Double.parseDouble(SelectedAction));
+        // In the case of a condition, we calculate it using the appropriate method (nested condition):
+        if (selectedAction instanceof Expr.If) return computeCondition(selectedAction, x, y);
 
-            // In the case of a text, let's return the test String as is:
-            case Ex2Utils.TEXT -> SelectedAction;
+        // In the case of a function, we calculate it using the appropriate method:
+        if (selectedAction instanceof Expr.Fun) return computeFunction(selectedAction, x, y).toString();
 
-            // In the case of a condition, we calculate it using the appropriate method (nested condition):
-            case Ex2Utils.IF_TYPE -> computeIF(SelectedAction, x, y);
+        // In the case of a parsing error (including error type) - we will push an error:
+        if (selectedAction instanceof Expr.Invalid) throw new IllegalArgumentException(((Expr.Invalid) selectedAction).message);
 
-            // In the case of a function, we calculate it using the appropriate method:
-            case Ex2Utils.FUCN_TYPE -> computeFun(SelectedAction, x, y).toString();
+        // In the case of a formula, we calculate it using the appropriate method:
+        return Double.toString(compute(selectedAction, x, y));
+    }
 
-            // In case of undefined content type (including error type) - we will push an error:
-            default -> throw new IllegalArgumentException("Invalid IF arguments");
-        };
+    /**
+     * Checks whether a parsed expression refers to the x,y cell - a reference to it, or a range that contains it.
+     * Only the parsed references count, so "AA1" is not a reference to "A1", and a text result that looks like a cell name is just a text.
+     * @param form a node of the expression tree (null - nothing).
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return true if the expression refers to the x,y cell.
+     */
+    private static boolean containsCell(Expr form, int x, int y) {
+        if (form instanceof Expr.Ref) {
+            Expr.Ref ref = (Expr.Ref) form;
+            return ref.x == x && ref.y == y;
+        }
+        if (form instanceof Expr.BinOp) {
+            Expr.BinOp op = (Expr.BinOp) form;
+            return containsCell(op.left, x, y) || containsCell(op.right, x, y);
+        }
+        if (form instanceof Expr.Fun) {
+            Range2D range = ((Expr.Fun) form).range;
+            return x >= range.getStartX() && x <= range.getEndX() && y >= range.getStartY() && y <= range.getEndY();
+        }
+        if (form instanceof Expr.If) {
+            Expr.If condition = (Expr.If) form;
+            return containsCell(condition.left, x, y) || containsCell(condition.right, x, y)
+                    || containsCell(condition.onTrue, x, y) || containsCell(condition.onFalse, x, y);
+        }
+        return false; // a number, a text or a parsing error
     }
 
     /**
@@ -758,47 +1242,62 @@ public class Ex2Sheet implements Sheet {
      * @return the result of the function calculation
      */
     Double computeFun (String form, int x, int y) {
-        // empty String isn't valid:
-        if ((form == null) || form.isEmpty()) throw new IllegalArgumentException("invalid value");
-
-        // First, we will loop over the various functions that are predefined for us, so we can easily perform our calculations and tests:
-        for (int Function = 0; Function < Ex2Utils.FUNCTIONS.length; Function++) {
-
-            // For a valid function string, the string needs to start with "=<FUNCTION>(" and end with ")".
-            // We will throw an error if the string does not meet these conditions
-            // let's use matches in order to cover lowercase and uppercase letters together
-            if ((form.matches("(?i)^=" + Ex2Utils.FUNCTIONS[Function]+ "\\(.*")) && (form.endsWith(")")))
-            {
-                // We will remove the beginning of the string: "=<FUNCTION>(" and the ")" at the end. so we are left only with the range "Xnn:Ynn" (nn is a number for the Y-cord).
-                int selectRMV = Ex2Utils.FUNCTIONS[Function].length()+2;
-                form = form.substring(selectRMV,form.length()-1);
-
-                // We will create an object of the range, and insert the range we received in the string (according to the format, this is what should remain in the string as we said)
-                Range2D range = new Range2D(form);
-
-                // We will throw an error in the following cases:
-                // - If the string is not formatted correctly / invalid range
-                // - Our cell is within the range - function cycle error
-                // - The range is inside our table (It is enough to check the last index and if it does not exceed then the starting index must also be smaller than it so it does not exceed)
-                if (!range.isValidRange() || range.insideRange(x,y) || !isIn(range.getEndX(),range.getEndY())) {
-                    throw new IllegalArgumentException("Invalid range");
-                }
+        return computeFunction(Expr.parseFun(form), x, y);
+    }
 
-                // We will convert the range to a list, so we can easily perform function calculations on it:
-                List<Double> AllCellRange = getRangeCells(range);
+    /**
+     * Calculates a parsed function (expression tree), According to its range and according to predefined functions
+     * @param form the expression tree of a function.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the result of the function calculation
+     */
+    Double computeFunction (Expr form, int x, int y) {
+        // In case of a parsing error, we will define the cell with a function error and throw an error:
+        if (!(form instanceof Expr.Fun)) {
+            get(x, y).setType(Ex2Utils.ERR_FUNC);
+            throw new IllegalArgumentException(form instanceof Expr.Invalid ? ((Expr.Invalid) form).message : "Invalid function format");
+        }
+        Expr.Fun function = (Expr.Fun) form;
+        Range2D range = function.range;
+
+        // We will throw an error in the following cases:
+        // - Our cell is within the range - function cycle error
+        // - The range is inside our table (It is enough to check the last index and if it does not exceed then the starting index must also be smaller than it so it does not exceed)
+        if (range.insideRange(x,y) || !isIn(range.getEndX(),range.getEndY())) {
+            throw new IllegalArgumentException("Invalid range");
+        }
 
-                // The range is correct, so we send it to the appropriate function for calculation:
-                switch (Function) {
-                    case 0: return Ex2Utils.sum(AllCellRange);
-                    case 1: return Ex2Utils.average(AllCellRange);
-                    case 2: return Ex2Utils.min(AllCellRange);
-                    case 3: return Ex2Utils.max(AllCellRange);
-                }
+        // A function over a big range - we will use the range index, as long as all the populated cells in the range are numbers
+        // (otherwise, we will read the cells one by one, to find the exact error).
+        // Like the functions of Ex2Utils, the result of an empty range is 0:
+        long rangeSize = (long) (range.getEndX() - range.getStartX() + 1) * (range.getEndY() - range.getStartY() + 1);
+        if (rangeSize >= Ex2Utils.RANGE_INDEX_MIN_CELLS && ranges != null) {
+            RangeIndex.Summary summary = ranges.query(range);
+            if (summary.invalid == 0) {
+                if (metrics.isEnabled()) metrics.recordRangeIndexQuery();
+                if (summary.count == 0) return 0.0;
+                return switch (function.function) {
+                    case 0 -> summary.sum;
+                    case 1 -> summary.sum / summary.count;
+                    case 2 -> summary.min;
+                    case 3 -> summary.max;
+                    default -> throw new IllegalArgumentException("Invalid function format");
+                };
             }
         }
-        // In case we get here there is an error, we will define the cell with a function error and throw an error:
-        table[x][y].setType(Ex2Utils.ERR_FUNC);
-        throw new IllegalArgumentException("Invalid function format");
+
+        // We will convert the range to a list, so we can easily perform function calculations on it:
+        List<Double> AllCellRange = getRangeCells(range);
+
+        // The range is correct, so we send it to the appropriate function for calculation:
+        return switch (function.function) {
+            case 0 -> Ex2Utils.sum(AllCellRange);
+            case 1 -> Ex2Utils.average(AllCellRange);
+            case 2 -> Ex2Utils.min(AllCellRange);
+            case 3 -> Ex2Utils.max(AllCellRange);
+            default -> throw new IllegalArgumentException("Invalid function format");
+        };
     }
 
     /**
@@ -813,23 +1312,20 @@ public class Ex2Sheet implements Sheet {
         // first let's creat an ArrayList:
         List<Double> AllCellRange = new ArrayList<>();
 
-        // We will go through all the cells in our range, according to our EX2Sheet class's table.
-        for (int i = range.getStartX(); i <= range.getEndX(); i++) { // X-cord
-            for (int j = range.getStartY(); j <= range.getEndY(); j++) { // Y-cord
-                if (isIn(i,j)) // Making sure we are within range, to avoid an array out of index error
-                {
-                    // We will convert the content we have in this cell
-                    // as long as it is not empty, because an empty cell is defined as text, but we will simply ignore them as we defined
-                    try {
-                        if ((table[i][j].getData() != null) && (!Objects.equals(table[i][j].getData(), ""))) {
-                            AllCellRange.add(Double.parseDouble(value(i, j)));
-                        }
-                    }
-                    // If we had an error converting to a numeric value of type Double - there is a text cell - we will throw an error:
-                    catch (Exception e) {
-                        throw new IllegalArgumentException("Invalid range - computable (numerical) value only");
-                    }
-                }
+        // We will go through all the populated cells in our range (an empty cell is defined as text, but we will simply ignore them as we defined),
+        // in the same order as the table: column by column (X-cord), and row by row (Y-cord) inside each column.
+        // Only the populated cells are visited, so a huge range with a few cells is read quickly:
+        List<Long> populated = cells.keysIn(range.getStartX(), range.getEndX(), range.getStartY(), range.getEndY());
+        Collections.sort(populated);
+        if (metrics.isEnabled()) metrics.recordRangeScan(populated.size());
+        for (Long cell : populated) {
+            int i = DependencyGraph.keyX(cell);
+            int j = DependencyGraph.keyY(cell);
+            if (isIn(i, j)) { // Making sure we are within range
+                // We will read the computed value of the cell instead of calculating it again (like a cell reference, see compute) -
+                // if it is not a number (a text, an error, or a cell in a cycle that was not computed) we will throw an error:
+                if (cells.getTag(i, j) != Ex2Utils.NUMBER) throw new IllegalArgumentException("Invalid range - computable (numerical) value only");
+                AllCellRange.add(cells.getValue(i, j));
             }
         }
 
@@ -838,35 +1334,18 @@ public class Ex2Sheet implements Sheet {
     }
 
     /**
-     * This method parses a conditional expression (e.g., "A1*2 > B2") and evaluates it as true or false.
+     * This method evaluates a parsed condition (e.g., "A1*2 > B2") as true or false.
      * It supports the following operators: <, >, ==, <=, >=, !=.
      * The operands in the condition can be either numerical values (formula or number).
      * If the condition format is invalid, or if it references a non-computable value, an error is thrown.
-     * @param condition A String representing the condition to be evaluated (e.g. "A1 > B2").
+     * @param condition the parsed condition.
      * @param x integer, x-coordinate of the cell.
      * @param y integer, y-coordinate of the cell.
      * @return true if the condition is "satisfied", false otherwise.
      */
-    private boolean evaluateCondition(String condition, int x, int y) {
-        Integer selectedOP = null; // the operator of the condition, according to Ex2Utils.B_OPS array
-
-        // Searches for the operator within the string:
-        for (int i = 0; i < Ex2Utils.B_OPS.length; i++) {
-            if (condition.contains(Ex2Utils.B_OPS[i])) {
-                // We found an operator, let's save it and break out of the loop
-                selectedOP = i;
-                break;
-            }
-        }
-
-        // We will throw an error if we do not find an operator.
-        if (selectedOP == null) throw new IllegalArgumentException("Invalid IF format");
-
-        // We will split the string according to the operator
-        String[] ConditionParts = condition.split(Ex2Utils.B_OPS[selectedOP]);
-
-        // In case we did not get exactly two parts from the string division by the operator - we will throw an error.
-        if (ConditionParts.length != 2) throw new IllegalArgumentException("Invalid IF format");
+    private boolean evaluateCondition(Expr.If condition, int x, int y) {
+        // We will throw an error if we did not find an operator (or did not get exactly two parts):
+        if (condition.op == -1) throw new IllegalArgumentException("Invalid IF format");
 
         // Numeric variables for both parts of the condition
         double val1,val2;
@@ -874,14 +1353,14 @@ public class Ex2Sheet implements Sheet {
         // We will try to calculate the numerical value of both parts of the condition
         // - in case of an error in the calculation we will throw an error
         try {
-            val1 = computeForm("=" + ConditionParts[0], x, y);
-            val2 = computeForm("=" + ConditionParts[1], x, y);
+            val1 = compute(condition.left, x, y);
+            val2 = compute(condition.right, x, y);
         } catch (Exception e) {
             throw new IllegalArgumentException("Invalid IF format");
         }
 
         // We will perform the comparison according to the requested operator - and return True or false value accordingly:
-        return switch (selectedOP) {
+        return switch (condition.op) {
             case 0 -> val1 <= val2;
             case 1 -> val1 >= val2;
             case 2 -> val1 < val2;
@@ -892,71 +1371,102 @@ public class Ex2Sheet implements Sheet {
         };
     }
 
+    /**
+     * Takes an immutable snapshot of this spreadsheet - its cells and their presented values, as they are now (see SheetSnapshot).
+     * The snapshot shares with the previous snapshot all the tiles (TILE_SIZE x TILE_SIZE cells) that were not changed since it was taken,
+     * so only the changed tiles are copied - the first snapshot copies all the populated cells.
+     * The tiles are kept in a persistent map (see PersistentLongMap), so a snapshot costs O(changed tiles * log(tiles)), and not the number of tiles.
+     * The values are the results of the last recalculation (see storedValue) - taking a snapshot never calculates a formula again.
+     * Later changes to this spreadsheet never change a snapshot that was already taken.
+     * @return a read-only copy of this spreadsheet.
+     * @throws IllegalStateException if a batch is in progress (its changes are not calculated yet).
+     */
+    public SheetSnapshot snapshot() {
+        if (pending != null) throw new IllegalStateException("A snapshot can not be taken in the middle of a batch");
+
+        PersistentLongMap<CellView[]> tiles;
+        if (snapshotTiles == null) {
+            // The first snapshot - we will copy all the populated cells:
+            tiles = PersistentLongMap.empty();
+            for (Long key : cells.keys()) {
+                changedTiles.add(SheetSnapshot.tileKey(DependencyGraph.keyX(key), DependencyGraph.keyY(key)));
+            }
+        }
+        else {
+            // Share the tiles of the previous snapshot - the map is persistent, so a change copies only the path to its tile:
+            tiles = snapshotTiles;
+        }
+
+        // Copy the changed tiles from scratch - the tiles of the previous snapshot are never changed:
+        for (Long tileKey : changedTiles) {
+            CellView[] tile = copyTile(DependencyGraph.keyX(tileKey), DependencyGraph.keyY(tileKey));
+            if (tile != null) tiles = tiles.with(tileKey, tile);
+            else tiles = tiles.without(tileKey); // A tile without cells is not kept
+        }
+        changedTiles.clear();
+        snapshotTiles = tiles;
+        return new SheetSnapshot(width, height, tiles);
+    }
+
+    /**
+     * Copies the views of the populated cells of a single tile.
+     * @param tileX the x-coordinate of the tile (the x-coordinate of its cells divided by TILE_SIZE).
+     * @param tileY the y-coordinate of the tile.
+     * @return the views of the cells of the tile (null - an empty cell), or null if all the cells of the tile are empty.
+     */
+    private CellView[] copyTile(int tileX, int tileY) {
+        int startX = tileX * SheetSnapshot.TILE_SIZE, startY = tileY * SheetSnapshot.TILE_SIZE;
+        List<Long> keys = cells.keysIn(startX, startX + SheetSnapshot.TILE_SIZE - 1, startY, startY + SheetSnapshot.TILE_SIZE - 1);
+        if (keys.isEmpty()) return null;
+
+        CellView[] tile = new CellView[SheetSnapshot.TILE_CELLS];
+        for (Long key : keys) {
+            int x = DependencyGraph.keyX(key);
+            int y = DependencyGraph.keyY(key);
+            tile[SheetSnapshot.tileIndex(x, y)] = CellView.of(cells.get(x, y), storedValue(x, y));
+        }
+        return tile;
+    }
+
     /**
      * Load the content of a saved SpreadSheet into this SpreadSheet.
      * all the old cells in before the load operation will be cleared.
      * file format is, when n is the line index n > 0:
      * line 0 : header line
      * line n : <x>,<y>, The cell String, remarks (not to be parsed).
-     * We will use BufferedReader so we can get a line for each cell.
+     * The file is streamed in chunks, and the lines are parsed straight from the bytes (see TextSheetReader).
      * @param fileName a String representing the full (an absolute or relative path to the loaded file).
      * @throws IOException an exception might be throed if the file can not be loaded.
      */
     @Override
     public void load(String fileName) throws IOException {
-        // Create a BufferedReader to read lines from the file (try-catch in case of error)
-        try (BufferedReader loader = new BufferedReader(new FileReader(fileName))) {
-            String line; // the Cell raw data.
-            int lineCount = 0; // line counter.
-
-            // Reset all cells to empty cell:
-            for (int i = 0; i < width(); i++) {
-                for (int j = 0; j < height(); j++) {
-                    table[i][j] = new SCell(Ex2Utils.EMPTY_CELL);
-                }
-            }
-
-            // Read the file line by line
-            while ((line = loader.readLine()) != null) {
-                lineCount++; // Starting the line count form 1: first line (header) is 1.
-
-                // Skip header line
-                if (lineCount == 1) {
-                    continue;
-                }
-
-                // Split only for the first three parts (x, y, content) - This way we can ignore any comma that appears in the cell content itself (for example in a conditional cell).
-                String[] parts = line.split(",", 3);
-
-                // Skip invalid lines
-                if (parts.length < 3) {
-                    continue;
-                }
-
-                try {
-                    // Parse x and y coordinates, trimming any whitespace
-                    int x = Integer.parseInt(parts[0].trim());
-                    int y = Integer.parseInt(parts[1].trim());
-
-                    // Extract cell content and clean it
-                    String content = parts[2].trim();
-
-                    // if X and Y coordinates are valid
-                    if (isIn(x, y)) {
-                        // Set the cell content with the file data
-                        table[x][y] = new SCell(content);
-                    }
-                } catch (NumberFormatException e) {
-                    // Skip lines with invalid number format or readline errors.
-                    continue;
-                }
-            }
-            // Closing the reader
-            loader.close();
+        load(fileName, null);
+    }
 
-            // Recalculate all cells after loading
-            eval();
-        }
+    /**
+     * Load the content of a saved SpreadSheet into this SpreadSheet (see load), and report the progress while loading.
+     * The old cells are replaced only when the whole file was read - if reading fails, this spreadsheet is left as it was.
+     * @param fileName a String representing the full (an absolute or relative path to the loaded file).
+     * @param progress receives the part of the file that was read so far (between 0 and 1), and 1 when the cells are recalculated - or null.
+     * @throws IOException an exception might be throed if the file can not be loaded.
+     */
+    public void load(String fileName, DoubleConsumer progress) throws IOException {
+        // Read the cells into a new store - cells that are not in this spreadsheet are ignored:
+        CellStore loaded = new CellStore();
+        TextSheetReader.read(fileName, (x, y, cell) -> {
+            if (isIn(x, y)) loaded.put(x, y, cell);
+        }, progress);
+
+        // Replace the cells (the next snapshot is taken from scratch):
+        cells = loaded;
+        snapshotTiles = null;
+        changedTiles.clear();
+
+        // Recalculate all cells after loading
+        eval();
+        // The journal can not describe a load as changes - we will start it again from a new checkpoint:
+        if (journal != null) journal.checkpoint();
+        if (progress != null) progress.accept(1);
     }
 
     /**
@@ -971,27 +1481,78 @@ public class Ex2Sheet implements Sheet {
      */
     @Override
     public void save(String fileName) throws IOException {
+        // The populated cells of the cell store are already sorted by X and then by Y:
+        writeCells(fileName, cells.keys(), this);
+    }
+
+    /**
+     * Writes cells into a text file in the format of save - the header line, and then a line for every cell that is not empty.
+     * Both save and SheetSnapshot.save write their files here, so the two files are always the same.
+     * @param fileName a String representing the full (an absolute or relative path tp the saved file).
+     * @param keys the keys (see DependencyGraph.key) of the populated cells, sorted by X and then by Y.
+     * @param sheet the spreadsheet that holds the cells.
+     * @throws IOException an exception might be throed if the file can not be saved.
+     */
+    static void writeCells(String fileName, List<Long> keys, Sheet sheet) throws IOException {
         // Create a BufferedWriter to write lines to the file (try-catch in case of error)
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
             // Write the header line to the file
-            writer.write("I2CS ArielU: SpreadSheet (Ex4) assignment");
+            writer.write(Ex2Utils.FILE_HEADER);
             writer.newLine();
 
-            // Iterate through all cells in the SpreadSheet
-            for (int x = 0; x < width(); x++) { // X - loop
-                for (int y = 0; y < height(); y++) { // Y - loop
-                    Cell cell = table[x][y];
+            for (Long key : keys) {
+                int x = DependencyGraph.keyX(key);
+                int y = DependencyGraph.keyY(key);
+                Cell cell = sheet.get(x, y);
 
-                    // Check if the cell is not empty
-                    if (cell != null && !cell.toString().isEmpty()) {
-                        // Write the cell coordinates and content to the file
-                        writer.write(x + "," + y + "," + cell.getData());
+                // Check if the cell is not empty
+                if (cell != null && !cell.getData().isEmpty()) {
+                    // Write the cell coordinates and content to the file
+                    writer.write(x + "," + y + "," + cell.getData());
 
-                        // release to the next line
-                        writer.newLine();
-                    }
+                    // release to the next line
+                    writer.newLine();
                 }
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Saves this SpreadSheet into a binary file (see BinarySheetFile) - only none empty cells are saved.
+     * @param fileName a String representing the full (an absolute or relative path tp the saved file).
+     * @throws IOException an exception might be throed if the file can not be saved.
+     */
+    public void saveBinary(String fileName) throws IOException {
+        BinarySheetFile.write(fileName, width, height, cells);
+    }
+
+    /**
+     * Load the content of a binary file (see BinarySheetFile) into this SpreadSheet.
+     * all the old cells in before the load operation will be cleared - but only if the whole file was read successfully.
+     * Cells that are not in this spreadsheet are ignored (as in load).
+     * @param fileName a String representing the full (an absolute or relative path to the loaded file).
+     * @throws IOException an exception might be throed if the file can not be loaded, or if it is not a valid binary spreadsheet file.
+     */
+    public void loadBinary(String fileName) throws IOException {
+        // Read all the cells into a new store first, so a corrupted file leaves this spreadsheet as it was:
+        CellStore loaded = new CellStore();
+        BinarySheetFile.read(fileName, (x, y, cell) -> {
+            if (isIn(x, y)) loaded.put(x, y, cell);
+        });
+
+        // Replace the cells (the next snapshot is taken from scratch), and recalculate all of them:
+        cells = loaded;
+        snapshotTiles = null;
+        changedTiles.clear();
+        eval();
+        if (journal != null) journal.checkpoint();
+    }
+
+    /**
+     * Sets the journal that records every change of this spreadsheet (see SheetJournal.open).
+     * @param journal the journal, or null to stop recording.
+     */
+    void setJournal(SheetJournal journal) {
+        this.journal = journal;
+    }
+}
@@ -1,5 +1,8 @@
 import org.junit.jupiter.api.Test;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -21,8 +24,8 @@ class Ex2Sheet_Tests {
         // invalid spreadsheet dimensions
         assertThrows(IllegalArgumentException.class, () -> new Ex2Sheet(-1, 5));
         assertThrows(IllegalArgumentException.class, () -> new Ex2Sheet(5, -1));
-        assertThrows(IllegalArgumentException.class, () -> new Ex2Sheet(27, 5));
-        assertThrows(IllegalArgumentException.class, () -> new Ex2Sheet(5, 101));
+        assertThrows(IllegalArgumentException.class, () -> new Ex2Sheet(Ex2Utils.MAX_COLUMNS + 1, 5));
+        assertThrows(IllegalArgumentException.class, () -> new Ex2Sheet(5, Ex2Utils.MAX_ROWS + 1));
 
         // default spreadsheet constructor:
         Ex2Sheet DefaultSheet = new Ex2Sheet(); // Ex2Utils.WIDTH = 9 Ex2Utils.HEIGHT = 17:
@@ -108,6 +111,55 @@ class Ex2Sheet_Tests {
         // Test circular reference cells - are below in the 'depth()' test method.
     }
 
+    // Tests for the incremental recalculation in set - only the changed cell and its dependents are recalculated,
+    // and the results should be the same as a full recalculation (eval).
+    @Test
+    void incremental_Test() {
+        // A chain: A0 -> A1 -> A2, and a function over the chain
+        TestSheet.set(0, 0, "1"); // A0
+        TestSheet.set(0, 1, "=A0+1"); // A1
+        TestSheet.set(0, 2, "=A1*10"); // A2
+        TestSheet.set(1, 0, "=sum(A0:A2)"); // B0
+        assertEquals("20.0", TestSheet.value(0, 2));
+        assertEquals("23.0", TestSheet.value(1, 0));
+
+        // Changing the input updates all its dependents:
+        TestSheet.set(0, 0, "4");
+        assertEquals("50.0", TestSheet.value(0, 2));
+        assertEquals("59.0", TestSheet.value(1, 0));
+        assertEquals(2, TestSheet.get(0, 2).getOrder()); // A2 depth
+
+        // A cell inside a range (not just its edges) also affects the function:
+        TestSheet.set(0, 1, "text");
+        assertEquals(Ex2Utils.ERR_FUCN_str, TestSheet.value(1, 0));
+        TestSheet.set(0, 1, "6");
+        assertEquals("70.0", TestSheet.value(1, 0));
+
+        // Creating a cycle, and then breaking it:
+        TestSheet.set(0, 1, "=A0+1");
+        TestSheet.set(0, 0, "=A2");
+        assertEquals(Ex2Utils.ERR_CYCLE, TestSheet.value(0, 0));
+        assertEquals(Ex2Utils.ERR_CYCLE, TestSheet.value(0, 2));
+        TestSheet.set(0, 0, "2");
+        assertEquals("2.0", TestSheet.value(0, 0));
+        assertEquals("30.0", TestSheet.value(0, 2));
+        assertEquals(0, TestSheet.get(0, 0).getOrder());
+
+        // The incremental results are the same as a full recalculation:
+        String[][] before = new String[TestSheet.width()][TestSheet.height()];
+        for (int x = 0; x < TestSheet.width(); x++) {
+            for (int y = 0; y < TestSheet.height(); y++) {
+                before[x][y] = TestSheet.value(x, y);
+            }
+        }
+        TestSheet.eval();
+        for (int x = 0; x < TestSheet.width(); x++) {
+            for (int y = 0; y < TestSheet.height(); y++) {
+                assertEquals(before[x][y], TestSheet.value(x, y));
+            }
+        }
+    }
+
     // Tests for retrieving cells by X and Y coordinates
     @Test
     void getByIndex_Test() {
@@ -277,6 +329,556 @@ class Ex2Sheet_Tests {
 
     }
 
+    // Tests depth() on a long chain of references (built against the scan order of the table),
+    // and on a range - the cells inside a range (not just its edges) are dependencies too.
+    @Test
+    void depthChain_Test() {
+        // A99 = 0, A98 = A99+1, ... A0 = A1+1
+        TestSheet.set(0, 99, "0");
+        for (int y = 98; y >= 0; y--) {
+            TestSheet.set(0, y, "=A" + (y + 1) + "+1");
+        }
+        int[][] depths = TestSheet.depth();
+        assertEquals(0, depths[0][99]);
+        assertEquals(1, depths[0][98]);
+        assertEquals(99, depths[0][0]);
+        assertEquals("99.0", TestSheet.value(0, 0));
+
+        // B0 = sum(A0:A99) - depends on every cell in column A, the deepest is A0:
+        TestSheet.set(1, 0, "=sum(A0:A99)");
+        depths = TestSheet.depth();
+        assertEquals(100, depths[1][0]);
+        assertEquals("4950.0", TestSheet.value(1, 0));
+
+        // Closing the chain into a cycle - every cell of the chain, and the function over it, is in a cycle:
+        TestSheet.set(0, 99, "=A0");
+        depths = TestSheet.depth();
+        assertEquals(-1, depths[0][0]);
+        assertEquals(-1, depths[0][50]);
+        assertEquals(-1, depths[1][0]);
+        assertEquals(0, depths[2][0]); // an empty cell
+    }
+
+    // Tests the parallel evaluation - the results should be the same as the sequential evaluation
+    @Test
+    void parallel_Test() {
+        Ex2Sheet parallel = new Ex2Sheet(26, 100);
+        parallel.setParallelism(4);
+        assertEquals(4, parallel.getParallelism());
+
+        // Many independent formula columns (wide levels), each with a chain and a function over the chain:
+        for (int x = 0; x < 26; x++) {
+            String col = Ex2Utils.ABC[x];
+            for (int y = 0; y < 10; y++) {
+                String data = (y == 0) ? "" + x : "=" + col + (y - 1) + "*2+1";
+                parallel.set(x, y, data);
+                TestSheet.set(x, y, data);
+            }
+            parallel.set(x, 10, "=sum(" + col + "0:" + col + "9)");
+            TestSheet.set(x, 10, "=sum(" + col + "0:" + col + "9)");
+        }
+        parallel.set(0, 11, "=B0/0+A11"); // a cycle
+        TestSheet.set(0, 11, "=B0/0+A11");
+
+        // A full recalculation evaluates whole levels in parallel:
+        parallel.eval();
+        TestSheet.eval();
+        for (int x = 0; x < 26; x++) {
+            for (int y = 0; y < 100; y++) {
+                assertEquals(TestSheet.value(x, y), parallel.value(x, y));
+            }
+        }
+
+        // Back to sequential evaluation:
+        parallel.setParallelism(1);
+        assertEquals(1, parallel.getParallelism());
+        parallel.set(0, 0, "100");
+        TestSheet.set(0, 0, "100");
+        assertEquals(TestSheet.value(0, 10), parallel.value(0, 10));
+    }
+
+    // Tests for a big sparse spreadsheet - only the populated cells are kept, and the columns have multi-letter names.
+    @Test
+    void sparse_Test() {
+        Ex2Sheet big = new Ex2Sheet(Ex2Utils.MAX_COLUMNS, Ex2Utils.MAX_ROWS);
+        assertEquals(0, big.cells.size());
+
+        big.set(0, 0, "5"); // A0
+        big.set(27, 1000000, "=A0*2"); // AB1000000
+        big.set(Ex2Utils.MAX_COLUMNS - 1, Ex2Utils.MAX_ROWS - 1, "=AB1000000+A0"); // the last cell
+        assertEquals("10.0", big.value(27, 1000000));
+        assertEquals("15.0", big.value(Ex2Utils.MAX_COLUMNS - 1, Ex2Utils.MAX_ROWS - 1));
+        assertEquals("=A0*2", big.get("ab1000000").getData());
+        assertEquals(3, big.cells.size());
+
+        // Empty cells are not kept:
+        assertEquals("", big.value(100, 100));
+        assertEquals("", big.get(100, 100).getData());
+        big.set(0, 0, "7");
+        assertEquals("21.0", big.value(Ex2Utils.MAX_COLUMNS - 1, Ex2Utils.MAX_ROWS - 1));
+        big.set(27, 1000000, "");
+        assertEquals(2, big.cells.size());
+        assertEquals(Ex2Utils.ERR_FORM, big.value(Ex2Utils.MAX_COLUMNS - 1, Ex2Utils.MAX_ROWS - 1));
+
+        // A function over a range with multi-letter columns:
+        big.set(26, 0, "1"); // AA0
+        big.set(26, 1, "2"); // AA1
+        big.set(27, 0, "=sum(AA0:AA9)"); // AB0
+        assertEquals("3.0", big.value(27, 0));
+    }
+
+    // Tests for SUM, AVERAGE, MIN and MAX over big ranges - answered by the range index, and updated when a cell inside the range changes.
+    @Test
+    void rangeIndex_Test() {
+        // 10 columns x 100 rows of numbers, and a few empty cells:
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 100; y++) {
+                if (y % 10 != 9) TestSheet.set(x, y, Integer.toString(x + y));
+            }
+        }
+        TestSheet.set(20, 0, "=sum(A0:J99)"); // U0
+        TestSheet.set(20, 1, "=average(A0:J99)"); // U1
+        TestSheet.set(20, 2, "=sum(B10:C29)"); // U2
+        TestSheet.set(20, 3, "=min(A0:J99)"); // U3
+        TestSheet.set(20, 4, "=max(A0:J99)"); // U4
+        assertEquals("48150.0", TestSheet.value(20, 0));
+        assertEquals("0.0", TestSheet.value(20, 3));
+        assertEquals("107.0", TestSheet.value(20, 4));
+        assertEquals("53.5", TestSheet.value(20, 1));
+        assertEquals("738.0", TestSheet.value(20, 2));
+
+        // A formula inside the range:
+        TestSheet.set(1, 10, "=A0+100"); // B10: 11 -> 100
+        assertEquals("48239.0", TestSheet.value(20, 0));
+        assertEquals("827.0", TestSheet.value(20, 2));
+        assertEquals("100.0", TestSheet.value(1, 10));
+        TestSheet.set(0, 0, "500"); // A0: the new maximum (and B10 = 600)
+        assertEquals("600.0", TestSheet.value(20, 4));
+        assertEquals("1.0", TestSheet.value(20, 3));
+        TestSheet.set(0, 0, "0");
+
+        // An empty cell inside the range that becomes a number:
+        TestSheet.set(0, 9, "11");
+        assertEquals("48250.0", TestSheet.value(20, 0));
+
+        // A text inside the range is still an error:
+        TestSheet.set(5, 50, "text");
+        assertEquals(Ex2Utils.ERR_FUCN_str, TestSheet.value(20, 0));
+        assertEquals(Ex2Utils.ERR_FUCN_str, TestSheet.value(20, 1));
+        assertEquals("827.0", TestSheet.value(20, 2));
+        TestSheet.set(5, 50, "");
+        assertEquals("48195.0", TestSheet.value(20, 0));
+
+        // The same results after a full recalculation:
+        TestSheet.eval();
+        assertEquals("48195.0", TestSheet.value(20, 0));
+        assertEquals("827.0", TestSheet.value(20, 2));
+    }
+
+    // Tests that a formula with thousands of operations is a formula error - it is never thrown out of set or load.
+    @Test
+    void longFormula_Test() throws IOException {
+        String longFormula = "=" + "1+".repeat(5000) + "1";
+        TestSheet.set(0, 0, longFormula);
+        assertEquals(Ex2Utils.ERR_FORM, TestSheet.value(0, 0));
+        TestSheet.set(0, 1, "=" + "1+".repeat(Ex2Utils.MAX_FORMULA_DEPTH) + "1");
+        assertEquals("1001.0", TestSheet.value(0, 1));
+
+        // The same formula in a saved file:
+        java.io.File file = java.io.File.createTempFile("longFormula_Test", ".txt");
+        file.deleteOnExit();
+        TestSheet.save(file.getPath());
+        Ex2Sheet loaded = new Ex2Sheet(26, 100);
+        loaded.load(file.getPath());
+        assertEquals(Ex2Utils.ERR_FORM, loaded.value(0, 0));
+        assertEquals("1001.0", loaded.value(0, 1));
+    }
+
+    // Tests that the range index is kept only while some cell reads a range - and that it is built from the values that were already computed.
+    @Test
+    void rangeIndexLazy_Test() {
+        for (int y = 0; y < 100; y++) TestSheet.set(0, y, Integer.toString(y)); // A0:A99
+        TestSheet.set(1, 0, "=A99*2"); // B0
+        assertNull(TestSheet.ranges);
+
+        // The first range builds the index, with the numbers that were set before it:
+        TestSheet.set(2, 0, "=sum(A0:A99)"); // C0
+        assertNotNull(TestSheet.ranges);
+        assertEquals("4950.0", TestSheet.value(2, 0));
+        TestSheet.set(3, 0, "=max(A0:B99)"); // D0
+        assertEquals("198.0", TestSheet.value(3, 0));
+
+        // Removing the ranges drops the index, and a full recalculation does not build it again:
+        TestSheet.set(2, 0, "");
+        TestSheet.set(3, 0, "");
+        assertNull(TestSheet.ranges);
+        TestSheet.eval();
+        assertNull(TestSheet.ranges);
+
+        // Cells in a cycle that were set before the index was built are not numbers:
+        TestSheet.set(4, 0, "=E1"); // E0
+        TestSheet.set(4, 1, "=E0"); // E1
+        TestSheet.set(2, 0, "=sum(E0:E99)");
+        assertEquals(Ex2Utils.ERR_FUCN_str, TestSheet.value(2, 0));
+        TestSheet.set(4, 1, "5");
+        assertEquals("10.0", TestSheet.value(2, 0));
+    }
+
+    // Tests that a change under many big SUM and AVERAGE ranges costs about the same as under small ranges - the depth of a function
+    // is taken from the depth index and its value from the range index, so no cell inside a range is read one by one.
+    // (Reading the cells of every range would be 300 x 100k cells for every change - minutes instead of milliseconds.)
+    @Test
+    void bigRangeSum_Test() {
+        Ex2Sheet big = new Ex2Sheet(3, 100000);
+        big.batch(b -> {
+            for (int y = 0; y < 100000; y++) b.set(0, y, "1"); // column A
+            for (int y = 0; y < 300; y++) {
+                b.set(1, y, "=sum(A0:A99999)"); // column B
+                b.set(2, y, "=average(A0:A99999)"); // column C
+            }
+        });
+        assertEquals("100000.0", big.value(1, 299));
+        assertEquals("1.0", big.value(2, 0));
+
+        assertTimeout(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 500; i++) big.set(0, i * 200, "3");
+        });
+        assertEquals("101000.0", big.value(1, 0));
+        assertEquals("1.01", big.value(2, 299));
+        assertEquals(1, big.get(1, 0).getOrder());
+
+        // A column of growing ranges (row y reads A0:Ay) - every change in column A is under thousands of ranges:
+        Ex2Sheet growing = new Ex2Sheet(2, 20000);
+        assertTimeout(Duration.ofSeconds(20), () -> {
+            growing.batch(b -> {
+                for (int y = 0; y < 20000; y++) {
+                    b.set(0, y, "1");
+                    b.set(1, y, "=sum(A0:A" + y + ")");
+                }
+            });
+            growing.set(0, 19999, "2");
+            growing.eval();
+        });
+        assertEquals("20001.0", growing.value(1, 19999));
+        assertEquals("1.0", growing.value(1, 0));
+    }
+
+    // Tests the same for MIN and MAX - a change under many big ranges updates them without reading the cells inside the ranges,
+    // also when the changed cell was the minimum (or the maximum) and the next one must be found.
+    @Test
+    void bigRangeMinMax_Test() {
+        Ex2Sheet big = new Ex2Sheet(3, 100000);
+        big.batch(b -> {
+            for (int y = 0; y < 100000; y++) b.set(0, y, Integer.toString(y % 1000)); // column A: 0..999
+            for (int y = 0; y < 300; y++) {
+                b.set(1, y, "=min(A0:A99999)"); // column B
+                b.set(2, y, "=max(A0:A99999)"); // column C
+            }
+        });
+        assertEquals("0.0", big.value(1, 0));
+        assertEquals("999.0", big.value(2, 299));
+
+        assertTimeout(Duration.ofSeconds(10), () -> {
+            // Every cell with the value 0 and 999 is changed, one by one:
+            for (int y = 0; y < 100000; y += 1000) {
+                big.set(0, y, "500");
+                big.set(0, y + 999, "500");
+            }
+        });
+        assertEquals("1.0", big.value(1, 299));
+        assertEquals("998.0", big.value(2, 0));
+        assertEquals(1, big.get(2, 0).getOrder());
+
+        big.set(0, 12345, "-7");
+        assertEquals("-7.0", big.value(1, 150));
+    }
+
+    // Tests for the computed values store - a reference reads the value of the other cell instead of calculating it again.
+    @Test
+    void valueStore_Test() {
+        // A long chain over all the columns and rows: every cell adds 1 to the previous one
+        TestSheet.set(0, 0, "0");
+        for (int i = 1; i < 26 * 100; i++) {
+            TestSheet.set(i / 100, i % 100, "=" + Ex2Utils.ABC[(i - 1) / 100] + ((i - 1) % 100) + "+1");
+        }
+        assertEquals("2599.0", TestSheet.value(25, 99));
+        assertEquals(2599, TestSheet.get(25, 99).getOrder()); // the depth of the last cell
+
+        // Changing the start of the chain updates the stored values of the whole chain:
+        TestSheet.set(0, 0, "-100");
+        assertEquals("2499.0", TestSheet.value(25, 99));
+        TestSheet.eval();
+        assertEquals("2499.0", TestSheet.value(25, 99));
+
+        // A stored text or error is not a number:
+        TestSheet.set(0, 0, "text");
+        assertEquals(Ex2Utils.ERR_FORM, TestSheet.value(0, 1));
+        assertEquals(Ex2Utils.ERR_FORM, TestSheet.value(25, 99));
+        TestSheet.set(0, 0, "=if(1<2,5,text)");
+        assertEquals("2604.0", TestSheet.value(25, 99));
+        TestSheet.set(0, 0, "=if(1>2,5,text)");
+        assertEquals(Ex2Utils.ERR_FORM, TestSheet.value(25, 99));
+    }
+
+    // Tests a very long chain of references - it is evaluated in order, without recursion, so it is not a (false) cycle error.
+    @Test
+    void longChain_Test() {
+        int rows = 100000;
+        Ex2Sheet tall = new Ex2Sheet(2, rows);
+        tall.set(0, 0, "1");
+        for (int i = 1; i < rows; i++) {
+            tall.set(0, i, "=A" + (i - 1) + "+1"); // a running total
+        }
+        assertEquals(rows + ".0", tall.value(0, rows - 1));
+        assertEquals(rows - 1, tall.get(0, rows - 1).getOrder());
+
+        // A change at the start of the chain, and a full evaluation:
+        tall.set(0, 0, "5");
+        assertEquals((rows + 4) + ".0", tall.value(0, rows - 1));
+        tall.eval();
+        assertEquals((rows + 4) + ".0", tall.value(0, rows - 1));
+        assertEquals(rows - 1, tall.depth()[0][rows - 1]);
+
+        // A real cycle at the start of the chain - the whole chain depends on it:
+        tall.set(1, 0, "=A0");
+        tall.set(0, 0, "=B0");
+        assertEquals(Ex2Utils.ERR_CYCLE, tall.value(0, rows - 1));
+        tall.set(1, 0, "3");
+        assertEquals((rows + 2) + ".0", tall.value(0, rows - 1));
+    }
+
+    // Tests that only a real cycle is a cycle error - the deepest valid formulas, evaluated by the parallel threads, are calculated,
+    // and a cycle inside a condition or a function is an error of the condition (or the function).
+    @Test
+    void deepFormulaNotCycle_Test() {
+        String deep = "=A0" + "+1".repeat(Ex2Utils.MAX_FORMULA_DEPTH); // a tree of the deepest valid formula
+        TestSheet.setParallelism(4);
+        TestSheet.batch(b -> {
+            b.set(0, 0, "1");
+            for (int y = 0; y < 100; y++) b.set(1, y, deep); // a level big enough to be evaluated in parallel
+        });
+        assertEquals("1001.0", TestSheet.value(1, 99));
+        assertEquals(1, TestSheet.get(1, 99).getOrder());
+        TestSheet.setParallelism(1);
+
+        TestSheet.set(2, 0, "=C0+1");
+        assertEquals(Ex2Utils.ERR_CYCLE, TestSheet.value(2, 0));
+        TestSheet.set(2, 1, "=D1");
+        TestSheet.set(3, 1, "=if(C1>0,1,2)");
+        assertEquals(Ex2Utils.ERR_CYCLE, TestSheet.value(2, 1));
+        assertEquals(Ex2Utils.ERR_IF_str, TestSheet.value(3, 1));
+    }
+
+    // Tests the batch API - many changes with a single recalculation
+    @Test
+    void batch_Test() {
+        // A chain written from its end to its start - with set() every change recalculates the cells written before it:
+        int rows = 20000;
+        Ex2Sheet tall = new Ex2Sheet(1, rows);
+        tall.batch(b -> {
+            for (int i = rows - 1; i > 0; i--) b.set(0, i, "=A" + (i - 1) + "+1");
+            b.set(new CellEntry("A0"), "1");
+        });
+        assertEquals(rows + ".0", tall.value(0, rows - 1));
+
+        // setAll, with a cell outside the spreadsheet (ignored):
+        Map<CellEntry, String> updates = new HashMap<>();
+        updates.put(new CellEntry("A0"), "10");
+        updates.put(new CellEntry("A5"), "=A0*3");
+        updates.put(new CellEntry("B0"), "7");
+        tall.setAll(updates);
+        assertEquals("30.0", tall.value(0, 5));
+        assertEquals((rows + 24) + ".0", tall.value(0, rows - 1)); // 30 + (rows - 1 - 5)
+
+        // A batch inside a batch (and set inside a batch) joins it:
+        TestSheet.batch(b -> {
+            b.set(0, 0, "2");
+            TestSheet.set(0, 1, "=A0+A2");
+            TestSheet.batch(inner -> inner.set(0, 2, "3"));
+        });
+        assertEquals("5.0", TestSheet.value(0, 1));
+
+        // An exception inside a batch - the changes made before it are still recalculated:
+        assertThrows(IllegalStateException.class, () -> TestSheet.batch(b -> {
+            b.set(0, 0, "4");
+            throw new IllegalStateException();
+        }));
+        assertEquals("7.0", TestSheet.value(0, 1));
+    }
+
+    // Tests for snapshots - a snapshot never changes, and it shares the unchanged tiles with the previous snapshot
+    @Test
+    void snapshot_Test() throws IOException {
+        TestSheet.set(0, 0, "5"); // A0
+        TestSheet.set(0, 1, "=A0*2"); // A1
+        TestSheet.set(20, 50, "=A1+1"); // U50 - in another tile
+        TestSheet.set(25, 99, "hello"); // Z99 - in another tile
+        TestSheet.getMetrics().reset();
+        SheetSnapshot first = TestSheet.snapshot();
+        assertEquals(0, TestSheet.getMetrics().getParseCacheHits() + TestSheet.getMetrics().getParseCacheMisses()); // no formula is calculated again
+        assertEquals("10.0", first.value(0, 1));
+        assertEquals("11.0", first.value(20, 50));
+        assertEquals(2, first.get(20, 50).getOrder());
+        assertEquals(2, first.depth()[20][50]);
+        assertEquals("", first.value(5, 5));
+        assertNull(first.get(26, 0));
+        assertThrows(UnsupportedOperationException.class, () -> first.set(0, 0, "1"));
+        assertThrows(UnsupportedOperationException.class, () -> first.get(0, 0).setData("1"));
+
+        // Changes after the snapshot - the snapshot keeps the old values:
+        TestSheet.set(0, 0, "1");
+        TestSheet.set(0, 1, "");
+        assertEquals("5.0", first.value(0, 0));
+        assertEquals("10.0", first.value(0, 1));
+        SheetSnapshot second = TestSheet.snapshot();
+        assertEquals("1.0", second.value(0, 0));
+        assertEquals("", second.value(0, 1));
+        assertEquals(TestSheet.value(20, 50), second.value(20, 50)); // U50 reads the now empty A1
+
+        // Structural sharing - a tile without changes is the same in both snapshots, and a changed tile is copied:
+        assertSame(first.get(25, 99), second.get(25, 99));
+        assertNotSame(first.get(0, 0), second.get(0, 0));
+        assertSame(second.get(0, 0), TestSheet.snapshot().get(0, 0));
+
+        // A snapshot is saved like a spreadsheet:
+        java.io.File file = java.io.File.createTempFile("snapshot_Test", ".csv");
+        file.deleteOnExit();
+        first.save(file.getPath());
+        Ex2Sheet loaded = new Ex2Sheet(26, 100);
+        loaded.load(file.getPath());
+        assertEquals("11.0", loaded.value(20, 50));
+        assertEquals("hello", loaded.value(25, 99));
+
+        // No snapshot in the middle of a batch:
+        assertThrows(IllegalStateException.class, () -> TestSheet.batch(b -> TestSheet.snapshot()));
+    }
+
+    // Tests for the binary file format - the cells are loaded with exactly the same data, and a file that is not valid changes nothing
+    @Test
+    void binarySaveLoad_Test() throws IOException {
+        String[] data = {"5", "-12", "2.5", "1e3", "007", "-0", "hello", "שלום", "=A0*2", "=A0*2", "=sum(A0:A3)", "=if(A0>2,big,small)", "=A1+", "NaN"};
+        for (int i = 0; i < data.length; i++) {
+            TestSheet.set(i % 3, i, data[i]);
+        }
+        TestSheet.set(25, 99, "=Z98+1"); // an error (an empty reference)
+        java.io.File file = java.io.File.createTempFile("binarySaveLoad_Test", ".ex4b");
+        file.deleteOnExit();
+        TestSheet.saveBinary(file.getPath());
+
+        Ex2Sheet loaded = new Ex2Sheet(26, 100);
+        loaded.set(10, 10, "old"); // cleared by the load
+        loaded.loadBinary(file.getPath());
+        for (int x = 0; x < 26; x++) {
+            for (int y = 0; y < 100; y++) {
+                assertEquals(TestSheet.get(x, y).getData(), loaded.get(x, y).getData());
+                assertEquals(TestSheet.value(x, y), loaded.value(x, y));
+                assertEquals(TestSheet.get(x, y).getType(), loaded.get(x, y).getType());
+            }
+        }
+
+        // The same formula is parsed once - the loaded cells share it:
+        assertSame(((SCell) loaded.get(2, 8)).getFormula(), ((SCell) loaded.get(0, 9)).getFormula());
+
+        // A smaller spreadsheet ignores the cells that are not in it:
+        Ex2Sheet small = new Ex2Sheet(2, 5);
+        small.loadBinary(file.getPath());
+        assertEquals("5.0", small.value(0, 0));
+        assertEquals("7.0", small.value(1, 4)); // "007"
+        assertEquals(4, small.cells.size()); // A0, B1, A3, B4
+
+        // A text file, and a cut file, are not valid - and the spreadsheet is left as it was:
+        java.io.File text = java.io.File.createTempFile("binarySaveLoad_Test", ".txt");
+        text.deleteOnExit();
+        TestSheet.save(text.getPath());
+        assertThrows(IOException.class, () -> loaded.loadBinary(text.getPath()));
+        byte[] bytes = java.nio.file.Files.readAllBytes(file.toPath());
+        java.nio.file.Files.write(file.toPath(), java.util.Arrays.copyOf(bytes, bytes.length - 3));
+        assertThrows(IOException.class, () -> loaded.loadBinary(file.getPath()));
+        assertEquals("hello", loaded.value(0, 6));
+
+        // A string length that is negative or longer than the file, and a number entry that is not of type NUMBER:
+        int count = java.nio.ByteBuffer.wrap(bytes).getInt(16);
+        int table = BinarySheetFile.HEADER_SIZE + count * BinarySheetFile.ENTRY_SIZE;
+        for (int length : new int[] {-1, Integer.MAX_VALUE, bytes.length}) {
+            byte[] corrupted = bytes.clone();
+            java.nio.ByteBuffer.wrap(corrupted).putInt(table, length);
+            java.nio.file.Files.write(file.toPath(), corrupted);
+            assertThrows(IOException.class, () -> loaded.loadBinary(file.getPath()));
+        }
+        byte[] corrupted = bytes.clone();
+        assertEquals(BinarySheetFile.INTEGER, corrupted[BinarySheetFile.HEADER_SIZE + 9]); // the first entry is A0 = 5
+        corrupted[BinarySheetFile.HEADER_SIZE + 8] = (byte) Ex2Utils.TEXT;
+        java.nio.file.Files.write(file.toPath(), corrupted);
+        assertThrows(IOException.class, () -> loaded.loadBinary(file.getPath()));
+        assertEquals("hello", loaded.value(0, 6));
+
+        // The numbers are loaded as number cells, with their exact data:
+        java.nio.file.Files.write(file.toPath(), bytes);
+        loaded.loadBinary(file.getPath());
+        assertEquals(Ex2Utils.NUMBER, loaded.get(0, 3).getType());
+        assertEquals("1e3", loaded.get(0, 3).getData()); // a string entry - not written back as 1000
+        assertEquals("-12", loaded.get(1, 1).getData());
+        assertNull(((SCell) loaded.get(1, 1)).getFormula());
+    }
+
+    // Tests that a function reads the computed values of the cells in its range - a function or a condition inside the range is not calculated again.
+    @Test
+    void rangeStoredValues_Test() {
+        for (int y = 0; y < 5; y++) {
+            TestSheet.set(0, y, Integer.toString(y)); // A0:A4
+            TestSheet.set(1, y, "=sum(A0:A4)"); // B0:B4
+        }
+        TestSheet.set(1, 5, "=if(A0>1,=max(A0:A4),7)"); // B5
+        TestSheet.set(2, 0, "=sum(B0:B5)"); // C0
+        assertEquals("57.0", TestSheet.value(2, 0));
+
+        // The change recalculates 5 functions, a condition and C0 - and every one of them is calculated exactly once:
+        TestSheet.getMetrics().reset();
+        TestSheet.set(0, 0, "10");
+        assertEquals(7, TestSheet.getMetrics().getParseCacheHits() + TestSheet.getMetrics().getParseCacheMisses());
+        assertEquals("20.0", TestSheet.value(1, 4));
+        assertEquals("110.0", TestSheet.storedValue(2, 0));
+
+        // A text inside the range is still an error:
+        TestSheet.set(1, 2, "text");
+        assertEquals(Ex2Utils.ERR_FUCN_str, TestSheet.value(2, 0));
+    }
+
+    // Tests for range references - the cells inside a range (and not only its corners) are precedents of the function cell.
+    @Test
+    void rangeDependency_Test() {
+        TestSheet.set(0, 0, "=sum(B0:B5)"); // A0
+        TestSheet.set(1, 3, "=C0*2"); // B3 - an inner cell of the range
+        TestSheet.set(2, 0, "5"); // C0
+        int[][] depths = TestSheet.depth();
+        assertEquals(0, depths[2][0]);
+        assertEquals(1, depths[1][3]);
+        assertEquals(2, depths[0][0]); // after B3
+        assertEquals("10.0", TestSheet.value(0, 0));
+
+        // A change in a cell that only the range covers updates the function:
+        TestSheet.set(2, 0, "7");
+        assertEquals("14.0", TestSheet.value(0, 0));
+        TestSheet.set(1, 4, "1"); // B4 - was empty
+        assertEquals("15.0", TestSheet.value(0, 0));
+
+        // A cycle through a range:
+        TestSheet.set(2, 0, "=A0");
+        assertEquals(-1, TestSheet.depth()[0][0]);
+        assertEquals(Ex2Utils.ERR_FUCN_str, TestSheet.value(0, 0));
+        TestSheet.set(2, 0, "3");
+        assertEquals("7.0", TestSheet.value(0, 0));
+
+        // A huge range in a huge spreadsheet is a single edge:
+        Ex2Sheet big = new Ex2Sheet(Ex2Utils.MAX_COLUMNS, Ex2Utils.MAX_ROWS);
+        big.set(0, 0, "=sum(B0:ZZZ9999999)");
+        big.set(5000, 9000000, "=C1+1");
+        big.set(2, 1, "4"); // C1
+        assertEquals("9.0", big.value(0, 0)); // 4 + 5
+        assertEquals(2, big.get(0, 0).getOrder());
+        assertEquals(1, big.graph.getDependents(5000, 9000000).size());
+    }
+
     /**
      * Tests for computeForm() method - tests taken form the first stage
      * - Validates arithmetic operations, parentheses, and complex calculations.
@@ -590,6 +1192,15 @@ class Ex2Sheet_Tests {
         assertEquals(Ex2Utils.ERR_IF_str, TestSheet.value(20, 7));
         assertEquals(Ex2Utils.ERR_IF_str, TestSheet.value(20, 8));
         assertEquals(Ex2Utils.ERR_IF_str, TestSheet.value(20,9));
+        // A self reference is a whole reference of the parsed condition - "AA1" is not "A1":
+        Ex2Sheet wide = new Ex2Sheet(30, 10);
+        wide.set(26, 1, "5"); // AA1
+        wide.set(0, 1, "=if(AA1>2,yes,no)"); // A1
+        assertEquals("yes", wide.value(0, 1));
+        wide.set(0, 1, "=if(A1>2,yes,no)");
+        assertEquals(Ex2Utils.ERR_IF_str, wide.value(0, 1));
+        wide.set(0, 1, "=if(AA1>2,=A1+1,no)");
+        assertEquals(Ex2Utils.ERR_IF_str, wide.value(0, 1));
     }
 
     /**
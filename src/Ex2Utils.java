@@ -16,15 +16,25 @@ public class Ex2Utils {
     public static final int TEXT=1, NUMBER=2, FORM=3, ERR_FORM_FORMAT=-2, ERR_CYCLE_FORM=-1, ERR=-1,FUCN_TYPE=4 , ERR_FUNC=-4 ,IF_TYPE=5, ERR_IF=-5;
     public static final String ERR_CYCLE = "ERR_CYCLE!", ERR_FORM = "ERR_FORM!", ERR_IF_str = "ERR_IF!", ERR_FUCN_str = "ERR_FUNC!";
     public static final String EMPTY_CELL = "";
+    public static final String FILE_HEADER = "I2CS ArielU: SpreadSheet (Ex4) assignment"; // the first line of a saved text file (see Ex2Sheet.save)
 
     // Spreadsheet Dimensions
     public static final int WIDTH = 9, HEIGHT=17, MAX_CHARS=8, WINDOW_WIDTH=1200, WINDOW_HEIGHT=600;
+    public static final int MAX_COLUMNS = 18278, MAX_ROWS = 10000000; // The largest spreadsheet: columns A to ZZZ, rows 0 to 9999999
+    public static final int MAX_COLUMN_LETTERS = 3; // The number of letters in the name of the last column (ZZZ)
 
     // Calculation Constants
     public static final double EPS1 = 0.001, EPS2=EPS1*EPS1, EPS=EPS2, PEN_RADIUS = 0.001;
     public static final int WAIT_TIME_MS = 10, MAX_X=20;
     public static final double GUI_X_SPACE = 2, GUI_X_START = 3, GUI_Y_TEXT_START = 0.4;
+    public static final double GUI_CELL_MARGIN = 0.05; // the part of a cell (on each side) that is not cleared when the cell is drawn again - the grid lines
+    public static final int GUI_HEADER_LINES = 3; // the lines at the top of the GUI window above the rows: the column names, and the input text
+    public static final int GUI_WIDTH = 26, GUI_HEIGHT = 100; // the dimensions of the spreadsheet of the GUI (it scrolls, see Viewport)
+    public static final int GUI_WHEEL_ROWS = 3; // the number of rows that a single step of the mouse wheel scrolls
     public static final boolean Debug = false;
+    public static final int PARALLEL_MIN_CELLS = 64; // A depth level with fewer cells than this is evaluated sequentially, even in parallel mode
+    public static final int RANGE_INDEX_MIN_CELLS = 64; // A function over a range with fewer cells than this reads the cells one by one (see RangeIndex)
+    public static final int MAX_FORMULA_DEPTH = 1000; // A formula with operations, brackets and conditions nested deeper than this is a formula error (see Expr)
 
     // Supported Operations and Functions
     public static final String[] FUNCTIONS = {"sum" ,"average", "min", "max"};
@@ -0,0 +1,393 @@
+/**
+ * Expr - an immutable expression tree of a cell data that starts with '=' (formula, condition or function).
+ * - The raw String is parsed only once (when the data of a cell is set, see SCell.setData) into a tree of nodes.
+ * - Ex2Sheet walks the tree on every evaluation, without re-parsing or allocating Strings.
+ * - The parsing follows exactly the rules of the String based calculation: '=' prefix, no spaces,
+ *   the main operator (lowest priority, last one) splits the formula, brackets around the whole formula are removed, etc.
+ * Errors found while parsing are kept as an Invalid node, which throws an IllegalArgumentException only when it is evaluated -
+ * so the order of the errors stays the same as in a calculation that parses the String on the fly.
+ * A formula nested deeper than Ex2Utils.MAX_FORMULA_DEPTH is an Invalid node too (evaluated as ERR_FORM), so the trees are never too deep
+ * to walk recursively. The results of a condition are nested inside it, so they count against the same limit.
+ * The types of nodes:
+ *  1. Num - a number.
+ *  2. Ref - a reference to a cell (e.g., "A1").
+ *  3. BinOp - an arithmetic operation (+, -, *, /) between two expressions.
+ *  4. If - a condition (e.g., "=if(A1>2,big,small)").
+ *  5. Fun - a function over a range (e.g., "=sum(A0:C3)").
+ *  6. Text - a constant String result of an IF branch.
+ *  7. Invalid - a parsing error.
+ */
+public abstract class Expr {
+
+    /**
+     * A number node, e.g. "3.5".
+     */
+    public static final class Num extends Expr {
+        public final double value;
+
+        Num(double value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * A reference to another cell, e.g. "B3" (the coordinates are valid, but may still be out of the spreadsheet).
+     */
+    public static final class Ref extends Expr {
+        public final int x, y;
+
+        Ref(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /**
+     * An arithmetic operation (+, -, *, /) between two expressions.
+     */
+    public static final class BinOp extends Expr {
+        public final char op;
+        public final Expr left, right;
+
+        BinOp(char op, Expr left, Expr right) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+    }
+
+    /**
+     * A condition: "=if(<left> <op> <right>, <ifTrue>, <ifFalse>)".
+     * If the condition has no valid operator, op is -1 (and left and right are null).
+     */
+    public static final class If extends Expr {
+        public final int op; // the index of the operator in Ex2Utils.B_OPS, or -1 if the condition is invalid
+        public final Expr left, right; // the two sides of the condition
+        public final Expr onTrue, onFalse; // the two possible results
+
+        If(int op, Expr left, Expr right, Expr onTrue, Expr onFalse) {
+            this.op = op;
+            this.left = left;
+            this.right = right;
+            this.onTrue = onTrue;
+            this.onFalse = onFalse;
+        }
+    }
+
+    /**
+     * A function over a valid range, e.g. "=max(A0:C3)".
+     */
+    public static final class Fun extends Expr {
+        public final int function; // the index of the function in Ex2Utils.FUNCTIONS
+        public final Range2D range;
+
+        Fun(int function, Range2D range) {
+            this.function = function;
+            this.range = range;
+        }
+    }
+
+    /**
+     * A constant String result of an IF branch - a text, or a number that is already formatted for printing.
+     */
+    public static final class Text extends Expr {
+        public final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * A parsing error - evaluating this node throws an IllegalArgumentException with the message.
+     */
+    public static final class Invalid extends Expr {
+        public final String message;
+
+        Invalid(String message) {
+            this.message = message;
+        }
+    }
+
+    /**
+     * Compiles the raw data of a cell into an expression tree, according to its prefix:
+     * "=if(" is a condition, "=<function>(" is a function, and any other '=' is a formula.
+     * Parsing never throws: a formula or condition nested deeper than Ex2Utils.MAX_FORMULA_DEPTH is an Invalid node.
+     * @param data the raw data of a cell.
+     * @return the expression tree, or null if the data does not start with '=' (text or number).
+     */
+    public static Expr compile(String data) {
+        return compile(data, 0);
+    }
+
+    /**
+     * Compiles the raw data of a cell, or of a result of a condition, that is nested inside other parts of a formula.
+     * @param data the raw data.
+     * @param depth the number of operations, brackets and conditions that contain this data.
+     * @return the expression tree, or null if the data does not start with '=' (text or number).
+     */
+    private static Expr compile(String data, int depth) {
+        if (data == null || !data.startsWith("=")) return null;
+
+        return switch (SCell.formulaType(data)) {
+            // If it starts with '=if(', it's a condition:
+            case Ex2Utils.IF_TYPE -> parseIF(data, depth);
+
+            // If it starts with '=<function>(', it's a function:
+            case Ex2Utils.FUCN_TYPE -> parseFun(data);
+
+            // If it starts with **just** '=', it's a formula:
+            default -> parseForm(data, depth);
+        };
+    }
+
+    /**
+     * Parses a formula String (e.g., "=(A1+2)*3").
+     * @param form a String contains formula RAW data.
+     * @return the expression tree of the formula.
+     */
+    public static Expr parseForm(String form) {
+        return parseForm(form, 0);
+    }
+
+    /**
+     * Parses a formula String that is nested inside other parts of a formula (e.g., a result of a condition).
+     * @param form a String contains formula RAW data.
+     * @param depth the number of operations, brackets and conditions that contain this formula.
+     * @return the expression tree of the formula.
+     */
+    private static Expr parseForm(String form, int depth) {
+        // empty String isn't valid, and we got to have '=' char at the beginning of the String:
+        if ((form == null) || form.isEmpty() || form.charAt(0) != '=') return new Invalid("invalid value");
+
+        // Remove the '=' char, and delete all the space chars in the String:
+        return parseBody(form.substring(1).replaceAll("\\s", ""), depth);
+    }
+
+    /**
+     * Parses a formula without the '=' prefix and without spaces (the recursive part of parseForm).
+     * @param form a formula String - no '=' and no spaces.
+     * @param depth the number of operations, brackets and conditions that contain this part of the formula.
+     * @return the expression tree of the formula (an Invalid node if it is nested deeper than Ex2Utils.MAX_FORMULA_DEPTH).
+     */
+    private static Expr parseBody(String form, int depth) {
+        // A formula nested too deep (e.g., thousands of operations in a row) - its tree would be too deep to evaluate:
+        if (depth > Ex2Utils.MAX_FORMULA_DEPTH) return new Invalid("invalid value");
+
+        // If we reach a valid number, we will return its value (a single pass of our number lexer - "NaN" is the only number that is parsed to NaN):
+        double number = SCell.parseNumber(form);
+        if (!Double.isNaN(number) || SCell.isNumber(form)) return new Num(number);
+        if (form.isEmpty()) return new Invalid("invalid value");
+
+        // Calculate the length of the string
+        int formLength = form.length();
+
+        // In case we have an operator at the beginning of the formula, we will add a zero to prevent errors.
+        if (form.charAt(0) == '+' || form.charAt(0) == '-') {
+            form = "0" + form;
+        }
+
+        // Let's see if we have parentheses that enclose the entire formula - In that case, we'll take them off and parse what's inside.
+        if (form.charAt(0) == '(') {
+            int end;
+            try {
+                end = bracketEndInd(form.substring(1));
+            } catch (IllegalArgumentException e) {
+                return new Invalid(e.getMessage());
+            }
+            if (end == formLength - 2) {
+                return parseBody(form.substring(1, formLength - 1), depth + 1);
+            }
+        }
+
+        // Check if it's a cell reference (1 to 3 letters of the column, and the digits of the row):
+        if (form.matches("^[a-zA-Z]{1,3}\\d{0,7}$")) {
+            CellEntry ref_cell = new CellEntry(form);
+            if (!ref_cell.isValid()) return new Invalid("Invalid cell reference");
+            return new Ref(ref_cell.getX(), ref_cell.getY());
+        }
+
+        // Find the index of the "main operation" - if no operators are found, the formula is invalid
+        int mainOpIn = indexOfMainOp(form);
+        if (mainOpIn == -1) return new Invalid("invalid value");
+
+        // We will split our string into two separate parts, according to the operator we found, and parse each part (recursion):
+        char operator = form.charAt(mainOpIn);
+        return new BinOp(operator, parseBody(form.substring(0, mainOpIn), depth + 1), parseBody(form.substring(mainOpIn + 1), depth + 1));
+    }
+
+    /**
+     * Parses a condition String (e.g., "=if(A1>2,big,small)").
+     * @param form a String condition the raw data of the condition type cell.
+     * @return an If node, or an Invalid node if the condition format is wrong.
+     */
+    public static Expr parseIF(String form) {
+        return parseIF(form, 0);
+    }
+
+    /**
+     * Parses a condition String that is nested inside other parts of a formula (e.g., a result of another condition).
+     * @param form a String condition the raw data of the condition type cell.
+     * @param depth the number of operations, brackets and conditions that contain this condition.
+     * @return an If node, or an Invalid node if the condition format is wrong (or it is nested deeper than Ex2Utils.MAX_FORMULA_DEPTH).
+     */
+    private static Expr parseIF(String form, int depth) {
+        // A condition nested too deep (e.g., thousands of conditions inside each other) - its tree would be too deep to evaluate:
+        if (depth > Ex2Utils.MAX_FORMULA_DEPTH) return new Invalid("invalid value");
+
+        // empty String isn't valid:
+        if ((form == null) || form.isEmpty()) return new Invalid("invalid value");
+
+        // For a valid condition string, the string needs to start with "=if(" and end with ")":
+        if ((!SCell.isCondition(form)) || (!form.endsWith(")"))) return new Invalid("Invalid IF format");
+
+        form = form.substring(4, form.length() - 1); // Remove the '=if(' chars and the last ')'
+        form = form.replaceAll("\\s", ""); // delete all the space chars in the String
+
+        // Split the string by commas - ignoring commas inside parentheses, so we can support nested conditions
+        String[] parts = form.split(",(?![^()]*\\))");
+        if (parts.length != 3) return new Invalid("Invalid IF format");
+
+        String condition = parts[0].trim();
+        String ifTrue = parts[1].trim();
+        String ifFalse = parts[2].trim();
+
+        // Searches for the operator within the condition, and split the condition according to it:
+        int op = -1;
+        Expr left = null, right = null;
+        for (int i = 0; i < Ex2Utils.B_OPS.length; i++) {
+            if (condition.contains(Ex2Utils.B_OPS[i])) {
+                op = i;
+                break;
+            }
+        }
+        if (op != -1) {
+            String[] conditionParts = condition.split(Ex2Utils.B_OPS[op]);
+            if (conditionParts.length == 2) {
+                left = parseForm("=" + conditionParts[0], depth + 1);
+                right = parseForm("=" + conditionParts[1], depth + 1);
+            }
+            else {
+                op = -1; // Not exactly two parts - the condition is invalid
+            }
+        }
+
+        return new If(op, left, right, parseBranch(ifTrue, depth + 1), parseBranch(ifFalse, depth + 1));
+    }
+
+    /**
+     * Parses one of the results of a condition, according to its type (using the classification of SCell).
+     * @param action the raw String of the result.
+     * @param depth the number of operations, brackets and conditions that contain the result.
+     * @return the expression tree of the result (a number or a text become a ready to print Text node).
+     */
+    private static Expr parseBranch(String action, int depth) {
+        return switch (SCell.typeOf(action)) {
+            // In the case of a number, it is printed as a Double:
+            case Ex2Utils.NUMBER -> new Text(Double.toString(SCell.parseNumber(action)));
+
+            // In the case of a text, it is printed as is:
+            case Ex2Utils.TEXT -> new Text(action);
+
+            // In the case of a formula, condition or function - we will parse it, nested inside the condition:
+            case Ex2Utils.FORM, Ex2Utils.IF_TYPE, Ex2Utils.FUCN_TYPE -> compile(action, depth);
+
+            // In case of undefined content type:
+            default -> new Invalid("Invalid IF arguments");
+        };
+    }
+
+    /**
+     * Parses a function String (e.g., "=sum(A0:C3)").
+     * @param form a String contains the raw data of the function type cell.
+     * @return a Fun node, or an Invalid node if the function format or its range is wrong.
+     */
+    public static Expr parseFun(String form) {
+        // empty String isn't valid:
+        if ((form == null) || form.isEmpty()) return new Invalid("invalid value");
+
+        // We will find which of the predefined functions the string starts with:
+        int function = SCell.functionIndex(form);
+
+        // For a valid function string, the string needs to start with "=<FUNCTION>(" and end with ")":
+        if ((function < 0) || (!form.endsWith(")"))) return new Invalid("Invalid function format");
+
+        // We will remove the beginning of the string: "=<FUNCTION>(" and the ")" at the end, so we are left only with the range:
+        int selectRMV = Ex2Utils.FUNCTIONS[function].length() + 2;
+        try {
+            return new Fun(function, new Range2D(form.substring(selectRMV, form.length() - 1)));
+        } catch (IllegalArgumentException e) {
+            return new Invalid("Invalid range");
+        }
+    }
+
+    /**
+     * A method that searches for the main arithmetic operator of within a given string
+     * @param form a String of a formula
+     * @return The index of the main arithmetic operation in the formula (-1 if there is none)
+     */
+    public static int indexOfMainOp(String form) {
+        // A counter that will help us track parentheses - what is inside them is parsed in the following iterations (recursion):
+        int bracketCounter = 0;
+
+        // The index of the main operator, -1 as an initial value (will be returned -1 in case we found no operator or an error)
+        int mainOpIndex = -1;
+
+        // We will start with a priority above all the operators, so we can find the operator with the lowest priority ("Main")
+        int minPriority = 4;
+
+        for (int i = 0; i < form.length(); i++) {
+            char c = form.charAt(i);
+            if (c == '(') {
+                bracketCounter++;
+            } else if (c == ')') {
+                bracketCounter--;
+            } else if (bracketCounter == 0) {
+                int priority = getOperatorPriority(c);
+                if (priority != -1 && priority <= minPriority) {
+                    // The main operation is found (until proven else)
+                    mainOpIndex = i;
+                    minPriority = priority;
+                }
+            }
+        }
+        return mainOpIndex;
+    }
+
+    /**
+     * method that checks the value of the given operator (char)
+     * @param operator an char.
+     * @return Its precedence as an arithmetic operator (-1 if it is not an operator)
+     */
+    public static int getOperatorPriority(char operator) {
+        return switch (operator) {
+            //first priority is '+' and '-'
+            case '+', '-' -> 1;
+
+            //second priority is '*' and '/'
+            case '*', '/' -> 2;
+
+            // in case of a number (not an operator)
+            default -> -1;
+        };
+    }
+
+    /**
+     * The function finds the index of the matching closing parenthesis by keeping track of nested parentheses using a counter
+     * @param form a String that the '(' character was removed from its beginning.
+     * @return the index in form where the parentheses that were opened at the beginning close.
+     * @throws IllegalArgumentException if the parentheses are not closed.
+     */
+    public static int bracketEndInd(String form) {
+        int counter = 0;
+        for (int i = 0; i < form.length(); i++) {
+            if (form.charAt(i) == '(') counter++;
+            if (form.charAt(i) == ')') {
+                if (counter == 0) return i;
+                counter--;
+            }
+        }
+        // In case of a fault string:
+        throw new IllegalArgumentException("invalid value");
+    }
+}
@@ -0,0 +1,137 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Expr_Tests - JUnit tests for the Expr class (the parsed expression tree of a cell).
+ * - Verifies the structure of parsed formulas: numbers, references, operations and brackets.
+ * - Tests the parsing of conditions and functions.
+ * - Ensures parsing errors are kept as Invalid nodes (and not thrown while parsing).
+ */
+public class Expr_Tests {
+
+    // Tests the parsing of formulas
+    @Test
+    void parseForm_Test() {
+        // A number:
+        Expr num = Expr.compile("= 3.5");
+        assertInstanceOf(Expr.Num.class, num);
+        assertEquals(3.5, ((Expr.Num) num).value);
+
+        // A reference (lower case is fine):
+        Expr ref = Expr.compile("=b3");
+        assertInstanceOf(Expr.Ref.class, ref);
+        assertEquals(1, ((Expr.Ref) ref).x);
+        assertEquals(3, ((Expr.Ref) ref).y);
+
+        // A reference with a multi-letter column and a large row:
+        ref = Expr.compile("=AB123456");
+        assertInstanceOf(Expr.Ref.class, ref);
+        assertEquals(27, ((Expr.Ref) ref).x);
+        assertEquals(123456, ((Expr.Ref) ref).y);
+
+        // The main operator is the last one with the lowest priority: (A1*2) + 3
+        Expr op = Expr.compile("=A1*2+3");
+        assertInstanceOf(Expr.BinOp.class, op);
+        assertEquals('+', ((Expr.BinOp) op).op);
+        assertInstanceOf(Expr.BinOp.class, ((Expr.BinOp) op).left);
+        assertInstanceOf(Expr.Num.class, ((Expr.BinOp) op).right);
+
+        // Brackets around the whole formula are removed, and a leading '-' becomes 0-...
+        Expr neg = Expr.compile("=(-(1+2))");
+        assertInstanceOf(Expr.BinOp.class, neg);
+        assertEquals('-', ((Expr.BinOp) neg).op);
+        assertEquals(0.0, ((Expr.Num) ((Expr.BinOp) neg).left).value);
+
+        // Errors are kept inside the tree:
+        assertInstanceOf(Expr.Invalid.class, Expr.compile("=(10"));
+        assertInstanceOf(Expr.Invalid.class, Expr.compile("=abc"));
+        assertInstanceOf(Expr.Invalid.class, Expr.compile("=AAAA1"));
+        assertInstanceOf(Expr.Invalid.class, ((Expr.BinOp) Expr.compile("=1+test")).right);
+        assertInstanceOf(Expr.Invalid.class, Expr.parseForm("2+2"));
+        assertInstanceOf(Expr.Invalid.class, Expr.parseForm(null));
+
+        // Text and numbers are not parsed at all:
+        assertNull(Expr.compile("123"));
+        assertNull(Expr.compile("text"));
+        assertNull(Expr.compile(""));
+        assertNull(Expr.compile(null));
+    }
+
+    // Tests the parsing of conditions
+    @Test
+    void parseIF_Test() {
+        Expr cond = Expr.compile("=if(A0 > 3, big, =A0*2)");
+        assertInstanceOf(Expr.If.class, cond);
+        Expr.If ifExpr = (Expr.If) cond;
+        assertEquals(3, ifExpr.op); // ">" in Ex2Utils.B_OPS
+        assertInstanceOf(Expr.Ref.class, ifExpr.left);
+        assertEquals("big", ((Expr.Text) ifExpr.onTrue).text);
+        assertInstanceOf(Expr.BinOp.class, ifExpr.onFalse);
+
+        // A number result is kept ready to print:
+        assertEquals("10.0", ((Expr.Text) ((Expr.If) Expr.compile("=if(1<2,10,2)")).onTrue).text);
+
+        // Nested condition:
+        assertInstanceOf(Expr.If.class, ((Expr.If) Expr.compile("=if(1<2,=if(2<3,a,b),c)")).onTrue);
+
+        // Invalid conditions:
+        assertInstanceOf(Expr.Invalid.class, Expr.compile("=if(1,2,3"));
+        assertInstanceOf(Expr.Invalid.class, Expr.compile("=if(A1>0, B1)"));
+        assertEquals(-1, ((Expr.If) Expr.compile("=if(A1,, 10)")).op);
+    }
+
+    // Tests the parsing of functions
+    @Test
+    void parseFun_Test() {
+        Expr fun = Expr.compile("=AVERAGE(A0:C3)");
+        assertInstanceOf(Expr.Fun.class, fun);
+        assertEquals(1, ((Expr.Fun) fun).function); // "average" in Ex2Utils.FUNCTIONS
+        assertEquals(2, ((Expr.Fun) fun).range.getEndX());
+        assertEquals(3, ((Expr.Fun) fun).range.getEndY());
+
+        assertInstanceOf(Expr.Invalid.class, Expr.compile("=MAX(A0::A1000)"));
+        assertInstanceOf(Expr.Invalid.class, Expr.compile("=MIN(A0,A10)"));
+        assertInstanceOf(Expr.Invalid.class, Expr.compile("=sum(A0:A1"));
+    }
+
+    // Tests that a formula nested too deep is an Invalid node - and that parsing it never throws
+    @Test
+    void deepForm_Test() {
+        // Exactly the deepest formula that is still valid (every operation is nested inside the next one):
+        Expr form = Expr.compile("=" + "1+".repeat(Ex2Utils.MAX_FORMULA_DEPTH) + "1");
+        while (form instanceof Expr.BinOp) form = ((Expr.BinOp) form).left;
+        assertInstanceOf(Expr.Num.class, form);
+
+        // Thousands of operations, or of brackets:
+        form = Expr.compile("=" + "1+".repeat(5000) + "1");
+        while (form instanceof Expr.BinOp) form = ((Expr.BinOp) form).left;
+        assertInstanceOf(Expr.Invalid.class, form);
+        assertInstanceOf(Expr.Invalid.class, Expr.compile("=" + "(".repeat(5000) + "1" + ")".repeat(5000)));
+    }
+
+    // Tests formulas inside conditions - a condition counts against the same depth limit as the operations and brackets of a formula
+    @Test
+    void deepIF_Test() {
+        // The deepest formula that is still valid on its own is one level too deep inside a condition:
+        String deepest = "=" + "1+".repeat(Ex2Utils.MAX_FORMULA_DEPTH) + "1";
+        assertInstanceOf(Expr.Invalid.class, leftmost(((Expr.If) Expr.compile("=if(1>0," + deepest + ",0)")).onTrue));
+        assertInstanceOf(Expr.Invalid.class, leftmost(((Expr.If) Expr.compile("=if(" + deepest.substring(1) + ">0,1,0)")).left));
+
+        // A condition inside the result of another condition - two levels:
+        String form = "=" + "1+".repeat(Ex2Utils.MAX_FORMULA_DEPTH - 2) + "1";
+        Expr.If outer = (Expr.If) Expr.compile("=if(1>0,=if(1>0," + form + ",0),0)");
+        assertInstanceOf(Expr.Num.class, leftmost(((Expr.If) outer.onTrue).onTrue));
+        form = "=" + "1+".repeat(Ex2Utils.MAX_FORMULA_DEPTH - 1) + "1";
+        outer = (Expr.If) Expr.compile("=if(1>0,=if(1>0," + form + ",0),0)");
+        assertInstanceOf(Expr.Invalid.class, leftmost(((Expr.If) outer.onTrue).onTrue));
+    }
+
+    /**
+     * @param form an expression tree.
+     * @return the leftmost leaf of its operations.
+     */
+    private static Expr leftmost(Expr form) {
+        while (form instanceof Expr.BinOp) form = ((Expr.BinOp) form).left;
+        return form;
+    }
+}
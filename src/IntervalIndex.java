@@ -0,0 +1,248 @@
+import java.util.*;
+import java.util.function.LongConsumer;
+
+/**
+ * IntervalIndex - keeps ranges (Range2D) of cells together with their owners (the formula cells that read them),
+ * and answers "which owners have a range that covers the x,y cell" without going over all the ranges.
+ * - The index is a 2D interval tree, built like a segment tree: an outer tree over the x-coordinates, where every node holds an inner tree over the y-coordinates.
+ *   A range is split into O(log(width) * log(height)) disjoint nodes, and its owner is kept in each one of them - the size of the range does not matter.
+ * - The nodes that cover a cell are exactly the nodes on its path from the root, so a query visits O(log(width) * log(height)) nodes.
+ * - Only nodes that hold owners are kept, so the memory is proportional to the number of ranges (and not to their area).
+ * The nodes are numbered like a heap (the root is 1, and the children of node k are 2k and 2k+1), the same as in RangeIndex.
+ */
+public class IntervalIndex {
+    private final int width, height; // the dimensions of the indexed spreadsheet
+    private final Map<Long, Map<Long, Integer>> nodes = new HashMap<>(); // node key (see key) -> owner key -> the number of its ranges in this node
+    private final Map<Integer, Integer> outerCounts = new HashMap<>(); // outer node -> the number of ranges kept in its inner tree
+
+    /**
+     * constructor for an empty IntervalIndex, over a spreadsheet of the given dimensions.
+     * @param width the dimension of the x-coordinate of the spreadsheet.
+     * @param height the dimension of the y-coordinate of the spreadsheet.
+     */
+    public IntervalIndex(int width, int height) {
+        this.width = Math.max(width, 1);
+        this.height = Math.max(height, 1);
+    }
+
+    /**
+     * @param outer the number of a node in the outer tree (x-coordinates).
+     * @param inner the number of a node in the inner tree (y-coordinates).
+     * @return a single long key for the node.
+     */
+    private long key(int outer, int inner) {
+        return (long) outer * (4L * height) + inner;
+    }
+
+    /**
+     * Adds a range of an owner - the parts of the range outside the spreadsheet are ignored.
+     * @param range a valid range.
+     * @param owner the key (see DependencyGraph.key) of the cell that reads the range.
+     */
+    public void add(Range2D range, long owner) {
+        update(range, owner, 1);
+    }
+
+    /**
+     * Removes a range of an owner (that was added before with the same range).
+     * @param range a valid range.
+     * @param owner the key (see DependencyGraph.key) of the cell that reads the range.
+     */
+    public void remove(Range2D range, long owner) {
+        update(range, owner, -1);
+    }
+
+    /**
+     * Adds (or removes) an owner to all the nodes that the range is split into.
+     * @param range a valid range.
+     * @param owner the key of the owner.
+     * @param change 1 to add the range, -1 to remove it.
+     */
+    private void update(Range2D range, long owner, int change) {
+        int startX = Math.max(range.getStartX(), 0), endX = Math.min(range.getEndX(), width - 1);
+        int startY = Math.max(range.getStartY(), 0), endY = Math.min(range.getEndY(), height - 1);
+        if (startX <= endX && startY <= endY) {
+            updateOuter(1, 0, width - 1, startX, endX, startY, endY, owner, change);
+        }
+    }
+
+    /**
+     * Finds the outer nodes that are fully inside the columns of the range (recursion on the outer tree).
+     * @param outer the number of the outer node.
+     * @param from the first column of the node.
+     * @param to the last column of the node.
+     * @param startX the first column of the range.
+     * @param endX the last column of the range.
+     * @param startY the first row of the range.
+     * @param endY the last row of the range.
+     * @param owner the key of the owner.
+     * @param change 1 to add the range, -1 to remove it.
+     */
+    private void updateOuter(int outer, int from, int to, int startX, int endX, int startY, int endY, long owner, int change) {
+        if (endX < from || to < startX) return; // No common columns
+        if (startX <= from && to <= endX) {
+            updateInner(outer, 1, 0, height - 1, startY, endY, owner, change);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        updateOuter(2 * outer, from, middle, startX, endX, startY, endY, owner, change);
+        updateOuter(2 * outer + 1, middle + 1, to, startX, endX, startY, endY, owner, change);
+    }
+
+    /**
+     * Finds the inner nodes (of a single outer node) that are fully inside the rows of the range, and adds (or removes) the owner there.
+     * @param outer the number of the outer node.
+     * @param inner the number of the inner node.
+     * @param from the first row of the inner node.
+     * @param to the last row of the inner node.
+     * @param startY the first row of the range.
+     * @param endY the last row of the range.
+     * @param owner the key of the owner.
+     * @param change 1 to add the range, -1 to remove it.
+     */
+    private void updateInner(int outer, int inner, int from, int to, int startY, int endY, long owner, int change) {
+        if (endY < from || to < startY) return; // No common rows
+        if (startY <= from && to <= endY) {
+            long key = key(outer, inner);
+            Map<Long, Integer> owners = nodes.get(key);
+            int count = ((owners == null) ? 0 : owners.getOrDefault(owner, 0)) + change;
+            if (count < 0) return; // The range was never added - nothing to remove
+            if (owners == null) {
+                owners = new HashMap<>();
+                nodes.put(key, owners);
+            }
+            if (count == 0) owners.remove(owner);
+            else owners.put(owner, count);
+            if (owners.isEmpty()) nodes.remove(key); // We don't keep empty nodes
+
+            int outerCount = outerCounts.getOrDefault(outer, 0) + change;
+            if (outerCount == 0) outerCounts.remove(outer);
+            else outerCounts.put(outer, outerCount);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        updateInner(outer, 2 * inner, from, middle, startY, endY, owner, change);
+        updateInner(outer, 2 * inner + 1, middle + 1, to, startY, endY, owner, change);
+    }
+
+    /**
+     * Finds the owners of all the ranges that cover the x,y cell.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the keys of the owners (an owner with several ranges that cover the cell may appear more than once).
+     */
+    public List<Long> covering(int x, int y) {
+        List<Long> ans = new ArrayList<>();
+        if (nodes.isEmpty() || x < 0 || x >= width || y < 0 || y >= height) return ans;
+
+        // Go down the outer tree to the column of the cell:
+        int outer = 1, fromX = 0, toX = width - 1;
+        while (true) {
+            // Only outer nodes that hold ranges are searched in their inner tree:
+            if (outerCounts.containsKey(outer)) coveringInner(outer, y, ans);
+            if (fromX == toX) break;
+            int middle = (fromX + toX) >>> 1;
+            if (x <= middle) {
+                outer = 2 * outer;
+                toX = middle;
+            }
+            else {
+                outer = 2 * outer + 1;
+                fromX = middle + 1;
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * Goes over the owners of all the ranges that cover the x,y cell, without collecting them into a list.
+     * The nodes are reported at most once for the same set of visited nodes - a search over many cells (e.g., all the cells affected by a change)
+     * visits every node once, even if the ranges of the node cover many of these cells.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param visited the keys of the nodes that were already reported (updated by this method), or null to report every node.
+     * @param action receives the key of each owner (an owner with several ranges in the same node is reported once for that node).
+     */
+    public void forEachCovering(int x, int y, Set<Long> visited, LongConsumer action) {
+        if (nodes.isEmpty() || x < 0 || x >= width || y < 0 || y >= height) return;
+
+        // Go down the outer tree to the column of the cell:
+        int outer = 1, fromX = 0, toX = width - 1;
+        while (true) {
+            if (outerCounts.containsKey(outer)) {
+                // Go down the inner tree to the row of the cell:
+                int inner = 1, from = 0, to = height - 1;
+                while (true) {
+                    long key = key(outer, inner);
+                    Map<Long, Integer> owners = nodes.get(key);
+                    if (owners != null && (visited == null || visited.add(key))) {
+                        for (Long owner : owners.keySet()) action.accept(owner);
+                    }
+                    if (from == to) break;
+                    int middle = (from + to) >>> 1;
+                    if (y <= middle) {
+                        inner = 2 * inner;
+                        to = middle;
+                    }
+                    else {
+                        inner = 2 * inner + 1;
+                        from = middle + 1;
+                    }
+                }
+            }
+            if (fromX == toX) break;
+            int middle = (fromX + toX) >>> 1;
+            if (x <= middle) {
+                outer = 2 * outer;
+                toX = middle;
+            }
+            else {
+                outer = 2 * outer + 1;
+                fromX = middle + 1;
+            }
+        }
+    }
+
+    /**
+     * Adds the owners of the inner nodes (of a single outer node) on the path of a row.
+     * @param outer the number of the outer node.
+     * @param y integer, the row (y-coordinate).
+     * @param ans the list to add the owners to.
+     */
+    private void coveringInner(int outer, int y, List<Long> ans) {
+        int inner = 1, from = 0, to = height - 1;
+        while (true) {
+            Map<Long, Integer> owners = nodes.get(key(outer, inner));
+            if (owners != null) {
+                for (Map.Entry<Long, Integer> entry : owners.entrySet()) {
+                    for (int i = 0; i < entry.getValue(); i++) ans.add(entry.getKey());
+                }
+            }
+            if (from == to) break;
+            int middle = (from + to) >>> 1;
+            if (y <= middle) {
+                inner = 2 * inner;
+                to = middle;
+            }
+            else {
+                inner = 2 * inner + 1;
+                from = middle + 1;
+            }
+        }
+    }
+
+    /**
+     * @return true if the index holds no ranges.
+     */
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    /**
+     * Removes all the ranges from the index.
+     */
+    public void clear() {
+        nodes.clear();
+        outerCounts.clear();
+    }
+}
@@ -0,0 +1,83 @@
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IntervalIndex_Tests - JUnit tests for the IntervalIndex class.
+ * - Verifies the owners of the ranges that cover a cell against a simple loop over the ranges.
+ * - Tests adding and removing ranges, and ranges that are partly outside the spreadsheet.
+ */
+public class IntervalIndex_Tests {
+
+    // Tests a few ranges, and removing them
+    @Test
+    void covering_Test() {
+        IntervalIndex index = new IntervalIndex(26, 100);
+        assertTrue(index.isEmpty());
+        index.add(new Range2D("A0:C9"), 1);
+        index.add(new Range2D("B5:B5"), 2);
+        index.add(new Range2D("Y90:AB200"), 3); // partly outside the spreadsheet
+
+        assertEquals(List.of(1L), index.covering(0, 0));
+        assertEquals(Set.of(1L, 2L), new HashSet<>(index.covering(1, 5)));
+        assertEquals(List.of(3L), index.covering(25, 99));
+        assertTrue(index.covering(3, 0).isEmpty());
+        assertTrue(index.covering(100, 0).isEmpty()); // outside the spreadsheet
+
+        // The same range of the same owner twice - it is kept twice, and removed once:
+        index.add(new Range2D("B5:B5"), 2);
+        index.remove(new Range2D("B5:B5"), 2);
+        assertEquals(Set.of(1L, 2L), new HashSet<>(index.covering(1, 5)));
+
+        // Removing a range that was never added does nothing:
+        index.remove(new Range2D("D0:D0"), 1);
+        assertEquals(List.of(1L), index.covering(0, 0));
+
+        index.remove(new Range2D("A0:C9"), 1);
+        index.remove(new Range2D("B5:B5"), 2);
+        index.remove(new Range2D("Y90:AB200"), 3);
+        assertTrue(index.isEmpty());
+    }
+
+    // Tests random ranges against a simple loop over the ranges
+    @Test
+    void random_Test() {
+        Random random = new Random(11);
+        int width = 40, height = 60;
+        IntervalIndex index = new IntervalIndex(width, height);
+        List<int[]> ranges = new ArrayList<>(); // {owner, startX, endX, startY, endY}
+
+        for (int round = 0; round < 2000; round++) {
+            if (!ranges.isEmpty() && random.nextInt(3) == 0) {
+                int[] r = ranges.remove(random.nextInt(ranges.size()));
+                index.remove(range(r), r[0]);
+            }
+            else {
+                int x1 = random.nextInt(width), x2 = x1 + random.nextInt(width - x1);
+                int y1 = random.nextInt(height), y2 = y1 + random.nextInt(height - y1);
+                int[] r = {random.nextInt(50), x1, x2, y1, y2};
+                ranges.add(r);
+                index.add(range(r), r[0]);
+            }
+
+            // Check a random cell:
+            int x = random.nextInt(width), y = random.nextInt(height);
+            List<Long> expected = new ArrayList<>();
+            for (int[] r : ranges) {
+                if (r[1] <= x && x <= r[2] && r[3] <= y && y <= r[4]) expected.add((long) r[0]);
+            }
+            List<Long> actual = index.covering(x, y);
+            Collections.sort(expected);
+            Collections.sort(actual);
+            assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * @param r {owner, startX, endX, startY, endY}
+     * @return the Range2D of r.
+     */
+    private static Range2D range(int[] r) {
+        return new Range2D(CellEntry.columnName(r[1]) + r[3] + ":" + CellEntry.columnName(r[2]) + r[4]);
+    }
+}
@@ -0,0 +1,135 @@
+import java.util.Arrays;
+
+/**
+ * NodeTable - numbers the kept nodes of a sparse tree: every node key (a positive long) gets a small slot number,
+ * so the data of the nodes can be kept in plain arrays indexed by the slot, instead of an object for every node.
+ * - An open-addressing hash table (linear probing) over primitive longs - no boxing, and no object for an entry.
+ * - The keys are mixed before they are placed (Fibonacci hashing), so keys that differ only in their high bits
+ *   (e.g., outer * 4 * height + inner in a 2D tree) are spread over the whole table instead of falling into the same buckets.
+ * - The slot of a removed node is reused by the next node that is added, so the slots stay dense.
+ */
+public class NodeTable {
+    private static final long EMPTY = 0; // an empty place in the table (0 is never a node key)
+    private static final long MIX = 0x9E3779B97F4A7C15L; // 2^64 divided by the golden ratio
+    private long[] keys = new long[16]; // the key in each place of the table (EMPTY - a free place)
+    private int[] slots = new int[16]; // the slot of the key in the same place
+    private int shift = 64 - 4; // 64 - log2(the length of the table)
+    private int size = 0; // the number of kept nodes
+    private int[] freeSlots = new int[16]; // the slots of removed nodes, waiting to be reused
+    private int freeCount = 0;
+    private int slotCount = 0; // the number of slots ever given (every slot is smaller than this)
+
+    /**
+     * @param key a node key.
+     * @return the place of the key in the table, if there is no collision.
+     */
+    private int home(long key) {
+        return (int) ((key * MIX) >>> shift);
+    }
+
+    /**
+     * @param key a node key (positive).
+     * @return the slot of the node, or -1 if it is not kept.
+     */
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = home(key); keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) return slots[i];
+        }
+        return -1;
+    }
+
+    /**
+     * Keeps a node (if it is not kept already).
+     * @param key a node key (positive).
+     * @return the slot of the node - a new slot is smaller than slotCount() after the call.
+     */
+    public int add(long key) {
+        int mask = keys.length - 1;
+        int i = home(key);
+        for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+            if (keys[i] == key) return slots[i];
+        }
+        int slot = (freeCount > 0) ? freeSlots[--freeCount] : slotCount++;
+        keys[i] = key;
+        slots[i] = slot;
+        size++;
+        if (2 * size > keys.length) grow(); // keep the table at most half full, so the probes stay short
+        return slot;
+    }
+
+    /**
+     * Removes a node - its slot is reused by the next added node.
+     * The keys that were placed after it (in the same run of the table) are shifted back, so no search ever stops early.
+     * @param key a node key.
+     * @return the slot that the node had, or -1 if it was not kept.
+     */
+    public int remove(long key) {
+        int mask = keys.length - 1;
+        int i = home(key);
+        while (keys[i] != key) {
+            if (keys[i] == EMPTY) return -1;
+            i = (i + 1) & mask;
+        }
+        int slot = slots[i];
+        if (freeCount == freeSlots.length) freeSlots = Arrays.copyOf(freeSlots, 2 * freeCount);
+        freeSlots[freeCount++] = slot;
+        size--;
+
+        // Shift back every following key that may not stay after the free place (its home is not between the free place and its place):
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int h = home(keys[j]);
+            boolean stays = (i <= j) ? (i < h && h <= j) : (i < h || h <= j);
+            if (!stays) {
+                keys[i] = keys[j];
+                slots[i] = slots[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY;
+        return slot;
+    }
+
+    /**
+     * Doubles the table, and places all the keys again.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new long[2 * oldKeys.length];
+        slots = new int[2 * oldKeys.length];
+        shift--;
+        int mask = keys.length - 1;
+        for (int k = 0; k < oldKeys.length; k++) {
+            if (oldKeys[k] == EMPTY) continue;
+            int i = home(oldKeys[k]);
+            while (keys[i] != EMPTY) i = (i + 1) & mask;
+            keys[i] = oldKeys[k];
+            slots[i] = oldSlots[k];
+        }
+    }
+
+    /**
+     * @return the number of kept nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of slots ever given - the arrays of the node data must have at least this length.
+     */
+    public int slotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Removes all the nodes (the table keeps its length).
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+        freeCount = 0;
+        slotCount = 0;
+    }
+}
@@ -0,0 +1,64 @@
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NodeTable_Tests - JUnit tests for the NodeTable class.
+ * - Verifies adding, finding and removing node keys against a HashMap.
+ * - Checks that the slots of removed nodes are reused, so the slots stay dense.
+ */
+public class NodeTable_Tests {
+
+    // Tests a few keys, and reusing a removed slot
+    @Test
+    void addRemove_Test() {
+        NodeTable table = new NodeTable();
+        assertEquals(-1, table.get(5));
+        int a = table.add(5);
+        int b = table.add(400L * 1000 + 1);
+        assertNotEquals(a, b);
+        assertEquals(a, table.add(5)); // already kept
+        assertEquals(b, table.get(400L * 1000 + 1));
+        assertEquals(2, table.size());
+
+        assertEquals(a, table.remove(5));
+        assertEquals(-1, table.remove(5));
+        assertEquals(-1, table.get(5));
+        assertEquals(a, table.add(7)); // the removed slot is reused
+        assertEquals(2, table.slotCount());
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertEquals(-1, table.get(7));
+    }
+
+    // Tests random keys against a HashMap - keys that differ only in their high bits (like the keys of a 2D tree), many removes and the growth of the table
+    @Test
+    void random_Test() {
+        Random random = new Random(6);
+        NodeTable table = new NodeTable();
+        Map<Long, Integer> expected = new HashMap<>();
+        for (int round = 0; round < 200000; round++) {
+            long key = (long) (random.nextInt(3000) + 1) * 400000 + random.nextInt(20) + 1;
+            if (random.nextInt(3) == 0) {
+                Integer slot = expected.remove(key);
+                assertEquals((slot == null) ? -1 : slot, table.remove(key));
+            }
+            else {
+                int slot = table.add(key);
+                Integer old = expected.put(key, slot);
+                if (old != null) assertEquals(old, slot);
+            }
+            if (round % 1000 == 0) {
+                for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+                    assertEquals(entry.getValue(), table.get(entry.getKey()));
+                }
+                assertEquals(expected.size(), table.size());
+            }
+        }
+
+        // The slots are dense - every slot that was given is kept, or waiting to be reused:
+        assertTrue(table.slotCount() <= 60000);
+        assertEquals(expected.size(), new HashSet<>(expected.values()).size());
+    }
+}
@@ -0,0 +1,217 @@
+import java.util.function.BiConsumer;
+
+/**
+ * PersistentLongMap - an immutable map from long keys to values, where a change returns a new map that shares almost everything with the old one.
+ * - A hash trie: every node has 32 places, chosen by 5 bits of the mixed key at each level. The keys are mixed by a full avalanche
+ *   (the finalizer of splitmix64), where every bit of the mix depends on all the bits of the key - so keys that differ only in their
+ *   high bits (like the tile keys of the same row) are spread from the first level. A place holds nothing, a single entry, or a child node.
+ * - A change copies only the nodes on the path to its key - O(log32(size)) small arrays - and all the other nodes are shared,
+ *   so keeping many versions of a big map costs only their differences.
+ * - The mixing is a bijection of the 64 bits, so two different keys always part at some level - there are no collisions.
+ * A map is never changed after it is created, so it can be read by many threads without any locking.
+ * @param <V> the type of the values.
+ */
+public final class PersistentLongMap<V> {
+    private static final long MIX1 = 0xBF58476D1CE4E5B9L, MIX2 = 0x94D049BB133111EBL; // the multipliers of splitmix64 (odd - so the mixing is a bijection)
+    private static final int BITS = 5, WIDTH = 1 << BITS, MASK = WIDTH - 1; // the places of a node, chosen by 5 bits at each level
+    private static final PersistentLongMap<?> EMPTY = new PersistentLongMap<>(null, 0);
+
+    private final Object[] root; // the root node (null - the empty map)
+    private final int size; // the number of entries
+
+    /**
+     * A single entry of the map, in a place of a node.
+     */
+    private static final class Entry {
+        final long key;
+        final Object value;
+
+        Entry(long key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private PersistentLongMap(Object[] root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @param <V> the type of the values.
+     * @return the empty map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentLongMap<V> empty() {
+        return (PersistentLongMap<V>) EMPTY;
+    }
+
+    /**
+     * @param key a key.
+     * @return the mixed bits of the key, that choose its places.
+     */
+    private static long hash(long key) {
+        key = (key ^ (key >>> 30)) * MIX1;
+        key = (key ^ (key >>> 27)) * MIX2;
+        return key ^ (key >>> 31);
+    }
+
+    /**
+     * @param hash the mixed bits of a key.
+     * @param level the level of a node (the root is 0).
+     * @return the place of the key in a node of that level.
+     */
+    private static int place(long hash, int level) {
+        return (int) (hash >>> (BITS * level)) & MASK;
+    }
+
+    /**
+     * @return the number of entries in the map.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param key a key.
+     * @return the value of the key, or null if the map has no such key.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long hash = hash(key);
+        Object[] node = root;
+        for (int level = 0; node != null; level++) {
+            Object item = node[place(hash, level)];
+            if (item instanceof Entry) return (((Entry) item).key == key) ? (V) ((Entry) item).value : null;
+            node = (Object[]) item;
+        }
+        return null;
+    }
+
+    /**
+     * @param key a key.
+     * @param value the new value of the key (not null).
+     * @return a map with all the entries of this map, where the key has the new value.
+     */
+    public PersistentLongMap<V> with(long key, V value) {
+        boolean[] added = {false};
+        Object[] newRoot = with((root == null) ? new Object[WIDTH] : root, 0, new Entry(key, value), hash(key), added);
+        return new PersistentLongMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * Puts an entry under a node (recursion on the levels) - the node itself is copied, never changed.
+     * @param node the node.
+     * @param level the level of the node.
+     * @param entry the new entry.
+     * @param hash the mixed bits of the key of the entry.
+     * @param added set to true if the key is new.
+     * @return the copy of the node with the entry.
+     */
+    private static Object[] with(Object[] node, int level, Entry entry, long hash, boolean[] added) {
+        Object[] copy = node.clone();
+        int i = place(hash, level);
+        Object item = node[i];
+        if (item == null) {
+            copy[i] = entry;
+            added[0] = true;
+        }
+        else if (item instanceof Entry && ((Entry) item).key == entry.key) {
+            copy[i] = entry; // a new value for the same key
+        }
+        else if (item instanceof Entry) {
+            // Two keys in the same place - a new child node holds both (it is split again if they share the next place too):
+            Entry old = (Entry) item;
+            Object[] child = new Object[WIDTH];
+            child[place(hash(old.key), level + 1)] = old;
+            copy[i] = with(child, level + 1, entry, hash, added);
+        }
+        else {
+            copy[i] = with((Object[]) item, level + 1, entry, hash, added);
+        }
+        return copy;
+    }
+
+    /**
+     * @param key a key.
+     * @return a map with all the entries of this map except the key (this map, if it has no such key).
+     */
+    public PersistentLongMap<V> without(long key) {
+        if (get(key) == null) return this;
+        Object newRoot = without(root, 0, key, hash(key));
+        if (newRoot instanceof Entry) { // a single entry is left - it is kept in a root node
+            Object[] node = new Object[WIDTH];
+            node[place(hash(((Entry) newRoot).key), 0)] = newRoot;
+            newRoot = node;
+        }
+        return new PersistentLongMap<>((Object[]) newRoot, size - 1);
+    }
+
+    /**
+     * Removes a key that is in the map from under a node (recursion on the levels) - the node itself is copied, never changed.
+     * A node that is left with a single entry is replaced by the entry, so the trie stays as short as the keys need.
+     * @param node the node.
+     * @param level the level of the node.
+     * @param key the key to remove.
+     * @param hash the mixed bits of the key.
+     * @return the copy of the node without the key - null if it has no entries left, or its single entry.
+     */
+    private static Object without(Object[] node, int level, long key, long hash) {
+        Object[] copy = node.clone();
+        int i = place(hash, level);
+        copy[i] = (node[i] instanceof Entry) ? null : without((Object[]) node[i], level + 1, key, hash);
+
+        // Count what is left in the node:
+        Object single = null;
+        int count = 0;
+        for (Object item : copy) {
+            if (item == null) continue;
+            count++;
+            single = item;
+        }
+        if (count == 0) return null;
+        if (count == 1 && single instanceof Entry) return single;
+        return copy;
+    }
+
+    /**
+     * @return the number of levels of nodes on the longest path from the root (0 - the empty map) - for tests.
+     */
+    int depth() {
+        return depth(root);
+    }
+
+    /**
+     * @param node a node (null - no node).
+     * @return the number of levels of nodes on the longest path from the node.
+     */
+    private static int depth(Object[] node) {
+        if (node == null) return 0;
+        int ans = 0;
+        for (Object item : node) {
+            if (item instanceof Object[]) ans = Math.max(ans, depth((Object[]) item));
+        }
+        return ans + 1;
+    }
+
+    /**
+     * Goes over all the entries of the map (in no particular order).
+     * @param action receives the key and the value of each entry.
+     */
+    public void forEach(BiConsumer<Long, V> action) {
+        if (root != null) forEach(root, action);
+    }
+
+    /**
+     * Goes over all the entries under a node (recursion on the levels).
+     * @param node the node.
+     * @param action receives the key and the value of each entry.
+     */
+    @SuppressWarnings("unchecked")
+    private void forEach(Object[] node, BiConsumer<Long, V> action) {
+        for (Object item : node) {
+            if (item instanceof Entry) action.accept(((Entry) item).key, (V) ((Entry) item).value);
+            else if (item != null) forEach((Object[]) item, action);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PersistentLongMap_Tests - JUnit tests for the PersistentLongMap class.
+ * - Verifies adding, replacing and removing keys against a HashMap.
+ * - Checks that a change never changes the old map, so every version keeps its own entries.
+ */
+public class PersistentLongMap_Tests {
+
+    // Tests a few keys, and that the old versions are not changed
+    @Test
+    void withWithout_Test() {
+        PersistentLongMap<String> empty = PersistentLongMap.empty();
+        assertNull(empty.get(5));
+        PersistentLongMap<String> one = empty.with(5, "a");
+        PersistentLongMap<String> two = one.with(DependencyGraph.key(3, 5), "b");
+        PersistentLongMap<String> replaced = two.with(5, "c");
+        assertEquals(0, empty.size());
+        assertEquals(1, one.size());
+        assertEquals(2, two.size());
+        assertEquals(2, replaced.size());
+        assertEquals("a", two.get(5));
+        assertEquals("c", replaced.get(5));
+        assertEquals("b", replaced.get(DependencyGraph.key(3, 5)));
+        assertNull(one.get(DependencyGraph.key(3, 5)));
+
+        PersistentLongMap<String> removed = replaced.without(5);
+        assertEquals(1, removed.size());
+        assertNull(removed.get(5));
+        assertEquals("c", replaced.get(5));
+        assertSame(removed, removed.without(5)); // not in the map
+        assertEquals(0, removed.without(DependencyGraph.key(3, 5)).size());
+
+        Map<Long, String> all = new HashMap<>();
+        replaced.forEach(all::put);
+        assertEquals(Map.of(5L, "c", DependencyGraph.key(3, 5), "b"), all);
+    }
+
+    // Tests keys that differ only in their high 32 bits (the tiles of a single row) - they are spread from the first level, so the trie stays shallow
+    @Test
+    void highBits_Test() {
+        PersistentLongMap<Integer> map = PersistentLongMap.empty();
+        for (int x = 0; x < 1024; x++) {
+            map = map.with(DependencyGraph.key(x, 3), x);
+        }
+        assertEquals(1024, map.size());
+        assertTrue(map.depth() <= 4, "depth " + map.depth()); // 1024 = 32^2 keys - two levels, and a few more for the collisions
+        for (int x = 0; x < 1024; x++) {
+            assertEquals(x, map.get(DependencyGraph.key(x, 3)));
+        }
+
+        // A single row of a few tiles is held by the root and one more level at most:
+        PersistentLongMap<Integer> small = PersistentLongMap.empty();
+        for (int x = 0; x < 8; x++) {
+            small = small.with(DependencyGraph.key(x, 0), x);
+        }
+        assertTrue(small.depth() <= 2, "depth " + small.depth());
+    }
+
+    // Tests random keys against a HashMap - keys that differ only in their high bits (like the keys of the tiles), many removes,
+    // and old versions that are checked again after many changes
+    @Test
+    void random_Test() {
+        Random random = new Random(7);
+        PersistentLongMap<Integer> map = PersistentLongMap.empty();
+        Map<Long, Integer> expected = new HashMap<>();
+        List<PersistentLongMap<Integer>> versions = new ArrayList<>();
+        List<Map<Long, Integer>> expectedVersions = new ArrayList<>();
+        for (int round = 0; round < 100000; round++) {
+            long key = DependencyGraph.key(random.nextInt(2000), random.nextInt(20));
+            if (random.nextInt(3) == 0) {
+                map = map.without(key);
+                expected.remove(key);
+            }
+            else {
+                map = map.with(key, round);
+                expected.put(key, round);
+            }
+            assertEquals(expected.get(key), map.get(key));
+            assertEquals(expected.size(), map.size());
+            if (round % 10000 == 0) {
+                versions.add(map);
+                expectedVersions.add(new HashMap<>(expected));
+            }
+        }
+
+        // Every version still has exactly its own entries:
+        versions.add(map);
+        expectedVersions.add(expected);
+        for (int i = 0; i < versions.size(); i++) {
+            Map<Long, Integer> all = new HashMap<>();
+            versions.get(i).forEach(all::put);
+            assertEquals(expectedVersions.get(i), all);
+            for (Map.Entry<Long, Integer> entry : expectedVersions.get(i).entrySet()) {
+                assertEquals(entry.getValue(), versions.get(i).get(entry.getKey()));
+            }
+        }
+    }
+}
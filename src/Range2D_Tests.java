@@ -101,9 +101,9 @@ public class Range2D_Tests {
         });
         assertEquals("Invalid range", exception2.getMessage());
 
-        // Expect an exception for incorrect format - "A1:BZ3"
+        // Expect an exception for incorrect format - "A1:BZZZ3" (too many letters for a column)
         Exception exception3 = assertThrows(IllegalArgumentException.class, () -> {
-            new Range2D("A1:BZ3");
+            new Range2D("A1:BZZZ3");
         });
         assertEquals("Invalid range", exception3.getMessage());
     }
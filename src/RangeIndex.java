@@ -0,0 +1,116 @@
+import java.util.*;
+
+/**
+ * RangeIndex - keeps a summary (sum, min, max and counts) of the numeric values of the cells, so a function over a range
+ * (e.g. "=sum(A0:C999)" or "=max(A0:C999)") is answered without reading every cell inside the range.
+ * - The index is a sparse 2D segment tree (see SegmentTree2D): node (o, i) summarizes the cells in the columns of the outer node o
+ *   and in the rows of the inner node i.
+ * - A query adds the summaries of O(log(width) * log(height)) disjoint nodes, and an update recalculates the same number of nodes.
+ * - A node is always recalculated from its children (never by adding and subtracting a difference), so the sums do not drift after many updates.
+ * - Only nodes that summarize populated cells are kept, so the memory is proportional to the populated cells.
+ *   The summaries of the nodes are kept in plain arrays (by the slot of the node) - an update allocates no summaries.
+ */
+public class RangeIndex extends SegmentTree2D {
+    // The summary of every kept node, by its slot (see Summary):
+    private double[] sums = new double[0], mins = new double[0], maxs = new double[0];
+    private int[] counts = new int[0], invalids = new int[0];
+
+    /**
+     * The summary of a group of populated cells.
+     */
+    public static final class Summary {
+        public double sum = 0; // the sum of the numeric cells
+        public double min = Double.POSITIVE_INFINITY; // the minimum of the numeric cells (in the order of Double.compare, like Collections.min)
+        public double max = Double.NEGATIVE_INFINITY; // the maximum of the numeric cells (in the order of Double.compare, like Collections.max)
+        public int count = 0; // the number of populated cells
+        public int invalid = 0; // the number of populated cells that are not a valid number (a text, an error, or not computed yet)
+    }
+
+    /**
+     * constructor for an empty RangeIndex, over a spreadsheet of the given dimensions.
+     * @param width the dimension of the x-coordinate of the spreadsheet.
+     * @param height the dimension of the y-coordinate of the spreadsheet.
+     */
+    public RangeIndex(int width, int height) {
+        super(width, height);
+    }
+
+    /**
+     * Sets the x,y cell as a populated cell.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param numeric true if the cell holds a valid number.
+     * @param value the numeric value of the cell (ignored if it is not numeric).
+     */
+    public void put(int x, int y, boolean numeric, double value) {
+        int slot = keepLeaf(x, y);
+        if (slot < 0) return; // not in the spreadsheet
+        counts[slot] = 1;
+        invalids[slot] = numeric ? 0 : 1;
+        sums[slot] = numeric ? value : 0;
+        mins[slot] = numeric ? value : Double.POSITIVE_INFINITY;
+        maxs[slot] = numeric ? value : Double.NEGATIVE_INFINITY;
+        update(x, y);
+    }
+
+    /**
+     * Removes the x,y cell from the index (an empty cell).
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     */
+    public void remove(int x, int y) {
+        removeLeaf(x, y);
+        update(x, y);
+    }
+
+    @Override
+    protected void reserve(int slots) {
+        sums = Arrays.copyOf(sums, slots);
+        mins = Arrays.copyOf(mins, slots);
+        maxs = Arrays.copyOf(maxs, slots);
+        counts = Arrays.copyOf(counts, slots);
+        invalids = Arrays.copyOf(invalids, slots);
+    }
+
+    @Override
+    protected void combine(int slot, int left, int right) {
+        if (left < 0 || right < 0) {
+            int from = (left < 0) ? right : left;
+            sums[slot] = sums[from];
+            mins[slot] = mins[from];
+            maxs[slot] = maxs[from];
+            counts[slot] = counts[from];
+            invalids[slot] = invalids[from];
+            return;
+        }
+        sums[slot] = sums[left] + sums[right];
+        mins[slot] = (Double.compare(mins[right], mins[left]) < 0) ? mins[right] : mins[left];
+        maxs[slot] = (Double.compare(maxs[right], maxs[left]) > 0) ? maxs[right] : maxs[left];
+        counts[slot] = counts[left] + counts[right];
+        invalids[slot] = invalids[left] + invalids[right];
+    }
+
+    /**
+     * Adds the summary of a node to a total.
+     * @param total the total to add to.
+     * @param slot the slot of the node.
+     */
+    private void add(Summary total, int slot) {
+        total.sum += sums[slot];
+        if (Double.compare(mins[slot], total.min) < 0) total.min = mins[slot];
+        if (Double.compare(maxs[slot], total.max) > 0) total.max = maxs[slot];
+        total.count += counts[slot];
+        total.invalid += invalids[slot];
+    }
+
+    /**
+     * Summarizes all the populated cells inside a range.
+     * @param range a valid range (the parts outside the spreadsheet are ignored).
+     * @return the summary of the populated cells in the range.
+     */
+    public Summary query(Range2D range) {
+        Summary ans = new Summary();
+        visit(range.getStartX(), range.getEndX(), range.getStartY(), range.getEndY(), slot -> add(ans, slot));
+        return ans;
+    }
+}
@@ -0,0 +1,121 @@
+import org.junit.jupiter.api.Test;
+import java.util.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RangeIndex_Tests - JUnit tests for the RangeIndex class.
+ * - Verifies the sums, minimums, maximums and counts of ranges against a simple loop over the cells.
+ * - Tests replacing and removing cells.
+ * - Checks ranges that are partly outside the spreadsheet.
+ */
+public class RangeIndex_Tests {
+
+    // Tests a single cell, and replacing it
+    @Test
+    void put_Test() {
+        RangeIndex index = new RangeIndex(26, 100);
+        index.put(2, 3, true, 5.5);
+        RangeIndex.Summary summary = index.query(new Range2D("A0:Z99"));
+        assertEquals(5.5, summary.sum);
+        assertEquals(5.5, summary.min);
+        assertEquals(5.5, summary.max);
+        assertEquals(1, summary.count);
+        assertEquals(0, summary.invalid);
+
+        // The same cell, now as a text:
+        index.put(2, 3, false, 0);
+        summary = index.query(new Range2D("C3:C3"));
+        assertEquals(0.0, summary.sum);
+        assertEquals(1, summary.count);
+        assertEquals(1, summary.invalid);
+
+        // Outside the range:
+        summary = index.query(new Range2D("A0:B99"));
+        assertEquals(0, summary.count);
+
+        // Removing the cell:
+        index.remove(2, 3);
+        assertEquals(0, index.query(new Range2D("A0:Z99")).count);
+
+        // A range that is partly outside the spreadsheet:
+        index.put(25, 99, true, 2);
+        assertEquals(2.0, index.query(new Range2D("Y90:AB200")).sum);
+    }
+
+    // Tests the minimum and the maximum - they follow the order of Collections.min and Collections.max
+    @Test
+    void minMax_Test() {
+        RangeIndex index = new RangeIndex(10, 10);
+        index.put(0, 0, true, 3);
+        index.put(0, 1, true, -7);
+        index.put(1, 5, true, 12);
+        RangeIndex.Summary summary = index.query(new Range2D("A0:J9"));
+        assertEquals(-7.0, summary.min);
+        assertEquals(12.0, summary.max);
+
+        // Replacing the maximum:
+        index.put(1, 5, true, 1);
+        summary = index.query(new Range2D("A0:J9"));
+        assertEquals(3.0, summary.max);
+
+        // 0.0 is bigger than -0.0, and NaN is bigger than everything:
+        index.put(2, 2, true, -0.0);
+        index.put(2, 3, true, 0.0);
+        summary = index.query(new Range2D("C2:C3"));
+        assertEquals(-0.0, summary.min);
+        assertEquals(0.0, summary.max);
+        index.put(2, 3, true, Double.NaN);
+        assertEquals(Double.NaN, index.query(new Range2D("A0:J9")).max);
+    }
+
+    // Tests random cells and ranges against a simple loop over the cells
+    @Test
+    void random_Test() {
+        Random random = new Random(4);
+        int width = 30, height = 70;
+        RangeIndex index = new RangeIndex(width, height);
+        Double[][] cells = new Double[width][height]; // null - an empty cell, NaN - a text
+
+        for (int round = 0; round < 3000; round++) {
+            int x = random.nextInt(width), y = random.nextInt(height);
+            int kind = random.nextInt(4);
+            if (kind == 0) {
+                index.remove(x, y);
+                cells[x][y] = null;
+            }
+            else if (kind == 1) {
+                index.put(x, y, false, 0);
+                cells[x][y] = Double.NaN;
+            }
+            else {
+                int value = random.nextInt(1000) - 500;
+                index.put(x, y, true, value);
+                cells[x][y] = (double) value;
+            }
+
+            // Check a random range:
+            int x1 = random.nextInt(width), x2 = x1 + random.nextInt(width - x1);
+            int y1 = random.nextInt(height), y2 = y1 + random.nextInt(height - y1);
+            double sum = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            int count = 0, invalid = 0;
+            for (int i = x1; i <= x2; i++) {
+                for (int j = y1; j <= y2; j++) {
+                    if (cells[i][j] == null) continue;
+                    count++;
+                    if (cells[i][j].isNaN()) invalid++;
+                    else {
+                        sum += cells[i][j];
+                        min = Math.min(min, cells[i][j]);
+                        max = Math.max(max, cells[i][j]);
+                    }
+                }
+            }
+            RangeIndex.Summary summary = index.query(new Range2D(CellEntry.columnName(x1) + y1 + ":" + CellEntry.columnName(x2) + y2));
+            assertEquals(sum, summary.sum);
+            assertEquals(min, summary.min);
+            assertEquals(max, summary.max);
+            assertEquals(count, summary.count);
+            assertEquals(invalid, summary.invalid);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+import jdk.jfr.*;
+
+/**
+ * RecalculationEvent - a Java Flight Recorder event for every recalculation of an Ex2Sheet (set, batch, eval and load).
+ * The duration of the event is the whole recalculation, and the phases are timed separately:
+ * - reset: the affected cells are reset to their original type (the classification of the data is kept by the cell, see SCell.getFormulaType).
+ * - order: the topological order and the depth of the affected cells (the same process as depth(), see Ex2Sheet.orderByDepth).
+ * - cycles: the cells in a cycle are marked with the error of their type.
+ * - evaluation: the cells are evaluated level by level (and the range index is updated).
+ * When the event is not enabled in the recording, the spreadsheet only checks isEnabled() - it does not read the clock at all.
+ */
+@Name("ex4.Recalculation")
+@Label("Recalculation")
+@Category({"Ex4", "Spreadsheet"})
+@Description("A recalculation of the cells affected by a change of the spreadsheet")
+@StackTrace(false)
+public class RecalculationEvent extends Event {
+    @Label("Cells")
+    @Description("The number of affected cells")
+    int cells;
+
+    @Label("Levels")
+    @Description("The number of depth levels that were evaluated")
+    int levels;
+
+    @Label("Max Depth")
+    int maxDepth;
+
+    @Label("Cycle Cells")
+    @Description("The number of affected cells in a cycle (or depending on one)")
+    int cycles;
+
+    @Label("Parallel")
+    @Description("True if the levels were evaluated by a pool of threads")
+    boolean parallel;
+
+    @Label("Reset")
+    @Timespan(Timespan.NANOSECONDS)
+    long resetDuration;
+
+    @Label("Order")
+    @Timespan(Timespan.NANOSECONDS)
+    long orderDuration;
+
+    @Label("Cycles")
+    @Timespan(Timespan.NANOSECONDS)
+    long cyclesDuration;
+
+    @Label("Evaluation")
+    @Timespan(Timespan.NANOSECONDS)
+    long evaluationDuration;
+}
@@ -0,0 +1,108 @@
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RecalculationEvent_Tests - JUnit tests for the Flight Recorder events of Ex2Sheet (RecalculationEvent and CellEvaluationEvent).
+ * - Verifies that every recalculation emits a single event, with its cells, levels, depth, cycles and phase durations.
+ * - Tests that the sampled cell events are recorded only when they are enabled.
+ */
+public class RecalculationEvent_Tests {
+
+    /**
+     * Records the given action, and returns the recorded events of the given type.
+     * @param action the action to record.
+     * @param name the name of the events (see the @Name of the event).
+     * @param cellEvents true to enable the (sampled) cell evaluation events too.
+     * @return the recorded events.
+     */
+    private static List<RecordedEvent> record(Runnable action, String name, boolean cellEvents) throws IOException {
+        Path file = Files.createTempFile("recalculation", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(RecalculationEvent.class).withoutThreshold();
+            if (cellEvents) recording.enable(CellEvaluationEvent.class).withoutThreshold();
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals(name))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Tests a single event for every recalculation, with its counters
+    @Test
+    void recalculation_Test() throws IOException {
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        sheet.set(0, 0, "5"); // A0
+        sheet.set(0, 1, "=A0*2"); // A1
+        sheet.set(0, 2, "=A1+1"); // A2
+        sheet.set(1, 0, "=B1"); // B0
+        sheet.set(1, 1, "=B0"); // B1 - a cycle
+
+        List<RecordedEvent> events = record(() -> {
+            sheet.set(0, 0, "6"); // recalculates A0, A1, A2
+            sheet.batch(b -> {
+                b.set(1, 2, "1");
+                b.set(1, 3, "=B2+1");
+            });
+            sheet.set(1, 0, "=B1+1"); // still a cycle
+        }, "ex4.Recalculation", false);
+        assertEquals(3, events.size());
+
+        RecordedEvent chain = events.get(0);
+        assertEquals(3, chain.getInt("cells"));
+        assertEquals(3, chain.getInt("levels"));
+        assertEquals(2, chain.getInt("maxDepth"));
+        assertEquals(0, chain.getInt("cycles"));
+        assertFalse(chain.getBoolean("parallel"));
+        assertTrue(chain.getDuration("resetDuration").toNanos() >= 0);
+        assertTrue(chain.getDuration("evaluationDuration").toNanos() >= 0);
+        long phases = chain.getDuration("resetDuration").toNanos() + chain.getDuration("orderDuration").toNanos()
+                + chain.getDuration("cyclesDuration").toNanos() + chain.getDuration("evaluationDuration").toNanos();
+        assertTrue(phases <= chain.getDuration().toNanos() + 1_000_000); // the phases are inside the event (with some clock tolerance)
+
+        // A batch - a single event for both changes:
+        assertEquals(2, events.get(1).getInt("cells"));
+        assertEquals(2, events.get(1).getInt("levels"));
+
+        // A cycle:
+        assertEquals(2, events.get(2).getInt("cycles"));
+        assertEquals(0, events.get(2).getInt("levels"));
+    }
+
+    // Tests the sampled cell evaluation events - recorded only when they are enabled
+    @Test
+    void cellEvaluation_Test() throws IOException {
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        Runnable fill = () -> sheet.batch(b -> {
+            for (int x = 0; x < 26; x++) {
+                for (int y = 0; y < 100; y++) b.set(x, y, "=" + (x + y) + "+1");
+            }
+        });
+
+        // Disabled by default:
+        assertTrue(record(fill, "ex4.CellEvaluation", false).isEmpty());
+
+        // Enabled - about one of every SAMPLE_RATE cells (2600 cells, so missing all of them is practically impossible):
+        List<RecordedEvent> events = record(fill, "ex4.CellEvaluation", true);
+        assertFalse(events.isEmpty());
+        assertTrue(events.size() < 2600);
+        for (RecordedEvent event : events) {
+            int x = event.getInt("x"), y = event.getInt("y");
+            assertEquals(CellEntry.columnName(x) + y, event.getString("cell"));
+            assertEquals(Ex2Utils.FORM, event.getInt("type"));
+            assertEquals(String.valueOf((double) (x + y + 1)), sheet.value(x, y));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.*;
+
+/**
+ * RepaintQueue - the requests of an event-driven GUI: which cells should be drawn again, and whether an input event (mouse / keyboard) waits.
+ * - Requests are posted by any thread: the display cache posts the cells whose displayed value was changed by a recalculation (see DisplayCache),
+ *   and the drawing library posts the input events (see StdDrawEx2.setInputListener).
+ * - The GUI loop takes all the posted requests at once (see take) - when there are none, it waits (parks) and uses no CPU at all.
+ * - Requests are merged: a cell that was posted several times is drawn once, and a request to draw everything replaces the single cells.
+ */
+public class RepaintQueue {
+    private final Set<Long> cells = new LinkedHashSet<>(); // the keys (see DependencyGraph.key) of the cells to draw again
+    private boolean all = false; // true - the whole window should be drawn again
+    private boolean input = false; // true - an input event waits to be handled
+
+    /**
+     * The requests that were taken together from the queue.
+     */
+    public static final class Request {
+        private final Set<Long> cells;
+        private final boolean all, input;
+
+        private Request(Set<Long> cells, boolean all, boolean input) {
+            this.cells = cells;
+            this.all = all;
+            this.input = input;
+        }
+
+        /**
+         * @return the keys (see DependencyGraph.key) of the cells to draw again (empty if the whole window should be drawn again).
+         */
+        public Set<Long> getCells() {
+            return cells;
+        }
+
+        /**
+         * @return true if the whole window should be drawn again.
+         */
+        public boolean isAll() {
+            return all;
+        }
+
+        /**
+         * @return true if an input event waits to be handled.
+         */
+        public boolean isInput() {
+            return input;
+        }
+    }
+
+    /**
+     * Requests to draw the x,y cell again.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     */
+    public synchronized void repaint(int x, int y) {
+        if (!all) cells.add(DependencyGraph.key(x, y));
+        notifyAll();
+    }
+
+    /**
+     * Requests to draw some cells again.
+     * @param keys the keys (see DependencyGraph.key) of the cells.
+     */
+    public synchronized void repaint(Collection<Long> keys) {
+        if (keys.isEmpty()) return;
+        if (!all) cells.addAll(keys);
+        notifyAll();
+    }
+
+    /**
+     * Requests to draw the whole window again.
+     */
+    public synchronized void repaintAll() {
+        all = true;
+        cells.clear(); // drawn anyway
+        notifyAll();
+    }
+
+    /**
+     * Tells the GUI loop that an input event (a mouse click or a typed key) waits to be handled.
+     */
+    public synchronized void input() {
+        input = true;
+        notifyAll();
+    }
+
+    /**
+     * @return true if there are no requests.
+     */
+    public synchronized boolean isEmpty() {
+        return cells.isEmpty() && !all && !input;
+    }
+
+    /**
+     * Takes all the posted requests - waits until there is at least one.
+     * @return the requests (the queue is left empty).
+     * @throws InterruptedException if the waiting thread was interrupted.
+     */
+    public synchronized Request take() throws InterruptedException {
+        while (isEmpty()) wait();
+        return poll();
+    }
+
+    /**
+     * Takes all the posted requests, without waiting.
+     * @return the requests (the queue is left empty), or null if there are none.
+     */
+    public synchronized Request poll() {
+        if (isEmpty()) return null;
+        Request ans = new Request(new LinkedHashSet<>(cells), all, input);
+        cells.clear();
+        all = false;
+        input = false;
+        return ans;
+    }
+}
@@ -0,0 +1,96 @@
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RepaintQueue_Tests - JUnit tests for the RepaintQueue class.
+ * - Verifies that the requests are merged: single cells, the whole window, and input events.
+ * - Checks that take() waits until a request is posted by another thread.
+ * - Tests the requests posted by a DisplayCache - only the cells whose displayed value was changed.
+ */
+public class RepaintQueue_Tests {
+
+    // Tests merging the requests
+    @Test
+    void merge_Test() {
+        RepaintQueue queue = new RepaintQueue();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+
+        queue.repaint(1, 2);
+        queue.repaint(1, 2);
+        queue.repaint(List.of(DependencyGraph.key(3, 4)));
+        RepaintQueue.Request request = queue.poll();
+        assertEquals(Set.of(DependencyGraph.key(1, 2), DependencyGraph.key(3, 4)), request.getCells());
+        assertFalse(request.isAll());
+        assertFalse(request.isInput());
+        assertTrue(queue.isEmpty());
+
+        // Drawing everything replaces the single cells:
+        queue.repaint(1, 2);
+        queue.repaintAll();
+        queue.repaint(5, 6);
+        queue.input();
+        request = queue.poll();
+        assertTrue(request.isAll());
+        assertTrue(request.isInput());
+        assertTrue(request.getCells().isEmpty());
+        assertNull(queue.poll());
+    }
+
+    // Tests that take() waits for a request from another thread
+    @Test
+    void take_Test() throws InterruptedException {
+        RepaintQueue queue = new RepaintQueue();
+        AtomicReference<RepaintQueue.Request> taken = new AtomicReference<>();
+        Thread loop = new Thread(() -> {
+            try {
+                taken.set(queue.take());
+            } catch (InterruptedException e) {
+                // the test failed
+            }
+        });
+        loop.start();
+        Thread.sleep(50);
+        assertNull(taken.get()); // nothing was posted - still waiting
+        assertEquals(Thread.State.WAITING, loop.getState());
+
+        queue.input();
+        loop.join(5000);
+        assertNotNull(taken.get());
+        assertTrue(taken.get().isInput());
+    }
+
+    // Tests the cells that a DisplayCache posts after recalculations
+    @Test
+    void displayCache_Test() {
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        sheet.set(0, 0, "5"); // A0
+        sheet.set(0, 1, "=A0*0"); // A1 - always 0
+        sheet.set(0, 2, "=A0+1"); // A2
+        DisplayCache display = new DisplayCache(sheet);
+        RepaintQueue queue = new RepaintQueue();
+        display.setRepaintQueue(queue);
+
+        // A1 is recalculated to the same value - it is not drawn again:
+        sheet.set(0, 0, "6");
+        assertEquals(Set.of(DependencyGraph.key(0, 0), DependencyGraph.key(0, 2)), queue.poll().getCells());
+
+        // The same data again - nothing changes:
+        sheet.set(0, 0, "6");
+        assertNull(queue.poll());
+
+        // A full recalculation - only the cells that were changed (or became empty) are drawn again:
+        sheet.cells.put(3, 3, new SCell("x")); // a change that bypasses set (like load)
+        sheet.cells.put(0, 2, null);
+        sheet.eval();
+        assertEquals(Set.of(DependencyGraph.key(3, 3), DependencyGraph.key(0, 2)), queue.poll().getCells());
+        assertEquals(Ex2Utils.EMPTY_CELL, display.getText(0, 2));
+
+        // A refresh - everything:
+        display.refresh();
+        assertTrue(queue.poll().isAll());
+    }
+}
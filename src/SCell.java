@@ -1,10 +1,9 @@
-import java.util.Arrays;
-
 /**
  * SCell - A class representing a single spreadsheet cell.
  * - Stores raw data (as String) and determines the type of data.
  * - Supports data types: TEXT, NUMBER, FORM, IF_TYPE, FUCN_TYPE.
- * - Type is calculated using patterns and rules defined in Ex2Utils.
+ * - Type is calculated using the rules defined in Ex2Utils, in a single scan of the data (no regular expressions).
+ * - Data that starts with '=' is parsed once into an expression tree (Expr), which Ex2Sheet evaluates.
  * - Includes utility methods for type checks and data manipulation.
  * This class is used by Ex2Sheet for managing individual cell behavior.
  */
@@ -12,6 +11,8 @@ public class SCell implements Cell {
     private String line; // The String data saves in the Cell (raw data - Not calculated)
     private int type; // The type of cell - according to the settings in Ex2Utils
     private int order; // representing the natural order of this Cell - calculated in Ex2Sheet class
+    private Expr formula; // The parsed expression tree of the data (null for text and numbers) - parsed once, in setData
+    private int formulaType; // The classification of the data prefix (IF_TYPE, FUCN_TYPE, FORM or TEXT) - computed once, in setData
 
     /**
      * constructor of a cell object:
@@ -24,6 +25,39 @@ public class SCell implements Cell {
         computeType();  // Determines the type of data (e.g., NUMBER, TEXT)
     }
 
+    /**
+     * constructor of an empty cell object, for the factory methods (the fields are set by the caller).
+     */
+    private SCell() {
+    }
+
+    /**
+     * copy constructor of a cell object - the new cell has the same data, type and parsed formula as the given cell,
+     * without classifying and parsing the data again (the parsed formula is immutable, so the two cells can share it).
+     * The order of the new cell is 0 (it was not calculated yet).
+     * @param other a cell to copy.
+     */
+    SCell(SCell other) {
+        line = other.line;
+        type = other.type;
+        formula = other.formula;
+        formulaType = other.formulaType;
+    }
+
+    /**
+     * Creates a number cell from data that is already known to be a number (e.g., a number that was read from a binary file, see BinarySheetFile),
+     * without classifying and parsing the data again.
+     * @param number the data of the cell - a valid number (see isNumber).
+     * @return a new cell of type NUMBER.
+     */
+    static SCell number(String number) {
+        SCell cell = new SCell();
+        cell.line = number;
+        cell.type = Ex2Utils.NUMBER;
+        cell.formulaType = Ex2Utils.TEXT; // the data does not start with '=', and there is no formula
+        return cell;
+    }
+
     /**
      * Computes the type of data stored in the cell.
      * - Checks the raw data and assigns a type (e.g., TEXT, NUMBER, FORM, FUNCTION, CONDITION).
@@ -42,45 +76,47 @@ public class SCell implements Cell {
      * Deeper validation is done during evaluation in Ex2Sheet (and then if there is an error, it changes the cell's type to the appropriate error).
      */
     private void computeType() {
+        type = typeOf(line, formulaType); // the prefix of the data was already classified (in setData)
+    }
+
+    /**
+     * Classifies raw data exactly like a new cell with that data (see computeType) - without creating a cell, and without parsing its formula.
+     * @param data the raw data of a cell.
+     * @return NUMBER, TEXT, IF_TYPE, FUCN_TYPE or FORM (according to Ex2Utils).
+     */
+    public static int typeOf(String data) {
+        return typeOf(data, formulaType(data));
+    }
+
+    /**
+     * Classifies raw data whose prefix was already classified (see computeType).
+     * @param line the raw data of a cell.
+     * @param formulaType the classification of its prefix (see formulaType(String)).
+     * @return NUMBER, TEXT, IF_TYPE, FUCN_TYPE or FORM (according to Ex2Utils).
+     */
+    private static int typeOf(String line, int formulaType) {
         // An empty string is considered text (unless proven otherwise).
-        if (line == null || line.isEmpty())
-        {
-            type = Ex2Utils.TEXT;
-            return;
-        }
-        // Check if the data is a valid number:
-        if (isNumber(line)) {
-            // The cell contains a valid number (Double) if we were able to convert it to a number properly
-            // (using a function we created that catches the conversion error if there is an error)
-            type = Ex2Utils.NUMBER;
-        }
+        if (line == null || line.isEmpty()) return Ex2Utils.TEXT;
 
-        // Check for IF condition:
-        else if (line.matches("(?i)^=if\\(.*")) {
-            type = Ex2Utils.IF_TYPE;
-        }
+        // Check if the data is a valid number:
+        // The cell contains a valid number (Double) if our number lexer accepts it
+        // (the same numbers that Double.parseDouble accepts - without throwing and catching an exception for every text)
+        if (isNumber(line)) return Ex2Utils.NUMBER;
 
-        // Check for function (e.g., SUM, AVERAGE):
-        else if (Arrays.stream(Ex2Utils.FUNCTIONS).anyMatch(func -> line.matches("(?i)^=" + func + "\\(.*"))) {
-            type = Ex2Utils.FUCN_TYPE;
-        }
+        // Check for IF condition, function (e.g., SUM, AVERAGE):
+        if (formulaType == Ex2Utils.IF_TYPE || formulaType == Ex2Utils.FUCN_TYPE) return formulaType;
 
         // We have a formula if the first character is just an '='
         // the test if there is any error in the formula is considered in the spreadsheet class
-        else if ((line.charAt(0) == '=') && (!line.startsWith("=if"))
-                && (Arrays.stream(Ex2Utils.FUNCTIONS).noneMatch(func -> line.matches("(?i)^=" + func + "\\(.*"))))
-        {
-            type = Ex2Utils.FORM;
-        }
+        if ((formulaType == Ex2Utils.FORM) && (!line.startsWith("=if"))) return Ex2Utils.FORM;
 
         // otherwise, the string is considered text (unless proven otherwise).
-        else {
-            type = Ex2Utils.TEXT;
-        }
+        return Ex2Utils.TEXT;
     }
 
     /**
-     * A function that tries to see if the cell's string can be converted to a number (double)
+     * A function that checks if the cell's string can be converted to a number (double) -
+     * exactly the strings that Double.parseDouble accepts, but without throwing an exception for a string that is not a number.
      * @param str a String with the raw data of the Cell
      * @return True if the string can be converted to a number (double) properly
      */
@@ -88,14 +124,200 @@ public class SCell implements Cell {
         // An empty string is not considered a valid number.
         if (str == null || str.isEmpty()) return false;
 
-        try {
-            Double.parseDouble(str);
-            // We got here so the conversion is correct - therefore there is a correct number here:
-            return true;
-        } catch (NumberFormatException e) {
-            // There is a problem - Not a valid number:
-            return false;
+        // Every number except "NaN" is parsed to a value that is not NaN:
+        return !Double.isNaN(parseNumber(str)) || isNaN(str);
+    }
+
+    /**
+     * Checks if a string is the number "NaN" (with an optional sign and spaces around it, like Double.parseDouble).
+     * @param str a String.
+     * @return true if the string is "NaN".
+     */
+    private static boolean isNaN(String str) {
+        String trimmed = str.trim();
+        int start = (trimmed.startsWith("+") || trimmed.startsWith("-")) ? 1 : 0;
+        return trimmed.length() == start + 3 && trimmed.startsWith("NaN", start);
+    }
+
+    /**
+     * Our number lexer - checks and converts a string to a number (double) in a single pass over its characters, without any exception.
+     * It accepts exactly the format of Double.parseDouble: spaces around the number, an optional sign, digits with an optional '.',
+     * an optional exponent ('e' or 'E', an optional sign and digits), an optional type suffix ('f', 'F', 'd' or 'D'),
+     * "Infinity", "NaN", and hexadecimal numbers (e.g., "0x1.8p1").
+     * A number with up to 15 digits and a small exponent is calculated here exactly (both parts are exact doubles),
+     * and only the rare other numbers (long or hexadecimal) are converted by Double.parseDouble - after we already know they are valid.
+     * @param str a String with the raw data of the Cell
+     * @return the number, or NaN if the string is not a number (use isNumber to tell it apart from the string "NaN").
+     */
+    public static double parseNumber(String str) {
+        if (str == null) return Double.NaN;
+
+        // Skip the spaces (and other control characters) around the number, like String.trim:
+        int i = 0, end = str.length();
+        while (i < end && str.charAt(i) <= ' ') i++;
+        while (end > i && str.charAt(end - 1) <= ' ') end--;
+        if (i == end) return Double.NaN;
+
+        // An optional sign:
+        boolean negative = false;
+        if (str.charAt(i) == '+' || str.charAt(i) == '-') {
+            negative = str.charAt(i) == '-';
+            i++;
+        }
+        if (i == end) return Double.NaN;
+
+        // Special numbers:
+        if (str.startsWith("Infinity", i) && i + 8 == end) return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        if (str.startsWith("NaN", i)) return Double.NaN;
+
+        // Hexadecimal numbers are rare - we will only check them, and let Double.parseDouble convert them:
+        if (str.charAt(i) == '0' && i + 1 < end && (str.charAt(i + 1) == 'x' || str.charAt(i + 1) == 'X')) {
+            return isHexNumber(str, i + 2, end) ? Double.parseDouble(str) : Double.NaN;
         }
+
+        // The digits (before and after the '.') - we will keep up to 18 significant digits as a long:
+        long digits = 0; // the significant digits
+        int count = 0; // the number of significant digits
+        int exponent = 0; // the power of 10 to multiply the digits with
+        boolean anyDigit = false, dropped = false; // dropped - there were more significant digits than we can keep
+        boolean dot = false;
+        for (; i < end; i++) {
+            char c = str.charAt(i);
+            if (c == '.' && !dot) {
+                dot = true;
+                continue;
+            }
+            if (c < '0' || c > '9') break;
+            anyDigit = true;
+            if (digits == 0 && c == '0') {
+                if (dot) exponent--; // a leading zero after the '.'
+            }
+            else if (count < 18) {
+                digits = digits * 10 + (c - '0');
+                count++;
+                if (dot) exponent--;
+            }
+            else {
+                if (c != '0') dropped = true;
+                if (!dot) exponent++;
+            }
+        }
+        if (!anyDigit) return Double.NaN; // e.g. "." or "e5"
+
+        // An optional exponent:
+        if (i < end && (str.charAt(i) == 'e' || str.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExp = false;
+            if (i < end && (str.charAt(i) == '+' || str.charAt(i) == '-')) {
+                negativeExp = str.charAt(i) == '-';
+                i++;
+            }
+            int expStart = i, exp = 0;
+            while (i < end && str.charAt(i) >= '0' && str.charAt(i) <= '9') {
+                if (exp < 100000) exp = exp * 10 + (str.charAt(i) - '0'); // a bigger exponent is already out of the range of a double
+                i++;
+            }
+            if (i == expStart) return Double.NaN; // an exponent without digits
+            exponent += negativeExp ? -exp : exp;
+        }
+
+        // An optional type suffix, and then it must be the end of the number:
+        if (i < end && "fFdD".indexOf(str.charAt(i)) >= 0) i++;
+        if (i != end) return Double.NaN;
+
+        // The number is valid. If it is small enough, we will calculate it exactly (both parts are exact doubles, so the result is rounded correctly):
+        if (digits == 0) return negative ? -0.0 : 0.0;
+        if (!dropped && count <= 15 && exponent >= -22 && exponent <= 22) {
+            double value = (exponent >= 0) ? digits * POWERS_OF_10[exponent] : digits / POWERS_OF_10[-exponent];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(str); // a valid number, so there is no exception here
+    }
+
+    private static final double[] POWERS_OF_10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22}; // the powers of 10 that are exact doubles
+
+    /**
+     * Checks the part of a hexadecimal number after the "0x": hex digits with an optional '.', and a binary exponent ('p' or 'P', an optional sign and digits),
+     * and an optional type suffix.
+     * @param str the whole String.
+     * @param i the index after the "0x".
+     * @param end the index after the last character of the number (without the spaces).
+     * @return true if it is a valid hexadecimal number.
+     */
+    private static boolean isHexNumber(String str, int i, int end) {
+        boolean anyDigit = false, dot = false;
+        for (; i < end; i++) {
+            char c = str.charAt(i);
+            if (c == '.' && !dot) dot = true;
+            else if (Character.digit(c, 16) >= 0 && c < 128) anyDigit = true;
+            else break;
+        }
+        // The binary exponent is required:
+        if (!anyDigit || i == end || (str.charAt(i) != 'p' && str.charAt(i) != 'P')) return false;
+        i++;
+        if (i < end && (str.charAt(i) == '+' || str.charAt(i) == '-')) i++;
+        int expStart = i;
+        while (i < end && str.charAt(i) >= '0' && str.charAt(i) <= '9') i++;
+        if (i == expStart) return false;
+        if (i < end && "fFdD".indexOf(str.charAt(i)) >= 0) i++;
+        return i == end;
+    }
+
+    /**
+     * Classifies a cell data that starts with '=' - condition, function or formula.
+     * The prefix is checked in a single scan, without regular expressions and without creating any object.
+     * @param data the raw data of a cell.
+     * @return IF_TYPE, FUCN_TYPE or FORM (according to Ex2Utils), or TEXT if the data does not start with '='.
+     */
+    public static int formulaType(String data) {
+        if (data == null || data.isEmpty() || data.charAt(0) != '=') return Ex2Utils.TEXT;
+
+        // If it starts with '=if(', it's a condition:
+        if (isCondition(data)) return Ex2Utils.IF_TYPE;
+
+        // If it starts with '=<function>(', it's a function:
+        if (functionIndex(data) >= 0) return Ex2Utils.FUCN_TYPE;
+
+        // If it starts with **just** '=', it's a formula:
+        return Ex2Utils.FORM;
+    }
+
+    /**
+     * @param data the raw data of a cell.
+     * @return true if the data starts with "=if(" (case-insensitive).
+     */
+    public static boolean isCondition(String data) {
+        return startsWithKeyword(data, "if");
+    }
+
+    /**
+     * @param data the raw data of a cell.
+     * @return the index (in Ex2Utils.FUNCTIONS) of the function the data starts with - "=<function>(" (case-insensitive), or -1 if there is none.
+     */
+    public static int functionIndex(String data) {
+        for (int function = 0; function < Ex2Utils.FUNCTIONS.length; function++) {
+            if (startsWithKeyword(data, Ex2Utils.FUNCTIONS[function])) return function;
+        }
+        return -1;
+    }
+
+    /**
+     * Checks if the data starts with "=<keyword>(" - the letters are compared case-insensitively (only English letters, like the "(?i)" of a regular expression).
+     * Most data is rejected by its first characters, so each keyword costs only a few character comparisons.
+     * @param data the raw data of a cell.
+     * @param keyword a keyword in lower case (e.g., "if" or "sum").
+     * @return true if the data starts with "=<keyword>(".
+     */
+    private static boolean startsWithKeyword(String data, String keyword) {
+        int length = keyword.length();
+        if (data == null || data.length() < length + 2 || data.charAt(0) != '=' || data.charAt(length + 1) != '(') return false;
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i + 1);
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            if (c != keyword.charAt(i)) return false;
+        }
+        return true;
     }
 
     /**
@@ -118,13 +340,32 @@ public class SCell implements Cell {
 
     /**
      * Allows you to redefine the data of an existing cell,
-     * and from there we will check what type of new data was entered.
+     * and from there we will check what type of new data was entered, and parse it (if it is a formula).
      * @param s a String with the new data we want to put in this existing cell
      */
     @Override
     public void setData(String s) {
         this.line = s;
+        formulaType = formulaType(s);
         computeType();
+        formula = Expr.compile(s); // Parse the formula only once - every evaluation walks this tree
+    }
+
+    /**
+     * Returns the parsed expression tree of this cell data.
+     * @return the Expr of a formula, condition or function (a data that starts with '='), or null for text and numbers.
+     */
+    public Expr getFormula() {
+        return formula;
+    }
+
+    /**
+     * Returns the classification of this cell data prefix - computed once, when the data was set (see formulaType(String)).
+     * Unlike getType, it is not changed by calculation errors, so Ex2Sheet can restore the type of a cell without classifying its data again.
+     * @return IF_TYPE, FUCN_TYPE or FORM (according to Ex2Utils), or TEXT if the data does not start with '='.
+     */
+    public int getFormulaType() {
+        return formulaType;
     }
 
     /**
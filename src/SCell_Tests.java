@@ -117,6 +117,78 @@ public class SCell_Tests {
         assertNotEquals(Ex2Utils.TEXT, test_cell.getType());
     }
 
+    //testing the parsed formula of the cell (parsed once, when the data is set)
+    @Test
+    public void Formula_Test(){
+        test_cell.setData("=A0*2 + 2"); // a formula - parsed into a tree
+        assertInstanceOf(Expr.BinOp.class, test_cell.getFormula());
+
+        test_cell.setData("=if(A0>1,a,b)"); // a condition
+        assertInstanceOf(Expr.If.class, test_cell.getFormula());
+
+        test_cell.setData("=sum(A0:B3)"); // a function
+        assertInstanceOf(Expr.Fun.class, test_cell.getFormula());
+
+        test_cell.setData("123"); // a number - nothing to parse
+        assertNull(test_cell.getFormula());
+
+        test_cell.setData("text"); // a text - nothing to parse
+        assertNull(test_cell.getFormula());
+    }
+
+    //testing our number lexer against Double.parseDouble - the same strings are numbers, and they get the same value
+    @Test
+    public void parseNumber_Test(){
+        String[] strings = {"0", "-0", "+7", "1.", ".5", "-.5e-3", " 42 ", "\t3.25\n", "1e22", "1e23", "123456789012345",
+                "1234567890123456789", "0.1", "0.30000000000000004", "4.9e-324", "1.7976931348623157E308", "1e309", "1e-400",
+                "00000000000000000000012.5", "0.000000000000000000000001", "1.5f", "2d", "Infinity", "-Infinity", "NaN", "+NaN",
+                "0x1p3", "0X1.8P-1", "0x.8p1d", "9007199254740993", "123.456e+2",
+                // Not numbers:
+                "", " ", ".", "-", "+", "e5", "1e", "1e+", "1..2", "1.2.3", "--1", "1-", "112 87", "1,5", "abc", "A1", "Infinityf",
+                "infinity", "nan", "NaNx", "0x", "0x1", "0x1.8", "0xp1", "0x1pf", "1f2", "1ee2", "=1", "١٢"};
+        for (String s : strings) {
+            Double expected;
+            try {
+                expected = Double.parseDouble(s);
+            }
+            catch (NumberFormatException e) {
+                expected = null;
+            }
+            assertEquals(expected != null, SCell.isNumber(s), s);
+            if (expected != null) assertEquals(expected, SCell.parseNumber(s), s);
+            else assertTrue(Double.isNaN(SCell.parseNumber(s)), s);
+        }
+        assertFalse(SCell.isNumber(null));
+    }
+
+    //testing the classification of the data prefix - the same as the regular expressions "(?i)^=if\(.*" and "(?i)^=<function>\(.*"
+    @Test
+    public void formulaType_Test(){
+        String[] strings = {"=if(A1>2,1,2)", "=IF(", "=iF(x", "=if", "=if5", "=if (1<2,1,2)", "if(1<2,1,2)", "=sum(A0:A3)", "=SUM(",
+                "=Average(A1:B2)", "=min(", "=MAX(A1:A1)", "=max", "=maxx(A1:A2)", "=mi(A1:A2)", "=A1+2", "=", "text", "", "=ıf(1<2,1,2)"};
+        for (String s : strings) {
+            int expected = Ex2Utils.TEXT;
+            if (s.startsWith("=")) {
+                expected = Ex2Utils.FORM;
+                if (s.matches("(?i)^=if\\(.*")) expected = Ex2Utils.IF_TYPE;
+                for (String func : Ex2Utils.FUNCTIONS) {
+                    if (s.matches("(?i)^=" + func + "\\(.*")) expected = Ex2Utils.FUCN_TYPE;
+                }
+            }
+            assertEquals(expected, SCell.formulaType(s), s);
+        }
+        assertEquals(2, SCell.functionIndex("=Min(A1:A2)"));
+        assertEquals(-1, SCell.functionIndex("=A1"));
+
+        // The classification is kept in the cell, and it is not changed by an error type:
+        test_cell.setData("=max(A0:A3)");
+        test_cell.setType(Ex2Utils.ERR_FUNC);
+        assertEquals(Ex2Utils.FUCN_TYPE, test_cell.getFormulaType());
+        test_cell.setData("=if5"); // not a condition - and (like before) not a formula either
+        assertEquals(Ex2Utils.FORM, test_cell.getFormulaType());
+        assertEquals(Ex2Utils.TEXT, test_cell.getType());
+    }
+
 //    Tests on formulas (computeForm), function (computeFun) and condition(computeIF)
 //    are located in 'Ex2Sheet_Tests.java' !!!
 }
\ No newline at end of file
@@ -0,0 +1,260 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * SegmentTree2D - the skeleton of a sparse 2D segment tree over the cells of a spreadsheet, shared by RangeIndex and DepthIndex.
+ * - An outer tree over the x-coordinates, where every node holds an inner tree over the y-coordinates.
+ *   Node (o, i) stands for the cells in the columns of the outer node o and in the rows of the inner node i.
+ * - A query visits O(log(width) * log(height)) disjoint nodes, and an update recalculates the same number of nodes.
+ * - A node is kept only if some leaf under it is kept, so the memory is proportional to the kept cells.
+ *   The nodes are numbered by a node table (see NodeTable) - the data of a node is kept by the subclass in plain arrays, indexed by its slot.
+ * - A node is always recalculated from its two children (see combine), never by adding and subtracting a difference.
+ * The nodes are numbered like a heap: the root is 1, and the children of node k are 2k and 2k+1.
+ */
+public abstract class SegmentTree2D {
+    protected final int width, height; // the dimensions of the indexed spreadsheet
+    private final NodeTable nodes = new NodeTable(); // node key (see key) -> the slot of its data
+    private int capacity = 0; // the number of slots that the data arrays of the subclass hold (see reserve)
+
+    /**
+     * constructor for an empty tree, over a spreadsheet of the given dimensions.
+     * @param width the dimension of the x-coordinate of the spreadsheet.
+     * @param height the dimension of the y-coordinate of the spreadsheet.
+     */
+    protected SegmentTree2D(int width, int height) {
+        this.width = Math.max(width, 1);
+        this.height = Math.max(height, 1);
+    }
+
+    /**
+     * Grows the data arrays of the nodes.
+     * @param slots the number of slots that the arrays must hold from now on.
+     */
+    protected abstract void reserve(int slots);
+
+    /**
+     * Recalculates the data of a node from the data of its two children - at least one of them is kept.
+     * @param slot the slot of the node.
+     * @param left the slot of one child (-1 - not kept).
+     * @param right the slot of the other child (-1 - not kept).
+     */
+    protected abstract void combine(int slot, int left, int right);
+
+    /**
+     * @param outer the number of a node in the outer tree (x-coordinates).
+     * @param inner the number of a node in the inner tree (y-coordinates).
+     * @return a single long key for the node (spread by the node table).
+     */
+    private long key(int outer, int inner) {
+        return (long) outer * (4L * height) + inner;
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return true if the x,y cell is inside the indexed spreadsheet.
+     */
+    private boolean isIn(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the key of the leaf of the x,y cell.
+     */
+    private long leafKey(int x, int y) {
+        int[] outerPath = path(x, width);
+        int[] innerPath = path(y, height);
+        return key(outerPath[outerPath.length - 1], innerPath[innerPath.length - 1]);
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the slot of the leaf of the x,y cell, or -1 if it is not kept (or not in the spreadsheet).
+     */
+    protected final int findLeaf(int x, int y) {
+        return isIn(x, y) ? nodes.get(leafKey(x, y)) : -1;
+    }
+
+    /**
+     * Keeps the leaf of the x,y cell - the caller sets its data, and then calls update.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the slot of the leaf, or -1 if the cell is not in the spreadsheet.
+     */
+    protected final int keepLeaf(int x, int y) {
+        return isIn(x, y) ? keep(leafKey(x, y)) : -1;
+    }
+
+    /**
+     * Removes the leaf of the x,y cell - the caller then calls update.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     */
+    protected final void removeLeaf(int x, int y) {
+        if (isIn(x, y)) nodes.remove(leafKey(x, y));
+    }
+
+    /**
+     * Keeps a node, and makes sure the data arrays have room for its slot.
+     * @param key the key of the node.
+     * @return the slot of the node.
+     */
+    private int keep(long key) {
+        int slot = nodes.add(key);
+        if (slot >= capacity) {
+            capacity = Math.max(16, 2 * capacity);
+            reserve(capacity);
+        }
+        return slot;
+    }
+
+    /**
+     * Recalculates all the nodes that contain the x,y cell (from the bottom to the top) - except its leaf, which the caller already set.
+     * The child on the path was just recalculated, so its slot is already known - only its sibling is looked up.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     */
+    protected final void update(int x, int y) {
+        if (!isIn(x, y)) return;
+        int[] outerPath = path(x, width);
+        int[] innerPath = path(y, height);
+        int[] below = new int[innerPath.length]; // the slots of the inner nodes on the path, in the last recalculated outer node (-1 - not kept)
+
+        // The outer leaf (the column of the cell) - its inner leaf is the cell itself, and the rest of the inner nodes are built from their children:
+        int outerLeaf = outerPath[outerPath.length - 1];
+        below[innerPath.length - 1] = nodes.get(key(outerLeaf, innerPath[innerPath.length - 1]));
+        for (int i = innerPath.length - 2; i >= 0; i--) {
+            int sibling = innerPath[i + 1] ^ 1;
+            below[i] = rebuild(key(outerLeaf, innerPath[i]), below[i + 1], nodes.get(key(outerLeaf, sibling)));
+        }
+
+        // Every other outer node on the path is built from its two children, on the same inner nodes:
+        for (int o = outerPath.length - 2; o >= 0; o--) {
+            int outer = outerPath[o];
+            int sibling = outerPath[o + 1] ^ 1;
+            boolean siblingKept = nodes.get(key(sibling, 1)) >= 0; // if its inner root is not kept, none of its inner nodes is
+            for (int i = 0; i < innerPath.length; i++) {
+                int other = siblingKept ? nodes.get(key(sibling, innerPath[i])) : -1;
+                below[i] = rebuild(key(outer, innerPath[i]), below[i], other);
+            }
+        }
+    }
+
+    /**
+     * Recalculates a node from its two children - a node without children is removed.
+     * @param key the key of the node.
+     * @param left the slot of one child (-1 - not kept).
+     * @param right the slot of the other child (-1 - not kept).
+     * @return the slot of the node, or -1 if it was removed.
+     */
+    private int rebuild(long key, int left, int right) {
+        if (left < 0 && right < 0) {
+            nodes.remove(key);
+            return -1;
+        }
+        int slot = keep(key);
+        combine(slot, left, right);
+        return slot;
+    }
+
+    /**
+     * Finds the nodes from the root to the leaf of a coordinate.
+     * @param target the coordinate.
+     * @param size the number of coordinates in the tree.
+     * @return the numbers of the nodes on the path, the root first and the leaf last.
+     */
+    private static int[] path(int target, int size) {
+        int[] ans = new int[33];
+        int length = 0;
+        int node = 1, from = 0, to = size - 1;
+        ans[length++] = node;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (target <= middle) {
+                node = 2 * node;
+                to = middle;
+            }
+            else {
+                node = 2 * node + 1;
+                from = middle + 1;
+            }
+            ans[length++] = node;
+        }
+        return Arrays.copyOf(ans, length);
+    }
+
+    /**
+     * Visits the kept nodes that together cover exactly the kept cells inside a rectangle of cells.
+     * Only reads the tree, so queries may run in parallel (as long as no update runs at the same time).
+     * @param startX the first column of the rectangle.
+     * @param endX the last column of the rectangle.
+     * @param startY the first row of the rectangle.
+     * @param endY the last row of the rectangle.
+     * @param action receives the slot of each visited node.
+     */
+    protected final void visit(int startX, int endX, int startY, int endY, IntConsumer action) {
+        startX = Math.max(startX, 0);
+        endX = Math.min(endX, width - 1);
+        startY = Math.max(startY, 0);
+        endY = Math.min(endY, height - 1);
+        if (startX <= endX && startY <= endY) {
+            visitOuter(1, 0, width - 1, startX, endX, startY, endY, action);
+        }
+    }
+
+    /**
+     * Finds the outer nodes that are fully inside the columns of the rectangle (recursion on the outer tree).
+     * @param outer the number of the outer node.
+     * @param from the first column of the node.
+     * @param to the last column of the node.
+     * @param startX the first column of the rectangle.
+     * @param endX the last column of the rectangle.
+     * @param startY the first row of the rectangle.
+     * @param endY the last row of the rectangle.
+     * @param action receives the slot of each visited node.
+     */
+    private void visitOuter(int outer, int from, int to, int startX, int endX, int startY, int endY, IntConsumer action) {
+        if (endX < from || to < startX) return; // No common columns
+        if (nodes.get(key(outer, 1)) < 0) return; // No kept cells at all in these columns
+        if (startX <= from && to <= endX) {
+            visitInner(outer, 1, 0, height - 1, startY, endY, action);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        visitOuter(2 * outer, from, middle, startX, endX, startY, endY, action);
+        visitOuter(2 * outer + 1, middle + 1, to, startX, endX, startY, endY, action);
+    }
+
+    /**
+     * Visits the inner nodes (of a single outer node) that are fully inside the rows of the rectangle (recursion on the inner tree).
+     * @param outer the number of the outer node.
+     * @param inner the number of the inner node.
+     * @param from the first row of the inner node.
+     * @param to the last row of the inner node.
+     * @param startY the first row of the rectangle.
+     * @param endY the last row of the rectangle.
+     * @param action receives the slot of each visited node.
+     */
+    private void visitInner(int outer, int inner, int from, int to, int startY, int endY, IntConsumer action) {
+        if (endY < from || to < startY) return; // No common rows
+        int node = nodes.get(key(outer, inner));
+        if (node < 0) return; // No kept cells at all in this node
+        if (startY <= from && to <= endY) {
+            action.accept(node);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        visitInner(outer, 2 * inner, from, middle, startY, endY, action);
+        visitInner(outer, 2 * inner + 1, middle + 1, to, startY, endY, action);
+    }
+
+    /**
+     * Removes all the cells from the tree.
+     */
+    public void clear() {
+        nodes.clear();
+    }
+}
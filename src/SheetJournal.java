@@ -0,0 +1,220 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * SheetJournal - append-only persistence for an Ex2Sheet: every change is written as a small record at the end of a journal file,
+ * instead of writing the whole spreadsheet again on every save.
+ * - The journal is kept in two files: a checkpoint (the whole spreadsheet, in the binary format of BinarySheetFile),
+ *   and a journal (fileName + JOURNAL_SUFFIX) with the changes made after the checkpoint.
+ * - Every change of the spreadsheet (set, batch, setAll) is appended to the journal, and the records of a batch are flushed together when it ends -
+ *   so saving costs the size of the changes, not the size of the spreadsheet.
+ * - A flush forces the records to the disk (FileDescriptor.sync), and so does a checkpoint before it replaces the old one -
+ *   so a crash of the process, of the operating system or a power loss loses only the changes of a batch that did not end yet.
+ * - A record is: its length (int), a CRC32 of its content (int), and the content: x (int), y (int), and the UTF-8 bytes of the data.
+ *   A record that was cut by a crash (or damaged) fails its check - it is dropped, together with everything after it.
+ * - After compactAfter records, the journal is compacted: the whole spreadsheet is written as a new checkpoint, and the journal is emptied.
+ *   The new checkpoint replaces the old one only when it is complete. If a crash happens before the journal is emptied,
+ *   its records are applied again on the new checkpoint - which gives the same cells, since every record sets a cell to an absolute value.
+ * - open() loads the checkpoint and replays the journal after it (with a single recalculation), and from then on records the changes of the spreadsheet.
+ */
+public class SheetJournal implements Closeable {
+    public static final String JOURNAL_SUFFIX = ".journal"; // the journal file is the checkpoint file name with this suffix
+    public static final int DEFAULT_COMPACT_AFTER = 10000; // the default number of records before the journal is compacted
+    private static final int RECORD_HEADER = 8; // length and CRC32
+
+    private final Ex2Sheet sheet; // the journaled spreadsheet
+    private final Path checkpoint, journal; // the two files
+    private DataOutputStream out; // appends to the journal
+    private FileOutputStream file; // the journal file under out - to force its records to the disk
+    private int records; // the number of records in the journal
+    private int compactAfter = DEFAULT_COMPACT_AFTER;
+
+    /**
+     * constructor - use open().
+     * @param sheet the journaled spreadsheet.
+     * @param fileName the name of the checkpoint file.
+     */
+    private SheetJournal(Ex2Sheet sheet, String fileName) {
+        this.sheet = sheet;
+        checkpoint = Path.of(fileName);
+        journal = Path.of(fileName + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Opens a journal for a spreadsheet: loads the checkpoint and the journal into the spreadsheet (if they exist),
+     * and records every change of the spreadsheet from now on.
+     * If the spreadsheet is journaled already, it stops recording into its old journal.
+     * @param sheet the spreadsheet - its cells are replaced by the cells of the checkpoint and the journal (with no checkpoint, it starts empty).
+     * @param fileName a String representing the full (an absolute or relative path to the checkpoint file).
+     * @return the open journal.
+     * @throws IOException an exception might be throed if the files can not be read or written.
+     */
+    public static SheetJournal open(Ex2Sheet sheet, String fileName) throws IOException {
+        SheetJournal ans = new SheetJournal(sheet, fileName);
+        sheet.setJournal(null);
+
+        // Load the checkpoint, and replay the valid records of the journal after it:
+        if (Files.exists(ans.checkpoint)) sheet.loadBinary(fileName);
+        else {
+            List<Long> old = sheet.populatedCells();
+            sheet.batch(b -> {
+                for (Long key : old) b.set(DependencyGraph.keyX(key), DependencyGraph.keyY(key), Ex2Utils.EMPTY_CELL);
+            });
+        }
+        List<Object[]> changes = new ArrayList<>();
+        long valid = ans.replay(changes);
+        sheet.batch(b -> {
+            for (Object[] change : changes) b.set((Integer) change[0], (Integer) change[1], (String) change[2]);
+        });
+        ans.records = changes.size();
+
+        // Drop a record that was cut by a crash, so the next records are appended right after the valid ones:
+        if (Files.exists(ans.journal)) {
+            try (FileChannel channel = FileChannel.open(ans.journal, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        ans.openJournal(true);
+        sheet.setJournal(ans);
+        return ans;
+    }
+
+    /**
+     * Opens the journal file for appending the next records.
+     * @param append true to keep the records in the file, false to empty it.
+     * @throws IOException an exception might be throed if the file can not be opened.
+     */
+    private void openJournal(boolean append) throws IOException {
+        file = new FileOutputStream(journal.toFile(), append);
+        out = new DataOutputStream(new BufferedOutputStream(file));
+    }
+
+    /**
+     * Reads the valid records of the journal file - until its end, or until the first record that is cut or damaged.
+     * @param changes the list to add the changes to: {x, y, data}.
+     * @return the length of the valid part of the journal file.
+     * @throws IOException an exception might be throed if the file can not be read.
+     */
+    private long replay(List<Object[]> changes) throws IOException {
+        if (!Files.exists(journal)) return 0;
+        long valid = 0, size = Files.size(journal);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal.toFile())))) {
+            while (true) {
+                byte[] content;
+                int crc;
+                try {
+                    int length = in.readInt();
+                    crc = in.readInt();
+                    if (length < 8 || length > size) break; // damaged
+                    content = new byte[length];
+                    in.readFully(content);
+                } catch (EOFException e) {
+                    break; // the end of the file, or a record that was cut
+                }
+                if (crc != crc(content)) break; // damaged
+
+                ByteBuffer record = ByteBuffer.wrap(content);
+                int x = record.getInt();
+                int y = record.getInt();
+                String data = new String(content, 8, content.length - 8, StandardCharsets.UTF_8);
+                changes.add(new Object[] {x, y, data});
+                valid += RECORD_HEADER + content.length;
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * @param content the content of a record.
+     * @return the CRC32 of the content.
+     */
+    private static int crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Appends a record of a change (called by the spreadsheet for every change) - it is written to the file on the next flush.
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @param s the new data of the cell.
+     */
+    void append(int x, int y, String s) {
+        byte[] data = (s == null ? Ex2Utils.EMPTY_CELL : s).getBytes(StandardCharsets.UTF_8);
+        byte[] content = ByteBuffer.allocate(8 + data.length).putInt(x).putInt(y).put(data).array();
+        try {
+            out.writeInt(content.length);
+            out.writeInt(crc(content));
+            out.write(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        records++;
+    }
+
+    /**
+     * Writes the appended records to the journal file and forces them to the disk (called by the spreadsheet when a batch ends),
+     * and compacts the journal if it has too many records.
+     */
+    void flush() {
+        try {
+            out.flush();
+            file.getFD().sync();
+            if (records >= compactAfter) checkpoint();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Compacts the journal: writes the whole spreadsheet as a new checkpoint (it replaces the old one only when it is complete), and empties the journal.
+     * @throws IOException an exception might be throed if the files can not be written.
+     */
+    public void checkpoint() throws IOException {
+        out.flush();
+        Path temp = Path.of(checkpoint + ".tmp");
+        sheet.saveBinary(temp.toString());
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true); // the new checkpoint is on the disk before it replaces the old one
+        }
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // The checkpoint includes all the records - we will empty the journal:
+        out.close();
+        openJournal(false);
+        records = 0;
+    }
+
+    /**
+     * @return the number of records in the journal (since the last checkpoint).
+     */
+    public int getRecords() {
+        return records;
+    }
+
+    /**
+     * Sets the number of records after which the journal is compacted (see checkpoint).
+     * @param records a positive number of records.
+     */
+    public void setCompactAfter(int records) {
+        if (records < 1) throw new IllegalArgumentException("invalid value");
+        compactAfter = records;
+    }
+
+    /**
+     * Flushes the journal and stops recording the changes of the spreadsheet.
+     * @throws IOException an exception might be throed if the journal can not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        sheet.setJournal(null);
+        out.close();
+    }
+}
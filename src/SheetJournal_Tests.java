@@ -0,0 +1,133 @@
+import org.junit.jupiter.api.Test;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SheetJournal_Tests - JUnit tests for the SheetJournal class.
+ * - Verifies that the changes are appended to the journal, and replayed after the checkpoint when the journal is opened again.
+ * - Tests the compaction of the journal into a new checkpoint.
+ * - Checks that a record that was cut by a crash is dropped, and that loading into a journaled spreadsheet starts a new checkpoint.
+ */
+public class SheetJournal_Tests {
+
+    /**
+     * @return the name of a new checkpoint file (the files are deleted when the tests end).
+     */
+    private static String newFile() throws IOException {
+        File file = File.createTempFile("SheetJournal_Tests", ".ex4b");
+        file.delete(); // a journal starts without a checkpoint
+        file.deleteOnExit();
+        new File(file.getPath() + SheetJournal.JOURNAL_SUFFIX).deleteOnExit();
+        return file.getPath();
+    }
+
+    // Tests recording the changes, and replaying them into another spreadsheet
+    @Test
+    void replay_Test() throws IOException {
+        String fileName = newFile();
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        sheet.set(5, 5, "not journaled"); // removed - there is no checkpoint yet
+        try (SheetJournal journal = SheetJournal.open(sheet, fileName)) {
+            assertEquals("", sheet.value(5, 5));
+            sheet.set(0, 0, "5");
+            sheet.batch(b -> {
+                b.set(0, 1, "=A0*2");
+                b.set(1, 0, "שלום");
+            });
+            sheet.set(0, 0, "7");
+            sheet.set(26, 0, "ignored"); // not in the spreadsheet
+            assertEquals(4, journal.getRecords());
+        }
+        sheet.set(2, 2, "after close"); // not journaled
+
+        Ex2Sheet other = new Ex2Sheet(26, 100);
+        try (SheetJournal journal = SheetJournal.open(other, fileName)) {
+            assertEquals(4, journal.getRecords());
+            assertEquals("14.0", other.value(0, 1));
+            assertEquals("שלום", other.value(1, 0));
+            assertEquals("", other.value(2, 2));
+        }
+    }
+
+    // Tests the compaction - the journal is emptied into a new checkpoint, and nothing is lost
+    @Test
+    void compaction_Test() throws IOException {
+        String fileName = newFile();
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        try (SheetJournal journal = SheetJournal.open(sheet, fileName)) {
+            journal.setCompactAfter(5);
+            for (int i = 0; i < 12; i++) {
+                sheet.set(0, i, (i == 0) ? "1" : "=A" + (i - 1) + "+1");
+            }
+            assertEquals(2, journal.getRecords()); // compacted after 5 and after 10
+            assertTrue(Files.exists(Path.of(fileName)));
+            assertThrows(IllegalArgumentException.class, () -> journal.setCompactAfter(0));
+        }
+
+        Ex2Sheet other = new Ex2Sheet(26, 100);
+        try (SheetJournal journal = SheetJournal.open(other, fileName)) {
+            assertEquals(2, journal.getRecords());
+            assertEquals("12.0", other.value(0, 11));
+            journal.checkpoint();
+            assertEquals(0, journal.getRecords());
+            assertEquals(0, Files.size(Path.of(fileName + SheetJournal.JOURNAL_SUFFIX)));
+        }
+    }
+
+    // Tests a crash in the middle of a record - the cut record is dropped, and the next records are appended after the valid ones
+    @Test
+    void crash_Test() throws IOException {
+        String fileName = newFile();
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        try (SheetJournal journal = SheetJournal.open(sheet, fileName)) {
+            sheet.set(0, 0, "1");
+            sheet.set(0, 1, "2");
+            sheet.set(0, 2, "lost");
+            assertEquals(3, journal.getRecords());
+        }
+        Path journalFile = Path.of(fileName + SheetJournal.JOURNAL_SUFFIX);
+        byte[] bytes = Files.readAllBytes(journalFile);
+        Files.write(journalFile, Arrays.copyOf(bytes, bytes.length - 2));
+
+        Ex2Sheet other = new Ex2Sheet(26, 100);
+        try (SheetJournal journal = SheetJournal.open(other, fileName)) {
+            assertEquals(2, journal.getRecords());
+            assertEquals("2.0", other.value(0, 1));
+            assertEquals("", other.value(0, 2));
+            other.set(0, 3, "3");
+        }
+        Ex2Sheet third = new Ex2Sheet(26, 100);
+        try (SheetJournal journal = SheetJournal.open(third, fileName)) {
+            assertEquals(3, journal.getRecords());
+            assertEquals("3.0", third.value(0, 3));
+        }
+    }
+
+    // Tests loading a file into a journaled spreadsheet - the journal starts again from a new checkpoint
+    @Test
+    void load_Test() throws IOException {
+        String fileName = newFile();
+        File text = File.createTempFile("SheetJournal_Tests", ".txt");
+        text.deleteOnExit();
+        Ex2Sheet source = new Ex2Sheet(26, 100);
+        source.set(3, 3, "loaded");
+        source.save(text.getPath());
+
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        try (SheetJournal journal = SheetJournal.open(sheet, fileName)) {
+            sheet.set(0, 0, "1");
+            sheet.load(text.getPath());
+            assertEquals(0, journal.getRecords());
+            sheet.set(0, 1, "2");
+        }
+        Ex2Sheet other = new Ex2Sheet(26, 100);
+        SheetJournal.open(other, fileName).close();
+        assertEquals("loaded", other.value(3, 3));
+        assertEquals("", other.value(0, 0));
+        assertEquals("2.0", other.value(0, 1));
+    }
+}
@@ -0,0 +1,209 @@
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SheetMetrics - the cost of the recalculations of a single spreadsheet (see Ex2Sheet.getMetrics):
+ * how many recalculations there were and how long they took, how many cells they evaluated and how deep, how many cycles and errors they found,
+ * how many cells the functions over ranges read, and how often the parsed formulas were reused.
+ * - The counters are LongAdders, so the threads of a parallel evaluation update them without contention.
+ * - Recording can be turned off (setEnabled) - then the spreadsheet only checks a single flag.
+ * - The metrics can be published as a JMX MBean (see register), to be read by any JMX console (e.g., jconsole).
+ */
+public class SheetMetrics implements SheetMetricsMBean {
+    public static final String DOMAIN = "Ex4"; // the JMX domain of the metrics
+
+    private volatile boolean enabled = true;
+    private final LongAdder recalculations = new LongAdder();
+    private final LongAdder recalculationNanos = new LongAdder();
+    private final LongAccumulator maxRecalculationNanos = new LongAccumulator(Math::max, 0);
+    private volatile long lastRecalculationNanos;
+    private final LongAdder cellsEvaluated = new LongAdder();
+    private final LongAccumulator maxCellsEvaluated = new LongAccumulator(Math::max, 0);
+    private volatile long lastCellsEvaluated;
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    private volatile int lastMaxDepth;
+    private final LongAdder cycleCells = new LongAdder();
+    private final LongAdder errorCells = new LongAdder();
+    private final LongAdder rangeCellsScanned = new LongAdder();
+    private final LongAdder rangeIndexQueries = new LongAdder();
+    private final LongAdder parseCacheHits = new LongAdder();
+    private final LongAdder parseCacheMisses = new LongAdder();
+    private ObjectName name = null; // the name of the registered MBean (null - not registered)
+
+    /**
+     * Records a recalculation (called by the spreadsheet when it ends).
+     * @param nanos the time of the recalculation.
+     * @param cells the number of cells that were evaluated.
+     * @param depth the largest depth of an evaluated cell.
+     * @param cycles the number of evaluated cells in a cycle.
+     * @param errors the number of evaluated cells with an error.
+     */
+    void recordRecalculation(long nanos, long cells, int depth, long cycles, long errors) {
+        recalculations.increment();
+        recalculationNanos.add(nanos);
+        maxRecalculationNanos.accumulate(nanos);
+        lastRecalculationNanos = nanos;
+        cellsEvaluated.add(cells);
+        maxCellsEvaluated.accumulate(cells);
+        lastCellsEvaluated = cells;
+        maxDepth.accumulate(depth);
+        lastMaxDepth = depth;
+        cycleCells.add(cycles);
+        errorCells.add(errors);
+    }
+
+    /**
+     * Records the cells that a function over a range read one by one.
+     * @param cells the number of cells.
+     */
+    void recordRangeScan(long cells) {
+        rangeCellsScanned.add(cells);
+    }
+
+    /**
+     * Records a function over a range that was answered by the range index.
+     */
+    void recordRangeIndexQuery() {
+        rangeIndexQueries.increment();
+    }
+
+    /**
+     * Records the evaluation of a formula.
+     * @param hit true if the parsed formula of the cell was reused, false if the data had to be parsed.
+     */
+    void recordParse(boolean hit) {
+        if (hit) parseCacheHits.increment();
+        else parseCacheMisses.increment();
+    }
+
+    /**
+     * Publishes these metrics as a JMX MBean, named Ex4:type=SheetMetrics,name=<name> (a registered MBean is unregistered first).
+     * @param sheetName the name of the spreadsheet (any string - it is quoted).
+     * @return the name of the MBean.
+     * @throws JMException if the MBean can not be registered (e.g., the name is used by another spreadsheet).
+     */
+    public synchronized ObjectName register(String sheetName) throws JMException {
+        unregister();
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=SheetMetrics,name=" + ObjectName.quote(sheetName));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        name = objectName;
+        return objectName;
+    }
+
+    /**
+     * Removes the MBean of these metrics from JMX (nothing happens if it is not registered).
+     * @throws JMException if the MBean can not be unregistered.
+     */
+    public synchronized void unregister() throws JMException {
+        if (name == null) return;
+        if (ManagementFactory.getPlatformMBeanServer().isRegistered(name)) ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        name = null;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getRecalculations() {
+        return recalculations.sum();
+    }
+
+    @Override
+    public long getRecalculationNanos() {
+        return recalculationNanos.sum();
+    }
+
+    @Override
+    public long getLastRecalculationNanos() {
+        return lastRecalculationNanos;
+    }
+
+    @Override
+    public long getMaxRecalculationNanos() {
+        return maxRecalculationNanos.get();
+    }
+
+    @Override
+    public long getCellsEvaluated() {
+        return cellsEvaluated.sum();
+    }
+
+    @Override
+    public long getLastCellsEvaluated() {
+        return lastCellsEvaluated;
+    }
+
+    @Override
+    public long getMaxCellsEvaluated() {
+        return maxCellsEvaluated.get();
+    }
+
+    @Override
+    public int getLastMaxDepth() {
+        return lastMaxDepth;
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return (int) maxDepth.get();
+    }
+
+    @Override
+    public long getCycleCells() {
+        return cycleCells.sum();
+    }
+
+    @Override
+    public long getErrorCells() {
+        return errorCells.sum();
+    }
+
+    @Override
+    public long getRangeCellsScanned() {
+        return rangeCellsScanned.sum();
+    }
+
+    @Override
+    public long getRangeIndexQueries() {
+        return rangeIndexQueries.sum();
+    }
+
+    @Override
+    public long getParseCacheHits() {
+        return parseCacheHits.sum();
+    }
+
+    @Override
+    public long getParseCacheMisses() {
+        return parseCacheMisses.sum();
+    }
+
+    @Override
+    public void reset() {
+        recalculations.reset();
+        recalculationNanos.reset();
+        maxRecalculationNanos.reset();
+        lastRecalculationNanos = 0;
+        cellsEvaluated.reset();
+        maxCellsEvaluated.reset();
+        lastCellsEvaluated = 0;
+        maxDepth.reset();
+        lastMaxDepth = 0;
+        cycleCells.reset();
+        errorCells.reset();
+        rangeCellsScanned.reset();
+        rangeIndexQueries.reset();
+        parseCacheHits.reset();
+        parseCacheMisses.reset();
+    }
+}
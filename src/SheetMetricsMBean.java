@@ -0,0 +1,97 @@
+/**
+ * SheetMetricsMBean - the management interface of SheetMetrics, as it is published over JMX (see SheetMetrics.register).
+ * All the counters are totals since the spreadsheet was created (or since the last reset), and all the times are in nanoseconds.
+ */
+public interface SheetMetricsMBean {
+
+    /**
+     * @return true if the metrics are recorded.
+     */
+    boolean isEnabled();
+
+    /**
+     * Turns the recording of the metrics on or off (when it is off, the spreadsheet does not read the clock or update any counter).
+     * @param enabled true to record the metrics.
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the number of recalculations (set, batch, eval and load).
+     */
+    long getRecalculations();
+
+    /**
+     * @return the total time of all the recalculations.
+     */
+    long getRecalculationNanos();
+
+    /**
+     * @return the time of the last recalculation.
+     */
+    long getLastRecalculationNanos();
+
+    /**
+     * @return the time of the longest recalculation.
+     */
+    long getMaxRecalculationNanos();
+
+    /**
+     * @return the total number of cells evaluated by all the recalculations.
+     */
+    long getCellsEvaluated();
+
+    /**
+     * @return the number of cells evaluated by the last recalculation.
+     */
+    long getLastCellsEvaluated();
+
+    /**
+     * @return the largest number of cells evaluated by a single recalculation.
+     */
+    long getMaxCellsEvaluated();
+
+    /**
+     * @return the largest depth of a cell in the last recalculation.
+     */
+    int getLastMaxDepth();
+
+    /**
+     * @return the largest depth of a cell in any recalculation.
+     */
+    int getMaxDepth();
+
+    /**
+     * @return the number of evaluated cells that were part of a cycle (or depended on one).
+     */
+    long getCycleCells();
+
+    /**
+     * @return the number of evaluated cells whose result was an error (including the cycles).
+     */
+    long getErrorCells();
+
+    /**
+     * @return the number of cells read one by one by functions over ranges.
+     */
+    long getRangeCellsScanned();
+
+    /**
+     * @return the number of functions over ranges that were answered by the range index (see RangeIndex).
+     */
+    long getRangeIndexQueries();
+
+    /**
+     * @return the number of times a formula was read from the expression tree parsed when its cell was set.
+     */
+    long getParseCacheHits();
+
+    /**
+     * @return the number of times a formula had to be parsed again from the data of its cell (a cell that is not an SCell).
+     */
+    long getParseCacheMisses();
+
+    /**
+     * Resets all the counters to 0.
+     */
+    void reset();
+}
@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.Test;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SheetMetrics_Tests - JUnit tests for the SheetMetrics class.
+ * - Verifies the counters that Ex2Sheet records for its recalculations: cells, depth, cycles, errors, ranges and parsed formulas.
+ * - Tests turning the recording off, and resetting the counters.
+ * - Checks the publication of the metrics as a JMX MBean.
+ */
+public class SheetMetrics_Tests {
+
+    // Tests the counters of the recalculations
+    @Test
+    void recalculation_Test() {
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        SheetMetrics metrics = sheet.getMetrics();
+        metrics.reset();
+
+        sheet.set(0, 0, "5"); // A0
+        sheet.set(0, 1, "=A0*2"); // A1
+        sheet.set(0, 2, "=A1+1"); // A2
+        assertEquals(3, metrics.getRecalculations());
+        assertEquals(1, metrics.getLastCellsEvaluated());
+        assertEquals(2, metrics.getLastMaxDepth());
+
+        // A change of A0 recalculates all the chain:
+        sheet.set(0, 0, "6");
+        assertEquals(3, metrics.getLastCellsEvaluated());
+        assertEquals(3 + 3, metrics.getCellsEvaluated());
+        assertEquals(3, metrics.getMaxCellsEvaluated());
+        assertEquals(2, metrics.getMaxDepth());
+        assertTrue(metrics.getRecalculationNanos() >= metrics.getMaxRecalculationNanos());
+        assertTrue(metrics.getMaxRecalculationNanos() >= metrics.getLastRecalculationNanos());
+        assertTrue(metrics.getParseCacheHits() > 0);
+        assertEquals(0, metrics.getParseCacheMisses());
+
+        // Cycles and errors:
+        sheet.set(1, 0, "=B1"); // B0
+        sheet.set(1, 1, "=B0"); // B1 - a cycle of B0 and B1
+        assertEquals(2, metrics.getCycleCells());
+        sheet.set(1, 2, "=A0+"); // B2 - an invalid formula
+        assertEquals(4, metrics.getErrorCells()); // B0 (a reference to the empty B1), the cycle, and B2
+
+        // A small range is read cell by cell, and a big range is answered by the range index:
+        sheet.set(2, 0, "=sum(A0:A2)");
+        assertEquals(3, metrics.getRangeCellsScanned());
+        sheet.set(3, 0, "=sum(A0:A99)");
+        assertEquals(1, metrics.getRangeIndexQueries());
+        assertEquals("31.0", sheet.value(3, 0)); // 6 + 12 + 13 - the formulas are not changed by the metrics
+    }
+
+    // Tests turning the recording off, and resetting the counters
+    @Test
+    void enabled_Test() {
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        SheetMetrics metrics = sheet.getMetrics();
+        assertTrue(metrics.isEnabled());
+        assertEquals(1, metrics.getRecalculations()); // the constructor calculates the empty spreadsheet
+
+        metrics.setEnabled(false);
+        sheet.set(0, 0, "1");
+        sheet.set(0, 1, "=sum(A0:A0)");
+        assertEquals(1, metrics.getRecalculations());
+        assertEquals(0, metrics.getRangeCellsScanned());
+
+        metrics.setEnabled(true);
+        sheet.eval();
+        assertEquals(2, metrics.getRecalculations());
+        assertEquals(2, metrics.getLastCellsEvaluated());
+        metrics.reset();
+        assertEquals(0, metrics.getRecalculations());
+        assertEquals(0, metrics.getCellsEvaluated());
+        assertEquals(0, metrics.getMaxDepth());
+    }
+
+    // Tests the JMX MBean - the attributes are read through the MBean server
+    @Test
+    void jmx_Test() throws JMException {
+        Ex2Sheet sheet = new Ex2Sheet(26, 100);
+        SheetMetrics metrics = sheet.getMetrics();
+        ObjectName name = metrics.register("jmx_Test, sheet 1");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertTrue(server.isRegistered(name));
+            assertEquals(SheetMetrics.DOMAIN, name.getDomain());
+            sheet.set(0, 0, "1");
+            sheet.set(0, 1, "=A0+1");
+            assertEquals(metrics.getRecalculations(), server.getAttribute(name, "Recalculations"));
+            assertEquals(1, server.getAttribute(name, "LastMaxDepth"));
+
+            // The counters can be reset, and the recording turned off, through JMX:
+            server.invoke(name, "reset", null, null);
+            assertEquals(0L, metrics.getRecalculations());
+            server.setAttribute(name, new javax.management.Attribute("Enabled", false));
+            assertFalse(metrics.isEnabled());
+
+            // Registering again replaces the old name:
+            ObjectName other = metrics.register("jmx_Test, sheet 2");
+            assertFalse(server.isRegistered(name));
+            assertTrue(server.isRegistered(other));
+            name = other;
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * SheetSnapshot - an immutable copy of a spreadsheet, as it was when it was taken (see Ex2Sheet.snapshot).
+ * - The cells are kept as read-only views (see CellView) in tiles of TILE_SIZE x TILE_SIZE cells.
+ *   A tile is never changed after the snapshot is taken, so the next snapshots of the same spreadsheet share all the tiles
+ *   that were not changed in between - taking a snapshot copies only the changed tiles.
+ * - The values are the values that were presented when the snapshot was taken, so reading a snapshot never calculates anything,
+ *   and it can be read by many threads at the same time.
+ * - Changing a snapshot is not supported (set, load and eval throw an UnsupportedOperationException), but it can be saved like any spreadsheet.
+ */
+public final class SheetSnapshot implements Sheet {
+    static final int TILE_SIZE = CellStore.TILE_SIZE; // the number of columns (and rows) in a tile
+    static final int TILE_CELLS = TILE_SIZE * TILE_SIZE;
+
+    private final int width, height; // the dimensions of the spreadsheet
+    private final PersistentLongMap<CellView[]> tiles; // tile key (see tileKey) -> the views of its cells (null - an empty cell)
+
+    /**
+     * constructor for a snapshot - the tiles are not copied, so the arrays of the tiles must never be changed afterwards.
+     * @param width the dimension of the x-coordinate of the spreadsheet.
+     * @param height the dimension of the y-coordinate of the spreadsheet.
+     * @param tiles the tiles of the snapshot: tile key (see tileKey) -> the views of its cells.
+     */
+    SheetSnapshot(int width, int height, PersistentLongMap<CellView[]> tiles) {
+        this.width = width;
+        this.height = height;
+        this.tiles = tiles;
+    }
+
+    /**
+     * @param x integer, x-coordinate of a cell.
+     * @param y integer, y-coordinate of a cell.
+     * @return the key of the tile of the x,y cell.
+     */
+    static long tileKey(int x, int y) {
+        return DependencyGraph.key(x / TILE_SIZE, y / TILE_SIZE);
+    }
+
+    /**
+     * @param x integer, x-coordinate of a cell.
+     * @param y integer, y-coordinate of a cell.
+     * @return the index of the x,y cell inside its tile.
+     */
+    static int tileIndex(int x, int y) {
+        return (x % TILE_SIZE) * TILE_SIZE + (y % TILE_SIZE);
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the view of the x,y cell, or null if the cell is empty.
+     */
+    private CellView view(int x, int y) {
+        CellView[] tile = tiles.get(tileKey(x, y));
+        return (tile == null) ? null : tile[tileIndex(x, y)];
+    }
+
+    @Override
+    public boolean isIn(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return a read-only view of the x,y cell, or null if the cell is not in the spreadsheet.
+     */
+    @Override
+    public Cell get(int x, int y) {
+        if (!isIn(x, y)) return null;
+        CellView view = view(x, y);
+        return (view != null) ? view : new CellView(Ex2Utils.EMPTY_CELL, Ex2Utils.TEXT, 0, Ex2Utils.EMPTY_CELL);
+    }
+
+    @Override
+    public Cell get(String entry) {
+        CellEntry ce = new CellEntry(entry);
+        if (!ce.isValid()) return null;
+        return get(ce.getX(), ce.getY());
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the value that was presented in the x,y cell when the snapshot was taken.
+     */
+    @Override
+    public String value(int x, int y) {
+        if (!isIn(x, y)) return Ex2Utils.EMPTY_CELL;
+        CellView view = view(x, y);
+        return (view != null) ? view.getValue() : Ex2Utils.EMPTY_CELL;
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return the computed value of the x,y cell when the snapshot was taken (null if the cell is empty or not in the spreadsheet).
+     */
+    @Override
+    public String eval(int x, int y) {
+        if (!isIn(x, y)) return null;
+        CellView view = view(x, y);
+        return (view != null) ? view.getValue() : null;
+    }
+
+    /**
+     * @return the depth array of the snapshot - the order of every cell when the snapshot was taken (an empty cell has depth 0).
+     */
+    @Override
+    public int[][] depth() {
+        int[][] ans = new int[width][height];
+        tiles.forEach((tileKey, tile) -> {
+            int startX = DependencyGraph.keyX(tileKey) * TILE_SIZE, startY = DependencyGraph.keyY(tileKey) * TILE_SIZE;
+            for (int i = 0; i < TILE_CELLS; i++) {
+                if (tile[i] != null) ans[startX + i / TILE_SIZE][startY + i % TILE_SIZE] = tile[i].getOrder();
+            }
+        });
+        return ans;
+    }
+
+    @Override
+    public void set(int x, int y, String s) {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    @Override
+    public void eval() {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    @Override
+    public void load(String fileName) {
+        throw new UnsupportedOperationException("A snapshot is read-only");
+    }
+
+    /**
+     * Saves this snapshot into a text file, in the same format as Ex2Sheet.save (so it can be loaded into an Ex2Sheet).
+     * @param fileName a String representing the full (an absolute or relative path tp the saved file).
+     * @throws IOException an exception might be throed if the file can not be saved.
+     */
+    @Override
+    public void save(String fileName) throws IOException {
+        // The tiles are not sorted - we will sort the keys of the populated cells (by X and then by Y, as in Ex2Sheet.save):
+        List<Long> keys = new ArrayList<>();
+        tiles.forEach((tileKey, tile) -> {
+            int startX = DependencyGraph.keyX(tileKey) * TILE_SIZE, startY = DependencyGraph.keyY(tileKey) * TILE_SIZE;
+            for (int i = 0; i < TILE_CELLS; i++) {
+                if (tile[i] != null) keys.add(DependencyGraph.key(startX + i / TILE_SIZE, startY + i % TILE_SIZE));
+            }
+        });
+        Collections.sort(keys);
+        Ex2Sheet.writeCells(fileName, keys, this);
+    }
+}
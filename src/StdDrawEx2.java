@@ -442,7 +442,7 @@ import java.util.TreeSet;
  *  @author Robert Sedgewick
  *  @author Kevin Wayne
  */
-public final class StdDrawEx2 implements ActionListener, MouseListener, MouseMotionListener, KeyListener {
+public final class StdDrawEx2 implements ActionListener, MouseListener, MouseMotionListener, MouseWheelListener, KeyListener {
 
 	/**
 	 *  The color black.
@@ -588,10 +588,17 @@ public final class StdDrawEx2 implements ActionListener, MouseListener, MouseMot
 	private static double mouseX = 0;
 	private static double mouseY = 0;
 	private static int xx=-1, yy=-1;
+	private static double clickX = 0, clickY = 0; // the user coordinates of the last mouse click
+	private static boolean clicked = false; // true - there is a mouse click that was not handled yet (see resetXY)
+	private static int wheelRotation = 0; // the mouse wheel steps that were not handled yet (see nextWheelRotation)
+	private static Runnable inputListener = null; // notified on every mouse click and typed key (e.g., to wake up an event-driven GUI loop)
 
 	// queue of typed key characters
 	private static LinkedList<Character> keysTyped = new LinkedList<Character>();
 
+	// queue of key codes that were pressed (and not handled yet)
+	private static LinkedList<Integer> keysPressed = new LinkedList<Integer>();
+
 	// set of key codes currently pressed down
 	private static TreeSet<Integer> keysDown = new TreeSet<Integer>();
 
@@ -663,6 +670,7 @@ public final class StdDrawEx2 implements ActionListener, MouseListener, MouseMot
 		JLabel draw = new JLabel(icon);
 		draw.addMouseListener(std);
 		draw.addMouseMotionListener(std);
+		draw.addMouseWheelListener(std);
 
 		////////////////
 		JLabel jtf = new JLabel("Insert Text");
@@ -1482,6 +1490,54 @@ public final class StdDrawEx2 implements ActionListener, MouseListener, MouseMot
 		return ans;
 	}
 
+	/**
+	 * Clears an axis-aligned rectangle of the offscreen canvas (fills it with the background color) - used to redraw a single cell.
+	 * @param  x the <em>x</em>-coordinate of the center of the rectangle
+	 * @param  y the <em>y</em>-coordinate of the center of the rectangle
+	 * @param  halfWidth one half the width of the rectangle
+	 * @param  halfHeight one half the height of the rectangle
+	 */
+	public static void clearRectangle(double x, double y, double halfWidth, double halfHeight) {
+		Rectangle r = pixels(x, y, halfWidth, halfHeight);
+		offscreen.setColor(DEFAULT_CLEAR_COLOR);
+		offscreen.fillRect(r.x, r.y, r.width, r.height);
+		offscreen.setColor(penColor);
+	}
+
+	/**
+	 * Copies only a rectangle of the offscreen buffer to the onscreen buffer, and repaints only that part of the window.
+	 * @param  x the <em>x</em>-coordinate of the center of the rectangle
+	 * @param  y the <em>y</em>-coordinate of the center of the rectangle
+	 * @param  halfWidth one half the width of the rectangle
+	 * @param  halfHeight one half the height of the rectangle
+	 */
+	public static void show(double x, double y, double halfWidth, double halfHeight) {
+		Rectangle r = pixels(x, y, halfWidth, halfHeight);
+		onscreen.drawImage(offscreenImage, r.x, r.y, r.x + r.width, r.y + r.height, r.x, r.y, r.x + r.width, r.y + r.height, null);
+		frame.getContentPane().repaint(r.x, r.y, r.width, r.height);
+	}
+
+	// the pixels of a rectangle in user coordinates (rounded outwards, and clipped to the canvas)
+	private static Rectangle pixels(double x, double y, double halfWidth, double halfHeight) {
+		int x0 = (int) Math.floor(scaleX(x - halfWidth)), x1 = (int) Math.ceil(scaleX(x + halfWidth));
+		int y0 = (int) Math.floor(scaleY(y + halfHeight)), y1 = (int) Math.ceil(scaleY(y - halfHeight));
+		return new Rectangle(x0, y0, Math.max(x1 - x0, 0), Math.max(y1 - y0, 0)).intersection(new Rectangle(0, 0, width, height));
+	}
+
+	/**
+	 * Sets the listener that is notified (on the event dispatch thread) on every mouse click and typed key.
+	 * @param listener the listener (null - no listener).
+	 */
+	public static void setInputListener(Runnable listener) {
+		inputListener = listener;
+	}
+
+	// notifies the input listener (if there is one)
+	private static void input() {
+		Runnable listener = inputListener;
+		if (listener != null) listener.run();
+	}
+
 	/**
 	 * Write the given text string in the current font, left-aligned at (<em>x</em>, <em>y</em>).
 	 * @param  x the <em>x</em>-coordinate of the text
@@ -1600,6 +1656,9 @@ public final class StdDrawEx2 implements ActionListener, MouseListener, MouseMot
 	}
 	public static void resetXY() {
 		xx=-1; yy=-1;
+		synchronized (mouseLock) {
+			clicked = false;
+		}
 	}
 
 
@@ -1682,6 +1741,48 @@ public final class StdDrawEx2 implements ActionListener, MouseListener, MouseMot
 	public static int getXX() {return xx;}
 	public static int getYY() {return yy;}
 
+	/**
+	 * Returns true if the mouse was clicked since the last call to resetXY.
+	 * @return {@code true} if there is a mouse click that was not handled yet
+	 */
+	public static boolean isClicked() {
+		synchronized (mouseLock) {
+			return clicked;
+		}
+	}
+
+	/**
+	 * Returns the <em>x</em>-coordinate (in user coordinates) of the last mouse click.
+	 * @return the <em>x</em>-coordinate of the last mouse click
+	 */
+	public static double getClickX() {
+		synchronized (mouseLock) {
+			return clickX;
+		}
+	}
+
+	/**
+	 * Returns the <em>y</em>-coordinate (in user coordinates) of the last mouse click.
+	 * @return the <em>y</em>-coordinate of the last mouse click
+	 */
+	public static double getClickY() {
+		synchronized (mouseLock) {
+			return clickY;
+		}
+	}
+
+	/**
+	 * Returns the mouse wheel steps since the last call, and resets them.
+	 * @return the number of steps (negative - up, away from the user; positive - down)
+	 */
+	public static int nextWheelRotation() {
+		synchronized (mouseLock) {
+			int ans = wheelRotation;
+			wheelRotation = 0;
+			return ans;
+		}
+	}
+
 	/**
 	 * This method cannot be called directly.
 	 */
@@ -1692,7 +1793,13 @@ public final class StdDrawEx2 implements ActionListener, MouseListener, MouseMot
 		double x = (mx-2)/2;
 		xx = (int)x;
 		yy=(int)y;
+		synchronized (mouseLock) {
+			clickX = mx;
+			clickY = my;
+			clicked = true;
+		}
 		if(Ex2Utils.Debug) {System.out.println("Mouse: "+xx+","+yy);}
+		input();
 		//JTextField j= new JTextField(""+ix+","+iy+")",16);
 		//j.setText("Enter");
 		//j.setVisible(true);
@@ -1742,6 +1849,17 @@ public final class StdDrawEx2 implements ActionListener, MouseListener, MouseMot
 		}
 	}
 
+	/**
+	 * This method cannot be called directly.
+	 */
+	@Override
+	public void mouseWheelMoved(MouseWheelEvent e) {
+		synchronized (mouseLock) {
+			wheelRotation += e.getWheelRotation();
+		}
+		input();
+	}
+
 	/**
 	 * This method cannot be called directly.
 	 */
@@ -1803,6 +1921,31 @@ public final class StdDrawEx2 implements ActionListener, MouseListener, MouseMot
 		}
 	}
 
+	/**
+	 * Returns true if a key was pressed (and was not processed yet by {@link #nextKeyPressed()}).
+	 * @return {@code true} if there is a pressed key to process; {@code false} otherwise
+	 */
+	public static boolean hasNextKeyPressed() {
+		synchronized (keyLock) {
+			return !keysPressed.isEmpty();
+		}
+	}
+
+	/**
+	 * Returns the key code (see {@link KeyEvent}) of the next key that was pressed - in the order they were pressed.
+	 * Unlike {@link #nextKeyTyped()}, it includes action keys (such as the arrows and page up / page down).
+	 * @return the key code of the next pressed key
+	 * @throws NoSuchElementException if there is no remaining key
+	 */
+	public static int nextKeyPressed() {
+		synchronized (keyLock) {
+			if (keysPressed.isEmpty()) {
+				throw new NoSuchElementException("your program has already processed all key presses");
+			}
+			return keysPressed.removeFirst();
+		}
+	}
+
 	/**
 	 * Returns true if the given key is being pressed.
 	 * <p>
@@ -1839,7 +1982,9 @@ public final class StdDrawEx2 implements ActionListener, MouseListener, MouseMot
 	public void keyPressed(KeyEvent e) {
 		synchronized (keyLock) {
 			keysDown.add(e.getKeyCode());
+			keysPressed.addLast(e.getKeyCode());
 		}
+		input(); // every key (including the arrows, that are never typed)
 	}
 
 	/**
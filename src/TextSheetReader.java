@@ -0,0 +1,156 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleConsumer;
+
+/**
+ * TextSheetReader - a streaming reader for the text file format of Ex2Sheet.save (see Ex2Sheet.load):
+ * line 0 : header line
+ * line n : <x>,<y>, The cell String, remarks (not to be parsed).
+ * - The file is read in chunks of BUFFER_SIZE bytes into a single buffer, and the lines are cut from it - so the memory does not depend on the size of the file.
+ * - The coordinates are parsed straight from the bytes: no String for the line, no split and no Integer.parseInt for every line.
+ *   Only the content of the cell becomes a String (decoded with the default charset, the same as FileWriter in Ex2Sheet.save).
+ * - The cells are classified (and their formulas parsed) once for every distinct content among the PROTOTYPES most recently used contents -
+ *   a repeated content (the same text or formula in many cells) is copied from the first cell (see SCell(SCell)).
+ *   The least recently used content is dropped first (see Prototypes), so a formula that repeats all over the file stays, even among many distinct numbers.
+ *   The cells are still classified right away, while the file is read - the consumer (e.g., Ex2Sheet.load) needs their types and formulas.
+ * - The lines are handled exactly as in the line by line loader: the first line is the header, a line without two commas is skipped,
+ *   the coordinates and the content are trimmed, and a line with coordinates that are not an int is skipped.
+ */
+public class TextSheetReader {
+    public static final int BUFFER_SIZE = 1 << 16; // the size of a chunk of the file
+    public static final int PROTOTYPES = 4096; // the number of distinct contents that are kept for reuse (bounded, so the memory is bounded too)
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /**
+     * The classified cells of the most recently used contents - a map in access order, that drops its least recently used content
+     * when it has more than PROTOTYPES contents.
+     */
+    private static final class Prototypes extends LinkedHashMap<String, SCell> {
+        private static final long serialVersionUID = 1L;
+
+        Prototypes() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SCell> eldest) {
+            return size() > PROTOTYPES;
+        }
+    }
+
+    /**
+     * Reads the cells of a text spreadsheet file (all of them - cells outside a spreadsheet must be ignored by the consumer).
+     * @param fileName a String representing the full (an absolute or relative path to the loaded file).
+     * @param consumer receives every cell that is read, in the order of the file.
+     * @param progress receives the part of the file that was read so far (between 0 and 1) after every chunk, or null.
+     * @throws IOException an exception might be throed if the file can not be loaded.
+     */
+    public static void read(String fileName, BinarySheetFile.CellConsumer consumer, DoubleConsumer progress) throws IOException {
+        try (FileInputStream in = new FileInputStream(fileName)) {
+            long total = in.getChannel().size(), done = 0;
+            byte[] buffer = new byte[BUFFER_SIZE];
+            byte[] line = new byte[256]; // the current line (grows for a long line)
+            int length = 0; // the length of the current line
+            int lineCount = 0;
+            boolean afterCR = false; // the last byte was '\r' - a '\n' right after it ends the same line
+            Map<String, SCell> prototypes = new Prototypes();
+
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n' || b == '\r') {
+                        if (b == '\n' && afterCR) {
+                            afterCR = false;
+                            continue;
+                        }
+                        afterCR = (b == '\r');
+                        if (++lineCount > 1) parseLine(line, length, consumer, prototypes); // Skip the header line
+                        length = 0;
+                        continue;
+                    }
+                    afterCR = false;
+                    if (length == line.length) line = Arrays.copyOf(line, 2 * length);
+                    line[length++] = b;
+                }
+                done += read;
+                if (progress != null) progress.accept((double) done / Math.max(total, done));
+            }
+            // The last line may end without a line break:
+            if (length > 0 && ++lineCount > 1) parseLine(line, length, consumer, prototypes);
+        }
+    }
+
+    /**
+     * Parses a single line (not the header): <x>,<y>,<content> - a line that is not valid is skipped.
+     * @param line the bytes of the line.
+     * @param length the length of the line.
+     * @param consumer receives the cell of the line.
+     * @param prototypes the classified cells of the most recently used contents.
+     */
+    private static void parseLine(byte[] line, int length, BinarySheetFile.CellConsumer consumer, Map<String, SCell> prototypes) {
+        // Find the first two commas - any comma after them is a part of the content (for example in a conditional cell):
+        int first = indexOf(line, 0, length);
+        if (first < 0) return;
+        int second = indexOf(line, first + 1, length);
+        if (second < 0) return;
+
+        long x = parseInt(line, 0, first);
+        long y = parseInt(line, first + 1, second);
+        if (x == Long.MIN_VALUE || y == Long.MIN_VALUE) return; // Skip lines with invalid number format
+
+        String content = new String(line, second + 1, length - second - 1, CHARSET).trim();
+        SCell prototype = prototypes.get(content);
+        if (prototype == null) {
+            prototype = new SCell(content);
+            prototypes.put(content, prototype);
+        }
+        consumer.accept((int) x, (int) y, new SCell(prototype));
+    }
+
+    /**
+     * @param line the bytes of a line.
+     * @param from the first index to search.
+     * @param to the end of the line.
+     * @return the index of the first comma in [from, to), or -1 if there is none.
+     */
+    private static int indexOf(byte[] line, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == ',') return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses an int from bytes, after trimming the whitespace around it - the same numbers that Integer.parseInt(s.trim()) accepts (in ASCII digits).
+     * @param line the bytes of a line.
+     * @param from the first index of the number.
+     * @param to the end of the number (exclusive).
+     * @return the number, or Long.MIN_VALUE if it is not a valid int.
+     */
+    private static long parseInt(byte[] line, int from, int to) {
+        while (from < to && (line[from] & 0xFF) <= ' ') from++;
+        while (to > from && (line[to - 1] & 0xFF) <= ' ') to--;
+        if (from == to) return Long.MIN_VALUE;
+
+        boolean negative = false;
+        if (line[from] == '-' || line[from] == '+') {
+            negative = (line[from] == '-');
+            from++;
+            if (from == to) return Long.MIN_VALUE; // only a sign
+        }
+        long ans = 0;
+        for (int i = from; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) return Long.MIN_VALUE;
+            ans = ans * 10 + digit;
+            if (ans > (long) Integer.MAX_VALUE + 1) return Long.MIN_VALUE; // too big for an int
+        }
+        if (negative) ans = -ans;
+        return (ans > Integer.MAX_VALUE) ? Long.MIN_VALUE : ans;
+    }
+}
@@ -0,0 +1,136 @@
+import org.junit.jupiter.api.Test;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TextSheetReader_Tests - JUnit tests for the TextSheetReader class.
+ * - Verifies that the streaming reader reads exactly the cells that the line by line loader (BufferedReader, split and Integer.parseInt) reads.
+ * - Tests the header, malformed lines, the different line breaks, and lines longer than a chunk.
+ * - Checks the progress reports, and the reuse of the classified cells.
+ */
+public class TextSheetReader_Tests {
+
+    /**
+     * The line by line loader - the reference for the streaming reader.
+     * @param fileName the file to read.
+     * @return the cells of the file: "x,y,data" for each cell.
+     */
+    private static List<String> readLines(String fileName) throws IOException {
+        List<String> ans = new ArrayList<>();
+        try (BufferedReader loader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            int lineCount = 0;
+            while ((line = loader.readLine()) != null) {
+                if (++lineCount == 1) continue;
+                String[] parts = line.split(",", 3);
+                if (parts.length < 3) continue;
+                try {
+                    ans.add(Integer.parseInt(parts[0].trim()) + "," + Integer.parseInt(parts[1].trim()) + "," + parts[2].trim());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+            }
+        }
+        return ans;
+    }
+
+    /**
+     * @param fileName the file to read.
+     * @return the cells of the file, read by the streaming reader: "x,y,data" for each cell.
+     */
+    private static List<String> readStream(String fileName) throws IOException {
+        List<String> ans = new ArrayList<>();
+        TextSheetReader.read(fileName, (x, y, cell) -> ans.add(x + "," + y + "," + cell.getData()), null);
+        return ans;
+    }
+
+    // Tests valid and malformed lines - the streaming reader reads the same cells as the line by line loader
+    @Test
+    void lines_Test() throws IOException {
+        File file = File.createTempFile("TextSheetReader_Tests", ".txt");
+        file.deleteOnExit();
+        String content = "1,1,the header line is skipped\n"
+                + "0,0,5\n"
+                + "not a cell\n"
+                + "1,2\n"
+                + " 3 , 4 ,  hello  \r\n"
+                + "+1,2,x\r"
+                + "-1,2,negative\n"
+                + "99999999999,1,too big\n"
+                + "2147483647,-2147483648,extremes\n"
+                + "1,,empty y\n"
+                + "a,1,letters\n"
+                + "-,1,sign only\n"
+                + "\n"
+                + "2,3,=if(A0>1,big,small), a remark\n"
+                + "4,5,  a, b ,c  \n"
+                + "5,6," + "x".repeat(3 * TextSheetReader.BUFFER_SIZE) + "\n"
+                + "6,7,=A0*2";
+        Files.writeString(file.toPath(), content, java.nio.charset.Charset.defaultCharset());
+
+        List<String> expected = readLines(file.getPath());
+        assertEquals(expected, readStream(file.getPath()));
+        assertEquals(9, expected.size());
+
+        // An empty file, and a file with only a header:
+        Files.writeString(file.toPath(), "");
+        assertTrue(readStream(file.getPath()).isEmpty());
+        Files.writeString(file.toPath(), "header only, 1,2,3");
+        assertTrue(readStream(file.getPath()).isEmpty());
+    }
+
+    // Tests loading a saved spreadsheet, with progress reports
+    @Test
+    void progress_Test() throws IOException {
+        File file = File.createTempFile("TextSheetReader_Tests", ".txt");
+        file.deleteOnExit();
+        int rows = 20000;
+        Ex2Sheet sheet = new Ex2Sheet(26, rows);
+        sheet.batch(b -> {
+            for (int i = 0; i < rows; i++) b.set(i % 26, i, (i % 3 == 0) ? "text" : "=" + i + "*2");
+        });
+        sheet.save(file.getPath());
+
+        List<Double> reports = new ArrayList<>();
+        Ex2Sheet loaded = new Ex2Sheet(26, rows);
+        loaded.load(file.getPath(), reports::add);
+        assertTrue(reports.size() > 1);
+        for (int i = 1; i < reports.size(); i++) assertTrue(reports.get(i) >= reports.get(i - 1));
+        assertEquals(1.0, reports.get(reports.size() - 1));
+        assertEquals(rows, loaded.cells.size());
+        for (int i = 0; i < rows; i += 97) assertEquals(sheet.value(i % 26, i), loaded.value(i % 26, i));
+
+        // The same content is classified once - the cells share it:
+        assertSame(loaded.get(0, 0).getData(), loaded.get(3, 3).getData());
+
+        // A file that does not exist - the spreadsheet is left as it was:
+        assertThrows(IOException.class, () -> loaded.load(file.getPath() + ".missing"));
+        assertEquals("text", loaded.value(0, 0));
+    }
+
+    // Tests the reuse of classified cells - a formula that repeats all over the file is parsed once, even among more distinct contents than PROTOTYPES
+    @Test
+    void prototypes_Test() throws IOException {
+        File file = File.createTempFile("TextSheetReader_Tests", ".txt");
+        file.deleteOnExit();
+        StringBuilder content = new StringBuilder("header\n");
+        for (int y = 0; y < 3 * TextSheetReader.PROTOTYPES; y++) {
+            content.append("0,").append(y).append(',').append(y).append('\n'); // a distinct number
+            if (y % 100 == 0) content.append("1,").append(y).append(",=A0*2\n");
+        }
+        Files.writeString(file.toPath(), content.toString());
+
+        List<Expr> formulas = new ArrayList<>();
+        TextSheetReader.read(file.getPath(), (x, y, cell) -> {
+            if (x == 1) formulas.add(((SCell) cell).getFormula());
+        }, null);
+        assertEquals(3 * TextSheetReader.PROTOTYPES / 100 + 1, formulas.size());
+        for (Expr formula : formulas) assertSame(formulas.get(0), formula);
+    }
+}
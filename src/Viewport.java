@@ -0,0 +1,168 @@
+/**
+ * Viewport - the part of a spreadsheet that is shown in the GUI window, and where each of its cells is drawn.
+ * - The window has room for a fixed number of columns and rows (it depends on the size of the window, not on the size of the spreadsheet),
+ *   and the viewport shows the cells from its first column and row onwards - scrolling only moves the first column and row.
+ * - Only the cells inside the viewport are drawn, so drawing a frame costs the same for a 9x17 spreadsheet and for a spreadsheet with millions of rows.
+ * - The layout (in the user coordinates of the window, see StdDrawEx2.setScale): the first column of the window holds the row numbers,
+ *   and every column of cells is GUI_X_SPACE wide. The rows are 1 unit high, from the bottom of the window upwards -
+ *   the first shown row is the top one, and above the rows there is the line of the column names (and the lines above it, for input).
+ * The viewport never scrolls beyond the spreadsheet: when the spreadsheet is smaller than the window, it is shown from A0.
+ */
+public class Viewport {
+    private final int width, height; // the dimensions of the spreadsheet
+    private final int columns, rows; // the number of columns (and rows) that the window has room for
+    private int firstColumn = 0, firstRow = 0; // the cell in the top left corner of the viewport
+
+    /**
+     * constructor for a Viewport of a spreadsheet, in a window with room for the given number of columns and rows.
+     * @param width the dimension of the x-coordinate of the spreadsheet.
+     * @param height the dimension of the y-coordinate of the spreadsheet.
+     * @param columns the number of columns the window has room for (1 or more).
+     * @param rows the number of rows the window has room for (1 or more).
+     */
+    public Viewport(int width, int height, int columns, int rows) {
+        if (width < 0 || height < 0 || columns < 1 || rows < 1) throw new IllegalArgumentException("invalid value");
+        this.width = width;
+        this.height = height;
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Creates the viewport of a spreadsheet in the GUI window - the window is MAX_X x MAX_X units (see Ex2GUI),
+     * minus the column of the row numbers and the GUI_HEADER_LINES lines at the top.
+     * @param width the dimension of the x-coordinate of the spreadsheet.
+     * @param height the dimension of the y-coordinate of the spreadsheet.
+     * @return the viewport, showing the spreadsheet from A0.
+     */
+    public static Viewport ofWindow(int width, int height) {
+        int columns = (int) ((Ex2Utils.MAX_X - Ex2Utils.GUI_X_SPACE) / Ex2Utils.GUI_X_SPACE);
+        int rows = Ex2Utils.MAX_X - Ex2Utils.GUI_HEADER_LINES;
+        return new Viewport(width, height, columns, rows);
+    }
+
+    /**
+     * @return the number of columns the window has room for.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the number of rows the window has room for.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the x-coordinate of the first (left) shown column.
+     */
+    public int getFirstColumn() {
+        return firstColumn;
+    }
+
+    /**
+     * @return the y-coordinate of the first (top) shown row.
+     */
+    public int getFirstRow() {
+        return firstRow;
+    }
+
+    /**
+     * @return the x-coordinate of the last (right) shown column (less than the first column if the spreadsheet has no columns).
+     */
+    public int getLastColumn() {
+        return Math.min(firstColumn + columns, width) - 1;
+    }
+
+    /**
+     * @return the y-coordinate of the last (bottom) shown row (less than the first row if the spreadsheet has no rows).
+     */
+    public int getLastRow() {
+        return Math.min(firstRow + rows, height) - 1;
+    }
+
+    /**
+     * @param x integer, x-coordinate of the cell.
+     * @param y integer, y-coordinate of the cell.
+     * @return true if the x,y cell is shown in the viewport.
+     */
+    public boolean isVisible(int x, int y) {
+        return x >= firstColumn && x <= getLastColumn() && y >= firstRow && y <= getLastRow();
+    }
+
+    /**
+     * Moves the viewport to show the given cell in its top left corner - as close as possible without showing anything beyond the spreadsheet.
+     * @param x integer, x-coordinate of the first column.
+     * @param y integer, y-coordinate of the first row.
+     * @return true if the viewport was moved.
+     */
+    public boolean scrollTo(int x, int y) {
+        int column = Math.max(0, Math.min(x, width - columns));
+        int row = Math.max(0, Math.min(y, height - rows));
+        if (column == firstColumn && row == firstRow) return false;
+        firstColumn = column;
+        firstRow = row;
+        return true;
+    }
+
+    /**
+     * Moves the viewport by some columns and rows (see scrollTo).
+     * @param dx the number of columns to move right (negative - left).
+     * @param dy the number of rows to move down (negative - up).
+     * @return true if the viewport was moved.
+     */
+    public boolean scrollBy(int dx, int dy) {
+        // In long arithmetic - a big step must not overflow:
+        long x = Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, (long) firstColumn + dx));
+        long y = Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, (long) firstRow + dy));
+        return scrollTo((int) x, (int) y);
+    }
+
+    /**
+     * @param x integer, x-coordinate of a shown column.
+     * @return the x-coordinate (in the window) of the center of the column.
+     */
+    public double centerX(int x) {
+        return Ex2Utils.GUI_X_START + (x - firstColumn) * Ex2Utils.GUI_X_SPACE;
+    }
+
+    /**
+     * @param y integer, y-coordinate of a shown row.
+     * @return the y-coordinate (in the window) of the center of the row.
+     */
+    public double centerY(int y) {
+        return rows - (y - firstRow) - 0.5;
+    }
+
+    /**
+     * @param y integer, y-coordinate of a shown row.
+     * @return the y-coordinate (in the window) of the text of the row.
+     */
+    public double textY(int y) {
+        return rows - (y - firstRow + 1 - Ex2Utils.GUI_Y_TEXT_START);
+    }
+
+    /**
+     * @param x the x-coordinate of a point in the window.
+     * @return the x-coordinate of the shown column at this point, or -1 if there is no column of the spreadsheet there.
+     */
+    public int columnAt(double x) {
+        double column = Math.floor((x - Ex2Utils.GUI_X_SPACE) / Ex2Utils.GUI_X_SPACE);
+        if (column < 0 || column >= columns) return -1;
+        int ans = firstColumn + (int) column;
+        return (ans < width) ? ans : -1;
+    }
+
+    /**
+     * @param y the y-coordinate of a point in the window.
+     * @return the y-coordinate of the shown row at this point, or -1 if there is no row of the spreadsheet there.
+     */
+    public int rowAt(double y) {
+        double row = Math.floor(rows - y);
+        if (row < 0 || row >= rows) return -1;
+        int ans = firstRow + (int) row;
+        return (ans < height) ? ans : -1;
+    }
+}
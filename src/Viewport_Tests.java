@@ -0,0 +1,85 @@
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Viewport_Tests - JUnit tests for the Viewport class.
+ * - Verifies the shown cells, and scrolling within the limits of the spreadsheet.
+ * - Checks the positions of the cells in the window, and finding the cell under a point.
+ * - Tests a spreadsheet that is smaller than the window.
+ */
+public class Viewport_Tests {
+
+    // Tests the shown cells and scrolling
+    @Test
+    void scroll_Test() {
+        Viewport view = new Viewport(26, 100, 9, 17);
+        assertEquals(0, view.getFirstColumn());
+        assertEquals(8, view.getLastColumn());
+        assertEquals(16, view.getLastRow());
+        assertTrue(view.isVisible(8, 16));
+        assertFalse(view.isVisible(9, 0));
+        assertFalse(view.isVisible(0, 17));
+
+        assertTrue(view.scrollBy(1, 10));
+        assertEquals(1, view.getFirstColumn());
+        assertEquals(10, view.getFirstRow());
+        assertEquals(26, view.getLastRow());
+        assertFalse(view.isVisible(0, 10));
+        assertTrue(view.isVisible(9, 26));
+
+        // Never beyond the spreadsheet:
+        assertTrue(view.scrollBy(1000, Integer.MAX_VALUE));
+        assertEquals(26 - 9, view.getFirstColumn());
+        assertEquals(100 - 17, view.getFirstRow());
+        assertEquals(25, view.getLastColumn());
+        assertEquals(99, view.getLastRow());
+        assertFalse(view.scrollBy(1, 1)); // already at the end
+        assertTrue(view.scrollTo(-5, Integer.MIN_VALUE));
+        assertEquals(0, view.getFirstColumn());
+        assertEquals(0, view.getFirstRow());
+        assertFalse(view.scrollTo(0, 0));
+    }
+
+    // Tests the positions of the cells, and the cell under a point
+    @Test
+    void position_Test() {
+        Viewport view = Viewport.ofWindow(26, 100);
+        assertEquals(9, view.getColumns());
+        assertEquals(17, view.getRows());
+
+        // The same layout as the original GUI (A0 at the top left):
+        assertEquals(3, view.centerX(0), Ex2Utils.EPS);
+        assertEquals(16.5, view.centerY(0), Ex2Utils.EPS);
+        assertEquals(16.4, view.textY(0), Ex2Utils.EPS);
+        assertEquals(0, view.columnAt(2.5));
+        assertEquals(0, view.rowAt(16.5));
+        assertEquals(8, view.columnAt(19.9));
+        assertEquals(16, view.rowAt(0.1));
+        assertEquals(-1, view.columnAt(1)); // the row numbers
+        assertEquals(-1, view.rowAt(17.5)); // the column names
+
+        view.scrollTo(5, 50);
+        assertEquals(3, view.centerX(5), Ex2Utils.EPS);
+        assertEquals(16.5, view.centerY(50), Ex2Utils.EPS);
+        assertEquals(6, view.columnAt(5));
+        assertEquals(51, view.rowAt(15.5));
+        for (int x = view.getFirstColumn(); x <= view.getLastColumn(); x++) {
+            for (int y = view.getFirstRow(); y <= view.getLastRow(); y++) {
+                assertEquals(x, view.columnAt(view.centerX(x)));
+                assertEquals(y, view.rowAt(view.centerY(y)));
+            }
+        }
+    }
+
+    // Tests a spreadsheet that is smaller than the window
+    @Test
+    void small_Test() {
+        Viewport view = new Viewport(3, 4, 9, 17);
+        assertEquals(2, view.getLastColumn());
+        assertEquals(3, view.getLastRow());
+        assertFalse(view.scrollBy(1, 1));
+        assertEquals(-1, view.columnAt(view.centerX(3)));
+        assertEquals(-1, view.rowAt(view.centerY(4)));
+        assertThrows(IllegalArgumentException.class, () -> new Viewport(3, 4, 0, 17));
+    }
+}